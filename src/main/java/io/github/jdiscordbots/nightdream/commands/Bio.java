@@ -8,10 +8,13 @@
 package io.github.jdiscordbots.nightdream.commands;
 
 import io.github.jdiscordbots.nightdream.util.IconChooser;
+import io.github.jdiscordbots.nightdream.util.SingleFlight;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 
+import java.util.Optional;
+
 import bio.discord.dbio.Dbio;
 import bio.discord.dbio.entities.User;
 import bio.discord.dbio.entities.user.DiscordInformation;
@@ -23,6 +26,8 @@ import bio.discord.dbio.entities.user.SettingsInformation;
  * See https://github.com/zastrixarundell/dbio-java#important-notice for details.
  */
 public class Bio implements Command {
+	
+	private static final SingleFlight<String, Optional<User>> lookups=new SingleFlight<>("bio");
 
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
@@ -35,7 +40,7 @@ public class Bio implements Command {
 		}
 
 		final String slug = String.join(" ", args);
-		Dbio.getUserDetails(slug).thenAccept(details->{
+		lookups.executeAsync(slug, ()->Dbio.getUserDetails(slug)).thenAccept(details->{
 			if (!details.isPresent()) {
 				channel.sendMessage(error404).queue();
 			}
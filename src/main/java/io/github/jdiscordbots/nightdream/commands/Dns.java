@@ -6,12 +6,16 @@
  */
 package io.github.jdiscordbots.nightdream.commands;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import io.github.jdiscordbots.nightdream.util.GeneralUtils;
+import io.github.jdiscordbots.nightdream.util.BotData;
+import io.github.jdiscordbots.nightdream.util.DnsRecord;
+import io.github.jdiscordbots.nightdream.util.DnsResolver;
 import io.github.jdiscordbots.nightdream.util.IconChooser;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.MessageEmbed;
@@ -19,51 +23,108 @@ import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 
 @BotCommand("dns")
 public class Dns implements Command {
-	private static final String UNKNOWN_MSG="<unknown>";
-	private MessageEmbed parse(JSONObject json) {
-		JSONObject qObj = json.getJSONArray("Question").getJSONObject(0);
-		String question = qObj.getString("name");
-		question=question.substring(0, question.length()-1);
-		EmbedBuilder eb=new EmbedBuilder().setColor(0x212121)
-				.setTitle(question+" (type "+qObj.getInt("type")+") resolves to:");
-		JSONArray authority=json.getJSONArray("Authority");
-		if(authority.length()>0) {
-			JSONObject auth=authority.getJSONObject(0);
-			eb.addField("Type", String.valueOf(auth.getInt("type")),false);
-			eb.addField("Time to live (TTL)", String.valueOf(auth.getInt("TTL")), false);
-			
-			String[] data=auth.getString("data").split(Pattern.quote(". "));
-			eb.addField("Nameserver", data[0], false);
-			eb.addField("DNS Hostmaster", data[1], false);
-			eb.addField("Mystery Text", data[2], false);
-		}else {
-			eb.addField("Type", UNKNOWN_MSG, false);
-			eb.addField("Time to live (TTL)", UNKNOWN_MSG, false);
-			eb.addField("Nameserver", UNKNOWN_MSG, false);
-			eb.addField("DNS Hostmaster", UNKNOWN_MSG, false);
-			eb.addField("Mystery Text", UNKNOWN_MSG, false);
-		}
-		if(json.has("Comment")) {
-			eb.setFooter(json.getString("Comment"));
-		}
-		return eb.build();
-	}
+	private static final List<DnsRecord.Type> FORWARD_TYPES=Arrays.asList(DnsRecord.Type.A,DnsRecord.Type.AAAA,DnsRecord.Type.MX,DnsRecord.Type.TXT,DnsRecord.Type.NS);
+	private static final List<DnsRecord.Type> REVERSE_TYPES=Arrays.asList(DnsRecord.Type.PTR);
+	private static final String TRUNCATED_SUFFIX="\n...";
+
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
 		if(args.length==0) {
 			event.getChannel().sendMessage(IconChooser.getInfoIcon(event.getChannel())+" Unknown Resolve Target").queue();
-		}else {
-			JSONObject json=GeneralUtils.getJSONFromURL("https://dns.google.com/resolve?type=PTR&name="+String.join(" ", args));
-			if(json==null) {
+			return;
+		}
+		String target=args[0];
+		if(!DnsResolver.isValidTarget(target)) {
+			event.getChannel().sendMessage(IconChooser.getErrorIcon(event.getChannel())+" Invalid Resolve Target, please use a domain name or an IP address").queue();
+			return;
+		}
+		String reverseName=DnsResolver.getReverseName(target);
+		String name=reverseName==null?target:reverseName;
+		List<DnsRecord.Type> types=reverseName!=null||name.endsWith(".arpa")?REVERSE_TYPES:FORWARD_TYPES;
+
+		//all types are looked up at the same time
+		Map<DnsRecord.Type, CompletableFuture<List<DnsRecord>>> lookups=new LinkedHashMap<>();
+		for (DnsRecord.Type type : types) {
+			lookups.put(type, DnsResolver.resolve(name, type));
+		}
+		CompletableFuture.allOf(lookups.values().toArray(new CompletableFuture[0])).whenComplete((ignored,e)->{
+			Map<DnsRecord.Type, List<DnsRecord>> results=new LinkedHashMap<>();
+			List<DnsRecord.Type> failed=new ArrayList<>();
+			for (Map.Entry<DnsRecord.Type, CompletableFuture<List<DnsRecord>>> lookup : lookups.entrySet()) {
+				if(lookup.getValue().isCompletedExceptionally()) {
+					failed.add(lookup.getKey());
+				}else {
+					List<DnsRecord> records=lookup.getValue().join();
+					if(!records.isEmpty()) {
+						results.put(lookup.getKey(), records);
+					}
+				}
+			}
+			if(failed.size()==types.size()) {
 				event.getChannel().sendMessage("Unknown Error").queue();
+			}else if(results.isEmpty()&&failed.isEmpty()) {
+				event.getChannel().sendMessage("Your query is unresolvable.\nTry with a different one?").queue();
 			}else {
-				if(json.getInt("Status")==0) {
-					event.getChannel().sendMessage(parse(json)).queue();
-				}else {
-					event.getChannel().sendMessage("Your query is unresolvable.\nTry with a different one?").queue();
+				event.getChannel().sendMessage(createEmbed(target, results, failed)).queue();
+			}
+		});
+	}
+	private MessageEmbed createEmbed(String target,Map<DnsRecord.Type, List<DnsRecord>> results,List<DnsRecord.Type> failed) {
+		EmbedBuilder eb=new EmbedBuilder().setColor(0x212121)
+				.setTitle(target+" resolves to:");
+		for (Map.Entry<DnsRecord.Type, List<DnsRecord>> result : results.entrySet()) {
+			eb.addField(result.getKey().name(), formatRecords(result.getValue()), false);
+		}
+		if(!failed.isEmpty()) {
+			StringBuilder sb=new StringBuilder();
+			for (DnsRecord.Type type : failed) {
+				if(sb.length()>0) {
+					sb.append(", ");
 				}
+				sb.append(type.name());
+			}
+			eb.addField("Failed lookups", sb.toString(), false);
+		}
+		eb.setFooter("Resolved using "+getResolverDescription());
+		return eb.build();
+	}
+	private static String formatRecords(List<DnsRecord> records) {
+		StringBuilder sb=new StringBuilder();
+		for (DnsRecord dnsRecord : records) {
+			String line="`"+formatData(dnsRecord)+"`"+(dnsRecord.getTTL()<0?"":" (TTL "+dnsRecord.getTTL()+"s)");
+			if(sb.length()+line.length()+1>MessageEmbed.VALUE_MAX_LENGTH-TRUNCATED_SUFFIX.length()) {
+				sb.append(TRUNCATED_SUFFIX);
+				break;
+			}
+			if(sb.length()>0) {
+				sb.append('\n');
 			}
+			sb.append(line);
+		}
+		return sb.toString();
+	}
+	private static String formatData(DnsRecord dnsRecord) {
+		String data=dnsRecord.getData().replace("`", "'");
+		switch(dnsRecord.getType()) {
+		case NS:
+		case MX:
+		case PTR:
+		case CNAME:
+			//host names are shown without the root label
+			return data.endsWith(".")?data.substring(0, data.length()-1):data;
+		default:
+			return data;
+		}
+	}
+	private static String getResolverDescription() {
+		String resolver=BotData.getDnsResolver();
+		if(DnsResolver.DOH_RESOLVER.equals(resolver)) {
+			return "DNS over HTTPS";
+		}
+		if(DnsResolver.SYSTEM_RESOLVER.equals(resolver)) {
+			return "the DNS servers of the system";
 		}
+		return resolver;
 	}
 
 	@Override
@@ -23,32 +23,18 @@ import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.io.UncheckedIOException;
-import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
-import javax.tools.JavaCompiler;
-import javax.tools.JavaFileObject;
-import javax.tools.StandardJavaFileManager;
-import javax.tools.StandardLocation;
-import javax.tools.ToolProvider;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,19 +51,7 @@ public class Eval implements Command {
 	private Throwable lastErr=new Exception();
 	
 	//region Java Compiler(only in JDK)
-	private static JavaCompiler compiler;
-	private static File parentDir;
-	
-	static {
-		try {
-			compiler=ToolProvider.getSystemJavaCompiler();
-			parentDir=Files.createTempDirectory("NightDreamEval").toFile();
-		} catch (IOException e) {
-			compiler=null;
-			parentDir=null;
-		}
-	}
-	private Object compileAndEvaluateJdkCompiler(String code,GuildMessageReceivedEvent event) throws IOException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, CannotCompileException, NoSuchAlgorithmException {
+	private Object compileAndEvaluateJdkCompiler(String code,GuildMessageReceivedEvent event) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, CannotCompileException, NoSuchAlgorithmException {
 		Map<String,Object> params=new HashMap<>();
 		params.put("event", event);
     	params.put("jda", event.getJDA());
@@ -87,54 +61,32 @@ public class Eval implements Command {
     	params.put("err", lastErr);
 		return compileAndEvaluateJdkCompiler(getClassName(code,params), code, params);
 	}
-	private Object compileAndEvaluateJdkCompiler(String className,String code,Map<String,Object> params)throws IOException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, CannotCompileException {
-		File sourceFile = new File(parentDir,className+".java");
-		String errData="This file has previously been compiled and there was a compilation error";
-		if(!sourceFile.exists()) {
-			try(Writer writer=new BufferedWriter(new FileWriter(sourceFile))){
-				writer.write("import io.github.jdiscordbots.nightdream.util.*;");
-				writer.write("import net.dv8tion.jda.api.*;");
-				writer.write("import net.dv8tion.jda.api.entities.*;");
-				writer.write("import org.json.*;");
-				writer.write("import java.util.stream.*;");
-				writer.write("import java.util.*;");
-				writer.write("public class ");
-				writer.write(className);
-				writer.write("{public static Object eval(");
-				boolean[] hasPrev= {false};//array because lamda can only use effectively final variables
-				params.forEach((k,v)->{
-					try {
-						if(hasPrev[0]) {
-							writer.write(',');
-						}else {
-							hasPrev[0]=true;
-						}
-						writer.write(v.getClass().getCanonicalName());
-						writer.write(' ');
-						writer.write(k);
-					} catch (IOException e) {
-						throw new UncheckedIOException(e);
-					}
-				});
-				writer.write(")throws Exception{if(true){\n"+filterCode(code)+"\n/**/}return null;}}");
-			}catch(UncheckedIOException e) {
-				throw e.getCause();
-			}
-			try(StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, null);
-					StringWriter out=new StringWriter()){
-				standardFileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(parentDir));
-				Iterable<? extends JavaFileObject> compilationUnits = standardFileManager.getJavaFileObjectsFromFiles(Collections.singletonList(sourceFile));
-				compiler.getTask(out, standardFileManager, null,Arrays.asList("-classpath",System.getProperty("java.class.path")),null, compilationUnits).call();
-				errData=out.toString();
+	private Object compileAndEvaluateJdkCompiler(String className,String code,Map<String,Object> params)throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, CannotCompileException {
+		StringBuilder source=new StringBuilder();
+		source.append("import io.github.jdiscordbots.nightdream.util.*;")
+			.append("import net.dv8tion.jda.api.*;")
+			.append("import net.dv8tion.jda.api.entities.*;")
+			.append("import org.json.*;")
+			.append("import java.util.stream.*;")
+			.append("import java.util.*;")
+			.append("public class ")
+			.append(className)
+			.append("{public static Object eval(");
+		boolean hasPrev=false;
+		for (Map.Entry<String, Object> param : params.entrySet()) {
+			if(hasPrev) {
+				source.append(',');
+			}else {
+				hasPrev=true;
 			}
+			source.append(param.getValue().getClass().getCanonicalName())
+				.append(' ')
+				.append(param.getKey());
 		}
-		try(URLClassLoader loader = URLClassLoader.newInstance(new URL[] {parentDir.toURI().toURL()}, Eval.class.getClassLoader())){
-			Class<?> clazz = loader.loadClass(className);
-			Method method = clazz.getDeclaredMethod("eval",params.values().stream().map(Object::getClass).toArray(Class<?>[]::new));
-			return method.invoke(null,params.values().toArray());
-		}catch(ClassNotFoundException e) {
-			throw new CannotCompileException(errData);
-		}
+		source.append(")throws Exception{if(true){\n").append(filterCode(code)).append("\n/**/}return null;}}");
+		Class<?> clazz = EvalCompiler.compile(className, source.toString());
+		Method method = clazz.getDeclaredMethod("eval",params.values().stream().map(Object::getClass).toArray(Class<?>[]::new));
+		return method.invoke(null,params.values().toArray());
 	}
 	private String getClassName(String code, Map<String, Object> params) throws NoSuchAlgorithmException {
 		MessageDigest digest=MessageDigest.getInstance("SHA-256");
@@ -177,7 +129,11 @@ public class Eval implements Command {
 	
 	
 	
-	private static void init() throws NotFoundException {
+	private static synchronized void init() throws NotFoundException {
+		if(pool!=null) {
+			//the class path of the default ClassPool would grow with every evaluation
+			return;
+		}
 		ClassPool p=ClassPool.getDefault();
 		p.insertClassPath(new LoaderClassPath(Eval.class.getClassLoader()));
 		CtClass cl=p.getCtClass(Eval.class.getCanonicalName()+"$"+Sandbox.class.getSimpleName());
@@ -226,7 +182,7 @@ public class Eval implements Command {
 		try {
 			long time=System.nanoTime();
 			Object result;
-			if(compiler!=null) {
+			if(EvalCompiler.isAvailable()) {
 				result=compileAndEvaluateJdkCompiler(script, event);
 			}else {
 				result=compileAndEvaluateJavassist(script, event);
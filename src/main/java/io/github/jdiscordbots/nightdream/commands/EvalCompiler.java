@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: EvalCompiler.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.jdiscordbots.nightdream.util.MetricRegistry;
+import javassist.CannotCompileException;
+
+/**
+ * compiles snippets of {@link Eval} without using the file system<br>
+ * The {@link StandardJavaFileManager} and its class path are reused for all compilations so the class path is only indexed once.
+ * Class files are kept in memory and every compiled snippet is loaded by its own {@link ClassLoader}.
+ * The last {@value #MAX_ENTRIES} snippets (including compilation errors) are cached by their class name,
+ * older snippets can be unloaded by the garbage collector.
+ * @see Eval
+ */
+final class EvalCompiler {
+	private static final Logger LOG=LoggerFactory.getLogger(EvalCompiler.class);
+
+	private static final int MAX_ENTRIES=64;
+
+	private static final JavaCompiler compiler=ToolProvider.getSystemJavaCompiler();
+	private static final StandardJavaFileManager standardFileManager=createStandardFileManager();
+	private static final Map<String, CompiledSnippet> cache=new LinkedHashMap<String, CompiledSnippet>(16, 0.75F, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompiledSnippet> eldest) {
+			return size()>MAX_ENTRIES;
+		}
+	};
+
+	static {
+		MetricRegistry.gauge("eval.cache.entries", ()->{
+			synchronized(cache) {
+				return cache.size();
+			}
+		});
+	}
+
+	private EvalCompiler() {
+		//prevent instantiation
+	}
+
+	/**
+	 * checks if snippets can be compiled
+	 * @return <code>true</code> if the JDK compiler is available, else <code>false</code>
+	 */
+	static boolean isAvailable() {
+		return standardFileManager!=null;
+	}
+	/**
+	 * compiles a class or gets it from the cache
+	 * @param className the name of the class, the same name must always be used for the same source code
+	 * @param source the source code of the class
+	 * @return the compiled class
+	 * @throws CannotCompileException if the source code cannot be compiled
+	 */
+	static Class<?> compile(String className,String source) throws CannotCompileException {
+		CompiledSnippet snippet;
+		synchronized(cache) {
+			snippet=cache.get(className);
+		}
+		if(snippet==null) {
+			MetricRegistry.increment("eval.cache.misses");
+			snippet=doCompile(className, source);
+			synchronized(cache) {
+				cache.put(className, snippet);
+			}
+		}else {
+			MetricRegistry.increment("eval.cache.hits");
+		}
+		if(snippet.compiledClass==null) {
+			throw new CannotCompileException(snippet.errors);
+		}
+		return snippet.compiledClass;
+	}
+	private static CompiledSnippet doCompile(String className,String source) {
+		MemoryFileManager fileManager=new MemoryFileManager(standardFileManager);
+		boolean success;
+		StringWriter out=new StringWriter();
+		//the standard file manager is not thread safe
+		synchronized(standardFileManager) {
+			success=compiler.getTask(out, fileManager, null, null, null, Collections.singletonList(new SourceFile(className, source))).call();
+		}
+		if(!success) {
+			return new CompiledSnippet(null, out.toString());
+		}
+		try {
+			return new CompiledSnippet(new MemoryClassLoader(fileManager.getClassFiles()).loadClass(className), null);
+		}catch(ClassNotFoundException e) {
+			return new CompiledSnippet(null, "The compiled class cannot be found");
+		}
+	}
+	private static StandardJavaFileManager createStandardFileManager() {
+		if(compiler==null) {
+			return null;
+		}
+		StandardJavaFileManager fileManager=compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+		List<File> classPath=new ArrayList<>();
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if(!entry.isEmpty()) {
+				classPath.add(new File(entry));
+			}
+		}
+		try {
+			fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+		}catch(IOException e) {
+			LOG.warn("Cannot set the class path of the eval compiler", e);
+		}
+		return fileManager;
+	}
+
+	/**
+	 * the result of a compilation
+	 */
+	private static final class CompiledSnippet{
+		private final Class<?> compiledClass;
+		private final String errors;
+		private CompiledSnippet(Class<?> compiledClass, String errors) {
+			this.compiledClass = compiledClass;
+			this.errors = errors;
+		}
+	}
+	/**
+	 * source code that is not stored in a file
+	 */
+	private static final class SourceFile extends SimpleJavaFileObject{
+		private final String source;
+		private SourceFile(String className,String source) {
+			super(URI.create("string:///"+className+Kind.SOURCE.extension), Kind.SOURCE);
+			this.source=source;
+		}
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+	/**
+	 * a class file that is written to memory
+	 */
+	private static final class ClassFile extends SimpleJavaFileObject{
+		private final ByteArrayOutputStream content=new ByteArrayOutputStream();
+		private ClassFile(String className) {
+			super(URI.create("mem:///"+className.replace('.', '/')+Kind.CLASS.extension), Kind.CLASS);
+		}
+		@Override
+		public OutputStream openOutputStream() {
+			return content;
+		}
+	}
+	/**
+	 * a file manager that reads sources and classes using the standard file manager but writes class files to memory
+	 */
+	private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager>{
+		private final Map<String, ClassFile> classFiles=new HashMap<>();
+		private MemoryFileManager(StandardJavaFileManager fileManager) {
+			super(fileManager);
+		}
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+				FileObject sibling) throws IOException {
+			if(kind==JavaFileObject.Kind.CLASS) {
+				ClassFile classFile=new ClassFile(className);
+				classFiles.put(className, classFile);
+				return classFile;
+			}
+			return super.getJavaFileForOutput(location, className, kind, sibling);
+		}
+		@Override
+		public void close() {
+			//the standard file manager is reused
+		}
+		private Map<String, byte[]> getClassFiles(){
+			Map<String, byte[]> result=new HashMap<>();
+			classFiles.forEach((name,file)->result.put(name, file.content.toByteArray()));
+			return result;
+		}
+	}
+	/**
+	 * loads the classes of a single snippet
+	 */
+	private static final class MemoryClassLoader extends ClassLoader{
+		private final Map<String, byte[]> classFiles;
+		private MemoryClassLoader(Map<String, byte[]> classFiles) {
+			super(Eval.class.getClassLoader());
+			this.classFiles=classFiles;
+		}
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] classFile=classFiles.get(name);
+			if(classFile==null) {
+				throw new ClassNotFoundException(name);
+			}
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+}
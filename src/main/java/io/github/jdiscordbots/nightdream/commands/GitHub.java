@@ -9,7 +9,11 @@ package io.github.jdiscordbots.nightdream.commands;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Locale;
 
+import org.json.JSONObject;
 import org.kohsuke.github.GHFileNotFoundException;
 import org.kohsuke.github.GHLicense;
 import org.kohsuke.github.GHPerson;
@@ -18,6 +22,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.jdiscordbots.nightdream.util.BotData;
+import io.github.jdiscordbots.nightdream.util.GitHubClient;
+import io.github.jdiscordbots.nightdream.util.SingleFlight;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 
@@ -26,15 +32,23 @@ public class GitHub implements Command {
 	
 	private static final Logger LOG=LoggerFactory.getLogger(GitHub.class);
 	
-	private org.kohsuke.github.GitHub client;
+	private static final String PERSON_QUERY="query($login:String!){repositoryOwner(login:$login){__typename login url avatarUrl "
+			+ "...on User{name websiteUrl company email location createdAt followers{totalCount} following{totalCount} "
+			+ "repositories(privacy:PUBLIC){totalCount} gists(privacy:PUBLIC){totalCount}} "
+			+ "...on Organization{name websiteUrl email location createdAt repositories(privacy:PUBLIC){totalCount}}}}";
+	private static final String REPOSITORY_QUERY="query($owner:String!,$name:String!){repository(owner:$owner,name:$name){"
+			+ "name nameWithOwner url description homepageUrl isPrivate primaryLanguage{name} mirrorUrl "
+			+ "defaultBranchRef{name} owner{login} licenseInfo{name} diskUsage}}";
+	private static final String TOTAL_COUNT="totalCount";
+	private static final String NAME="name";
+	
+	private final GitHubClient client;
+	
+	private final SingleFlight<String, PersonInfo> personLookups=new SingleFlight<>("github.users");
+	private final SingleFlight<String, RepositoryInfo> repositoryLookups=new SingleFlight<>("github.repositories");
 
 	public GitHub() throws IOException {
-		String gitHubToken = BotData.getGitHubToken();
-		if (gitHubToken == null || "".equals(gitHubToken)) {
-			client=org.kohsuke.github.GitHub.connectAnonymously();
-		} else {
-			client=org.kohsuke.github.GitHub.connectUsingOAuth(gitHubToken);
-		}
+		client=new GitHubClient(BotData.getGitHubToken());
 	}
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
@@ -72,51 +86,184 @@ public class GitHub implements Command {
 	}
 
 	private void showPerson(String userName,EmbedBuilder eb) throws IOException {
-		GHPerson person = client.getUser(userName);
+		//GitHub user names are case insensitive
+		showPerson(personLookups.execute(userName.toLowerCase(Locale.ROOT), ()->loadPerson(userName)),eb);
+	}
+	/**
+	 * loads a user or organization in a single GraphQL request if possible
+	 */
+	private PersonInfo loadPerson(String userName) throws IOException {
+		if(client.isGraphQLAvailable()) {
+			JSONObject owner=client.queryGraphQL(PERSON_QUERY, new JSONObject().put("login", userName)).optJSONObject("repositoryOwner");
+			if(owner==null) {
+				throw new GHFileNotFoundException();
+			}
+			return new PersonInfo(owner);
+		}
+		GHPerson person = client.getApi().getUser(userName);
 		if("Organization".equals(person.getType())) {
-			person=client.getOrganization(userName);
+			person=client.getApi().getOrganization(userName);
 		}
-		showPerson(person,eb);
+		return new PersonInfo(person);
 	}
-	private void showPerson(GHPerson person,EmbedBuilder eb) throws IOException {
-		eb.setTitle(person.getType()+" `"+person.getLogin()+"`");
-		eb.setAuthor(person.getName(),person.getHtmlUrl().toString(),person.getAvatarUrl());
-		addFieldIfNotNull(eb, "Blog", person.getBlog());
-		addFieldIfNotNull(eb, "Company", person.getCompany());
-		addFieldIfNotNull(eb, "E-Mail", person.getEmail());
-		addFieldIfNotNull(eb, "Location", person.getLocation());
-		addFieldIfNotNull(eb, "Created account", person.getCreatedAt().toString());
-		eb.addField("Followers", String.valueOf(person.getFollowersCount()), true);
-		eb.addField("Following",String.valueOf(person.getFollowingCount()),true);
-		eb.addField("Public Repositories",String.valueOf(person.getPublicRepoCount()),true);
-		eb.addField("Public Gists",String.valueOf(person.getPublicGistCount()),true);
+	private void showPerson(PersonInfo person,EmbedBuilder eb) {
+		eb.setTitle(person.type+" `"+person.login+"`");
+		eb.setAuthor(person.name,person.htmlUrl,person.avatarUrl);
+		addFieldIfNotNull(eb, "Blog", person.blog);
+		addFieldIfNotNull(eb, "Company", person.company);
+		addFieldIfNotNull(eb, "E-Mail", person.email);
+		addFieldIfNotNull(eb, "Location", person.location);
+		addFieldIfNotNull(eb, "Created account", person.createdAt);
+		eb.addField("Followers", String.valueOf(person.followers), true);
+		eb.addField("Following",String.valueOf(person.following),true);
+		eb.addField("Public Repositories",String.valueOf(person.publicRepos),true);
+		eb.addField("Public Gists",String.valueOf(person.publicGists),true);
 	}
 	private void showRepository(String userName,String repoName,EmbedBuilder eb) throws IOException {
-		showRepository(client.getRepository(userName+"/"+repoName), eb);
+		String fullName=userName+"/"+repoName;
+		showRepository(repositoryLookups.execute(fullName.toLowerCase(Locale.ROOT), ()->loadRepository(userName, repoName)), eb);
 	}
-	private void showRepository(GHRepository repo,EmbedBuilder eb) throws IOException {
+	/**
+	 * loads a repository with its license in a single GraphQL request if possible
+	 */
+	private RepositoryInfo loadRepository(String userName,String repoName) throws IOException {
+		if(client.isGraphQLAvailable()) {
+			JSONObject repo=client.queryGraphQL(REPOSITORY_QUERY, new JSONObject().put("owner", userName).put(NAME, repoName)).optJSONObject("repository");
+			if(repo==null||repo.optBoolean("isPrivate")) {
+				throw new GHFileNotFoundException();
+			}
+			return new RepositoryInfo(repo);
+		}
+		GHRepository repo=client.getApi().getRepository(userName+"/"+repoName);
 		if(repo.isPrivate()) {
 			throw new GHFileNotFoundException();
 		}
-		eb.setAuthor(repo.getName(), repo.getHtmlUrl().toString());
-		eb.setTitle(repo.getFullName());
-		eb.setDescription(repo.getDescription());
-		addFieldIfNotNull(eb, "Homepage", repo.getHomepage());
-		addFieldIfNotNull(eb, "Language", repo.getLanguage());
-		addFieldIfNotNull(eb, "Mirrored from", repo.getMirrorUrl());
-		addFieldIfNotNull(eb, "Default branch", repo.getDefaultBranch());
-		addFieldIfNotNull(eb, "Owner", repo.getOwnerName());
-		GHLicense license = repo.getLicense();
-		if(license!=null) {
-			eb.addField("License", license.getName(), true);
+		return new RepositoryInfo(repo, repo.getLicense());
+	}
+	private void showRepository(RepositoryInfo repo,EmbedBuilder eb) {
+		eb.setAuthor(repo.name, repo.htmlUrl);
+		eb.setTitle(repo.fullName);
+		eb.setDescription(repo.description);
+		addFieldIfNotNull(eb, "Homepage", repo.homepage);
+		addFieldIfNotNull(eb, "Language", repo.language);
+		addFieldIfNotNull(eb, "Mirrored from", repo.mirrorUrl);
+		addFieldIfNotNull(eb, "Default branch", repo.defaultBranch);
+		addFieldIfNotNull(eb, "Owner", repo.ownerName);
+		if(repo.licenseName!=null) {
+			eb.addField("License", repo.licenseName, true);
 		}
-		eb.addField("Size",repo.getSize()+"KB",true);
+		eb.addField("Size",repo.size+"KB",true);
 	}
 	private void addFieldIfNotNull(EmbedBuilder eb,String name,String value) {
 		if(value!=null&&!"".equals(value)) {
 			eb.addField(name, value, true);
 		}
 	}
+	private static String optNestedString(JSONObject obj,String key,String nestedKey) {
+		JSONObject nested=obj.optJSONObject(key);
+		return nested==null?null:nested.optString(nestedKey, null);
+	}
+	private static int optTotalCount(JSONObject obj,String key) {
+		JSONObject nested=obj.optJSONObject(key);
+		return nested==null?0:nested.optInt(TOTAL_COUNT);
+	}
+	/**
+	 * the displayed information of a user or organization, loaded from the REST or GraphQL API
+	 */
+	private static final class PersonInfo{
+		private final String type;
+		private final String login;
+		private final String name;
+		private final String htmlUrl;
+		private final String avatarUrl;
+		private final String blog;
+		private final String company;
+		private final String email;
+		private final String location;
+		private final String createdAt;
+		private final int followers;
+		private final int following;
+		private final int publicRepos;
+		private final int publicGists;
+		
+		private PersonInfo(GHPerson person) throws IOException {
+			type=person.getType();
+			login=person.getLogin();
+			name=person.getName();
+			htmlUrl=person.getHtmlUrl().toString();
+			avatarUrl=person.getAvatarUrl();
+			blog=person.getBlog();
+			company=person.getCompany();
+			email=person.getEmail();
+			location=person.getLocation();
+			createdAt=person.getCreatedAt().toString();
+			followers=person.getFollowersCount();
+			following=person.getFollowingCount();
+			publicRepos=person.getPublicRepoCount();
+			publicGists=person.getPublicGistCount();
+		}
+		private PersonInfo(JSONObject owner) {
+			type=owner.getString("__typename");
+			login=owner.getString("login");
+			name=owner.optString(NAME, null);
+			htmlUrl=owner.getString("url");
+			avatarUrl=owner.optString("avatarUrl", null);
+			blog=owner.optString("websiteUrl", null);
+			company=owner.optString("company", null);
+			email=owner.optString("email", null);
+			location=owner.optString("location", null);
+			String created=owner.optString("createdAt", null);
+			//same format as the REST API
+			createdAt=created==null?null:Date.from(Instant.parse(created)).toString();
+			followers=optTotalCount(owner, "followers");
+			following=optTotalCount(owner, "following");
+			publicRepos=optTotalCount(owner, "repositories");
+			publicGists=optTotalCount(owner, "gists");
+		}
+	}
+	/**
+	 * the displayed information of a repository with its license, loaded together so concurrent lookups can share both
+	 */
+	private static final class RepositoryInfo{
+		private final String name;
+		private final String fullName;
+		private final String htmlUrl;
+		private final String description;
+		private final String homepage;
+		private final String language;
+		private final String mirrorUrl;
+		private final String defaultBranch;
+		private final String ownerName;
+		private final String licenseName;
+		private final int size;
+		
+		private RepositoryInfo(GHRepository repo, GHLicense license) {
+			name=repo.getName();
+			fullName=repo.getFullName();
+			htmlUrl=repo.getHtmlUrl().toString();
+			description=repo.getDescription();
+			homepage=repo.getHomepage();
+			language=repo.getLanguage();
+			mirrorUrl=repo.getMirrorUrl();
+			defaultBranch=repo.getDefaultBranch();
+			ownerName=repo.getOwnerName();
+			licenseName=license==null?null:license.getName();
+			size=repo.getSize();
+		}
+		private RepositoryInfo(JSONObject repo) {
+			name=repo.getString(NAME);
+			fullName=repo.getString("nameWithOwner");
+			htmlUrl=repo.getString("url");
+			description=repo.optString("description", null);
+			homepage=repo.optString("homepageUrl", null);
+			language=optNestedString(repo, "primaryLanguage", NAME);
+			mirrorUrl=repo.optString("mirrorUrl", null);
+			defaultBranch=optNestedString(repo, "defaultBranchRef", NAME);
+			ownerName=optNestedString(repo, "owner", "login");
+			licenseName=optNestedString(repo, "licenseInfo", NAME);
+			size=repo.optInt("diskUsage");
+		}
+	}
 	@Override
 	public String help() {
 		return "Query GitHub without actually visiting it";
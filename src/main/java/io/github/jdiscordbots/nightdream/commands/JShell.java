@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: JShell.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.jdiscordbots.nightdream.util.BotData;
+import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+
+/**
+ * evaluates code in a JShell session that is kept between invocations<br>
+ * Every admin has an own session, variables and methods declared in a session can be used by later invocations.
+ * The variables <code>event</code>, <code>jda</code>, <code>guild</code>, <code>channel</code> and <code>message</code>
+ * are updated with every invocation.
+ * Sessions are closed using <code>jshell reset</code> or after being unused for {@value #IDLE_TIMEOUT_MINUTES} minutes.
+ * Evaluations are stopped after {@value #EVAL_TIMEOUT_SECONDS} seconds.
+ */
+@BotCommand("jshell")
+public class JShell implements Command {
+	private static final Logger LOG=LoggerFactory.getLogger(JShell.class);
+
+	private static final String RESET_ARG="reset";
+	private static final long IDLE_TIMEOUT_MINUTES=15;
+	private static final long EVAL_TIMEOUT_SECONDS=60;
+
+	/**
+	 * the sessions, guarded by {@link JShell#sessionLock} so sessions are not closed while they are handed out
+	 */
+	private static final Map<String, JShellSession> sessions=new HashMap<>();
+	private static final Object sessionLock=new Object();
+	private static final Map<String, Map<String, Object>> bindings=new ConcurrentHashMap<>();
+	private static final ExecutorService evalThreadPool=Executors.newCachedThreadPool(r->{
+		Thread t=new Thread(r, "jshell-eval");
+		t.setDaemon(true);
+		return t;
+	});
+	private static final ScheduledExecutorService watchdogExecutor=Executors.newSingleThreadScheduledExecutor(r->{
+		Thread t=new Thread(r, "jshell-watchdog");
+		t.setDaemon(true);
+		return t;
+	});
+
+	static {
+		watchdogExecutor.scheduleWithFixedDelay(JShell::closeIdleSessions, 1, 1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * gets an object of the message that is currently evaluated<br>
+	 * This method is called by the snippets in order to update their variables.
+	 * @param sessionId the identifier of the session
+	 * @param name the name of the variable
+	 * @return the object or <code>null</code> if there is no such session or variable
+	 */
+	public static Object getBinding(String sessionId,String name) {
+		Map<String, Object> sessionBindings=bindings.get(sessionId);
+		return sessionBindings==null?null:sessionBindings.get(name);
+	}
+
+	@Override
+	public boolean allowExecute(String[] args, GuildMessageReceivedEvent event) {
+		return JDAUtils.checkOwner(event,args!=null);
+	}
+	@Override
+	public void action(String[] args, GuildMessageReceivedEvent event) {
+		if(!JShellSession.isAvailable()) {
+			event.getChannel().sendMessage("JShell is not available, it requires Java 9 or newer.").queue();
+			return;
+		}
+		int index=event.getMessage().getContentRaw().indexOf(' ');
+		String code=index==-1?"":event.getMessage().getContentRaw().substring(index+1).trim();
+		String sessionId=event.getAuthor().getId();
+		if(code.isEmpty()) {
+			event.getChannel().sendMessage("Please specify the code to evaluate or use `jshell "+RESET_ARG+"` to reset your session.").queue();
+		}else if(RESET_ARG.equalsIgnoreCase(code)) {
+			JShellSession session=removeSession(sessionId);
+			if(session!=null) {
+				//closing waits for a running evaluation to stop
+				evalThreadPool.execute(session::close);
+			}
+			event.getChannel().sendMessage("Your JShell session has been reset.").queue();
+		}else if(code.contains("getToken")) {
+			JDAUtils.tokenLeakAlert(event.getAuthor());
+		}else {
+			evalThreadPool.execute(()->exec(event, sessionId, code));
+		}
+	}
+	private void exec(GuildMessageReceivedEvent event,String sessionId,String code) {
+		long time=System.nanoTime();
+		JShellSession.Result result;
+		AtomicBoolean timedOut=new AtomicBoolean();
+		try {
+			Map<String, Object> sessionBindings=new HashMap<>();
+			sessionBindings.put("event", event);
+			sessionBindings.put("jda", event.getJDA());
+			sessionBindings.put("guild", event.getGuild());
+			sessionBindings.put("channel", event.getChannel());
+			sessionBindings.put("message", event.getMessage());
+			result=eval(sessionId, code, sessionBindings, timedOut);
+		}catch(ReflectiveOperationException|RuntimeException e) {
+			LOG.warn("Cannot use JShell", e);
+			event.getChannel().sendMessage("`ERROR`\n```java\nJShell failed: "+e+"\n```").queue();
+			return;
+		}
+		time=System.nanoTime()-time;
+		if(timedOut.get()) {
+			event.getChannel().sendMessage("`ERROR`\n```java\nThe evaluation has been stopped after "+EVAL_TIMEOUT_SECONDS+" seconds\n```").queue();
+		}else if(result.isError()) {
+			String error=result.getError();
+			event.getChannel().sendMessage("`ERROR`\n```java\n" + error.substring(0, Math.min(error.length(), 1000)) + "\n```").queue();
+		}else if(result.getValue()!=null&&result.getValue().contains(BotData.getToken())) {
+			JDAUtils.tokenLeakAlert(event.getAuthor());
+		}else {
+			sendResult(event, result.getValue(), time);
+		}
+	}
+	/**
+	 * evaluates code in the session of a user, a new session is created if the session is reset while waiting for another evaluation
+	 */
+	private static JShellSession.Result eval(String sessionId,String code,Map<String, Object> sessionBindings,AtomicBoolean timedOut) throws ReflectiveOperationException {
+		for(;;) {
+			JShellSession session=getSession(sessionId);
+			//the bindings must not be replaced by another message of the same admin during the evaluation
+			synchronized(session) {
+				synchronized(sessionLock) {
+					if(sessions.get(sessionId)!=session) {
+						//the session has been reset and closed while waiting
+						continue;
+					}
+					bindings.put(sessionId, sessionBindings);
+				}
+				ScheduledFuture<?> timeout=watchdogExecutor.schedule(()->{
+					timedOut.set(true);
+					session.stop();
+				}, EVAL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				try {
+					return session.eval(code);
+				}finally {
+					timeout.cancel(false);
+					bindings.remove(sessionId, sessionBindings);
+				}
+			}
+		}
+	}
+	private void sendResult(GuildMessageReceivedEvent event,String value,long time) {
+		EmbedBuilder eb=new EmbedBuilder();
+		eb.setFooter("JShell session of "+event.getAuthor().getName()+" | "+time+"ns");
+		if(value==null) {
+			event.getChannel().sendMessage(eb.build()).queue();
+			return;
+		}
+		String text="```java\n"+value+"\n```";
+		if(text.length()>=2000) {
+			eb.setDescription("As the output was over 2000 characters, it was exported into a text file.");
+			event.getChannel().sendMessage(eb.build()).addFile(value.getBytes(StandardCharsets.UTF_8), "result.txt").queue();
+		}else {
+			eb.setDescription(text);
+			event.getChannel().sendMessage(eb.build()).queue();
+		}
+	}
+	private static JShellSession getSession(String sessionId) throws ReflectiveOperationException {
+		synchronized(sessionLock) {
+			JShellSession session=sessions.get(sessionId);
+			if(session==null) {
+				session=new JShellSession(sessionId);
+				sessions.put(sessionId, session);
+			}
+			//the session must not be closed as idle before it is used
+			session.touch();
+			return session;
+		}
+	}
+	private static JShellSession removeSession(String sessionId) {
+		synchronized(sessionLock) {
+			bindings.remove(sessionId);
+			return sessions.remove(sessionId);
+		}
+	}
+	private static void closeIdleSessions() {
+		long idleSince=System.currentTimeMillis()-TimeUnit.MINUTES.toMillis(IDLE_TIMEOUT_MINUTES);
+		List<JShellSession> idleSessions=new ArrayList<>();
+		synchronized(sessionLock) {
+			for (Iterator<Map.Entry<String, JShellSession>> it = sessions.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<String, JShellSession> session=it.next();
+				//sessions with a running evaluation are not idle
+				if(!session.getValue().isBusy()&&session.getValue().getLastUsed()<idleSince) {
+					LOG.debug("Closing idle JShell session of {}", session.getKey());
+					it.remove();
+					bindings.remove(session.getKey());
+					idleSessions.add(session.getValue());
+				}
+			}
+		}
+		for (JShellSession session : idleSessions) {
+			session.close();
+		}
+	}
+
+	@Override
+	public String help() {
+		return "Evaluates Code in a persistent JShell session";
+	}
+	@Override
+	public String permNeeded() {
+		return "Bot-Admin";
+	}
+	@Override
+	public CommandType getType() {
+		return CommandType.META;
+	}
+}
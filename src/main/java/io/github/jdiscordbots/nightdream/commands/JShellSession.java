@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: JShellSession.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * a persistent JShell instance that keeps variables, methods and classes between evaluations<br>
+ * The bot is compiled for Java 8 so <code>jdk.jshell</code> is accessed using reflection.
+ * The snippets are executed in the JVM of the bot so they can access the objects passed by {@link JShell}.
+ * @see JShell
+ */
+final class JShellSession implements AutoCloseable {
+	private static final Logger LOG=LoggerFactory.getLogger(JShellSession.class);
+
+	private static final String[] DEFAULT_IMPORTS= {
+			"io.github.jdiscordbots.nightdream.util.*",
+			"net.dv8tion.jda.api.*",
+			"net.dv8tion.jda.api.entities.*",
+			"org.json.*",
+			"java.util.stream.*"
+	};
+	private static final String[][] BINDINGS= {
+			{"event","net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent"},
+			{"jda","net.dv8tion.jda.api.JDA"},
+			{"guild","net.dv8tion.jda.api.entities.Guild"},
+			{"channel","net.dv8tion.jda.api.entities.TextChannel"},
+			{"message","net.dv8tion.jda.api.entities.Message"}
+	};
+
+	private static final Api API=loadApi();
+
+	private final String id;
+	private final Object shell;
+	private final Object analysis;
+	private volatile long lastUsed=System.currentTimeMillis();
+	private volatile boolean busy;
+
+	/**
+	 * starts a new session
+	 * @param id the identifier used by {@link JShell#getBinding(String, String)} to find the objects of this session
+	 * @throws ReflectiveOperationException if JShell cannot be started
+	 */
+	JShellSession(String id) throws ReflectiveOperationException {
+		if(API==null) {
+			throw new ClassNotFoundException("jdk.jshell.JShell");
+		}
+		this.id=id;
+		//the local execution engine runs the snippets in this JVM instead of a remote process
+		Object builder=API.builder.invoke(null);
+		builder=API.executionEngine.invoke(builder, "local");
+		shell=API.build.invoke(builder);
+		analysis=API.sourceCodeAnalysis.invoke(shell);
+		API.addToClasspath.invoke(shell, System.getProperty("java.class.path"));
+		for (String defaultImport : DEFAULT_IMPORTS) {
+			API.eval.invoke(shell, "import "+defaultImport+";");
+		}
+		for (String[] binding : BINDINGS) {
+			API.eval.invoke(shell, binding[1]+" "+binding[0]+"=null;");
+		}
+	}
+	/**
+	 * checks if JShell is available in this JVM
+	 * @return <code>true</code> if JShell can be used, else <code>false</code>
+	 */
+	static boolean isAvailable() {
+		return API!=null;
+	}
+
+	/**
+	 * evaluates code in this session
+	 * @param code one or more snippets
+	 * @return the result of the last snippet
+	 * @throws ReflectiveOperationException if JShell cannot be accessed
+	 */
+	synchronized Result eval(String code) throws ReflectiveOperationException {
+		busy=true;
+		lastUsed=System.currentTimeMillis();
+		try {
+			return evalSnippets(code);
+		}finally {
+			lastUsed=System.currentTimeMillis();
+			busy=false;
+		}
+	}
+	private Result evalSnippets(String code) throws ReflectiveOperationException {
+		//the objects of the current message are assigned to the variables in a single snippet
+		StringBuilder refresh=new StringBuilder("{");
+		for (String[] binding : BINDINGS) {
+			refresh.append(binding[0]).append("=(").append(binding[1]).append(")")
+				.append(JShell.class.getCanonicalName()).append(".getBinding(\"").append(id).append("\",\"").append(binding[0]).append("\");");
+		}
+		Result refreshResult=evalSnippet(refresh.append('}').toString());
+		if(refreshResult.isError()) {
+			return refreshResult;
+		}
+		Result result=new Result(null, null);
+		String remaining=code;
+		while(!remaining.trim().isEmpty()) {
+			Object info=API.analyzeCompletion.invoke(analysis, remaining);
+			Object completeness=API.completeness.invoke(info);
+			if("EMPTY".equals(((Enum<?>)completeness).name())) {
+				break;
+			}
+			if(!((Boolean)API.isComplete.invoke(completeness))) {
+				return new Result(null, "Incomplete input:\n"+remaining.trim());
+			}
+			result=evalSnippet((String)API.source.invoke(info));
+			if(result.isError()) {
+				return result;
+			}
+			remaining=(String)API.remaining.invoke(info);
+		}
+		return result;
+	}
+	private Result evalSnippet(String snippet) throws ReflectiveOperationException {
+		String value=null;
+		for (Object event : (List<?>)API.eval.invoke(shell, snippet)) {
+			if("REJECTED".equals(((Enum<?>)API.status.invoke(event)).name())) {
+				Stream<?> diagnostics=(Stream<?>)API.diagnostics.invoke(shell, API.snippet.invoke(event));
+				return new Result(null, diagnostics.map(this::getDiagnosticMessage).collect(Collectors.joining("\n")));
+			}
+			Throwable exception=(Throwable)API.exception.invoke(event);
+			if(exception!=null) {
+				return new Result(null, getExceptionMessage(exception));
+			}
+			String eventValue=(String)API.value.invoke(event);
+			if(eventValue!=null) {
+				value=eventValue;
+			}
+		}
+		return new Result(value, null);
+	}
+	private String getDiagnosticMessage(Object diagnostic) {
+		try {
+			return (String)API.diagnosticMessage.invoke(diagnostic, Locale.ENGLISH);
+		}catch(IllegalAccessException|InvocationTargetException e) {
+			return String.valueOf(diagnostic);
+		}
+	}
+	private static String getExceptionMessage(Throwable exception) {
+		String className=exception.getClass().getName();
+		if(API.exceptionClassName.getDeclaringClass().isInstance(exception)) {
+			//the original exception is only available as name
+			try {
+				className=(String)API.exceptionClassName.invoke(exception);
+			}catch(IllegalAccessException|InvocationTargetException e) {
+				LOG.debug("Cannot get the name of the thrown exception", e);
+			}
+		}
+		return exception.getMessage()==null?className:className+": "+exception.getMessage();
+	}
+	/**
+	 * gets the time the session has been used for the last time
+	 * @return the time in milliseconds since the epoch
+	 */
+	long getLastUsed() {
+		return lastUsed;
+	}
+	/**
+	 * marks the session as used so it is not closed because it is idle
+	 */
+	void touch() {
+		lastUsed=System.currentTimeMillis();
+	}
+	/**
+	 * checks if code is evaluated at the moment
+	 * @return <code>true</code> if an evaluation is running, else <code>false</code>
+	 */
+	boolean isBusy() {
+		return busy;
+	}
+	/**
+	 * stops a running evaluation, this method can be called from any thread
+	 */
+	void stop() {
+		try {
+			API.stop.invoke(shell);
+		}catch(IllegalAccessException|InvocationTargetException e) {
+			LOG.warn("Cannot stop JShell session", e);
+		}
+	}
+	/**
+	 * stops a running evaluation and closes the session<br>
+	 * Closing alone would not stop the thread of the local execution engine.
+	 * This method waits until the running evaluation has been stopped.
+	 */
+	@Override
+	public void close() {
+		stop();
+		synchronized(this) {
+			try {
+				API.close.invoke(shell);
+			}catch(IllegalAccessException|InvocationTargetException e) {
+				LOG.warn("Cannot close JShell session", e);
+			}
+		}
+	}
+
+	private static Api loadApi() {
+		try {
+			return new Api();
+		}catch(ReflectiveOperationException e) {
+			LOG.debug("JShell is not available", e);
+			return null;
+		}
+	}
+
+	/**
+	 * the result of an evaluation
+	 */
+	static final class Result{
+		private final String value;
+		private final String error;
+		private Result(String value, String error) {
+			this.value = value;
+			this.error = error;
+		}
+		/**
+		 * gets the value of the last snippet
+		 * @return the value as returned by JShell or <code>null</code> if the snippet has no value
+		 */
+		String getValue() {
+			return value;
+		}
+		/**
+		 * gets the compilation errors or the exception thrown by a snippet
+		 * @return the error message or <code>null</code> if the evaluation was successful
+		 */
+		String getError() {
+			return error;
+		}
+		boolean isError() {
+			return error!=null;
+		}
+	}
+	/**
+	 * the used methods of the JShell API
+	 */
+	private static final class Api{
+		private final Method builder;
+		private final Method executionEngine;
+		private final Method build;
+		private final Method addToClasspath;
+		private final Method eval;
+		private final Method sourceCodeAnalysis;
+		private final Method diagnostics;
+		private final Method close;
+		private final Method stop;
+		private final Method analyzeCompletion;
+		private final Method completeness;
+		private final Method isComplete;
+		private final Method source;
+		private final Method remaining;
+		private final Method status;
+		private final Method value;
+		private final Method exception;
+		private final Method snippet;
+		private final Method diagnosticMessage;
+		private final Method exceptionClassName;
+		private Api() throws ReflectiveOperationException {
+			//methods are loaded from the exported API types as the implementation classes are not accessible
+			Class<?> jshellClass=Class.forName("jdk.jshell.JShell");
+			Class<?> builderClass=Class.forName("jdk.jshell.JShell$Builder");
+			Class<?> analysisClass=Class.forName("jdk.jshell.SourceCodeAnalysis");
+			Class<?> completionInfoClass=Class.forName("jdk.jshell.SourceCodeAnalysis$CompletionInfo");
+			Class<?> completenessClass=Class.forName("jdk.jshell.SourceCodeAnalysis$Completeness");
+			Class<?> eventClass=Class.forName("jdk.jshell.SnippetEvent");
+			Class<?> snippetClass=Class.forName("jdk.jshell.Snippet");
+			builder=jshellClass.getMethod("builder");
+			executionEngine=builderClass.getMethod("executionEngine", String.class);
+			build=builderClass.getMethod("build");
+			addToClasspath=jshellClass.getMethod("addToClasspath", String.class);
+			eval=jshellClass.getMethod("eval", String.class);
+			sourceCodeAnalysis=jshellClass.getMethod("sourceCodeAnalysis");
+			diagnostics=jshellClass.getMethod("diagnostics", snippetClass);
+			close=jshellClass.getMethod("close");
+			stop=jshellClass.getMethod("stop");
+			analyzeCompletion=analysisClass.getMethod("analyzeCompletion", String.class);
+			completeness=completionInfoClass.getMethod("completeness");
+			isComplete=completenessClass.getMethod("isComplete");
+			source=completionInfoClass.getMethod("source");
+			remaining=completionInfoClass.getMethod("remaining");
+			status=eventClass.getMethod("status");
+			value=eventClass.getMethod("value");
+			exception=eventClass.getMethod("exception");
+			snippet=eventClass.getMethod("snippet");
+			diagnosticMessage=Class.forName("jdk.jshell.Diag").getMethod("getMessage", Locale.class);
+			exceptionClassName=Class.forName("jdk.jshell.EvalException").getMethod("getExceptionClassName");
+		}
+	}
+}
@@ -7,18 +7,17 @@
 
 package io.github.jdiscordbots.nightdream.commands;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import io.github.jdiscordbots.nightdream.util.LicenseIndex;
+import io.github.jdiscordbots.nightdream.util.LicenseIndex.LicenseInfo;
+import io.github.jdiscordbots.nightdream.util.UpstreamUnavailableException;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 
@@ -40,43 +39,64 @@ public class License implements Command{
 			.queue();
 			return;
 		}
-		try(BufferedReader reader=new BufferedReader(new InputStreamReader(new URL("https://api.github.com/licenses/"+args[0]).openStream(),StandardCharsets.UTF_8))){
-			StringBuilder sb=new StringBuilder();
-			String line;
-			while((line=reader.readLine())!=null) {
-				sb.append(line);
-			}
-			JSONObject json=new JSONObject(sb.toString());
-			EmbedBuilder builder=new EmbedBuilder();
-			builder.setTitle(json.getString("name"))
-			.setDescription(json.getString("description"));
-			addFieldWithJSONArrayInJSONObject(builder, json, "permissions", "Permissions");
-			addFieldWithJSONArrayInJSONObject(builder, json, "conditions", "Conditions");
-			addFieldWithJSONArrayInJSONObject(builder, json, "limitations", "Limitations");
-			builder.addField("Common?", json.getBoolean("featured")?"Yes":"No", true)
-			.setColor(0x212121)
-			.setFooter("Not legal advice - see `license advice`");
-			event.getChannel().sendMessage(builder.build()).queue();
-		}catch (FileNotFoundException e) {
-			event.getChannel().sendMessage("No such license! Use the SPDX ID.").queue();
-		} catch (IOException e) {
-			event.getChannel().sendMessage("An Error occured - Please try again later").queue();
-			LOG.warn("Cannot load License {}: {}", args[0], e.getClass().getName());
+		LicenseInfo info=LicenseIndex.find(args[0]);
+		if(info!=null) {
+			sendLicense(event, info);
+			return;
 		}
+		//the index contains all licenses known by GitHub so similar licenses are suggested without asking GitHub
+		List<LicenseInfo> similar=LicenseIndex.findSimilar(args[0]);
+		if(!similar.isEmpty()) {
+			sendSuggestions(event, similar);
+			return;
+		}
+		LicenseIndex.fetch(args[0]).whenComplete((fetched,e)->{
+			//exceptions thrown in this callback would be swallowed by the CompletableFuture
+			try {
+				if(e instanceof FileNotFoundException) {
+					event.getChannel().sendMessage("No such license! Use the SPDX ID.").queue();
+				}else if(e instanceof UpstreamUnavailableException) {
+					event.getChannel().sendMessage(((UpstreamUnavailableException)e).getUserMessage()).queue();
+				}else if(e!=null) {
+					event.getChannel().sendMessage("An Error occured - Please try again later").queue();
+					LOG.warn("Cannot load License {}: {}", args[0], e.getClass().getName());
+				}else {
+					sendLicense(event, fetched);
+				}
+			}catch(RuntimeException callbackException) {
+				LOG.warn("Cannot send License {}", args[0], callbackException);
+				JDAUtils.errmsg(event.getChannel(), "An Error occured - Please try again later");
+			}
+		});
 	}
-	private static void fillStringBuilderWithJSONArray(StringBuilder sb,JSONArray arr) {
-		if(arr.length()==0) {
+	/**
+	 * tells the user that there is no such license and suggests licenses with a similar ID or name
+	 */
+	private static void sendSuggestions(GuildMessageReceivedEvent event,List<LicenseInfo> similar) {
+		event.getChannel().sendMessage("No such license! Did you mean "
+				+similar.stream().map(info->"`"+info.getKey()+"` ("+info.getName()+")").collect(Collectors.joining(", "))+"?").queue();
+	}
+	private static void sendLicense(GuildMessageReceivedEvent event,LicenseInfo info) {
+		EmbedBuilder builder=new EmbedBuilder();
+		builder.setTitle(info.getName())
+		.setDescription(info.getDescription());
+		addFieldWithRules(builder, info.getPermissions(), "Permissions");
+		addFieldWithRules(builder, info.getConditions(), "Conditions");
+		addFieldWithRules(builder, info.getLimitations(), "Limitations");
+		builder.addField("Common?", info.isFeatured()?"Yes":"No", true)
+		.setColor(0x212121)
+		.setFooter("Not legal advice - see `license advice`");
+		event.getChannel().sendMessage(builder.build()).queue();
+	}
+	private static void addFieldWithRules(EmbedBuilder builder,List<String> rules,String fieldName) {
+		StringBuilder sb=new StringBuilder();
+		if(rules.isEmpty()) {
 			sb.append("\n<nothing>");
 		}else {
-			for (Object object : arr) {
-				sb.append('\n').append(object);
+			for (String rule : rules) {
+				sb.append('\n').append(rule);
 			}
 		}
-		
-	}
-	private static void addFieldWithJSONArrayInJSONObject(EmbedBuilder builder,JSONObject json,String jsonName,String fieldName) {
-		StringBuilder sb=new StringBuilder();
-		fillStringBuilderWithJSONArray(sb,json.getJSONArray(jsonName));
 		builder.addField(fieldName,sb.toString(),true);
 	}
 	@Override
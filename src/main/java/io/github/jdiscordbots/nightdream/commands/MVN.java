@@ -7,6 +7,7 @@
 
 package io.github.jdiscordbots.nightdream.commands;
 
+import io.github.jdiscordbots.nightdream.util.Endpoint;
 import io.github.jdiscordbots.nightdream.util.GeneralUtils;
 import io.github.jdiscordbots.nightdream.util.IconChooser;
 import io.github.jdiscordbots.nightdream.util.JDAUtils;
@@ -17,8 +18,13 @@ import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 @BotCommand("mvn")
 public class MVN implements Command{
+	private static final long CACHE_MINUTES=15;
+
 
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
@@ -26,20 +32,18 @@ public class MVN implements Command{
 			event.getChannel().sendMessage(IconChooser.getQuestionIcon(event.getChannel())+" I need a package name").queue();
 			return;
 		}
-		String url="https://search.maven.org/solrsearch/select?q="+args[0]+"&wt=json";
-		JSONObject json=GeneralUtils.getJSONFromURL(url);
+		JSONObject json=GeneralUtils.getJSONFromURL(getSearchURL(args[0]), CACHE_MINUTES, TimeUnit.MINUTES);
 		if(json==null) {
 			JDAUtils.errmsg(event.getChannel(), "An error occurred, maybe your query is invalid");
 		}else {
-			JSONArray docs=json.getJSONObject("response").getJSONArray("docs");
-			if(docs.length()==0) {
+			JSONObject data=getFirstResult(json);
+			if(data==null) {
 				EmbedBuilder builder=new EmbedBuilder();
 				builder.setColor(0xdc6328)
 				.addField(IconChooser.getQuestionIcon(event.getChannel())+" Nothing found", "Try something different.", false);
 				event.getChannel().sendMessage(builder.build()).queue();
 				return;
 			}
-			JSONObject data=docs.getJSONObject(0);
 			EmbedBuilder builder=new EmbedBuilder();
 			builder.setColor(0xdc6328)
 			.setTitle("Result")
@@ -51,6 +55,30 @@ public class MVN implements Command{
 			JDAUtils.msg(event.getChannel(), builder.build());
 		}
 	}
+	private static String getSearchURL(String query) {
+		return Endpoint.MAVEN.url("/solrsearch/select?q=")+query+"&wt=json";
+	}
+	private static JSONObject getFirstResult(JSONObject json) {
+		JSONArray docs=json.getJSONObject("response").getJSONArray("docs");
+		return docs.length()==0?null:docs.getJSONObject(0);
+	}
+	/**
+	 * searches an artifact asynchronously
+	 * @param query the search query
+	 * @return a {@link CompletableFuture} that is completed with the best match or <code>null</code> if nothing has been found
+	 */
+	static CompletableFuture<PackageMatch> search(String query) {
+		return GeneralUtils.getJSONFromURLAsync(getSearchURL(query), CACHE_MINUTES, TimeUnit.MINUTES).thenApply(json->{
+			JSONObject data=getFirstResult(json);
+			if(data==null) {
+				return null;
+			}
+			String groupId=data.getString("g");
+			String artifactId=data.getString("a");
+			return new PackageMatch("Maven Central", groupId+":"+artifactId, data.getString("latestVersion"), null,
+					"https://search.maven.org/artifact/"+groupId+"/"+artifactId);
+		});
+	}
 	@Override
 	public String help() {
 		return "Allows you to view info about a maven artifact";
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: Metrics.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import io.github.jdiscordbots.nightdream.util.MetricRegistry;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+
+@BotCommand("metrics")
+public class Metrics implements Command {
+
+	@Override
+	public boolean allowExecute(String[] args, GuildMessageReceivedEvent event) {
+		return JDAUtils.checkOwner(event,args!=null);
+	}
+
+	@Override
+	public void action(String[] args, GuildMessageReceivedEvent event) {
+		String prefix=args.length==0?"":args[0];
+		SortedMap<String, Number> metrics=MetricRegistry.getMetrics(prefix);
+		if(metrics.isEmpty()) {
+			JDAUtils.errmsg(event.getChannel(), "There are no metrics starting with `"+prefix+"`.");
+			return;
+		}
+		StringBuilder sb=new StringBuilder("```\n");
+		for (Map.Entry<String, Number> metric : metrics.entrySet()) {
+			String line=metric.getKey()+": "+metric.getValue()+"\n";
+			if(sb.length()+line.length()+4>MessageEmbed.TEXT_MAX_LENGTH) {
+				sb.append("...\n");
+				break;
+			}
+			sb.append(line);
+		}
+		sb.append("```");
+		JDAUtils.msg(event.getChannel(), sb.toString());
+	}
+
+	@Override
+	public String help() {
+		return "shows metrics of the bot (`metrics [prefix]`)";
+	}
+
+	@Override
+	public String permNeeded() {
+		return "Bot-Admin";
+	}
+
+	@Override
+	public CommandType getType() {
+		return CommandType.META;
+	}
+}
@@ -7,6 +7,7 @@
 
 package io.github.jdiscordbots.nightdream.commands;
 
+import io.github.jdiscordbots.nightdream.util.Endpoint;
 import io.github.jdiscordbots.nightdream.util.GeneralUtils;
 import io.github.jdiscordbots.nightdream.util.IconChooser;
 import io.github.jdiscordbots.nightdream.util.JDAUtils;
@@ -17,10 +18,32 @@ import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.Optional;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 @BotCommand("npm")
 public class NPM implements Command{
+	private static final long CACHE_MINUTES=15;
+	private static final String UNKNOWN_MSG="<unknown>";
+	private static final String NAME_POINTER="/name";
+	private static final String DESCRIPTION_POINTER="/description";
+	private static final String KEYWORDS_POINTER="/keywords";
+	private static final String MAINTAINER_POINTER="/maintainers/0/name";
+	private static final String LATEST_POINTER="/dist-tags/latest";
+	private static final String VERSIONS_POINTER_PREFIX="/versions/";
+	private static final String AUTHOR_POINTER_SUFFIX="/author/name";
+	/**
+	 * the values used from the package document,
+	 * documents of popular packages are very big because they contain every version so only these values are kept.
+	 * The latest version is not known before the document has been read so the authors of all versions are extracted in the same pass.
+	 */
+	private static final List<String> EXTRACTED_VALUES=Arrays.asList(NAME_POINTER,DESCRIPTION_POINTER,KEYWORDS_POINTER,MAINTAINER_POINTER,LATEST_POINTER,
+			VERSIONS_POINTER_PREFIX+"*"+AUTHOR_POINTER_SUFFIX);
+
 	
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
@@ -28,39 +51,64 @@ public class NPM implements Command{
 			event.getChannel().sendMessage(IconChooser.getQuestionIcon(event.getChannel())+" I need a package name").queue();
 			return;
 		}
-		String url="https://registry.yarnpkg.com/"+args[0];
-		JSONObject jsonObj=GeneralUtils.getJSONFromURL(url);
-		if(jsonObj==null) {
+		JSONObject jsonObj=GeneralUtils.extractJSONFromURL(getPackageURL(args[0]), EXTRACTED_VALUES, CACHE_MINUTES, TimeUnit.MINUTES);
+		if(jsonObj==null||!jsonObj.has(NAME_POINTER)) {
 			event.getChannel().sendMessage("Are you sure the package exists?").queue();
 		}else {
-			JSONObject versions=jsonObj.getJSONObject("versions");
-			Optional<String> infoHolder=versions.keySet().stream().max((a,b)->a.compareTo(b));
-			if(!infoHolder.isPresent()) {
+			String version=jsonObj.optString(LATEST_POINTER, null);
+			if(version==null) {
 				JDAUtils.errmsg(event.getChannel(), "No version info provided");
 				return;
 			}
-			JSONObject versionInfo=versions.getJSONObject(infoHolder.get());
 			String keywordStr = "<nothing>";
-			if(jsonObj.has("keywords")) {
-				JSONArray keywords=jsonObj.getJSONArray("keywords");
-				if(keywords.length()!=0) {
-					keywordStr=keywords.join(", ");
-				}
+			JSONArray keywords=jsonObj.optJSONArray(KEYWORDS_POINTER);
+			if(keywords!=null&&keywords.length()!=0) {
+				keywordStr=keywords.join(", ");
 			}
 			EmbedBuilder builder=new EmbedBuilder();
 			builder.setColor(0xfb3b49)
 			.setTitle("Result")
-			.addField(new Field("name", "`"+jsonObj.getString("name")+"`", true))
-			.addField(new Field("Description", jsonObj.getString("description"), true))
-			.addField(new Field("Current Version", versionInfo.getString("version"), true))
+			.addField(new Field("name", "`"+jsonObj.getString(NAME_POINTER)+"`", true))
+			.addField(new Field("Description", jsonObj.optString(DESCRIPTION_POINTER, "<nothing>"), true))
+			.addField(new Field("Current Version", version, true))
 			.addField(new Field("Keywords", "`"+keywordStr+"`", true))
-			.addField(new Field("Author", "NPM says `"+jsonObj.getJSONArray("maintainers").getJSONObject(0).getString("name")+"` | package.json says "+versionInfo.getJSONObject("author").getString("name"), true));
+			.addField(new Field("Author", "NPM says `"+jsonObj.optString(MAINTAINER_POINTER, UNKNOWN_MSG)+"` | package.json says "+getAuthor(jsonObj, version), true));
 			if(args[0].startsWith("@")&&args[0].contains("/")) {
 				builder.addField(new Field("Scope", "`"+args[0].split("/")[0].substring(1)+"`", true));
 			}
 			event.getChannel().sendMessage(builder.build()).queue();
 		}
 	}
+	private static String getPackageURL(String name) {
+		return Endpoint.NPM.url("/")+name;
+	}
+	/**
+	 * looks up a package asynchronously
+	 * @param name the name of the package
+	 * @return a {@link CompletableFuture} that is completed with the package or <code>null</code> if it does not exist
+	 */
+	static CompletableFuture<PackageMatch> search(String name) {
+		return GeneralUtils.extractJSONFromURLAsync(getPackageURL(name), EXTRACTED_VALUES, CACHE_MINUTES, TimeUnit.MINUTES).handle((jsonObj,e)->{
+			if(e instanceof FileNotFoundException) {
+				return null;
+			}
+			if(e!=null) {
+				throw new CompletionException(e);
+			}
+			String version=jsonObj.optString(LATEST_POINTER, null);
+			if(!jsonObj.has(NAME_POINTER)||version==null) {
+				return null;
+			}
+			String packageName=jsonObj.getString(NAME_POINTER);
+			return new PackageMatch("npm", packageName, version, jsonObj.optString(DESCRIPTION_POINTER, null), "https://www.npmjs.com/package/"+packageName);
+		});
+	}
+	/**
+	 * gets the author of a version from the extracted <code>package.json</code> files of all versions
+	 */
+	private static String getAuthor(JSONObject jsonObj,String version) {
+		return jsonObj.optString(VERSIONS_POINTER_PREFIX+version.replace("~", "~0").replace("/", "~1")+AUTHOR_POINTER_SUFFIX, UNKNOWN_MSG);
+	}
 	@Override
 	public String help() {
 		return "Allows you to view info about a npm package";
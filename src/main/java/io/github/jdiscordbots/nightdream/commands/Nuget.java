@@ -10,6 +10,10 @@ package io.github.jdiscordbots.nightdream.commands;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.github.jdiscordbots.nightdream.util.Endpoint;
 import io.github.jdiscordbots.nightdream.util.GeneralUtils;
 import io.github.jdiscordbots.nightdream.util.IconChooser;
 import net.dv8tion.jda.api.EmbedBuilder;
@@ -17,6 +21,7 @@ import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 
 @BotCommand("nuget")
 public class Nuget implements Command {
+	private static final long CACHE_MINUTES=15;
 
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
@@ -24,13 +29,12 @@ public class Nuget implements Command {
 			event.getChannel().sendMessage(IconChooser.getQuestionIcon(event.getChannel())+" I need a package name").queue();
 			return;
 		}
-		String url="https://azuresearch-usnc.nuget.org/query?q="+args[0]+"&take=1";
-		JSONObject jsonObj=GeneralUtils.getJSONFromURL(url);
+		JSONObject jsonObj=GeneralUtils.getJSONFromURL(getSearchURL(args[0]), CACHE_MINUTES, TimeUnit.MINUTES);
 		if(jsonObj==null) {
 			event.getChannel().sendMessage("This didn't work...").queue();
 		}else {
-			if(jsonObj.getInt("totalHits")>0) {
-				JSONObject data=jsonObj.getJSONArray("data").getJSONObject(0);
+			JSONObject data=getFirstResult(jsonObj);
+			if(data!=null) {
 				EmbedBuilder builder=new EmbedBuilder();
 				builder.setColor(0x004980);
 				builder.setTitle("Result");
@@ -61,6 +65,28 @@ public class Nuget implements Command {
 		}
 	}
 
+	private static String getSearchURL(String query) {
+		return Endpoint.NUGET.url("/query?q=")+query+"&take=1";
+	}
+	private static JSONObject getFirstResult(JSONObject json) {
+		return json.getInt("totalHits")>0?json.getJSONArray("data").getJSONObject(0):null;
+	}
+	/**
+	 * searches a package asynchronously
+	 * @param query the search query
+	 * @return a {@link CompletableFuture} that is completed with the best match or <code>null</code> if nothing has been found
+	 */
+	static CompletableFuture<PackageMatch> search(String query) {
+		return GeneralUtils.getJSONFromURLAsync(getSearchURL(query), CACHE_MINUTES, TimeUnit.MINUTES).thenApply(json->{
+			JSONObject data=getFirstResult(json);
+			if(data==null) {
+				return null;
+			}
+			String id=data.getString("id");
+			return new PackageMatch("NuGet", id, data.getString("version"), data.optString("description", null), "https://www.nuget.org/packages/"+id);
+		});
+	}
+
 	@Override
 	public String help() {
 		return "Get Nuget package info (mvn is better)";
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: PackageMatch.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+/**
+ * a package found in a package registry
+ * @see Pkg
+ */
+final class PackageMatch {
+	private final String registry;
+	private final String name;
+	private final String version;
+	private final String description;
+	private final String url;
+
+	/**
+	 * creates a match
+	 * @param registry the display name of the registry
+	 * @param name the name that identifies the package in the registry
+	 * @param version the current version
+	 * @param description the description of the package or <code>null</code> if the registry does not provide one
+	 * @param url the web page of the package
+	 */
+	PackageMatch(String registry, String name, String version, String description, String url) {
+		this.registry = registry;
+		this.name = name;
+		this.version = version;
+		this.description = description;
+		this.url = url;
+	}
+	String getRegistry() {
+		return registry;
+	}
+	String getName() {
+		return name;
+	}
+	String getVersion() {
+		return version;
+	}
+	String getDescription() {
+		return description;
+	}
+	String getUrl() {
+		return url;
+	}
+}
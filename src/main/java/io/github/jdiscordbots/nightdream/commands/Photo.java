@@ -8,6 +8,7 @@
 package io.github.jdiscordbots.nightdream.commands;
 
 import io.github.jdiscordbots.nightdream.util.BotData;
+import io.github.jdiscordbots.nightdream.util.Endpoint;
 import io.github.jdiscordbots.nightdream.util.GeneralUtils;
 import io.github.jdiscordbots.nightdream.util.IconChooser;
 import io.github.jdiscordbots.nightdream.util.JDAUtils;
@@ -22,11 +23,13 @@ import org.slf4j.LoggerFactory;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 @BotCommand("photo")
 public class Photo implements Command {
 	
 	private static final Logger LOG=LoggerFactory.getLogger(Photo.class);
+	private static final long CACHE_HOURS=1;
 	
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
@@ -42,7 +45,7 @@ public class Photo implements Command {
 		event.getChannel().sendTyping().queue();
 		JSONObject json=null;
 		try {
-			json = GeneralUtils.getJSONFromURL("https://pixabay.com/api/?image_type=photo&key="+BotData.getPixaBayAPIKey()+"&q="+URLEncoder.encode(String.join(" ", args),StandardCharsets.UTF_8.name() ));
+			json = GeneralUtils.getJSONFromURL(Endpoint.PIXABAY.url("/api/?image_type=photo&key=")+BotData.getPixaBayAPIKey()+"&q="+URLEncoder.encode(String.join(" ", args),StandardCharsets.UTF_8.name() ), CACHE_HOURS, TimeUnit.HOURS);
 		} catch (UnsupportedEncodingException ignore) {
 			//ignore
 		}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: Pkg.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.github.jdiscordbots.nightdream.util.IconChooser;
+import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+
+/**
+ * searches npm, Maven Central and NuGet at the same time<br>
+ * Registries that do not answer within {@value #DEADLINE_SECONDS} seconds are listed as missing instead of delaying the answer.
+ */
+@BotCommand("pkg")
+public class Pkg implements Command {
+	private static final long DEADLINE_SECONDS=5;
+	private static final int MAX_DESCRIPTION_LENGTH=200;
+	private static final int COLOR=0x2b7489;
+
+	private static final ScheduledExecutorService deadlineExecutor=Executors.newSingleThreadScheduledExecutor(r->{
+		Thread t=new Thread(r, "pkg-deadline");
+		t.setDaemon(true);
+		return t;
+	});
+
+	@Override
+	public void action(String[] args, GuildMessageReceivedEvent event) {
+		if(args.length==0) {
+			event.getChannel().sendMessage(IconChooser.getQuestionIcon(event.getChannel())+" I need a package name").queue();
+			return;
+		}
+		String query=args[0];
+		Map<String, CompletableFuture<PackageMatch>> searches=new LinkedHashMap<>();
+		searches.put("npm", NPM.search(query.toLowerCase(Locale.ROOT)));
+		searches.put("Maven Central", MVN.search(query));
+		searches.put("NuGet", Nuget.search(query));
+
+		CompletableFuture<Void> deadline=new CompletableFuture<>();
+		deadlineExecutor.schedule(()->deadline.complete(null), DEADLINE_SECONDS, TimeUnit.SECONDS);
+		CompletableFuture<Void> all=CompletableFuture.allOf(searches.values().toArray(new CompletableFuture[0]));
+		//all searches are finished or the deadline is reached, whatever comes first
+		CompletableFuture.anyOf(all, deadline).whenComplete((ignored,e)->{
+			deadline.complete(null);
+			List<PackageMatch> matches=new ArrayList<>();
+			List<String> missing=new ArrayList<>();
+			for (Map.Entry<String, CompletableFuture<PackageMatch>> search : searches.entrySet()) {
+				CompletableFuture<PackageMatch> future=search.getValue();
+				if(!future.isDone()||future.isCompletedExceptionally()) {
+					missing.add(search.getKey());
+				}else if(future.join()!=null) {
+					matches.add(future.join());
+				}
+			}
+			if(matches.isEmpty()) {
+				if(missing.isEmpty()) {
+					event.getChannel().sendMessage(new EmbedBuilder()
+							.setColor(COLOR)
+							.addField(IconChooser.getQuestionIcon(event.getChannel())+" Nothing found", "Try something different.", false)
+							.build()).queue();
+				}else {
+					JDAUtils.errmsg(event.getChannel(), "No package registry answered in time, please try again later");
+				}
+				return;
+			}
+			event.getChannel().sendMessage(createEmbed(query, matches, missing)).queue();
+		});
+	}
+	private static MessageEmbed createEmbed(String query,List<PackageMatch> matches,List<String> missing) {
+		//the sort is stable so matches of the same rank keep the order of the registries
+		matches.sort(Comparator.comparingInt(match->getRank(query, match)));
+		EmbedBuilder builder=new EmbedBuilder()
+				.setColor(COLOR)
+				.setTitle("Results for `"+query+"`");
+		for (PackageMatch match : matches) {
+			StringBuilder sb=new StringBuilder("Version `").append(match.getVersion()).append('`');
+			String description=match.getDescription();
+			if(description!=null&&!description.isEmpty()) {
+				if(description.length()>MAX_DESCRIPTION_LENGTH) {
+					description=description.substring(0, MAX_DESCRIPTION_LENGTH-3)+"...";
+				}
+				sb.append('\n').append(description);
+			}
+			sb.append('\n').append(match.getUrl());
+			builder.addField(match.getRegistry()+": "+match.getName(), sb.toString(), false);
+		}
+		if(!missing.isEmpty()) {
+			builder.addField("No answer", String.join(", ", missing), false);
+		}
+		return builder.build();
+	}
+	/**
+	 * ranks exact matches before matches containing the query before other results
+	 */
+	private static int getRank(String query,PackageMatch match) {
+		String name=match.getName().toLowerCase(Locale.ROOT);
+		//Maven artifacts are identified by group and artifact ID
+		String shortName=name.substring(name.lastIndexOf(':')+1);
+		String lowerQuery=query.toLowerCase(Locale.ROOT);
+		if(name.equals(lowerQuery)||shortName.equals(lowerQuery)) {
+			return 0;
+		}
+		if(name.contains(lowerQuery)) {
+			return 1;
+		}
+		return 2;
+	}
+
+	@Override
+	public String help() {
+		return "Searches npm, Maven Central and NuGet for a package";
+	}
+
+	@Override
+	public CommandType getType() {
+		return CommandType.UTIL;
+	}
+}
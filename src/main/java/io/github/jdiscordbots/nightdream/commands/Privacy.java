@@ -1,15 +1,24 @@
 package io.github.jdiscordbots.nightdream.commands;
 
+import java.awt.Color;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.github.jdiscordbots.nightdream.listeners.MsgLogListener;
+import io.github.jdiscordbots.nightdream.storage.StorageSnapshots;
+import io.github.jdiscordbots.nightdream.util.BotData;
+import io.github.jdiscordbots.nightdream.util.IconChooser;
+import io.github.jdiscordbots.nightdream.util.JDAUtils;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 
@@ -19,7 +28,67 @@ public class Privacy implements Command{
 	private static final Pattern HEADER_REGEX=Pattern.compile("#+\\s+(.+)");
 	private static final Pattern INFO_REGEX=Pattern.compile(">\\s+(.+)");
 	private static final Pattern EMPTY_REGEX=Pattern.compile("\\s*");
+	private static final String CONFIRM_ARG="confirm";
 	public void action(String[] args, GuildMessageReceivedEvent event) {
+		if(args.length==0) {
+			showPolicy(event);
+			return;
+		}
+		switch(args[0].toLowerCase()) {
+		case "data":
+		case "export":
+			exportData(event);
+			break;
+		case "delete":
+		case "erase":
+			if(args.length>1&&CONFIRM_ARG.equalsIgnoreCase(args[1])) {
+				eraseData(event);
+			}else {
+				JDAUtils.msg(event.getChannel(), "This deletes your profile, your scores, your cached messages and attachments and all other data stored about you. This cannot be undone.\n"
+						+ "Use `"+BotData.getPrefix(event.getGuild())+"privacy delete "+CONFIRM_ARG+"` to delete your data.",Color.YELLOW);
+			}
+			break;
+		default:
+			showPolicy(event);
+		}
+	}
+	private void eraseData(GuildMessageReceivedEvent event) {
+		String userId=event.getAuthor().getId();
+		List<String> deleted=new ArrayList<>();
+		BotData.STORAGE.eraseUserData(userId);
+		deleted.add("your stored data (e.g. your profile and your scores)");
+		for (Object listener : event.getJDA().getRegisteredListeners()) {
+			if(listener instanceof MsgLogListener) {
+				((MsgLogListener)listener).eraseUserData(event.getAuthor().getIdLong());
+				deleted.add("your messages and attachments cached for message logs");
+			}
+		}
+		StorageSnapshots.eraseUserData(userId).whenComplete((rewritten,e)->{
+			if(e==null) {
+				deleted.add("your data in backups of the stored data");
+				JDAUtils.msg(event.getChannel(), "The following data has been deleted:\n* "+String.join("\n* ", deleted));
+			}else {
+				LOG.error("cannot remove data of user {} from snapshots", userId, e);
+				JDAUtils.errmsg(event.getChannel(), "The following data has been deleted:\n* "+String.join("\n* ", deleted)
+						+"\nYour data could not be removed from backups, please contact the bot developers.");
+			}
+		});
+	}
+	private void exportData(GuildMessageReceivedEvent event) {
+		Map<String, String> data = BotData.STORAGE.exportUserData(event.getAuthor().getId());
+		if(data.isEmpty()) {
+			event.getChannel().sendMessage(IconChooser.getInfoIcon(event.getChannel())+" There is no data stored about you.").queue();
+			return;
+		}
+		StringBuilder sb=new StringBuilder();
+		data.forEach((k,v)->sb.append(k).append('=').append(v).append('\n'));
+		event.getAuthor().openPrivateChannel().queue(channel->
+			channel.sendMessage("This is all data stored about you:").addFile(sb.toString().getBytes(StandardCharsets.UTF_8), "data.txt").queue(
+					msg->event.getChannel().sendMessage("I've sent you your data via DM.").queue(),
+					err->event.getChannel().sendMessage(IconChooser.getErrorIcon(event.getChannel())+" I cannot send you a DM.").queue()),
+			err->event.getChannel().sendMessage(IconChooser.getErrorIcon(event.getChannel())+" I cannot send you a DM.").queue());
+	}
+	private void showPolicy(GuildMessageReceivedEvent event) {
 		boolean hasStarted=false;
 		EmbedBuilder eb=new EmbedBuilder();
 		StringBuilder currentHeader=new StringBuilder();
@@ -61,7 +130,7 @@ public class Privacy implements Command{
 		}
 	}
 	public String help() {
-		return "Displays the privacy policy";
+		return "Displays the privacy policy, sends you your data (`privacy data`) or deletes it (`privacy delete`)";
 	}
 
 	public CommandType getType() {
@@ -112,10 +112,10 @@ public class Profile implements Command {
 		return BotData.STORAGE.read(STORAGE_UNIT, name, user.getId(), defaultProp, COLOR_PROP_NAME,DESC_PROP_NAME,LINK_PROP_NAME,"name");
 	}
 	private static void setProp(User user,String name,String value) {
-		BotData.STORAGE.write(STORAGE_UNIT, name, user.getId(), value, COLOR_PROP_NAME,DESC_PROP_NAME,LINK_PROP_NAME,"name");
+		BotData.STORAGE.writeForUser(user.getId(), STORAGE_UNIT, name, value, COLOR_PROP_NAME,DESC_PROP_NAME,LINK_PROP_NAME,"name");
 	}
 	private static void unsetProp(User user,String name) {
-		BotData.STORAGE.remove(STORAGE_UNIT, name, user.getId());
+		BotData.STORAGE.removeForUser(user.getId(), STORAGE_UNIT, name);
 	}
 	private static void desc(EmbedBuilder builder,String[] args,int offset,GuildMessageReceivedEvent event) {
 		if(args.length<offset+1) {
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: Snapshot.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.jdiscordbots.nightdream.storage.StorageSnapshots;
+import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+
+@BotCommand("snapshot")
+public class Snapshot implements Command {
+
+	private static final Logger LOG=LoggerFactory.getLogger(Snapshot.class);
+
+	@Override
+	public boolean allowExecute(String[] args, GuildMessageReceivedEvent event) {
+		return JDAUtils.checkOwner(event,args!=null);
+	}
+
+	@Override
+	public void action(String[] args, GuildMessageReceivedEvent event) {
+		final TextChannel tc=event.getChannel();
+		String subCommand=args.length==0?"create":args[0].toLowerCase();
+		switch(subCommand) {
+		case "create":
+		case "full":
+			JDAUtils.msg(tc, "creating snapshot...",Color.YELLOW);
+			StorageSnapshots.createSnapshot("full".equals(subCommand)).whenComplete((info,e)->{
+				if(e==null) {
+					JDAUtils.msg(tc, "created "+(info.isFull()?"full":"incremental")+" snapshot `"+info.getName()+"` ("+info.getEntries()+" entries)");
+				}else {
+					LOG.warn("Cannot create snapshot", e);
+					JDAUtils.errmsg(tc, "Cannot create snapshot: "+e.getMessage());
+				}
+			});
+			break;
+		case "list":
+			List<String> snapshots=StorageSnapshots.listSnapshots();
+			if(snapshots.isEmpty()) {
+				JDAUtils.msg(tc, "There are no snapshots.");
+			}else {
+				JDAUtils.msg(tc, "```\n"+String.join("\n", snapshots)+"\n```");
+			}
+			break;
+		case "restore":
+			if(args.length<2) {
+				JDAUtils.errmsg(tc, "Please specify the snapshot to restore.");
+				return;
+			}
+			JDAUtils.msg(tc, "restoring snapshot...",Color.YELLOW);
+			StorageSnapshots.restore(args[1]).whenComplete((entries,e)->{
+				if(e==null) {
+					JDAUtils.msg(tc, "restored "+entries+" entries from `"+args[1]+"`");
+				}else {
+					LOG.warn("Cannot restore snapshot {}", args[1], e);
+					JDAUtils.errmsg(tc, "Cannot restore snapshot: "+e.getMessage());
+				}
+			});
+			break;
+		default:
+			JDAUtils.errmsg(tc, "Invalid argument "+args[0]);
+		}
+	}
+
+	@Override
+	public String help() {
+		return "creates a snapshot of the storage (`snapshot`/`snapshot full`),\n"
+				+ "lists all snapshots (`snapshot list`) "
+				+ "or restores a snapshot (`snapshot restore <name>`)";
+	}
+
+	@Override
+	public String permNeeded() {
+		return "Bot-Admin";
+	}
+
+	@Override
+	public CommandType getType() {
+		return CommandType.CONFIG;
+	}
+}
@@ -8,39 +8,89 @@
 package io.github.jdiscordbots.nightdream.commands;
 
 import io.github.jdiscordbots.nightdream.listeners.TriviaListener;
-import io.github.jdiscordbots.nightdream.util.GeneralUtils;
+import io.github.jdiscordbots.nightdream.storage.ScoreEntry;
+import io.github.jdiscordbots.nightdream.util.BotData;
 import io.github.jdiscordbots.nightdream.util.IconChooser;
+import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import io.github.jdiscordbots.nightdream.util.TriviaQuestionPool;
+import io.github.jdiscordbots.nightdream.util.TriviaQuestionPool.TriviaQuestion;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 
 import java.util.Arrays;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
+import java.util.List;
 
 @BotCommand("trivia")
 public class Trivia implements Command{
 
+	private static final int TOP_COUNT=10;
+
+	public Trivia() {
+		TriviaQuestionPool.prefetch();
+	}
+	
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
-		String url="https://opentdb.com/api.php?amount=1";
-		JSONObject data=GeneralUtils.getJSONFromURL(url);
-		if(data==null) {
+		if(args.length>0&&"top".equalsIgnoreCase(args[0])) {
+			showTop(event, args.length>1&&"global".equalsIgnoreCase(args[1]));
+		}else if(args.length>0&&"rank".equalsIgnoreCase(args[0])) {
+			showRank(event);
+		}else {
+			ask(event);
+		}
+	}
+	
+	private static void showTop(GuildMessageReceivedEvent event,boolean global) {
+		String board=global?TriviaListener.GLOBAL_SCOREBOARD:TriviaListener.getScoreboard(event.getGuild());
+		List<ScoreEntry> top=BotData.STORAGE.getTopScores(board, TOP_COUNT);
+		if(top.isEmpty()) {
+			JDAUtils.errmsg(event.getChannel(), "Nobody answered a trivia question correctly yet.");
+			return;
+		}
+		StringBuilder sb=new StringBuilder();
+		for (ScoreEntry entry : top) {
+			sb.append('#').append(entry.getRank()).append(" <@").append(entry.getUserId()).append(">: ").append(entry.getScore()).append('\n');
+		}
+		EmbedBuilder builder=new EmbedBuilder();
+		builder.setTitle(global?"Trivia scoreboard (global)":"Trivia scoreboard")
+		.setColor(0x212121)
+		.setDescription(sb.toString());
+		event.getChannel().sendMessage(builder.build()).queue();
+	}
+	
+	private static void showRank(GuildMessageReceivedEvent event) {
+		User user=event.getMessage().getMentionedUsers().isEmpty()?event.getAuthor():event.getMessage().getMentionedUsers().get(0);
+		ScoreEntry guildScore=BotData.STORAGE.getScore(TriviaListener.getScoreboard(event.getGuild()), user.getId());
+		if(guildScore==null) {
+			JDAUtils.errmsg(event.getChannel(), user.getName()+" did not answer a trivia question correctly yet.");
+			return;
+		}
+		ScoreEntry globalScore=BotData.STORAGE.getScore(TriviaListener.GLOBAL_SCOREBOARD, user.getId());
+		EmbedBuilder builder=new EmbedBuilder();
+		builder.setTitle("Trivia rank of "+user.getName())
+		.setColor(0x212121)
+		.addField("Guild", "#"+guildScore.getRank()+" ("+guildScore.getScore()+" correct answers)", false);
+		if(globalScore!=null) {
+			builder.addField("Global", "#"+globalScore.getRank()+" ("+globalScore.getScore()+" correct answers)", false);
+		}
+		event.getChannel().sendMessage(builder.build()).queue();
+	}
+	
+	private static void ask(GuildMessageReceivedEvent event) {
+		TriviaQuestion question=TriviaQuestionPool.nextQuestion();
+		if(question==null) {
 			event.getChannel().sendMessage(IconChooser.getErrorIcon(event.getChannel())+" Errored while trying to connect to server.").queue();
 		}else {
-			JSONObject json=data.getJSONArray("results").getJSONObject(0);
-			String correct=json.getString("correct_answer");
-			JSONArray incorrect=json.getJSONArray("incorrect_answers");
-			String[] answers=new String[incorrect.length()+1];
-			for (int i = 0; i < incorrect.length(); i++) {
-				answers[i]=incorrect.getString(i);
-			}
+			String correct=question.getCorrectAnswer();
+			List<String> incorrect=question.getIncorrectAnswers();
+			String[] answers=incorrect.toArray(new String[incorrect.size()+1]);
 			answers[answers.length-1]=correct;
 			Arrays.sort(answers);
 			EmbedBuilder builder=new EmbedBuilder();
 			builder.setTitle("Trivia")
 			.setColor(0x212121)
-			.addField(json.getString("category"), json.getString("question"), false)
+			.addField(question.getCategory(), question.getQuestion(), false)
 			.addField("Choices:",String.join(", ", answers),false)
 			.setFooter("Type your answer in this channel!");
 			TriviaListener.addQuestion(event.getChannel(), correct);
@@ -50,7 +100,7 @@ public class Trivia implements Command{
 
 	@Override
 	public String help() {
-		return "Plays a game of trivia";
+		return "Plays a game of trivia (`trivia`),\nshows the best players (`trivia top`/`trivia top global`) or the rank of a user (`trivia rank [@user]`)";
 	}
 
 	@Override
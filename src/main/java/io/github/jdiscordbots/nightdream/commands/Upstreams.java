@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: Upstreams.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import java.util.List;
+
+import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import io.github.jdiscordbots.nightdream.util.Upstream;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+
+@BotCommand("upstreams")
+public class Upstreams implements Command {
+
+	@Override
+	public boolean allowExecute(String[] args, GuildMessageReceivedEvent event) {
+		return JDAUtils.checkOwner(event,args!=null);
+	}
+
+	@Override
+	public void action(String[] args, GuildMessageReceivedEvent event) {
+		if(args.length>=2&&"reset".equalsIgnoreCase(args[0])) {
+			reset(args[1], event);
+			return;
+		}
+		List<Upstream> upstreams=Upstream.getAll();
+		if(upstreams.isEmpty()) {
+			JDAUtils.errmsg(event.getChannel(), "No requests to external APIs have been sent yet.");
+			return;
+		}
+		StringBuilder sb=new StringBuilder("```\n");
+		for (Upstream upstream : upstreams) {
+			String line=upstream.getName()+": "+upstream.getState()+", limit "+upstream.getLimit()+", running "+upstream.getInFlight()+", failures "+upstream.getConsecutiveFailures()+"\n";
+			if(sb.length()+line.length()+4>MessageEmbed.TEXT_MAX_LENGTH) {
+				sb.append("...\n");
+				break;
+			}
+			sb.append(line);
+		}
+		sb.append("```");
+		JDAUtils.msg(event.getChannel(), sb.toString());
+	}
+	private static void reset(String name,GuildMessageReceivedEvent event) {
+		for (Upstream upstream : Upstream.getAll()) {
+			if(upstream.getName().equalsIgnoreCase(name)) {
+				upstream.reset();
+				JDAUtils.msg(event.getChannel(), "The circuit breaker of `"+upstream.getName()+"` has been closed.");
+				return;
+			}
+		}
+		JDAUtils.errmsg(event.getChannel(), "There is no external API named `"+name+"`.");
+	}
+
+	@Override
+	public String help() {
+		return "shows the state of external APIs (`upstreams`) or closes a circuit breaker (`upstreams reset <name>`)";
+	}
+
+	@Override
+	public String permNeeded() {
+		return "Bot-Admin";
+	}
+
+	@Override
+	public CommandType getType() {
+		return CommandType.META;
+	}
+}
@@ -7,27 +7,41 @@
 
 package io.github.jdiscordbots.nightdream.commands;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.jdiscordbots.nightdream.util.Endpoint;
 import io.github.jdiscordbots.nightdream.util.GeneralUtils;
 import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import io.github.jdiscordbots.nightdream.util.UpstreamUnavailableException;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 
-import org.json.JSONObject;
-
 @BotCommand("yn")
 public class YN implements Command {
 
+	private static final Logger LOG = LoggerFactory.getLogger(YN.class);
+
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
-		JSONObject json = GeneralUtils.getJSONFromURL("https://yesno.wtf/api");
-		if (json == null) {
-			JDAUtils.errmsg(event.getChannel(), "something went wrong.");
-		} else {
-			String answer = json.getString("answer") + "!";
-			answer = Character.toUpperCase(answer.charAt(0)) + answer.substring(1);
-			String url = json.getString("image");
-			event.getChannel().sendMessage(new EmbedBuilder().setColor(0x212121).setTitle(answer).setImage(url).build()).queue();
-		}
+		GeneralUtils.getJSONFromURLAsync(Endpoint.YESNO.url("/api")).whenComplete((json, e) -> {
+			// exceptions thrown in this callback would be swallowed by the CompletableFuture
+			try {
+				if (e instanceof UpstreamUnavailableException) {
+					JDAUtils.errmsg(event.getChannel(), ((UpstreamUnavailableException) e).getUserMessage());
+				} else if (e != null) {
+					JDAUtils.errmsg(event.getChannel(), "something went wrong.");
+				} else {
+					String answer = json.getString("answer") + "!";
+					answer = Character.toUpperCase(answer.charAt(0)) + answer.substring(1);
+					String url = json.getString("image");
+					event.getChannel().sendMessage(new EmbedBuilder().setColor(0x212121).setTitle(answer).setImage(url).build()).queue();
+				}
+			} catch (RuntimeException callbackException) {
+				LOG.warn("Cannot answer yes/no question", callbackException);
+				JDAUtils.errmsg(event.getChannel(), "something went wrong.");
+			}
+		});
 	}
 
 	@Override
@@ -14,7 +14,9 @@ import io.github.jdiscordbots.nightdream.commands.Command;
 import io.github.jdiscordbots.nightdream.util.BotData;
 import io.github.jdiscordbots.nightdream.util.IconChooser;
 import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import io.github.jdiscordbots.nightdream.util.KSoftImagePool;
 import io.github.jdiscordbots.nightdream.util.KSoftUtil;
+import io.github.jdiscordbots.nightdream.util.UpstreamUnavailableException;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import net.explodingbush.ksoftapi.KSoftAPI;
@@ -27,6 +29,10 @@ public abstract class KSoftImageCommand implements Command {
 	protected abstract String getTitle();
 	protected abstract ImageTag getImageTag();
 	
+	protected KSoftImageCommand() {
+		KSoftImagePool.get(getImageTag()).prefetch();//NOSONAR subclasses return constants
+	}
+	
 	@Override
 	public boolean allowExecute(String[] args, GuildMessageReceivedEvent event) {
 		KSoftAPI api = KSoftUtil.getApi();
@@ -39,20 +45,30 @@ public abstract class KSoftImageCommand implements Command {
 	
 	@Override
 	public void action(String[] args, GuildMessageReceivedEvent event) {
+		String url=KSoftImagePool.get(getImageTag()).poll();
+		if(url!=null) {
+			sendImage(event, url);
+			return;
+		}
 		event.getChannel().sendTyping().queue(x->
-			KSoftUtil.getImage(getImageTag(),img->{
-				EmbedBuilder builder=new EmbedBuilder();
-				builder.setColor(0x212121)
-				.setImage(img.getUrl())
-				.setTitle(getTitle())
-				.setFooter("Served by the KSoft.Si API - report with " + BotData.getPrefix(event.getGuild()) + "bugreport [url]");
-				event.getChannel().sendMessage(builder.build()).queue();
-			},err->{
-				event.getChannel().sendMessage(IconChooser.getErrorIcon(event.getChannel())+" could not load image").queue();
-				LOG.error("could not load image",err);
+			KSoftUtil.getImage(getImageTag(),img->sendImage(event, img.getUrl()),err->{
+				if(err instanceof UpstreamUnavailableException) {
+					JDAUtils.errmsg(event.getChannel(), ((UpstreamUnavailableException)err).getUserMessage());
+				}else {
+					event.getChannel().sendMessage(IconChooser.getErrorIcon(event.getChannel())+" could not load image").queue();
+					LOG.error("could not load image",err);
+				}
 			})
 		);
 	}
+	private void sendImage(GuildMessageReceivedEvent event,String url) {
+		EmbedBuilder builder=new EmbedBuilder();
+		builder.setColor(0x212121)
+		.setImage(url)
+		.setTitle(getTitle())
+		.setFooter("Served by the KSoft.Si API - report with " + BotData.getPrefix(event.getGuild()) + "bugreport [url]");
+		event.getChannel().sendMessage(builder.build()).queue();
+	}
 	
 	@Override
 	public CommandType getType() {
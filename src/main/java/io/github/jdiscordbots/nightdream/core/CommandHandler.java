@@ -19,6 +19,8 @@ import io.github.jdiscordbots.nightdream.commands.Command;
 import io.github.jdiscordbots.nightdream.core.CommandParser.CommandContainer;
 import io.github.jdiscordbots.nightdream.util.BotData;
 import io.github.jdiscordbots.nightdream.util.IconChooser;
+import io.github.jdiscordbots.nightdream.util.JDAUtils;
+import io.github.jdiscordbots.nightdream.util.UpstreamUnavailableException;
 import net.dv8tion.jda.api.EmbedBuilder;
 
 import org.apache.commons.text.similarity.LevenshteinDistance;
@@ -57,6 +59,10 @@ public class CommandHandler {
 			if (save) {
 				try {
 					commands.get(cmd.invoke.toLowerCase()).action(cmd.args, cmd.event);
+				} catch (UpstreamUnavailableException e) {
+					LOG.debug("Rejected the command {}: {}", cmd.invoke, e.getMessage());
+					JDAUtils.errmsg(cmd.event.getChannel(), e.getUserMessage());
+					save = false;
 				} catch (RuntimeException e) {
 					if(LOG.isWarnEnabled()) {
 						LOG.warn("An exception while executing the command {}", cmd.event.getMessage().getContentRaw(),e);
@@ -9,6 +9,7 @@ package io.github.jdiscordbots.nightdream.core;
 import io.github.jdiscordbots.nightdream.commands.BotCommand;
 import io.github.jdiscordbots.nightdream.commands.Command;
 import io.github.jdiscordbots.nightdream.listeners.BotListener;
+import io.github.jdiscordbots.nightdream.storage.StorageSnapshots;
 import io.github.jdiscordbots.nightdream.util.BotData;
 import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.entities.Activity;
@@ -97,6 +98,7 @@ public class NightDream {
 				}
 			});
 			LOG.info("Logged in. {}/{} shard/-s online.", bot.getShardsRunning(), bot.getShardsTotal());
+			StorageSnapshots.startScheduler();
 
 		} catch (final LoginException e) {
 			LOG.error("The entered token is not valid!");
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: AttachmentArchive.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.listeners;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.jdiscordbots.nightdream.util.BotData;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.Message.Attachment;
+
+/**
+ * downloads attachments of messages so they can be uploaded again when the message is deleted<br>
+ * Attachments are stored in subdirectories of the data directory (one per guild and one per message and author).
+ * Directories of messages without an author (created by older versions) are deleted when the archive is loaded.
+ * The archive is bounded by a global budget and a quota per guild, the least recently used messages are evicted first.
+ * Messages are used when they are archived and when their attachments are uploaded again.
+ * Downloads are done by a small pool of threads with a bounded queue, attachments are skipped if the queue is full.<br>
+ * This class is thread-safe.
+ * @see BotData#getAttachmentArchiveBytes()
+ * @see BotData#getAttachmentArchiveGuildBytes()
+ */
+public class AttachmentArchive {
+	private static final Logger LOG=LoggerFactory.getLogger(AttachmentArchive.class);
+
+	private static final int DOWNLOAD_THREADS=2;
+	private static final int DOWNLOAD_QUEUE_SIZE=100;
+	private static final String TEMP_FILE_SUFFIX=".tmp";
+	private static final Pattern INVALID_FILE_NAME_CHARS=Pattern.compile("[^a-zA-Z0-9._-]");
+	private static final char AUTHOR_SEPARATOR='-';
+
+	private final File directory;
+	/**
+	 * the archived messages, least recently used first
+	 */
+	private final Map<Long, ArchivedMessage> archived=new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<Long, Long> guildUsage=new HashMap<>();
+	private long usedBytes;
+	private final ExecutorService downloadPool;
+
+	/**
+	 * creates an archive and loads the attachments that have already been archived
+	 * @param directory the directory containing the archived attachments
+	 */
+	public AttachmentArchive(File directory) {
+		this.directory=directory;
+		AtomicInteger threadCounter=new AtomicInteger();
+		downloadPool=new ThreadPoolExecutor(DOWNLOAD_THREADS, DOWNLOAD_THREADS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(DOWNLOAD_QUEUE_SIZE),r->{
+			Thread t=new Thread(r, "attachment-archiver-"+threadCounter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		load();
+	}
+	private synchronized void load() {
+		File[] guildDirs=directory.listFiles(File::isDirectory);
+		if(guildDirs==null) {
+			return;
+		}
+		List<File> messageDirs=new ArrayList<>();
+		for (File guildDir : guildDirs) {
+			File[] dirs=guildDir.listFiles(File::isDirectory);
+			if(dirs!=null) {
+				messageDirs.addAll(Arrays.asList(dirs));
+			}
+		}
+		//the modification time of the directory is updated when the message is used
+		messageDirs.sort(Comparator.comparingLong(File::lastModified));
+		for (File messageDir : messageDirs) {
+			try {
+				long guildId=Long.parseLong(messageDir.getParentFile().getName());
+				String name=messageDir.getName();
+				int separatorIndex=name.indexOf(AUTHOR_SEPARATOR);
+				if(separatorIndex==-1) {
+					//the author is needed for deleting the data of a user
+					deleteFiles(new ArchivedMessage(guildId, 0, messageDir));
+					continue;
+				}
+				long messageId=Long.parseLong(name.substring(0, separatorIndex));
+				long authorId=Long.parseLong(name.substring(separatorIndex+1));
+				ArchivedMessage msg=new ArchivedMessage(guildId, authorId, messageDir);
+				File[] files=messageDir.listFiles();
+				if(files!=null) {
+					Arrays.sort(files);
+					for (File file : files) {
+						if(file.getName().endsWith(TEMP_FILE_SUFFIX)) {
+							Files.deleteIfExists(file.toPath());
+						}else {
+							msg.files.add(file);
+							msg.bytes+=file.length();
+						}
+					}
+				}
+				archived.put(messageId, msg);
+				addUsage(guildId, msg.bytes);
+			}catch(NumberFormatException|IOException e) {
+				LOG.warn("Invalid entry in attachment archive: {}", messageDir.getAbsolutePath(), e);
+			}
+		}
+		evict(0, 0, BotData.getAttachmentArchiveBytes(), BotData.getAttachmentArchiveGuildBytes());
+	}
+	/**
+	 * checks if archiving attachments is enabled
+	 * @return <code>true</code> if attachments should be archived
+	 */
+	public boolean isEnabled() {
+		return BotData.getAttachmentArchiveBytes()>0;
+	}
+	/**
+	 * downloads all attachments of a message asynchronously<br>
+	 * Attachments bigger than the quota of the guild are skipped.
+	 * @param msg the {@link Message}
+	 */
+	public void archive(Message msg) {
+		long guildId=msg.getGuild().getIdLong();
+		long messageId=msg.getIdLong();
+		File messageDir=new File(new File(directory,String.valueOf(guildId)),messageId+String.valueOf(AUTHOR_SEPARATOR)+msg.getAuthor().getIdLong());
+		List<Attachment> attachments=msg.getAttachments();
+		for (int i = 0; i < attachments.size(); i++) {
+			Attachment attachment=attachments.get(i);
+			if(!reserve(guildId, msg.getAuthor().getIdLong(), messageId, messageDir, attachment.getSize())) {
+				LOG.debug("Not archiving attachment {} because the quota is exhausted", attachment.getFileName());
+				continue;
+			}
+			File target=new File(messageDir,i+"-"+INVALID_FILE_NAME_CHARS.matcher(attachment.getFileName()).replaceAll("_"));
+			try {
+				downloadPool.execute(()->download(guildId, messageId, attachment, target));
+			}catch(RejectedExecutionException e) {
+				LOG.debug("Not archiving attachment {} because too many downloads are pending", attachment.getFileName());
+				release(guildId, messageId, attachment.getSize());
+			}
+		}
+	}
+	private void download(long guildId,long messageId,Attachment attachment,File target) {
+		File temp=new File(target.getParentFile(),target.getName()+TEMP_FILE_SUFFIX);
+		long written=0;
+		try {
+			Files.createDirectories(target.getParentFile().toPath());
+			try(InputStream in=attachment.retrieveInputStream().get(1, TimeUnit.MINUTES);
+					OutputStream out=Files.newOutputStream(temp.toPath())){
+				byte[] buffer=new byte[8192];
+				int read;
+				while((read=in.read(buffer))!=-1) {
+					written+=read;
+					if(written>attachment.getSize()) {
+						throw new IOException("attachment is bigger than announced");
+					}
+					out.write(buffer, 0, read);
+				}
+			}
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			if(!addFile(messageId, target)) {
+				Files.deleteIfExists(target.toPath());
+			}
+		}catch(IOException|ExecutionException|TimeoutException e) {
+			LOG.warn("Cannot archive attachment {}", attachment.getUrl(), e);
+			release(guildId, messageId, attachment.getSize());
+			try {
+				Files.deleteIfExists(temp.toPath());
+			} catch (IOException e1) {
+				LOG.warn("Cannot delete temporary file {}", temp.getAbsolutePath(), e1);
+			}
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			release(guildId, messageId, attachment.getSize());
+		}
+	}
+	/**
+	 * reserves space for an attachment, evicting older messages if necessary
+	 * @return <code>false</code> if the attachment cannot be archived
+	 */
+	private synchronized boolean reserve(long guildId,long authorId,long messageId,File messageDir,long size) {
+		long maxBytes=BotData.getAttachmentArchiveBytes();
+		long guildBytes=BotData.getAttachmentArchiveGuildBytes();
+		if(size>maxBytes||size>guildBytes) {
+			return false;
+		}
+		evict(guildId, size, maxBytes, guildBytes);
+		ArchivedMessage msg=archived.computeIfAbsent(messageId, id->new ArchivedMessage(guildId, authorId, messageDir));
+		msg.bytes+=size;
+		addUsage(guildId, size);
+		return true;
+	}
+	private synchronized void release(long guildId,long messageId,long size) {
+		ArchivedMessage msg=archived.get(messageId);
+		//if the message is not present anymore, its usage has already been removed
+		if(msg!=null) {
+			msg.bytes-=size;
+			addUsage(guildId, -size);
+			if(msg.bytes<=0&&msg.files.isEmpty()) {
+				archived.remove(messageId);
+			}
+		}
+	}
+	/**
+	 * adds a downloaded file to a message
+	 * @return <code>false</code> if the message has been evicted or deleted in the meantime
+	 */
+	private synchronized boolean addFile(long messageId,File file) {
+		ArchivedMessage msg=archived.get(messageId);
+		if(msg==null) {
+			return false;
+		}
+		msg.files.add(file);
+		return true;
+	}
+	/**
+	 * evicts the least recently used messages until there is enough space for new data
+	 * @param guildId the guild the new data belongs to
+	 * @param size the size of the new data
+	 * @param maxBytes the global budget
+	 * @param guildBytes the quota of every guild
+	 */
+	private void evict(long guildId,long size,long maxBytes,long guildBytes) {
+		for (Iterator<Map.Entry<Long, ArchivedMessage>> it = archived.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Long, ArchivedMessage> entry=it.next();
+			ArchivedMessage msg=entry.getValue();
+			boolean globalExceeded=usedBytes+size>maxBytes;
+			boolean guildExceeded=guildUsage.getOrDefault(msg.guildId, 0L)+(msg.guildId==guildId?size:0)>guildBytes;
+			if(globalExceeded||guildExceeded) {
+				it.remove();
+				deleteFiles(msg);
+			}else if(guildUsage.getOrDefault(guildId, 0L)+size<=guildBytes&&usedBytes+size<=maxBytes) {
+				return;
+			}
+		}
+	}
+	private void deleteFiles(ArchivedMessage msg) {
+		addUsage(msg.guildId, -msg.bytes);
+		for (File file : msg.files) {
+			try {
+				Files.deleteIfExists(file.toPath());
+			} catch (IOException e) {
+				LOG.warn("Cannot delete archived attachment {}", file.getAbsolutePath(), e);
+			}
+		}
+		File[] remaining=msg.directory.listFiles();
+		if(remaining!=null) {
+			//files of the directory that have not been loaded, e.g. of older versions
+			for (File file : remaining) {
+				if(!file.delete()&&file.exists()) {
+					LOG.warn("Cannot delete archived attachment {}", file.getAbsolutePath());
+				}
+			}
+		}
+		if(!msg.directory.delete()&&msg.directory.exists()) {
+			LOG.debug("Cannot delete directory {}", msg.directory.getAbsolutePath());
+		}
+	}
+	private void addUsage(long guildId,long bytes) {
+		usedBytes+=bytes;
+		long guildBytes=guildUsage.getOrDefault(guildId, 0L)+bytes;
+		if(guildBytes<=0) {
+			guildUsage.remove(guildId);
+		}else {
+			guildUsage.put(guildId, guildBytes);
+		}
+	}
+	/**
+	 * gets the archived attachments of a message and marks the message as used
+	 * @param messageId the ID of the message
+	 * @return the archived files, ordered like the attachments of the message
+	 */
+	public synchronized List<File> getFiles(long messageId) {
+		ArchivedMessage msg=archived.get(messageId);
+		if(msg==null) {
+			return Collections.emptyList();
+		}
+		if(!msg.directory.setLastModified(System.currentTimeMillis())&&msg.directory.exists()) {
+			LOG.debug("Cannot update modification time of {}", msg.directory.getAbsolutePath());
+		}
+		List<File> files=new ArrayList<>(msg.files);
+		files.sort(Comparator.comparing(File::getName));
+		return files;
+	}
+	/**
+	 * deletes the archived attachments of a message
+	 * @param messageId the ID of the message
+	 */
+	public synchronized void remove(long messageId) {
+		ArchivedMessage msg=archived.remove(messageId);
+		if(msg!=null) {
+			deleteFiles(msg);
+		}
+	}
+	/**
+	 * deletes the archived attachments of all messages of an author
+	 * @param authorId the ID of the author
+	 * @return the number of messages whose attachments have been deleted
+	 */
+	public synchronized int removeAuthor(long authorId) {
+		int removed=0;
+		for (Iterator<ArchivedMessage> it = archived.values().iterator(); it.hasNext();) {
+			ArchivedMessage msg=it.next();
+			if(msg.authorId==authorId) {
+				it.remove();
+				deleteFiles(msg);
+				removed++;
+			}
+		}
+		return removed;
+	}
+	/**
+	 * gets the name an archived file had when it was attached
+	 * @param file the archived file
+	 * @return the name of the attachment
+	 */
+	public static String getOriginalName(File file) {
+		String name=file.getName();
+		return name.substring(name.indexOf('-')+1);
+	}
+
+	private static final class ArchivedMessage{
+		private final long guildId;
+		private final long authorId;
+		private final File directory;
+		private final List<File> files=new ArrayList<>();
+		/**
+		 * bytes used or reserved by the attachments of the message
+		 */
+		private long bytes;
+		private ArchivedMessage(long guildId, long authorId, File directory) {
+			this.guildId = guildId;
+			this.authorId = authorId;
+			this.directory = directory;
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: CachedMessage.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.listeners;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageType;
+import net.dv8tion.jda.api.entities.User;
+
+/**
+ * a compact copy of the information about a {@link Message} that is needed for logging its deletion<br>
+ * In contrast to the {@link Message}, it does not reference any other JDA entities.
+ */
+public final class CachedMessage {
+	/**
+	 * the maximum number of characters of the content that is stored
+	 */
+	public static final int MAX_CONTENT_LENGTH=1024;
+
+	private static final int OBJECT_OVERHEAD=16;
+	private static final int REFERENCE_SIZE=8;
+	private static final int ARRAY_OVERHEAD=16;
+
+	private final long id;
+	private final long guildId;
+	private final long channelId;
+	private final long authorId;
+	private final String authorTag;
+	private final String avatarId;
+	private final byte[] content;
+	private final CachedAttachment[] attachments;
+
+	/**
+	 * creates a {@link CachedMessage} from its fields
+	 * @param id the ID of the message
+	 * @param guildId the ID of the guild the message was sent in
+	 * @param channelId the ID of the channel the message was sent in
+	 * @param authorId the ID of the author
+	 * @param authorTag the tag (name#discriminator) of the author
+	 * @param avatarId the avatar ID of the author or <code>null</code> if the author does not have an avatar
+	 * @param content the displayed content of the message as UTF-8 or <code>null</code> if it is not a default message
+	 * @param attachments the attachments of the message
+	 */
+	public CachedMessage(long id, long guildId, long channelId, long authorId, String authorTag, String avatarId,
+			byte[] content, CachedAttachment[] attachments) {
+		this.id = id;
+		this.guildId = guildId;
+		this.channelId = channelId;
+		this.authorId = authorId;
+		this.authorTag = authorTag;
+		this.avatarId = avatarId;
+		this.content = content;
+		this.attachments = attachments;
+	}
+	/**
+	 * creates a {@link CachedMessage} from a {@link Message} sent in a guild
+	 * @param msg the {@link Message}
+	 * @return the {@link CachedMessage}
+	 */
+	public static CachedMessage of(Message msg) {
+		byte[] content=null;
+		if(msg.getType()==MessageType.DEFAULT) {
+			String text=msg.getContentDisplay();
+			content=text.substring(0,Math.min(MAX_CONTENT_LENGTH,text.length())).getBytes(StandardCharsets.UTF_8);
+		}
+		CachedAttachment[] attachments=msg.getAttachments().stream()
+				.map(attachment->new CachedAttachment(attachment.getFileName(), attachment.getUrl(), attachment.getSize()))
+				.toArray(CachedAttachment[]::new);
+		User author=msg.getAuthor();
+		return new CachedMessage(msg.getIdLong(), msg.getGuild().getIdLong(), msg.getChannel().getIdLong(),
+				author.getIdLong(), author.getAsTag(), author.getAvatarId(), content, attachments);
+	}
+	/**
+	 * gets the ID of the message
+	 * @return the ID of the message
+	 */
+	public long getId() {
+		return id;
+	}
+	/**
+	 * gets the ID of the guild the message was sent in
+	 * @return the ID of the guild
+	 */
+	public long getGuildId() {
+		return guildId;
+	}
+	/**
+	 * gets the ID of the channel the message was sent in
+	 * @return the ID of the channel
+	 */
+	public long getChannelId() {
+		return channelId;
+	}
+	/**
+	 * gets the ID of the author
+	 * @return the ID of the author
+	 */
+	public long getAuthorId() {
+		return authorId;
+	}
+	/**
+	 * gets the tag (name#discriminator) of the author
+	 * @return the tag of the author
+	 */
+	public String getAuthorTag() {
+		return authorTag;
+	}
+	/**
+	 * gets the avatar ID of the author
+	 * @return the avatar ID or <code>null</code> if the author does not have an avatar
+	 */
+	public String getAvatarId() {
+		return avatarId;
+	}
+	/**
+	 * gets the URL of the avatar of the author
+	 * @return the URL of the avatar or <code>null</code> if the author does not have an avatar
+	 */
+	public String getAvatarUrl() {
+		return avatarId==null?null:String.format(User.AVATAR_URL, Long.toString(authorId), avatarId, avatarId.startsWith("a_")?"gif":"png");
+	}
+	/**
+	 * checks if the message was a default message
+	 * @return <code>true</code> if the message was a default message and its content is available
+	 */
+	public boolean hasContent() {
+		return content!=null;
+	}
+	/**
+	 * gets the displayed content of the message (limited to {@link CachedMessage#MAX_CONTENT_LENGTH} characters)
+	 * @return the content or <code>null</code> if the message was not a default message
+	 */
+	public String getContent() {
+		return content==null?null:new String(content,StandardCharsets.UTF_8);
+	}
+	/**
+	 * gets the raw content of the message
+	 * @return the content encoded as UTF-8 or <code>null</code> if the message was not a default message
+	 */
+	byte[] getContentBytes() {
+		return content;
+	}
+	/**
+	 * gets the attachments of the message
+	 * @return an unmodifiable {@link List} of the attachments
+	 */
+	public List<CachedAttachment> getAttachments() {
+		return Collections.unmodifiableList(Arrays.asList(attachments));
+	}
+	/**
+	 * estimates the number of bytes on the heap that are used by this object
+	 * @return the estimated size in bytes
+	 */
+	public int estimateSize() {
+		int size=OBJECT_OVERHEAD+4*Long.BYTES+4*REFERENCE_SIZE
+				+estimateSize(authorTag)+estimateSize(avatarId)
+				+ARRAY_OVERHEAD+attachments.length*REFERENCE_SIZE;
+		if(content!=null) {
+			size+=ARRAY_OVERHEAD+content.length;
+		}
+		for (CachedAttachment attachment : attachments) {
+			size+=OBJECT_OVERHEAD+3*REFERENCE_SIZE+estimateSize(attachment.getFileName())+estimateSize(attachment.getUrl());
+		}
+		return size;
+	}
+	/**
+	 * writes all fields except the message ID
+	 * @param out the {@link DataOutput} to write to
+	 * @throws IOException if an I/O error occurs
+	 * @see CachedMessage#readFrom(long, DataInput)
+	 */
+	void writeTo(DataOutput out) throws IOException {
+		out.writeLong(guildId);
+		out.writeLong(channelId);
+		out.writeLong(authorId);
+		out.writeUTF(authorTag);
+		out.writeUTF(avatarId==null?"":avatarId);
+		if(content==null) {
+			out.writeInt(-1);
+		}else {
+			out.writeInt(content.length);
+			out.write(content);
+		}
+		out.writeShort(attachments.length);
+		for (CachedAttachment attachment : attachments) {
+			out.writeUTF(attachment.getFileName());
+			out.writeUTF(attachment.getUrl());
+			out.writeInt(attachment.getSize());
+		}
+	}
+	/**
+	 * reads a message written by {@link CachedMessage#writeTo(DataOutput)}
+	 * @param id the ID of the message
+	 * @param in the {@link DataInput} to read from
+	 * @return the message
+	 * @throws IOException if an I/O error occurs
+	 */
+	static CachedMessage readFrom(long id,DataInput in) throws IOException {
+		long guildId=in.readLong();
+		long channelId=in.readLong();
+		long authorId=in.readLong();
+		String authorTag=in.readUTF();
+		String avatarId=in.readUTF();
+		byte[] content=null;
+		int contentLength=in.readInt();
+		if(contentLength>=0) {
+			content=new byte[contentLength];
+			in.readFully(content);
+		}
+		CachedAttachment[] attachments=new CachedAttachment[in.readUnsignedShort()];
+		for (int i = 0; i < attachments.length; i++) {
+			attachments[i]=new CachedAttachment(in.readUTF(), in.readUTF(), in.readInt());
+		}
+		return new CachedMessage(id, guildId, channelId, authorId, authorTag, avatarId.isEmpty()?null:avatarId, content, attachments);
+	}
+	private static int estimateSize(String s) {
+		return s==null?0:OBJECT_OVERHEAD+REFERENCE_SIZE+ARRAY_OVERHEAD+2*s.length();
+	}
+
+	/**
+	 * the metadata of an attachment of a {@link CachedMessage}
+	 */
+	public static final class CachedAttachment{
+		private final String fileName;
+		private final String url;
+		private final int size;
+		/**
+		 * creates a {@link CachedAttachment}
+		 * @param fileName the name of the file
+		 * @param url the URL of the attachment
+		 * @param size the size of the attachment in bytes
+		 */
+		public CachedAttachment(String fileName, String url, int size) {
+			this.fileName = fileName;
+			this.url = url;
+			this.size = size;
+		}
+		/**
+		 * gets the name of the file
+		 * @return the file name
+		 */
+		public String getFileName() {
+			return fileName;
+		}
+		/**
+		 * gets the URL of the attachment
+		 * @return the URL
+		 */
+		public String getUrl() {
+			return url;
+		}
+		/**
+		 * gets the size of the attachment
+		 * @return the size in bytes
+		 */
+		public int getSize() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: MessageCache.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.listeners;
+
+import io.github.jdiscordbots.nightdream.util.LongHashMap;
+
+/**
+ * a size-bounded cache of {@link CachedMessage}s<br>
+ * Every guild keeps at most a fixed number of messages and all messages together use at most a fixed (estimated) number of bytes.
+ * If a bound is exceeded, the least recently used messages (of the guild) are evicted.<br>
+ * This class is thread-safe.
+ */
+public class MessageCache {
+	private static final int NODE_OVERHEAD=64;
+
+	private final LongHashMap<Node> messages=new LongHashMap<>();
+	private final LongHashMap<GuildList> guilds=new LongHashMap<>();
+	/**
+	 * sentinel of the global LRU list, {@link Node#next} is the least recently used message
+	 */
+	private final Node head=new Node(null);
+	private long maxBytes;
+	private int guildLimit;
+	private long usedBytes;
+	private long evictions;
+
+	/**
+	 * creates an empty cache
+	 * @param maxBytes the maximum number of (estimated) bytes all messages can use together
+	 * @param guildLimit the maximum number of messages per guild
+	 */
+	public MessageCache(long maxBytes,int guildLimit) {
+		this.maxBytes=maxBytes;
+		this.guildLimit=guildLimit;
+		head.prev=head;
+		head.next=head;
+	}
+	/**
+	 * changes the bounds of the cache and evicts messages if necessary
+	 * @param maxBytes the maximum number of (estimated) bytes all messages can use together
+	 * @param guildLimit the maximum number of messages per guild
+	 */
+	public synchronized void setLimits(long maxBytes,int guildLimit) {
+		this.maxBytes=maxBytes;
+		this.guildLimit=guildLimit;
+		while(usedBytes>maxBytes&&head.next!=head) {
+			evict(head.next);
+		}
+		//the order of the messages of a guild is the same in both lists so the first messages of a guild in the global list are the least recently used
+		for (Node node=head.next; node!=head;) {
+			Node next=node.next;
+			if(guilds.get(node.msg.getGuildId()).size>guildLimit) {
+				evict(node);
+			}
+			node=next;
+		}
+	}
+	/**
+	 * adds a message to the cache (or replaces the message with the same ID)
+	 * @param msg the message
+	 */
+	public synchronized void put(CachedMessage msg) {
+		Node old=messages.get(msg.getId());
+		if(old!=null) {
+			remove(old);
+		}
+		Node node=new Node(msg);
+		node.size=msg.estimateSize()+NODE_OVERHEAD;
+		if(node.size>maxBytes||guildLimit<=0) {
+			return;
+		}
+		messages.put(msg.getId(), node);
+		GuildList guild=guilds.computeIfAbsent(msg.getGuildId(), id->new GuildList());
+		linkLast(node);
+		guild.linkLast(node);
+		usedBytes+=node.size;
+		while(guild.size>guildLimit) {
+			evict(guild.head.guildNext);
+		}
+		while(usedBytes>maxBytes) {
+			evict(head.next);
+		}
+	}
+	/**
+	 * gets a message and marks it as recently used
+	 * @param id the ID of the message
+	 * @return the message or <code>null</code> if it is not cached
+	 */
+	public synchronized CachedMessage get(long id) {
+		Node node=messages.get(id);
+		if(node==null) {
+			return null;
+		}
+		unlink(node);
+		linkLast(node);
+		GuildList guild=guilds.get(node.msg.getGuildId());
+		guild.unlink(node);
+		guild.linkLast(node);
+		return node.msg;
+	}
+	/**
+	 * removes a message
+	 * @param id the ID of the message
+	 * @return the removed message or <code>null</code> if it was not cached
+	 */
+	public synchronized CachedMessage remove(long id) {
+		Node node=messages.get(id);
+		if(node==null) {
+			return null;
+		}
+		remove(node);
+		return node.msg;
+	}
+	private void evict(Node node) {
+		remove(node);
+		evictions++;
+	}
+	private void remove(Node node) {
+		messages.remove(node.msg.getId());
+		unlink(node);
+		GuildList guild=guilds.get(node.msg.getGuildId());
+		guild.unlink(node);
+		if(guild.size==0) {
+			guilds.remove(node.msg.getGuildId());
+		}
+		usedBytes-=node.size;
+	}
+	private void linkLast(Node node) {
+		node.prev=head.prev;
+		node.next=head;
+		head.prev.next=node;
+		head.prev=node;
+	}
+	private static void unlink(Node node) {
+		node.prev.next=node.next;
+		node.next.prev=node.prev;
+		node.prev=null;
+		node.next=null;
+	}
+	/**
+	 * removes all messages of an author
+	 * @param authorId the ID of the author
+	 * @return the number of removed messages
+	 */
+	public synchronized int removeAuthor(long authorId) {
+		int removed=0;
+		for (Node node=head.next; node!=head;) {
+			Node next=node.next;
+			if(node.msg.getAuthorId()==authorId) {
+				remove(node);
+				removed++;
+			}
+			node=next;
+		}
+		return removed;
+	}
+	/**
+	 * removes all messages
+	 */
+	public synchronized void clear() {
+		messages.clear();
+		guilds.clear();
+		head.prev=head;
+		head.next=head;
+		usedBytes=0;
+	}
+	/**
+	 * gets the number of cached messages
+	 * @return the number of messages
+	 */
+	public synchronized int size() {
+		return messages.size();
+	}
+	/**
+	 * checks if there are no cached messages
+	 * @return <code>true</code> if the cache is empty
+	 */
+	public synchronized boolean isEmpty() {
+		return messages.isEmpty();
+	}
+	/**
+	 * gets the (estimated) number of bytes used by the cached messages
+	 * @return the number of bytes
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * gets the number of messages that have been evicted because a bound was exceeded
+	 * @return the number of evicted messages
+	 */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	private static final class Node{
+		private final CachedMessage msg;
+		private int size;
+		private Node prev;
+		private Node next;
+		private Node guildPrev;
+		private Node guildNext;
+		private Node(CachedMessage msg) {
+			this.msg=msg;
+		}
+	}
+	/**
+	 * the LRU list of the messages of a guild
+	 */
+	private static final class GuildList{
+		/**
+		 * sentinel, {@link Node#guildNext} is the least recently used message of the guild
+		 */
+		private final Node head=new Node(null);
+		private int size;
+		private GuildList() {
+			head.guildPrev=head;
+			head.guildNext=head;
+		}
+		private void linkLast(Node node) {
+			node.guildPrev=head.guildPrev;
+			node.guildNext=head;
+			head.guildPrev.guildNext=node;
+			head.guildPrev=node;
+			size++;
+		}
+		private void unlink(Node node) {
+			node.guildPrev.guildNext=node.guildNext;
+			node.guildNext.guildPrev=node.guildPrev;
+			node.guildPrev=null;
+			node.guildNext=null;
+			size--;
+		}
+	}
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: MessageRingFile.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.listeners;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.jdiscordbots.nightdream.util.LongHashMap;
+
+/**
+ * a fixed-size, memory-mapped file holding the most recent {@link CachedMessage}s<br>
+ * The file is split into blocks that are written one after another.
+ * When the last block is full, the oldest block is overwritten.
+ * Every block starts with a sequence number so the order of the blocks can be restored after a restart.
+ * An index of the message IDs is kept in memory.
+ * The payload of removed messages is overwritten with zeros so their content does not stay in the file.<br>
+ * This class is thread-safe.
+ */
+public class MessageRingFile implements Closeable {
+
+	private static final Logger LOG=LoggerFactory.getLogger(MessageRingFile.class);
+
+	/**
+	 * the size of a block in bytes
+	 */
+	public static final int BLOCK_SIZE=64*1024;
+	private static final int HEADER_SIZE=4096;
+	private static final int MAGIC=0x4E444D52;
+	private static final int FORMAT_VERSION=1;
+	/**
+	 * sequence number (long) and number of used bytes (int)
+	 */
+	private static final int BLOCK_HEADER_SIZE=16;
+	/**
+	 * message ID (long), payload length (int) and CRC32 of the payload (int)
+	 */
+	private static final int RECORD_HEADER_SIZE=16;
+	private static final int TOMBSTONE_LENGTH=0;
+	/**
+	 * the position of the author ID in the payload, after the guild ID and the channel ID
+	 * @see CachedMessage#writeTo(java.io.DataOutput)
+	 */
+	private static final int AUTHOR_ID_OFFSET=16;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final int blockCount;
+	/**
+	 * the position of the latest record of every message
+	 */
+	private final LongHashMap<Integer> index=new LongHashMap<>();
+	private int currentBlock;
+	private long currentSequence;
+	private int currentUsed;
+
+	/**
+	 * opens or creates a ring file
+	 * @param location the file
+	 * @param size the size of the file in bytes, at least two blocks are used
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public MessageRingFile(File location,long size) throws IOException {
+		blockCount=(int)Math.max(2, Math.min(size, Integer.MAX_VALUE-HEADER_SIZE)/BLOCK_SIZE);
+		long fileSize=HEADER_SIZE+(long)blockCount*BLOCK_SIZE;
+		if(location.getParentFile()!=null) {
+			Files.createDirectories(location.getParentFile().toPath());
+		}
+		file=new RandomAccessFile(location, "rw");
+		boolean reset=file.length()!=fileSize;
+		file.setLength(fileSize);
+		buffer=file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+		if(!reset&&(buffer.getInt(0)!=MAGIC||buffer.getInt(4)!=FORMAT_VERSION||buffer.getInt(8)!=BLOCK_SIZE)) {
+			reset=true;
+		}
+		if(reset) {
+			LOG.info("Creating message ring file {} with {} blocks", location.getAbsolutePath(), blockCount);
+			for (int i = 0; i < blockCount; i++) {
+				buffer.putLong(blockOffset(i), 0);
+				buffer.putInt(blockOffset(i)+8, 0);
+			}
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, FORMAT_VERSION);
+			buffer.putInt(8, BLOCK_SIZE);
+			startBlock(0, 1);
+		}else {
+			recover();
+		}
+	}
+	private static int blockOffset(int block) {
+		return HEADER_SIZE+block*BLOCK_SIZE;
+	}
+	/**
+	 * rebuilds the index by reading all blocks from the oldest to the newest
+	 */
+	private void recover() {
+		Integer[] order=new Integer[blockCount];
+		for (int i = 0; i < blockCount; i++) {
+			order[i]=i;
+		}
+		Arrays.sort(order, (a,b)->Long.compare(buffer.getLong(blockOffset(a)), buffer.getLong(blockOffset(b))));
+		int recovered=0;
+		for (int block : order) {
+			long sequence=buffer.getLong(blockOffset(block));
+			if(sequence==0) {
+				continue;
+			}
+			int used=Math.min(buffer.getInt(blockOffset(block)+8), BLOCK_SIZE-BLOCK_HEADER_SIZE);
+			for (int pos = 0; pos+RECORD_HEADER_SIZE <= used;) {
+				int recordOffset=blockOffset(block)+BLOCK_HEADER_SIZE+pos;
+				long id=buffer.getLong(recordOffset);
+				int length=buffer.getInt(recordOffset+8);
+				if(length<0||pos+RECORD_HEADER_SIZE+length>used) {
+					break;
+				}
+				if(length==TOMBSTONE_LENGTH) {
+					index.remove(id);
+				}else {
+					index.put(id, recordOffset);
+					recovered++;
+				}
+				pos+=RECORD_HEADER_SIZE+length;
+			}
+			currentBlock=block;
+			currentSequence=sequence;
+			currentUsed=used;
+		}
+		if(currentSequence==0) {
+			startBlock(0, 1);
+		}
+		LOG.info("Recovered {} messages from ring file", recovered);
+	}
+	/**
+	 * starts writing to a block, the records in the block are dropped
+	 * @param block the block
+	 * @param sequence the sequence number of the block
+	 */
+	private void startBlock(int block,long sequence) {
+		int start=blockOffset(block);
+		if(buffer.getLong(start)!=0) {
+			int used=Math.min(buffer.getInt(start+8), BLOCK_SIZE-BLOCK_HEADER_SIZE);
+			for (int pos = 0; pos+RECORD_HEADER_SIZE <= used;) {
+				int recordOffset=start+BLOCK_HEADER_SIZE+pos;
+				long id=buffer.getLong(recordOffset);
+				Integer indexed=index.get(id);
+				if(indexed!=null&&indexed==recordOffset) {
+					index.remove(id);
+				}
+				pos+=RECORD_HEADER_SIZE+Math.max(0, buffer.getInt(recordOffset+8));
+			}
+		}
+		buffer.putInt(start+8, 0);
+		buffer.putLong(start, sequence);
+		currentBlock=block;
+		currentSequence=sequence;
+		currentUsed=0;
+	}
+	/**
+	 * appends a record to the current block
+	 * @param id the message ID
+	 * @param payload the payload or an empty array for tombstones
+	 * @return the position of the record or <code>-1</code> if it is too big
+	 */
+	private int append(long id,byte[] payload) {
+		int recordSize=RECORD_HEADER_SIZE+payload.length;
+		if(recordSize>BLOCK_SIZE-BLOCK_HEADER_SIZE) {
+			return -1;
+		}
+		if(currentUsed+recordSize>BLOCK_SIZE-BLOCK_HEADER_SIZE) {
+			startBlock((currentBlock+1)%blockCount, currentSequence+1);
+		}
+		int recordOffset=blockOffset(currentBlock)+BLOCK_HEADER_SIZE+currentUsed;
+		CRC32 crc=new CRC32();
+		crc.update(payload);
+		buffer.putLong(recordOffset, id);
+		buffer.putInt(recordOffset+8, payload.length);
+		buffer.putInt(recordOffset+12, (int)crc.getValue());
+		ByteBuffer target=buffer.duplicate();
+		target.position(recordOffset+RECORD_HEADER_SIZE);
+		target.put(payload);
+		currentUsed+=recordSize;
+		//the record is only visible after a restart once the block header has been updated
+		buffer.putInt(blockOffset(currentBlock)+8, currentUsed);
+		return recordOffset;
+	}
+	/**
+	 * stores a message
+	 * @param msg the message
+	 */
+	public synchronized void put(CachedMessage msg) {
+		ByteArrayOutputStream baos=new ByteArrayOutputStream(256);
+		try(DataOutputStream out=new DataOutputStream(baos)){
+			msg.writeTo(out);
+		}catch(IOException e) {
+			LOG.warn("Cannot serialize message {}", msg.getId(), e);
+			return;
+		}
+		int position=append(msg.getId(), baos.toByteArray());
+		if(position!=-1) {
+			index.put(msg.getId(), position);
+		}
+	}
+	/**
+	 * gets a stored message
+	 * @param id the ID of the message
+	 * @return the message or <code>null</code> if it is not stored or the record is corrupted
+	 */
+	public synchronized CachedMessage get(long id) {
+		Integer position=index.get(id);
+		if(position==null) {
+			return null;
+		}
+		int length=buffer.getInt(position+8);
+		if(buffer.getLong(position)!=id||length<=0||length>BLOCK_SIZE) {
+			return null;
+		}
+		byte[] payload=new byte[length];
+		ByteBuffer source=buffer.duplicate();
+		source.position(position+RECORD_HEADER_SIZE);
+		source.get(payload);
+		CRC32 crc=new CRC32();
+		crc.update(payload);
+		if((int)crc.getValue()!=buffer.getInt(position+12)) {
+			LOG.warn("Corrupted record of message {} in ring file", id);
+			return null;
+		}
+		try(DataInputStream in=new DataInputStream(new ByteArrayInputStream(payload))){
+			return CachedMessage.readFrom(id, in);
+		}catch(IOException e) {
+			LOG.warn("Cannot read message {} from ring file", id, e);
+			return null;
+		}
+	}
+	/**
+	 * removes a message so it is not found anymore, even after a restart
+	 * @param id the ID of the message
+	 */
+	public synchronized void remove(long id) {
+		Integer position=index.remove(id);
+		if(position!=null) {
+			wipe(position);
+			append(id, new byte[TOMBSTONE_LENGTH]);
+		}
+	}
+	/**
+	 * removes all messages of an author, including older versions of the messages
+	 * @param authorId the ID of the author
+	 * @return the number of removed messages
+	 */
+	public synchronized int removeAuthor(long authorId) {
+		//tombstones are appended after scanning as appending can start a block that has not been scanned yet
+		List<Long> removed=new ArrayList<>();
+		for (int block = 0; block < blockCount; block++) {
+			int start=blockOffset(block);
+			if(buffer.getLong(start)==0) {
+				continue;
+			}
+			int used=Math.min(buffer.getInt(start+8), BLOCK_SIZE-BLOCK_HEADER_SIZE);
+			for (int pos = 0; pos+RECORD_HEADER_SIZE <= used;) {
+				int recordOffset=start+BLOCK_HEADER_SIZE+pos;
+				int length=buffer.getInt(recordOffset+8);
+				if(length<0||pos+RECORD_HEADER_SIZE+length>used) {
+					break;
+				}
+				if(length>=AUTHOR_ID_OFFSET+8&&buffer.getLong(recordOffset+RECORD_HEADER_SIZE+AUTHOR_ID_OFFSET)==authorId) {
+					long id=buffer.getLong(recordOffset);
+					Integer indexed=index.get(id);
+					wipe(recordOffset);
+					if(indexed!=null&&indexed==recordOffset) {
+						index.remove(id);
+						removed.add(id);
+					}
+				}
+				pos+=RECORD_HEADER_SIZE+length;
+			}
+		}
+		for (long id : removed) {
+			append(id, new byte[TOMBSTONE_LENGTH]);
+		}
+		return removed.size();
+	}
+	/**
+	 * removes all messages and overwrites the file with zeros
+	 */
+	public synchronized void clear() {
+		index.clear();
+		byte[] zeros=new byte[BLOCK_SIZE];
+		ByteBuffer target=buffer.duplicate();
+		for (int i = 0; i < blockCount; i++) {
+			target.position(blockOffset(i));
+			target.put(zeros);
+		}
+		startBlock(0, 1);
+	}
+	/**
+	 * overwrites the payload of a record with zeros<br>
+	 * The length is kept so the following records can still be found.
+	 * The checksum does not match anymore so the record cannot be read.
+	 * @param recordOffset the position of the record
+	 */
+	private void wipe(int recordOffset) {
+		int length=buffer.getInt(recordOffset+8);
+		if(length<=0) {
+			return;
+		}
+		ByteBuffer target=buffer.duplicate();
+		target.position(recordOffset+RECORD_HEADER_SIZE);
+		target.put(new byte[length]);
+	}
+	/**
+	 * gets the number of stored messages
+	 * @return the number of messages
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+	/**
+	 * writes all changes to the disk and closes the file
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		buffer.force();
+		file.close();
+	}
+}
@@ -7,65 +7,359 @@
 
 package io.github.jdiscordbots.nightdream.listeners;
 
+import io.github.jdiscordbots.nightdream.listeners.CachedMessage.CachedAttachment;
 import io.github.jdiscordbots.nightdream.util.BotData;
+import io.github.jdiscordbots.nightdream.util.MetricRegistry;
 import net.dv8tion.jda.api.EmbedBuilder;
-import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.Message.Attachment;
-import net.dv8tion.jda.api.entities.MessageType;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.ShutdownEvent;
+import net.dv8tion.jda.api.events.message.MessageBulkDeleteEvent;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageDeleteEvent;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.requests.restaction.MessageAction;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.collections4.map.ReferenceMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @BotListener
 public class MsgLogListener extends ListenerAdapter {
 
-	private Map<String, Message> messages=new ReferenceMap<>();
+	private final MessageCache messages=new MessageCache(BotData.getMsgCacheMaxBytes(), BotData.getMsgCacheGuildLimit());
+	/**
+	 * on-disk message caches of all shards, messages are written to both tiers
+	 */
+	private final Map<Integer, MessageRingFile> diskCaches=new ConcurrentHashMap<>();
 	private static final Logger LOG=LoggerFactory.getLogger(MsgLogListener.class);
-	private static final Pattern SIZE_SPLIT=Pattern.compile("\\	?size");
+	private static final File DISK_CACHE_DIR=new File(BotData.DATA_DIR,"msgcache");
+	private static final String DISK_CACHE_FILE_PREFIX="shard-";
+	private static final String DISK_CACHE_FILE_SUFFIX=".ring";
+	/**
+	 * the time to wait before opening an on-disk message cache again after it could not be opened
+	 */
+	private static final long DISK_CACHE_RETRY_MILLIS=TimeUnit.MINUTES.toMillis(10);
+	/**
+	 * the time when opening the on-disk message cache of a shard can be retried, by the ID of the shard
+	 */
+	private final Map<Integer, Long> diskCacheRetryTimes=new ConcurrentHashMap<>();
+	/**
+	 * the time deletions are collected before they are logged
+	 */
+	private static final long BATCH_WINDOW_MILLIS=1000;
+	private static final int MAX_BATCH_SIZE=500;
+	private static final int MAX_FILES_PER_MESSAGE=10;
 	
+	/**
+	 * deletions that have not been logged yet, by the ID of the log channel
+	 */
+	private final Map<String, DeletionBatch> pendingDeletions=new HashMap<>();
+	private final AttachmentArchive attachmentArchive=new AttachmentArchive(new File(BotData.DATA_DIR,"attachments"));
+	private final ScheduledExecutorService batchScheduler=Executors.newSingleThreadScheduledExecutor(r->{
+		Thread t=new Thread(r, "msglog-batcher");
+		t.setDaemon(true);
+		return t;
+	});
+	
+	public MsgLogListener() {
+		MetricRegistry.gauge("msgcache.entries", messages::size);
+		MetricRegistry.gauge("msgcache.bytes", messages::getUsedBytes);
+		MetricRegistry.gauge("msgcache.evictions", messages::getEvictionCount);
+		MetricRegistry.gauge("msgcache.disk.entries", ()->diskCaches.values().stream().mapToInt(MessageRingFile::size).sum());
+	}
+	
+	/**
+	 * gets the on-disk message cache of a shard
+	 * @param jda the shard
+	 * If the cache cannot be opened, it is not opened again for {@link #DISK_CACHE_RETRY_MILLIS} milliseconds.
+	 * @return the on-disk cache or <code>null</code> if it is disabled or cannot be opened
+	 * @see BotData#getMsgCacheDiskBytes()
+	 */
+	private MessageRingFile getDiskCache(JDA jda) {
+		return getDiskCache(jda.getShardInfo().getShardId());
+	}
+	private MessageRingFile getDiskCache(int shardId) {
+		long size=BotData.getMsgCacheDiskBytes();
+		if(size<=0) {
+			return null;
+		}
+		Long retryTime=diskCacheRetryTimes.get(shardId);
+		if(retryTime!=null&&System.currentTimeMillis()<retryTime) {
+			return null;
+		}
+		return diskCaches.computeIfAbsent(shardId, id->{
+			try {
+				MessageRingFile diskCache=new MessageRingFile(new File(DISK_CACHE_DIR,DISK_CACHE_FILE_PREFIX+id+DISK_CACHE_FILE_SUFFIX), size);
+				diskCacheRetryTimes.remove(id);
+				return diskCache;
+			} catch (IOException e) {
+				LOG.warn("Cannot open on-disk message cache of shard {}, retrying in {} minutes", id, TimeUnit.MILLISECONDS.toMinutes(DISK_CACHE_RETRY_MILLIS), e);
+				diskCacheRetryTimes.put(id, System.currentTimeMillis()+DISK_CACHE_RETRY_MILLIS);
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * removes all cached messages from memory and from the disk and applies the configured cache limits
+	 */
 	public void clearCache() {
 		messages.clear();
+		messages.setLimits(BotData.getMsgCacheMaxBytes(), BotData.getMsgCacheGuildLimit());
+		diskCaches.values().forEach(MessageRingFile::clear);
+		diskCacheRetryTimes.clear();
+	}
+	
+	/**
+	 * removes all cached messages of a user from memory and from the disk and deletes the archived attachments of the user
+	 * @param userId the ID of the user
+	 * @return the number of removed messages
+	 */
+	public int eraseUserData(long userId) {
+		attachmentArchive.removeAuthor(userId);
+		int removed=messages.removeAuthor(userId);
+		//on-disk caches of shards that did not receive messages since the start have not been opened yet
+		File[] files=DISK_CACHE_DIR.listFiles((dir,name)->name.startsWith(DISK_CACHE_FILE_PREFIX)&&name.endsWith(DISK_CACHE_FILE_SUFFIX));
+		if(files!=null) {
+			for (File file : files) {
+				String name=file.getName();
+				try {
+					int shardId=Integer.parseInt(name.substring(DISK_CACHE_FILE_PREFIX.length(), name.length()-DISK_CACHE_FILE_SUFFIX.length()));
+					if(BotData.getMsgCacheDiskBytes()<=0) {
+						//the on-disk cache has been disabled, its messages are not used anymore
+						Files.deleteIfExists(file.toPath());
+					}else if(getDiskCache(shardId)==null) {
+						LOG.warn("Cannot remove messages from {}", file.getAbsolutePath());
+					}
+				}catch(NumberFormatException|IOException e) {
+					LOG.warn("Cannot remove messages from {}", file.getAbsolutePath(), e);
+				}
+			}
+		}
+		for (MessageRingFile diskCache : diskCaches.values()) {
+			removed+=diskCache.removeAuthor(userId);
+		}
+		return removed;
+	}
+	
+	/**
+	 * gets a cached message from memory or (if enabled) from the disk and removes it from both caches
+	 * @param jda the shard that received the message
+	 * @param id the ID of the message
+	 * @return the message or <code>null</code> if it has not been cached
+	 */
+	private CachedMessage removeCachedMessage(JDA jda,long id) {
+		CachedMessage msg=messages.remove(id);
+		if(msg!=null) {
+			MetricRegistry.increment("msgcache.delete.hits");
+		}
+		MessageRingFile diskCache=getDiskCache(jda);
+		if(diskCache!=null) {
+			if(msg==null) {
+				msg=diskCache.get(id);
+				if(msg!=null) {
+					MetricRegistry.increment("msgcache.delete.diskHits");
+				}
+			}
+			diskCache.remove(id);
+		}
+		if(msg==null) {
+			MetricRegistry.increment("msgcache.delete.misses");
+			attachmentArchive.remove(id);
+		}
+		return msg;
 	}
 	
 	@Override
 	public void onGuildMessageDelete(GuildMessageDeleteEvent event) {
-		if(!"".equals(BotData.getMsgLogChannel(event.getGuild()))) {
-			Message msg=messages.get(event.getMessageId());
+		String logChannel=BotData.getMsgLogChannel(event.getGuild());
+		if(!"".equals(logChannel)) {
+			CachedMessage msg=removeCachedMessage(event.getJDA(), event.getMessageIdLong());
 			if(msg==null) {
 				LOG.info("A message that has not been cached was deleted.");
 			}else {
-				messages.remove(event.getMessageId());
-				EmbedBuilder builder=new EmbedBuilder();
-				builder.setColor(0x212121)
-				.setTitle("Deleted Message")
-				.setFooter(msg.getAuthor().getAsTag()+" in channel "+msg.getChannel().getName())
-				.setTimestamp(Instant.now());
-				String text="nothing";
-				if(msg.getType()==MessageType.DEFAULT){
-					text=msg.getContentDisplay().substring(0,Math.min(1024,msg.getContentDisplay().length()));
+				addToBatch(event.getJDA(), logChannel, Collections.singletonList(new DeletedMessage(msg, event.getChannel().getName())), 0);
+			}
+		}
+	}
+	
+	@Override
+	public void onMessageBulkDelete(MessageBulkDeleteEvent event) {
+		String logChannel=BotData.getMsgLogChannel(event.getGuild());
+		if(!"".equals(logChannel)) {
+			List<DeletedMessage> deleted=new ArrayList<>();
+			int notCached=0;
+			for (String id : event.getMessageIds()) {
+				CachedMessage msg=removeCachedMessage(event.getJDA(), Long.parseLong(id));
+				if(msg==null) {
+					notCached++;
+				}else {
+					deleted.add(new DeletedMessage(msg, event.getChannel().getName()));
 				}
-				builder.addField("Message", text, false);
-				if(msg.getAuthor().getAvatarUrl()!=null) {
-					builder.setThumbnail(SIZE_SPLIT.split(msg.getAuthor().getAvatarUrl())[0]);
+			}
+			if(deleted.isEmpty()) {
+				LOG.info("{} messages that have not been cached were deleted.", notCached);
+			}else {
+				addToBatch(event.getJDA(), logChannel, deleted, notCached);
+			}
+		}
+	}
+	
+	/**
+	 * adds deleted messages to the pending batch of a log channel<br>
+	 * The batch is sent when the batching window is over or the batch is full.
+	 * @param jda the shard
+	 * @param logChannel the ID of the log channel
+	 * @param deleted the deleted messages
+	 * @param notCached the number of deleted messages that have not been cached
+	 */
+	private void addToBatch(JDA jda,String logChannel,List<DeletedMessage> deleted,int notCached) {
+		DeletionBatch toSend=null;
+		synchronized(pendingDeletions) {
+			DeletionBatch batch=pendingDeletions.get(logChannel);
+			if(batch==null) {
+				batch=new DeletionBatch(jda);
+				pendingDeletions.put(logChannel, batch);
+				batchScheduler.schedule(()->flushBatch(logChannel), BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			batch.messages.addAll(deleted);
+			batch.notCached+=notCached;
+			if(batch.messages.size()>=MAX_BATCH_SIZE) {
+				toSend=pendingDeletions.remove(logChannel);
+			}
+		}
+		if(toSend!=null) {
+			sendBatch(logChannel, toSend);
+		}
+	}
+	private void flushBatch(String logChannel) {
+		DeletionBatch batch;
+		synchronized(pendingDeletions) {
+			batch=pendingDeletions.remove(logChannel);
+		}
+		if(batch!=null) {
+			sendBatch(logChannel, batch);
+		}
+	}
+	/**
+	 * sends a batch of deleted messages to the log channel using a single request<br>
+	 * A single message is logged with its own embed, multiple messages are logged with a summary and a text file containing all messages.
+	 * @param logChannel the ID of the log channel
+	 * @param batch the batch
+	 */
+	private void sendBatch(String logChannel,DeletionBatch batch) {
+		TextChannel channel=batch.jda.getTextChannelById(logChannel);
+		if(channel==null) {
+			LOG.warn("Cannot find message log channel {}", logChannel);
+			return;
+		}
+		if(batch.messages.size()==1&&batch.notCached==0) {
+			DeletedMessage deleted=batch.messages.get(0);
+			MessageAction action=channel.sendMessage(createDeletionEmbed(deleted.msg, deleted.channelName));
+			addArchivedAttachments(action, channel, batch, MAX_FILES_PER_MESSAGE);
+			action.queue(sent->removeArchivedAttachments(batch), failure->removeArchivedAttachments(batch));
+			return;
+		}
+		StringBuilder text=new StringBuilder();
+		Set<String> channelNames=new TreeSet<>();
+		for (DeletedMessage deleted : batch.messages) {
+			CachedMessage msg=deleted.msg;
+			channelNames.add(deleted.channelName);
+			text.append('[').append(deleted.channelName).append("] ")
+			.append(msg.getAuthorTag()).append(" (").append(msg.getAuthorId()).append("): ")
+			.append(msg.hasContent()?msg.getContent():"nothing")
+			.append('\n');
+			for (CachedAttachment attachment : msg.getAttachments()) {
+				text.append("\tattachment: ")
+				.append(attachment.getFileName())
+				.append(" (")
+				.append(attachment.getUrl())
+				.append(") (")
+				.append(attachment.getSize())
+				.append(")\n");
+			}
+		}
+		String description=batch.messages.size()+" messages were deleted.";
+		if(batch.notCached>0) {
+			description+="\n"+batch.notCached+" deleted messages have not been cached.";
+		}
+		EmbedBuilder builder=new EmbedBuilder();
+		builder.setColor(0x212121)
+		.setTitle("Deleted Messages")
+		.setDescription(description)
+		.setFooter("in channel "+String.join(", ", channelNames))
+		.setTimestamp(Instant.now());
+		byte[] textFile=text.toString().getBytes(StandardCharsets.UTF_8);
+		MessageAction action=channel.sendMessage(builder.build())
+		.addFile(textFile, "deleted-messages.txt");
+		addArchivedAttachments(action, channel, batch, MAX_FILES_PER_MESSAGE-1);
+		action.queue(sent->removeArchivedAttachments(batch), failure->removeArchivedAttachments(batch));
+	}
+	/**
+	 * adds the archived attachments of deleted messages to the log message as long as the upload limit of the guild is not exceeded
+	 * @param action the log message
+	 * @param channel the log channel
+	 * @param batch the deleted messages
+	 * @param maxFiles the maximum number of files to add
+	 */
+	private void addArchivedAttachments(MessageAction action,TextChannel channel,DeletionBatch batch,int maxFiles) {
+		long remainingBytes=channel.getGuild().getMaxFileSize();
+		int remainingFiles=maxFiles;
+		for (DeletedMessage deleted : batch.messages) {
+			for (File file : attachmentArchive.getFiles(deleted.msg.getId())) {
+				if(remainingFiles>0&&file.length()<=remainingBytes) {
+					action.addFile(file, AttachmentArchive.getOriginalName(file));
+					remainingFiles--;
+					remainingBytes-=file.length();
 				}
-				addAttachments(msg, builder);
-				event.getGuild().getTextChannelById(BotData.getMsgLogChannel(event.getGuild())).sendMessage(builder.build()).queue();
 			}
 		}
 	}
+	private void removeArchivedAttachments(DeletionBatch batch) {
+		for (DeletedMessage deleted : batch.messages) {
+			attachmentArchive.remove(deleted.msg.getId());
+		}
+	}
+	private MessageEmbed createDeletionEmbed(CachedMessage msg,String channelName) {
+		EmbedBuilder builder=new EmbedBuilder();
+		builder.setColor(0x212121)
+		.setTitle("Deleted Message")
+		.setFooter(msg.getAuthorTag()+" in channel "+channelName)
+		.setTimestamp(Instant.now());
+		String text="nothing";
+		if(msg.hasContent()){
+			text=msg.getContent();
+		}
+		builder.addField("Message", text, false);
+		if(msg.getAvatarUrl()!=null) {
+			builder.setThumbnail(msg.getAvatarUrl());
+		}
+		addAttachments(msg, builder);
+		return builder.build();
+	}
 	
-	private void addAttachments(Message msg,EmbedBuilder builder) {
+	private void addAttachments(CachedMessage msg,EmbedBuilder builder) {
 		if(!msg.getAttachments().isEmpty()) {
 			StringBuilder attachmentsBuilder=new StringBuilder("\n\n");
-			for (Attachment attachment : msg.getAttachments()) {
+			for (CachedAttachment attachment : msg.getAttachments()) {
 				attachmentsBuilder.append("[")
 				.append(attachment.getFileName())
 				.append("]")
@@ -82,11 +376,51 @@ public class MsgLogListener extends ListenerAdapter {
 	@Override
 	public void onGuildMessageReceived(GuildMessageReceivedEvent event) {
 		if(!(BotData.getMsgLogChannel(event.getGuild())==null||BotData.getMsgLogChannel(event.getGuild()).isEmpty())) {
-			messages.put(event.getMessageId(), event.getMessage());
+			CachedMessage msg=CachedMessage.of(event.getMessage());
+			messages.put(msg);
+			MessageRingFile diskCache=getDiskCache(event.getJDA());
+			if(diskCache!=null) {
+				diskCache.put(msg);
+			}
+			if(attachmentArchive.isEnabled()&&!event.getMessage().getAttachments().isEmpty()) {
+				attachmentArchive.archive(event.getMessage());
+			}
+		}
+	}
+	
+	@Override
+	public void onShutdown(ShutdownEvent event) {
+		MessageRingFile diskCache=diskCaches.remove(event.getJDA().getShardInfo().getShardId());
+		if(diskCache!=null) {
+			try {
+				diskCache.close();
+			} catch (IOException e) {
+				LOG.warn("Cannot close on-disk message cache", e);
+			}
 		}
 	}
 
-	public Map<String, Message> getMessages() {
+	public MessageCache getMessages() {
 		return messages;
 	}
+	
+	private static final class DeletedMessage{
+		private final CachedMessage msg;
+		private final String channelName;
+		private DeletedMessage(CachedMessage msg, String channelName) {
+			this.msg = msg;
+			this.channelName = channelName;
+		}
+	}
+	/**
+	 * deleted messages that are waiting to be logged in a log channel
+	 */
+	private static final class DeletionBatch{
+		private final JDA jda;
+		private final List<DeletedMessage> messages=new ArrayList<>();
+		private int notCached;
+		private DeletionBatch(JDA jda) {
+			this.jda = jda;
+		}
+	}
 }
@@ -8,108 +8,144 @@
 package io.github.jdiscordbots.nightdream.listeners;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import io.github.jdiscordbots.nightdream.util.BotData;
 import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.MessageChannel;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 
+/**
+ * checks answers of trivia questions<br>
+ * The running games are shared between all shards and stored by channel ID.
+ * Every game has an index from the answers to the questions so every message only needs a single lookup.<br>
+ * Correct answers are counted in a global scoreboard and in a scoreboard of the guild.
+ */
 public final class TriviaListener extends ListenerAdapter {
-	private static Map<JDA,TriviaListener> listeners=new HashMap<>();
-	private Map<String, Set<Set<String>>> questions=new HashMap<>();
-	private Timer timer=new Timer();
-	private JDA jda;
-	private TriviaListener(JDA jda) {
-		this.jda=jda;
+	private static final long QUESTION_TIMEOUT_MILLIS=30000;
+	/**
+	 * the name of the scoreboard containing the correct answers in all guilds
+	 */
+	public static final String GLOBAL_SCOREBOARD="trivia";
+
+	private static final Map<JDA,TriviaListener> listeners=new ConcurrentHashMap<>();
+	private static final Map<Long, ChannelGame> games=new ConcurrentHashMap<>();
+	private static final ScheduledExecutorService timer=Executors.newSingleThreadScheduledExecutor(r->{
+		Thread t=new Thread(r, "trivia-timeouts");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private TriviaListener() {
+		//only created by registerListener
 	}
-	private static TriviaListener getListener(JDA jda) {
-		synchronized(TriviaListener.class) {
-			if(!listeners.containsKey(jda)) {
-				listeners.put(jda,new TriviaListener(jda));
-				jda.addEventListener(listeners.get(jda));
-			}
-			return listeners.get(jda);
-		}
-		
+	private static void registerListener(JDA jda) {
+		listeners.computeIfAbsent(jda, j->{
+			TriviaListener listener=new TriviaListener();
+			j.addEventListener(listener);
+			return listener;
+		});
 	}
+	/**
+	 * gets the open questions of a channel
+	 * @param chan the channel
+	 * @return the correct answers of every open question or <code>null</code> if there are no open questions
+	 */
 	public static Set<Set<String>> getQuestions(final MessageChannel chan) {
-		return getListener(chan.getJDA()).questions.get(chan.getId());
+		ChannelGame game=games.get(chan.getIdLong());
+		return game==null?null:game.questions;
 	}
+	/**
+	 * adds a question to a channel<br>
+	 * If nobody answers it within 30 seconds, the question is removed.
+	 * @param chan the channel
+	 * @param correct the correct answers
+	 */
 	public static void addQuestion(final MessageChannel chan,String... correct) {
 		for (int i = 0; i < correct.length; i++) {
 			correct[i]=correct[i].toLowerCase();
 		}
-		final Set<String> correctAnswers=new HashSet<>(Arrays.asList(correct));
-		synchronized(TriviaListener.class) {
-			Set<Set<String>> questions;
-			if(getListener(chan.getJDA()).questions.containsKey(chan.getId())) {
-				questions=getListener(chan.getJDA()).questions.get(chan.getId());
-				
-			}else {
-				questions=new HashSet<>();
-				getListener(chan.getJDA()).questions.put(chan.getId(), questions);
+		final Set<String> correctAnswers=Collections.unmodifiableSet(new HashSet<>(Arrays.asList(correct)));
+		registerListener(chan.getJDA());
+		long channelId=chan.getIdLong();
+		games.compute(channelId, (id,game)->{
+			if(game==null) {
+				game=new ChannelGame();
 			}
-			questions.add(correctAnswers);
-			getListener(chan.getJDA()).timer.schedule(new TimerTask() {
-				@Override
-				public void run() {
-					synchronized(TriviaListener.class) {
-						TriviaListener listener=listeners.get(chan.getJDA());
-						if(listener!=null&&listener.questions.containsKey(chan.getId())&&listener.questions.get(chan.getId()).contains(correctAnswers)) {
-							chan.sendMessage("Nobody got the answer this time. Sad.").queue();
-							
-							listener.questions.get(chan.getId()).remove(correctAnswers);
-							if(listener.questions.get(chan.getId()).isEmpty()) {
-								listener.questions.remove(chan.getId());
-								if(listener.questions.isEmpty()) {
-									removeListener(listener.jda);
-								}
-							}
-						}
-					}
-				}
-			}, 30000);
-		}
+			game.add(correctAnswers);
+			return game;
+		});
+		timer.schedule(()->{
+			ChannelGame game=games.get(channelId);
+			if(game!=null&&game.remove(correctAnswers)) {
+				chan.sendMessage("Nobody got the answer this time. Sad.").queue();
+				removeIfEmpty(channelId);
+			}
+		}, QUESTION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	/**
+	 * gets the name of the scoreboard containing the correct answers in a guild
+	 * @param guild the guild
+	 * @return the name of the scoreboard
+	 */
+	public static String getScoreboard(Guild guild) {
+		return GLOBAL_SCOREBOARD+"."+guild.getId();
+	}
+	private static void removeIfEmpty(long channelId) {
+		games.computeIfPresent(channelId, (id,game)->game.questions.isEmpty()?null:game);
 	}
-	
 	@Override
 	public void onGuildMessageReceived(GuildMessageReceivedEvent event) {
-		if(questions.containsKey(event.getChannel().getId())) {
-			synchronized (getClass()) {
-				Set<String> toDelete=null;
-				for (Set<String> answers : questions.get(event.getChannel().getId())) {
-					if(answers.contains((event.getMessage().getContentDisplay().toLowerCase()))){
-						event.getChannel().sendMessage(event.getMember().getEffectiveName()+" got it!").queue();
-						toDelete=answers;
-					}
-				}
-				if(toDelete!=null) {
-					questions.get(event.getChannel().getId()).remove(toDelete);
-					if(questions.get(event.getChannel().getId()).isEmpty()) {
-						questions.remove(event.getChannel().getId());
-						if(questions.isEmpty()) {
-							timer.cancel();
-							timer.purge();
-							removeListener(jda);
-						}
-					}
-				}
-			}
+		long channelId=event.getChannel().getIdLong();
+		ChannelGame game=games.get(channelId);
+		if(game==null) {
+			return;
+		}
+		Set<String> question=game.answerIndex.get(event.getMessage().getContentDisplay().toLowerCase());
+		//only one message can remove the question so only the first correct answer counts
+		if(question!=null&&game.remove(question)) {
+			event.getChannel().sendMessage(event.getMember().getEffectiveName()+" got it!").queue();
+			removeIfEmpty(channelId);
+			String userId=event.getAuthor().getId();
+			BotData.STORAGE.incrementScoreForUser(GLOBAL_SCOREBOARD, userId, 1);
+			BotData.STORAGE.incrementScoreForUser(getScoreboard(event.getGuild()), userId, 1);
 		}
 	}
-	private static void removeListener(JDA jda) {
-		TriviaListener listener=listeners.get(jda);
-		if(listener!=null) {
-			jda.removeEventListener(listener);
-			listener.timer.cancel();
-			listeners.remove(jda);
+
+	/**
+	 * the open questions of a channel
+	 */
+	private static final class ChannelGame{
+		private final Set<Set<String>> questions=ConcurrentHashMap.newKeySet();
+		private final Map<String, Set<String>> answerIndex=new ConcurrentHashMap<>();
+		private void add(Set<String> correctAnswers) {
+			questions.add(correctAnswers);
+			for (String answer : correctAnswers) {
+				answerIndex.put(answer, correctAnswers);
+			}
+		}
+		/**
+		 * removes a question
+		 * @param correctAnswers the correct answers of the question
+		 * @return <code>true</code> if the question was open
+		 */
+		private boolean remove(Set<String> correctAnswers) {
+			if(!questions.remove(correctAnswers)) {
+				return false;
+			}
+			for (String answer : correctAnswers) {
+				answerIndex.remove(answer, correctAnswers);
+			}
+			return true;
 		}
-		
 	}
 }
@@ -18,9 +18,25 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +51,14 @@ public class PropertyStorage implements Storage {
 	
 	private static final Logger LOG=LoggerFactory.getLogger(PropertyStorage.class);
 	private static final String FILE_SUFFIX=".properties";
+	private static final String GLOBAL_FILE_NAME="NightDream"+FILE_SUFFIX;
+	private static final String TEMP_FILE_SUFFIX=".tmp";
+	private static final String GUILD_FILE_PREFIX="Guild";
+	private static final String SHARDED_LAYOUT="sharded";
+	private static final String SHARDED_GUILD_DIR="guilds";
+	private static final String SCORE_DIR=SCORE_UNIT_PREFIX.substring(0, SCORE_UNIT_PREFIX.length()-1);
+	private static final long SCORE_SAVE_DELAY_SECONDS=5;
+	private static final Pattern GUILD_FILE_REGEX=Pattern.compile(Pattern.quote(GUILD_FILE_PREFIX)+"\\d+"+Pattern.quote(FILE_SUFFIX));
 	
 	private Properties defaultProps;
 	private Properties globalProps;
@@ -42,6 +66,23 @@ public class PropertyStorage implements Storage {
 	
 	private Map<String, Properties> units=new HashMap<>();
 	
+	/**
+	 * <code>null</code> if the layout has not been checked since the last reload
+	 */
+	private volatile Boolean sharded;
+	private final Object layoutLock=new Object();
+	
+	/**
+	 * loaded scoreboards, also used as lock for all scoreboard operations
+	 */
+	private final Map<String, ScoreSkipList> scoreBoards=new HashMap<>();
+	private final Set<String> dirtyScoreBoards=new HashSet<>();
+	/**
+	 * lock for writing scoreboard files, acquired before {@link PropertyStorage#scoreBoards}
+	 */
+	private final Object scoreFileLock=new Object();
+	private ScheduledExecutorService scoreSaver;
+	
 	@Override
 	public String read(String unit,String subUnit, String key, String defaultValue, String... defaultSubUnits) {
 		return read(unit,key+"."+subUnit,defaultValue);
@@ -115,11 +156,16 @@ public class PropertyStorage implements Storage {
 	}
 	@Override
 	public void reload() {
+		flushScores();
+		synchronized(scoreBoards) {
+			scoreBoards.clear();
+		}
 		globalProps=null;
 		getGlobalProperties();
 		defaultProps=loadGuildDefaultProperties();
 		guildProps.clear();
 		units.clear();
+		sharded=null;
 	}
 	@Override
 	public void reload(Guild guild) {
@@ -142,7 +188,7 @@ public class PropertyStorage implements Storage {
 	 * @return the Properties
 	 */
 	private Properties loadGuildSpecificProperties(Guild g) {
-		return loadPropertiesWithoutGenerating("Guild"+g.getId()+FILE_SUFFIX, getDefaultProperties());
+		return loadPropertiesWithoutGenerating(getGuildFileName(g.getId()), getDefaultProperties());
 	}
 	/**
 	 * saves all the Properties of a Guild
@@ -150,7 +196,111 @@ public class PropertyStorage implements Storage {
 	 * @param g the {@link Guild}
 	 */
 	private void saveGuildSpecificProperties(Properties props,Guild g) {
-		saveProperties("Guild"+g.getId()+FILE_SUFFIX, props, "Guild specific Properties for Guild "+g.getName());
+		saveProperties(getGuildFileName(g.getId()), props, "Guild specific Properties for Guild "+g.getName());
+	}
+	/**
+	 * checks if guild specific Properties should be stored in hashed subdirectories<br>
+	 * Guild specific property files that are still stored in the other layout are converted.
+	 * @return <code>true</code> if the sharded layout is used, else <code>false</code>
+	 * @see BotData#getGuildFileLayout()
+	 */
+	private boolean isSharded() {
+		Boolean current=sharded;
+		if(current==null) {
+			synchronized(layoutLock) {
+				current=sharded;
+				if(current==null) {
+					current=SHARDED_LAYOUT.equalsIgnoreCase(BotData.getGuildFileLayout());
+					if(current.booleanValue()) {
+						convertToShardedLayout();
+					}else {
+						convertToFlatLayout();
+					}
+					sharded=current;
+				}
+			}
+		}
+		return current.booleanValue();
+	}
+	/**
+	 * gets the name of the file(path relative to the directory of the Bot) where the Properties of a Guild are stored
+	 * @param guildId the ISnowflake ID of the {@link Guild}
+	 * @return the path of the file relative to the directory of the Bot
+	 */
+	private String getGuildFileName(String guildId) {
+		String fileName=GUILD_FILE_PREFIX+guildId+FILE_SUFFIX;
+		if(isSharded()) {
+			fileName=getShardedGuildDirectory(guildId)+File.separator+fileName;
+		}
+		return fileName;
+	}
+	/**
+	 * gets the hashed subdirectory(relative to the directory of the Bot) for the Properties of a Guild in the sharded layout
+	 * @param guildId the ISnowflake ID of the {@link Guild}
+	 * @return the path of the directory relative to the directory of the Bot
+	 */
+	private static String getShardedGuildDirectory(String guildId) {
+		return SHARDED_GUILD_DIR+File.separator+String.format("%02x", guildId.hashCode()&0xFF);
+	}
+	/**
+	 * moves all guild specific property files from the data directory into their hashed subdirectories<br>
+	 * This is done automatically if the sharded layout is enabled and can be done multiple times without changing already converted files.
+	 * @return the number of converted files
+	 */
+	public int convertToShardedLayout() {
+		File[] flatFiles=BotData.DATA_DIR.listFiles((dir,name)->GUILD_FILE_REGEX.matcher(name).matches());
+		if(flatFiles==null) {
+			return 0;
+		}
+		int converted=0;
+		for (File file : flatFiles) {
+			String guildId=file.getName().substring(GUILD_FILE_PREFIX.length(),file.getName().length()-FILE_SUFFIX.length());
+			File target=new File(new File(BotData.DATA_DIR,getShardedGuildDirectory(guildId)),file.getName());
+			try {
+				Files.createDirectories(target.getParentFile().toPath());
+				Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				converted++;
+			} catch (IOException e) {
+				LOG.warn("Cannot move {} to {}", file.getAbsolutePath(), target.getAbsolutePath(), e);
+			}
+		}
+		if(converted>0) {
+			LOG.info("Converted {} guild property files to the sharded layout", converted);
+		}
+		return converted;
+	}
+	/**
+	 * moves all guild specific property files from their hashed subdirectories back into the data directory<br>
+	 * This is done automatically if the sharded layout is disabled and can be done multiple times without changing already converted files.
+	 * @return the number of converted files
+	 */
+	public int convertToFlatLayout() {
+		File[] shardDirs=new File(BotData.DATA_DIR,SHARDED_GUILD_DIR).listFiles(File::isDirectory);
+		if(shardDirs==null) {
+			return 0;
+		}
+		int converted=0;
+		for (File shardDir : shardDirs) {
+			File[] shardedFiles=shardDir.listFiles((dir,name)->GUILD_FILE_REGEX.matcher(name).matches());
+			if(shardedFiles!=null) {
+				for (File file : shardedFiles) {
+					File target=new File(BotData.DATA_DIR,file.getName());
+					try {
+						Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+						converted++;
+					} catch (IOException e) {
+						LOG.warn("Cannot move {} to {}", file.getAbsolutePath(), target.getAbsolutePath(), e);
+					}
+				}
+			}
+			if(!shardDir.delete()&&shardDir.exists()) {
+				LOG.debug("Cannot delete directory {}", shardDir.getAbsolutePath());
+			}
+		}
+		if(converted>0) {
+			LOG.info("Converted {} guild property files to the flat layout", converted);
+		}
+		return converted;
 	}
 	/**
 	 * saves all the Properties of all {@link Guild}s<br>
@@ -195,7 +345,7 @@ public class PropertyStorage implements Storage {
 	public void setGlobalProperty(String key,String value) {
 		Properties props=getGlobalProperties();
 		props.setProperty(key, value);
-		saveProperties("NightDream.properties", props, "Nightdream Properties");
+		saveProperties(GLOBAL_FILE_NAME, props, "Nightdream Properties");
 	}
 	/**
 	 * gets all Properties that are valid for the whole Bot
@@ -203,7 +353,7 @@ public class PropertyStorage implements Storage {
 	 */
 	private Properties getGlobalProperties() {
 		if(globalProps==null) {
-			globalProps=loadProperties("NightDream.properties", BotData.GLOBAL_DEFAULTS, "Nightdream Properties");
+			globalProps=loadProperties(GLOBAL_FILE_NAME, BotData.GLOBAL_DEFAULTS, "Nightdream Properties");
 		}
 		return globalProps;
 	}
@@ -225,11 +375,7 @@ public class PropertyStorage implements Storage {
 				LOG.warn("Cannot load Properties from file: {}", file.getAbsolutePath(),e);
 			}
 		}else {
-			try(Writer writer=new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8)){
-				props.store(writer,comment);
-			} catch (IOException e) {
-				LOG.warn("Cannot create file or save Properties: {}", file.getAbsolutePath(),e);
-			}
+			saveProperties(filename, props, comment);
 		}
 		return props;
 	}
@@ -258,11 +404,243 @@ public class PropertyStorage implements Storage {
 	 * @param comment a comment for the newly generated file
 	 */
 	public void saveProperties(String filename,Properties props, String comment) {
-		try(Writer writer=new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(new File(BotData.DATA_DIR,filename))), StandardCharsets.UTF_8.toString())){
+		File file=new File(BotData.DATA_DIR,filename);
+		if(!file.getParentFile().exists()) {
+			try {
+				Files.createDirectories(file.getParentFile().toPath());
+			} catch (IOException e) {
+				LOG.warn("Cannot create directory {}", file.getParentFile().getAbsolutePath(), e);
+			}
+		}
+		File tempFile=new File(file.getParentFile(),file.getName()+TEMP_FILE_SUFFIX);
+		try(Writer writer=new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(tempFile)), StandardCharsets.UTF_8.toString())){
 			props.store(writer,comment);
 		} catch (IOException e) {
-			// ignore
+			LOG.warn("Cannot create file or save Properties: {}", file.getAbsolutePath(),e);
+			return;
+		}
+		//replace the file at once so readers (e.g. snapshots) never see a partially written file
+		try {
+			try {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}catch(AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			LOG.warn("Cannot create file or save Properties: {}", file.getAbsolutePath(),e);
+		}
+	}
+	/**
+	 * {@inheritDoc}<br>
+	 * Every property file in the directory of the Bot(and its subdirectories) except the global Properties is a unit.
+	 * Guild specific property files are passed with the name of the file as unit, independent of the layout.
+	 * The units are read from the files so the Properties that are currently loaded are not blocked.
+	 * Scoreboards are saved before so the files contain the current scores.
+	 */
+	@Override
+	public void forEachEntry(Consumer<StorageEntry> action) {
+		flushScores();
+		getUnitFiles().forEach((unit,fileName)->{
+			Properties props=loadPropertiesWithoutGenerating(fileName, new Properties());
+			for (String key : props.stringPropertyNames()) {
+				action.accept(new StorageEntry(unit, null, key, props.getProperty(key)));
+			}
+		});
+	}
+	/**
+	 * lists all property files except the global Properties
+	 * @return the name of every unit mapped to the name of its file(path relative to the directory of the Bot)
+	 */
+	private Map<String, String> getUnitFiles(){
+		//moves guild specific property files to the configured layout before they are listed
+		isSharded();
+		Path dataDir=BotData.DATA_DIR.toPath();
+		Map<String, String> unitFiles=new LinkedHashMap<>();
+		try(Stream<Path> walker=Files.walk(dataDir)){
+			walker.filter(path->path.getFileName().toString().endsWith(FILE_SUFFIX))
+					.filter(path->!path.equals(dataDir.resolve(GLOBAL_FILE_NAME)))
+					.forEach(path->{
+						String relative=dataDir.relativize(path).toString().replace(File.separatorChar, '/');
+						unitFiles.put(getUnitName(relative.substring(0,relative.length()-FILE_SUFFIX.length())), relative);
+					});
+		} catch (IOException e) {
+			LOG.warn("Cannot list property files in {}", dataDir, e);
+		}
+		return unitFiles;
+	}
+	/**
+	 * gets the name of a unit independent of the layout of guild specific property files
+	 * @param unit the name of the unit, may contain the directory of a guild specific property file
+	 * @return the name of the unit without the directory if it is a guild specific property file
+	 */
+	private static String getUnitName(String unit) {
+		String fileName=unit.substring(unit.lastIndexOf('/')+1);
+		return GUILD_FILE_REGEX.matcher(fileName+FILE_SUFFIX).matches()?fileName:unit;
+	}
+	/**
+	 * gets the name of the file(path relative to the directory of the Bot) where a unit is stored
+	 * @param unit the name of the unit
+	 * @return the path of the file relative to the directory of the Bot
+	 */
+	private String getUnitFileName(String unit) {
+		String unitName=getUnitName(unit);
+		if(GUILD_FILE_REGEX.matcher(unitName+FILE_SUFFIX).matches()) {
+			return getGuildFileName(unitName.substring(GUILD_FILE_PREFIX.length()));
+		}
+		return unitName.replace('/', File.separatorChar)+FILE_SUFFIX;
+	}
+	/**
+	 * {@inheritDoc}<br>
+	 * Entries of sub-units are stored with the key and the sub-unit separated by a dot.
+	 */
+	@Override
+	public StorageEntry splitSubUnit(StorageEntry entry) {
+		int separatorIndex=entry.getKey().indexOf('.');
+		if(entry.getSubUnit()!=null||separatorIndex==-1||entry.getUnit().startsWith(SCORE_UNIT_PREFIX)) {
+			return entry;
+		}
+		return new StorageEntry(entry.getUnit(), entry.getKey().substring(separatorIndex+1), entry.getKey().substring(0,separatorIndex), entry.getValue());
+	}
+	/**
+	 * {@inheritDoc}<br>
+	 * Every affected property file is written only once.
+	 * Changed scoreboards are saved before the import and are not saved again afterwards so the imported scores are not overwritten.
+	 */
+	@Override
+	public void importEntries(Collection<StorageEntry> entries) {
+		writeEntries(entries, false);
+	}
+	/**
+	 * {@inheritDoc}<br>
+	 * Every property file is read once and only written if its content changes.
+	 */
+	@Override
+	public void replaceEntries(Collection<StorageEntry> entries) {
+		writeEntries(entries, true);
+	}
+	private void writeEntries(Collection<StorageEntry> entries,boolean replace) {
+		Map<String, Map<String,String>> byUnit=new LinkedHashMap<>();
+		for (StorageEntry entry : entries) {
+			String key=entry.getSubUnit()==null?entry.getKey():entry.getKey()+"."+entry.getSubUnit();
+			byUnit.computeIfAbsent(getUnitName(entry.getUnit()), k->new LinkedHashMap<>()).put(key, entry.getValue());
+		}
+		synchronized(scoreFileLock) {
+			synchronized(scoreBoards) {
+				flushScores();
+				//the scoreboards are loaded again from the imported files
+				scoreBoards.clear();
+				if(replace) {
+					for (String unit : getUnitFiles().keySet()) {
+						byUnit.putIfAbsent(unit, Collections.emptyMap());
+					}
+				}
+				byUnit.forEach((unit,values)->{
+					String fileName=getUnitFileName(unit);
+					Properties current=loadPropertiesWithoutGenerating(fileName, new Properties());
+					Properties props=new Properties();
+					if(!replace) {
+						props.putAll(current);
+					}
+					props.putAll(values);
+					if(!props.equals(current)) {
+						saveProperties(fileName, props, "");
+					}
+				});
+			}
+		}
+		reload();
+	}
+	/**
+	 * {@inheritDoc}<br>
+	 * Scoreboards are kept in memory and saved to property files (in the directory <code>scores</code>) a few seconds after they have been changed.
+	 */
+	@Override
+	public long incrementScore(String board, String userId, long delta) {
+		synchronized(scoreBoards) {
+			long score=getScoreBoard(board).increment(userId, delta);
+			markDirty(board);
+			return score;
+		}
+	}
+	@Override
+	public List<ScoreEntry> getTopScores(String board, int count) {
+		synchronized(scoreBoards) {
+			return getScoreBoard(board).top(count);
+		}
+	}
+	@Override
+	public ScoreEntry getScore(String board, String userId) {
+		synchronized(scoreBoards) {
+			return getScoreBoard(board).get(userId);
+		}
+	}
+	@Override
+	public void removeScore(String board, String userId) {
+		synchronized(scoreBoards) {
+			getScoreBoard(board).remove(userId);
+			markDirty(board);
+		}
+	}
+	private static String getScoreFileName(String board) {
+		return SCORE_DIR+File.separator+board+FILE_SUFFIX;
+	}
+	/**
+	 * gets a scoreboard and loads it if necessary, the caller needs to hold the lock of {@link PropertyStorage#scoreBoards}
+	 * @param board the name of the scoreboard
+	 * @return the scoreboard
+	 */
+	private ScoreSkipList getScoreBoard(String board) {
+		return scoreBoards.computeIfAbsent(board, name->{
+			ScoreSkipList scores=new ScoreSkipList();
+			Properties props=loadPropertiesWithoutGenerating(getScoreFileName(name), new Properties());
+			for (String userId : props.stringPropertyNames()) {
+				try {
+					scores.increment(userId, Long.parseLong(props.getProperty(userId)));
+				}catch(NumberFormatException e) {
+					LOG.warn("Invalid score of user {} in scoreboard {}", userId, name);
+				}
+			}
+			return scores;
+		});
+	}
+	/**
+	 * schedules saving a scoreboard, the caller needs to hold the lock of {@link PropertyStorage#scoreBoards}
+	 * @param board the name of the scoreboard
+	 */
+	private void markDirty(String board) {
+		if(dirtyScoreBoards.add(board)) {
+			if(scoreSaver==null) {
+				scoreSaver=Executors.newSingleThreadScheduledExecutor(r->{
+					Thread t=new Thread(r, "score-saver");
+					t.setDaemon(true);
+					return t;
+				});
+				Runtime.getRuntime().addShutdownHook(new Thread(this::flushScores));
+			}
+			scoreSaver.schedule(this::flushScores, SCORE_SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+	/**
+	 * saves all changed scoreboards
+	 */
+	public void flushScores() {
+		//scores copied by one thread must not be saved after newer scores saved by another thread
+		synchronized(scoreFileLock) {
+			Map<String, Map<String, Long>> toSave=new HashMap<>();
+			synchronized(scoreBoards) {
+				for (String board : dirtyScoreBoards) {
+					ScoreSkipList scores=scoreBoards.get(board);
+					if(scores!=null) {
+						toSave.put(board, scores.getScores());
+					}
+				}
+				dirtyScoreBoards.clear();
+			}
+			toSave.forEach((board,scores)->{
+				Properties props=new Properties();
+				scores.forEach((userId,score)->props.setProperty(userId, String.valueOf(score)));
+				saveProperties(getScoreFileName(board), props, "Scoreboard "+board);
+			});
 		}
 	}
-	
 }
@@ -7,11 +7,22 @@
 
 package io.github.jdiscordbots.nightdream.storage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
 import io.github.jdiscordbots.nightdream.util.BotData;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.Tuple;
 
 public class RedisStorage implements Storage{
 
+	private static final int SCAN_BATCH_SIZE=1000;
+	private static final String SCORE_KEY_PREFIX="scores.";
+	
 	private final Jedis jedis;
 	
 	public RedisStorage() {
@@ -35,7 +46,7 @@ public class RedisStorage implements Storage{
 		}
 	}
 	
-	private String read(String key,String defaultValue) {
+	private synchronized String read(String key,String defaultValue) {
 		String value=jedis.get(key);
 		if(value==null||"".equals(value)) {
 			value=defaultValue;
@@ -56,7 +67,7 @@ public class RedisStorage implements Storage{
 		return read(getKey(unit,key),defaultValue);
 	}
 
-	private void write(String key,String value) {
+	private synchronized void write(String key,String value) {
 		jedis.set(key, value);
 	}
 	@Override
@@ -69,7 +80,7 @@ public class RedisStorage implements Storage{
 		write(getKey(unit,key),value);
 	}
 
-	private void remove(String key) {
+	private synchronized void remove(String key) {
 		jedis.del(key);
 	}
 	
@@ -82,4 +93,81 @@ public class RedisStorage implements Storage{
 	public void remove(String unit, String key) {
 		remove(getKey(unit,key));
 	}
+	/**
+	 * {@inheritDoc}<br>
+	 * The keys are scanned in batches and the connection is only locked per batch so writes are not blocked for the whole iteration.
+	 * Keys containing String values are passed with the part of the key before the first dot as unit.
+	 * The members of the sorted sets of scoreboards are passed as scores.
+	 */
+	@Override
+	public void forEachEntry(Consumer<StorageEntry> action) {
+		ScanParams params=new ScanParams().count(SCAN_BATCH_SIZE);
+		String cursor=ScanParams.SCAN_POINTER_START;
+		do {
+			synchronized(this) {
+				ScanResult<String> result=jedis.scan(cursor, params);
+				cursor=result.getCursor();
+				for (String key : result.getResult()) {
+					int separatorIndex=key.indexOf('.');
+					String type=jedis.type(key);
+					if(key.startsWith(SCORE_KEY_PREFIX)&&"zset".equals(type)) {
+						String unit=SCORE_UNIT_PREFIX+key.substring(SCORE_KEY_PREFIX.length());
+						for (Tuple score : jedis.zrangeWithScores(key, 0, -1)) {
+							action.accept(new StorageEntry(unit, null, score.getElement(), String.valueOf((long)score.getScore())));
+						}
+					}else if(separatorIndex!=-1&&"string".equals(type)) {
+						String value=jedis.get(key);
+						if(value!=null) {
+							action.accept(new StorageEntry(key.substring(0,separatorIndex), null, key.substring(separatorIndex+1), value));
+						}
+					}
+				}
+			}
+		}while(!ScanParams.SCAN_POINTER_START.equals(cursor));
+	}
+	/**
+	 * {@inheritDoc}<br>
+	 * Entries of sub-units are stored with the sub-unit and the key separated by a dot.
+	 */
+	@Override
+	public StorageEntry splitSubUnit(StorageEntry entry) {
+		int separatorIndex=entry.getKey().lastIndexOf('.');
+		if(entry.getSubUnit()!=null||separatorIndex==-1||entry.getUnit().startsWith(SCORE_UNIT_PREFIX)) {
+			return entry;
+		}
+		return new StorageEntry(entry.getUnit(), entry.getKey().substring(0,separatorIndex), entry.getKey().substring(separatorIndex+1), entry.getValue());
+	}
+	/**
+	 * {@inheritDoc}<br>
+	 * Every scoreboard is stored in a sorted set, users with the same score are ordered by Redis (lexicographically by their IDs, descending).
+	 */
+	@Override
+	public synchronized long incrementScore(String board, String userId, long delta) {
+		return jedis.zincrby(SCORE_KEY_PREFIX+board, delta, userId).longValue();
+	}
+	@Override
+	public synchronized List<ScoreEntry> getTopScores(String board, int count) {
+		List<ScoreEntry> top=new ArrayList<>(count);
+		if(count<=0) {
+			return top;
+		}
+		Set<Tuple> scores=jedis.zrevrangeWithScores(SCORE_KEY_PREFIX+board, 0, count-1L);
+		for (Tuple score : scores) {
+			top.add(new ScoreEntry(score.getElement(), (long)score.getScore(), top.size()+1));
+		}
+		return top;
+	}
+	@Override
+	public synchronized ScoreEntry getScore(String board, String userId) {
+		Long rank=jedis.zrevrank(SCORE_KEY_PREFIX+board, userId);
+		Double score=jedis.zscore(SCORE_KEY_PREFIX+board, userId);
+		if(rank==null||score==null) {
+			return null;
+		}
+		return new ScoreEntry(userId, score.longValue(), rank+1);
+	}
+	@Override
+	public synchronized void removeScore(String board, String userId) {
+		jedis.zrem(SCORE_KEY_PREFIX+board, userId);
+	}
 }
@@ -17,13 +17,16 @@ import java.net.URLClassLoader;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -50,9 +53,27 @@ public class SQLStorage implements Storage {
 	private static final String UPDATE_FORMAT="UPDATE %s SET %s = ? WHERE "+DEFAULT_KEY_NAME+" = ?;";
 	private static final String DELETE_FORMAT="DELETE FROM %s WHERE %s = ?;";
 	private static final String CREATE_FORMAT="CREATE TABLE  %s ("+DEFAULT_KEY_NAME+" varchar(100) primary key,"+DEFAULT_VALUE_NAME+" varchar(100));";
+	private static final String SCORE_TABLE="scores";
+	private static final String CREATE_SCORE_TABLE="CREATE TABLE "+SCORE_TABLE+" (board varchar(100), user_id varchar(100), score bigint, primary key(board,user_id));";
+	/**
+	 * covers the query of the top scores so it only reads the index entries of the returned scores
+	 */
+	private static final String CREATE_SCORE_INDEX="CREATE INDEX "+SCORE_TABLE+"_by_rank ON "+SCORE_TABLE+" (board, score, user_id);";
+	private static final String INCREMENT_SCORE="UPDATE "+SCORE_TABLE+" SET score = score + ? WHERE board = ? AND user_id = ?;";
+	private static final String INSERT_SCORE="INSERT INTO "+SCORE_TABLE+" (board,user_id,score) VALUES (?, ?, ?);";
+	private static final String SELECT_SCORE="SELECT score FROM "+SCORE_TABLE+" WHERE board = ? AND user_id = ?;";
+	private static final String SELECT_TOP_SCORES="SELECT user_id, score FROM "+SCORE_TABLE+" WHERE board = ? ORDER BY score DESC, user_id ASC;";
+	private static final String SELECT_BOARD_SCORES="SELECT user_id, score FROM "+SCORE_TABLE+" WHERE board = ?;";
+	private static final String SELECT_ALL_SCORES="SELECT board, user_id, score FROM "+SCORE_TABLE+";";
+	private static final String DELETE_SCORE="DELETE FROM "+SCORE_TABLE+" WHERE board = ? AND user_id = ?;";
 	private static final String CREATE_SUB_FORMAT="CREATE TABLE %s ("+DEFAULT_KEY_NAME+" varchar(100) primary key,%s);";
 
 	private final Statement stmt;
+	private boolean scoreTableCreated;
+	/**
+	 * loaded scoreboards used for calculating ranks
+	 */
+	private final Map<String, ScoreSkipList> rankIndexes=new HashMap<>();
 	private void close(AutoCloseable toClose) {
 		if(toClose!=null) {
 			try{
@@ -77,7 +98,7 @@ public class SQLStorage implements Storage {
 		}
 	}
 	public SQLStorage() throws SQLException {
-		URL[] urls=Stream.of(BotData.DATA_DIR.list()).map(SQLStorage::getURL).toArray(URL[]::new);
+		URL[] urls=Stream.of(BotData.DATA_DIR.list((dir,name)->name.endsWith(".jar"))).map(SQLStorage::getURL).toArray(URL[]::new);
 		URLClassLoader loader=AccessController.doPrivileged((PrivilegedAction<URLClassLoader>)(() -> new URLClassLoader(urls)));//NOSONAR this cast is necessary
 		ServiceLoader<Driver> drivers = ServiceLoader.load(java.sql.Driver.class, loader);
 		Properties info=new Properties();
@@ -211,7 +232,7 @@ public class SQLStorage implements Storage {
 		try {
 			PreparedStatement selector=prepareStatement(SELECT_FORMAT,DEFAULT_VALUE_NAME,unit);
 			selector.setString(1, key);
-			PreparedStatement insertStmt=prepareStatement(INSERT_FORMAT,unit,key);
+			PreparedStatement insertStmt=prepareStatement(INSERT_FORMAT,unit,DEFAULT_VALUE_NAME);
 			insertStmt.setString(1, key);
 			insertStmt.setString(2, value);
 			PreparedStatement updateStmt=prepareStatement(UPDATE_FORMAT,unit,DEFAULT_VALUE_NAME);
@@ -247,11 +268,12 @@ public class SQLStorage implements Storage {
 		}
 	}
 	@Override
-	public void reload() {
+	public synchronized void reload() {
 		for (PreparedStatement pStmt : stmtBuffer.values()) {
 			close(pStmt);
 		}
 		stmtBuffer.clear();
+		rankIndexes.clear();
 	}
 	@Override
 	public void reload(Guild guild) {
@@ -266,4 +288,209 @@ public class SQLStorage implements Storage {
 			stmtBuffer.remove(rem);
 		}
 	}
+	/**
+	 * {@inheritDoc}<br>
+	 * Every table is a unit. Tables with a value column contain entries without sub-units, every other column is a sub-unit.
+	 * Scores are read from the table containing the scoreboards.
+	 */
+	@Override
+	public void forEachEntry(Consumer<StorageEntry> action) {
+		List<String> tables=new ArrayList<>();
+		try(ResultSet tableSet=connection.getMetaData().getTables(null, null, "%", new String[] {"TABLE"})){
+			while(tableSet.next()) {
+				tables.add(tableSet.getString("TABLE_NAME"));
+			}
+		} catch (SQLException e) {
+			LOG.warn(DB_READ_FAIL_MSG, e);
+			return;
+		}
+		for (String table : tables) {
+			if(SCORE_TABLE.equalsIgnoreCase(table)) {
+				forEachScore(action);
+				continue;
+			}
+			try(Statement selectAll=connection.createStatement();
+					ResultSet set=selectAll.executeQuery("SELECT * FROM "+table)){
+				ResultSetMetaData meta=set.getMetaData();
+				while(set.next()) {
+					String key=set.getString(DEFAULT_KEY_NAME);
+					for (int i = 1; i <= meta.getColumnCount(); i++) {
+						String column=meta.getColumnName(i);
+						String value=set.getString(i);
+						if(!DEFAULT_KEY_NAME.equalsIgnoreCase(column)&&value!=null&&!"".equals(value)) {
+							action.accept(new StorageEntry(table, DEFAULT_VALUE_NAME.equalsIgnoreCase(column)?null:column, key, value));
+						}
+					}
+				}
+			} catch (SQLException e) {
+				LOG.warn(DB_READ_FAIL_MSG, e);
+			}
+		}
+	}
+	private void forEachScore(Consumer<StorageEntry> action) {
+		try(Statement selectAll=connection.createStatement();
+				ResultSet set=selectAll.executeQuery(SELECT_ALL_SCORES)){
+			while(set.next()) {
+				action.accept(new StorageEntry(SCORE_UNIT_PREFIX+set.getString(1), null, set.getString(2), String.valueOf(set.getLong(3))));
+			}
+		} catch (SQLException e) {
+			LOG.warn(DB_READ_FAIL_MSG, e);
+		}
+	}
+	private void createScoreTable() {
+		if(!scoreTableCreated) {
+			try {
+				stmt.execute(CREATE_SCORE_TABLE);
+				stmt.execute(CREATE_SCORE_INDEX);
+			}catch(SQLException ignore) {
+				//ignore if e.g. already exists, if any other error, it will fail later
+			}
+			scoreTableCreated=true;
+		}
+	}
+	private boolean updateScore(String board, String userId, long delta) throws SQLException {
+		PreparedStatement updateStmt=prepareStatement(INCREMENT_SCORE);
+		updateStmt.setLong(1, delta);
+		updateStmt.setString(2, board);
+		updateStmt.setString(3, userId);
+		return updateStmt.executeUpdate()>0;
+	}
+	/**
+	 * gets the rank index of a scoreboard and loads it from the database if necessary, the caller needs to hold the lock of this object
+	 * @param board the name of the scoreboard
+	 * @return the rank index
+	 * @throws SQLException if the scoreboard cannot be loaded
+	 */
+	private ScoreSkipList getRankIndex(String board) throws SQLException {
+		ScoreSkipList index=rankIndexes.get(board);
+		if(index==null) {
+			index=new ScoreSkipList();
+			PreparedStatement selectStmt=prepareStatement(SELECT_BOARD_SCORES);
+			selectStmt.setString(1, board);
+			try(ResultSet set=selectStmt.executeQuery()){
+				while(set.next()) {
+					index.increment(set.getString(1), set.getLong(2));
+				}
+			}
+			rankIndexes.put(board, index);
+		}
+		return index;
+	}
+	/**
+	 * sets the score of a user in the rank index of a scoreboard if it has been loaded
+	 * @param board the name of the scoreboard
+	 * @param userId the ISnowflake ID of the user
+	 * @param score the score stored in the database
+	 */
+	private void updateRankIndex(String board,String userId,long score) {
+		ScoreSkipList index=rankIndexes.get(board);
+		if(index!=null) {
+			ScoreEntry current=index.get(userId);
+			if(current==null||current.getScore()!=score) {
+				index.increment(userId, score-(current==null?0:current.getScore()));
+			}
+		}
+	}
+	/**
+	 * {@inheritDoc}<br>
+	 * All scoreboards are stored in one table indexed by scoreboard, score and user.
+	 * The top scores are read from the start of the index.
+	 * Ranks are calculated in <code>O(log n)</code> using an indexable skip list per scoreboard that is loaded from the table when a rank is read the first time.
+	 */
+	@Override
+	public synchronized long incrementScore(String board, String userId, long delta) {
+		createScoreTable();
+		try {
+			if(!updateScore(board, userId, delta)) {
+				try {
+					PreparedStatement insertStmt=prepareStatement(INSERT_SCORE);
+					insertStmt.setString(1, board);
+					insertStmt.setString(2, userId);
+					insertStmt.setLong(3, delta);
+					insertStmt.execute();
+				}catch(SQLException e) {
+					//the row may have been inserted by another connection in the meantime
+					updateScore(board, userId, delta);
+				}
+			}
+			PreparedStatement selectStmt=prepareStatement(SELECT_SCORE);
+			selectStmt.setString(1, board);
+			selectStmt.setString(2, userId);
+			long score;
+			try(ResultSet set=selectStmt.executeQuery()){
+				score=set.next()?set.getLong(1):delta;
+			}
+			updateRankIndex(board, userId, score);
+			return score;
+		}catch (SQLException e) {
+			//the rank index may not contain the change
+			rankIndexes.remove(board);
+			LOG.warn(DB_WRITE_FAIL_MSG, e);
+			return 0;
+		}
+	}
+	@Override
+	public synchronized List<ScoreEntry> getTopScores(String board, int count) {
+		List<ScoreEntry> top=new ArrayList<>();
+		if(count<=0) {
+			return top;
+		}
+		createScoreTable();
+		try {
+			PreparedStatement selectStmt=prepareStatement(SELECT_TOP_SCORES);
+			selectStmt.setString(1, board);
+			selectStmt.setMaxRows(count);
+			try(ResultSet set=selectStmt.executeQuery()){
+				while(set.next()&&top.size()<count) {
+					top.add(new ScoreEntry(set.getString(1), set.getLong(2), top.size()+1L));
+				}
+			}
+		}catch (SQLException e) {
+			LOG.warn(DB_READ_FAIL_MSG, e);
+		}
+		return top;
+	}
+	@Override
+	public synchronized ScoreEntry getScore(String board, String userId) {
+		createScoreTable();
+		try {
+			PreparedStatement selectStmt=prepareStatement(SELECT_SCORE);
+			selectStmt.setString(1, board);
+			selectStmt.setString(2, userId);
+			long score;
+			try(ResultSet set=selectStmt.executeQuery()){
+				if(!set.next()) {
+					rankIndexes.computeIfPresent(board, (name,index)->{
+						index.remove(userId);
+						return index;
+					});
+					return null;
+				}
+				score=set.getLong(1);
+			}
+			ScoreSkipList index=getRankIndex(board);
+			//the score may have been changed by another connection
+			updateRankIndex(board, userId, score);
+			return index.get(userId);
+		}catch (SQLException e) {
+			LOG.warn(DB_READ_FAIL_MSG, e);
+			return null;
+		}
+	}
+	@Override
+	public synchronized void removeScore(String board, String userId) {
+		createScoreTable();
+		try {
+			PreparedStatement deleteStmt=prepareStatement(DELETE_SCORE);
+			deleteStmt.setString(1, board);
+			deleteStmt.setString(2, userId);
+			deleteStmt.execute();
+			rankIndexes.computeIfPresent(board, (name,index)->{
+				index.remove(userId);
+				return index;
+			});
+		}catch (SQLException e) {
+			LOG.warn(DB_WRITE_FAIL_MSG, e);
+		}
+	}
 }
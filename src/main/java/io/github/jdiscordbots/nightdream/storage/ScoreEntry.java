@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: ScoreEntry.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.storage;
+
+/**
+ * the score and rank of a user on a scoreboard
+ * @see Storage#incrementScore(String, String, long)
+ */
+public final class ScoreEntry {
+	private final String userId;
+	private final long score;
+	private final long rank;
+
+	/**
+	 * creates an entry
+	 * @param userId the ID of the user
+	 * @param score the score of the user
+	 * @param rank the rank of the user, starting with <code>1</code>
+	 */
+	public ScoreEntry(String userId, long score, long rank) {
+		this.userId = userId;
+		this.score = score;
+		this.rank = rank;
+	}
+	/**
+	 * gets the ID of the user
+	 * @return the ID of the user
+	 */
+	public String getUserId() {
+		return userId;
+	}
+	/**
+	 * gets the score of the user
+	 * @return the score
+	 */
+	public long getScore() {
+		return score;
+	}
+	/**
+	 * gets the rank of the user
+	 * @return the rank, <code>1</code> is the highest score
+	 */
+	public long getRank() {
+		return rank;
+	}
+	@Override
+	public String toString() {
+		return "#"+rank+" "+userId+": "+score;
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: ScoreSkipList.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * a scoreboard stored in an indexable skip list<br>
+ * Users are ordered by their score (highest first) and their ID.
+ * Every link stores the number of users it skips so ranks can be calculated in <code>O(log n)</code>.<br>
+ * This class is not thread-safe.
+ */
+final class ScoreSkipList {
+	private static final int MAX_LEVEL=32;
+	private static final double LEVEL_PROBABILITY=0.25;
+
+	private final Node head=new Node(null, 0, MAX_LEVEL);
+	private final Map<String, Node> users=new HashMap<>();
+	private int level=1;
+	private int size;
+
+	/**
+	 * adds a value to the score of a user
+	 * @param userId the ID of the user
+	 * @param delta the value to add
+	 * @return the new score
+	 */
+	long increment(String userId,long delta) {
+		Node old=users.get(userId);
+		long score=delta;
+		if(old!=null) {
+			score+=old.score;
+			delete(old);
+		}
+		users.put(userId, insert(userId, score));
+		return score;
+	}
+	/**
+	 * removes a user
+	 * @param userId the ID of the user
+	 */
+	void remove(String userId) {
+		Node node=users.remove(userId);
+		if(node!=null) {
+			delete(node);
+		}
+	}
+	/**
+	 * gets the score and rank of a user
+	 * @param userId the ID of the user
+	 * @return the entry or <code>null</code> if the user has no score
+	 */
+	ScoreEntry get(String userId) {
+		Node target=users.get(userId);
+		if(target==null) {
+			return null;
+		}
+		long rank=0;
+		Node x=head;
+		for (int i = level-1; i >= 0; i--) {
+			while(x.next[i]!=null&&(x.next[i]==target||isBefore(x.next[i], target.score, target.userId))) {
+				rank+=x.span[i];
+				x=x.next[i];
+			}
+			if(x==target) {
+				break;
+			}
+		}
+		return new ScoreEntry(userId, target.score, rank);
+	}
+	/**
+	 * gets the users with the highest scores
+	 * @param count the maximum number of users
+	 * @return the entries, highest score first
+	 */
+	List<ScoreEntry> top(int count){
+		List<ScoreEntry> entries=new ArrayList<>(Math.min(count, users.size()));
+		Node x=head.next[0];
+		for (int rank = 1; rank <= count&&x!=null; rank++) {
+			entries.add(new ScoreEntry(x.userId, x.score, rank));
+			x=x.next[0];
+		}
+		return entries;
+	}
+	/**
+	 * gets all scores
+	 * @return the scores by user ID
+	 */
+	Map<String, Long> getScores(){
+		Map<String, Long> scores=new HashMap<>();
+		users.forEach((userId,node)->scores.put(userId, node.score));
+		return scores;
+	}
+	private static boolean isBefore(Node node,long score,String userId) {
+		return node.score>score||(node.score==score&&node.userId.compareTo(userId)<0);
+	}
+	private static int randomLevel() {
+		int lvl=1;
+		while(lvl<MAX_LEVEL&&ThreadLocalRandom.current().nextDouble()<LEVEL_PROBABILITY) {
+			lvl++;
+		}
+		return lvl;
+	}
+	private Node insert(String userId,long score) {
+		Node[] update=new Node[MAX_LEVEL];
+		long[] rank=new long[MAX_LEVEL];
+		Node x=head;
+		for (int i = level-1; i >= 0; i--) {
+			rank[i]=i==level-1?0:rank[i+1];
+			while(x.next[i]!=null&&isBefore(x.next[i], score, userId)) {
+				rank[i]+=x.span[i];
+				x=x.next[i];
+			}
+			update[i]=x;
+		}
+		int lvl=randomLevel();
+		if(lvl>level) {
+			for (int i = level; i < lvl; i++) {
+				rank[i]=0;
+				update[i]=head;
+				head.span[i]=size;
+			}
+			level=lvl;
+		}
+		x=new Node(userId, score, lvl);
+		for (int i = 0; i < lvl; i++) {
+			x.next[i]=update[i].next[i];
+			update[i].next[i]=x;
+			x.span[i]=update[i].span[i]-(rank[0]-rank[i]);
+			update[i].span[i]=(rank[0]-rank[i])+1;
+		}
+		for (int i = lvl; i < level; i++) {
+			update[i].span[i]++;
+		}
+		size++;
+		return x;
+	}
+	private void delete(Node node) {
+		Node[] update=new Node[MAX_LEVEL];
+		Node x=head;
+		for (int i = level-1; i >= 0; i--) {
+			while(x.next[i]!=null&&isBefore(x.next[i], node.score, node.userId)) {
+				x=x.next[i];
+			}
+			update[i]=x;
+		}
+		for (int i = 0; i < level; i++) {
+			if(update[i].next[i]==node) {
+				update[i].span[i]+=node.span[i]-1;
+				update[i].next[i]=node.next[i];
+			}else {
+				update[i].span[i]--;
+			}
+		}
+		while(level>1&&head.next[level-1]==null) {
+			level--;
+		}
+		size--;
+	}
+
+	private static final class Node{
+		private final String userId;
+		private final long score;
+		private final Node[] next;
+		/**
+		 * the number of users between this node and the next node on every level (including the next node)
+		 */
+		private final long[] span;
+		private Node(String userId, long score, int level) {
+			this.userId = userId;
+			this.score = score;
+			next=new Node[level];
+			span=new long[level];
+		}
+	}
+}
@@ -7,6 +7,16 @@
 
 package io.github.jdiscordbots.nightdream.storage;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
 import io.github.jdiscordbots.nightdream.util.BotData;
 import net.dv8tion.jda.api.entities.Guild;
 /**
@@ -16,6 +26,18 @@ import net.dv8tion.jda.api.entities.Guild;
  * Each unit consists of multiple key-value entries.
  */
 public interface Storage {
+	/**
+	 * the unit where the index of user-specific data is stored in
+	 * @see Storage#writeForUser(String, String, String, String, String...)
+	 * @see Storage#writeForUser(String, String, String)
+	 */
+	String USER_INDEX_UNIT="user_index";
+	/**
+	 * prefix of the units of scoreboard entries passed to {@link Storage#forEachEntry(Consumer)}<br>
+	 * The name of the scoreboard follows the prefix, the key is the ID of the user and the value is the score.
+	 */
+	String SCORE_UNIT_PREFIX="scores/";
+	
 	/**
 	 * reads a String from a given unit, subunit and key<br>
 	 * Can be compared to <code>get(unit).get(key).get(subUnit)</code> but may create necessary elements
@@ -135,4 +157,189 @@ public interface Storage {
 	default void reload(Guild guild) {
 		//do nothing
 	}
+	/**
+	 * writes user-specific data to a key in a given unit and sub-unit and adds the entry to the index of the user<br>
+	 * Can be compared to <code>get(unit).get(subUnit).put(userId,value)</code>
+	 * @param userId the ISnowflake ID of the user the data belongs to, this is used as key
+	 * @param unit the unit where the data should be stored in.
+	 * @param subUnit the sub-unit where the data is stored in.
+	 * @param value the future value
+	 * @param defaultSubUnits the sub-units that would be created if there is no entry of them in the table(may not be implemented)
+	 * @see Storage#write(String, String, String, String, String...)
+	 * @see Storage#eraseUserData(String)
+	 */
+	default void writeForUser(String userId,String unit,String subUnit,String value,String... defaultSubUnits) {
+		write(unit, subUnit, userId, value, defaultSubUnits);
+		UserDataIndex.add(this, userId, UserDataIndex.getEntry(unit, subUnit));
+	}
+	/**
+	 * writes user-specific data to a key in a given unit and adds the entry to the index of the user<br>
+	 * Can be compared to <code>get(unit).put(userId,value)</code>
+	 * @param userId the ISnowflake ID of the user the data belongs to, this is used as key
+	 * @param unit the unit where the data should be stored in.
+	 * @param value the future value
+	 * @see Storage#write(String, String, String)
+	 * @see Storage#eraseUserData(String)
+	 */
+	default void writeForUser(String userId,String unit,String value) {
+		write(unit, userId, value);
+		UserDataIndex.add(this, userId, unit);
+	}
+	/**
+	 * removes user-specific data from a unit and a sub-unit and from the index of the user
+	 * @param userId the ISnowflake ID of the user the data belongs to
+	 * @param unit the unit where the data should be removed
+	 * @param subUnit the sub-unit where the data should be removed
+	 * @see Storage#remove(String, String, String)
+	 */
+	default void removeForUser(String userId,String unit,String subUnit) {
+		remove(unit, subUnit, userId);
+		UserDataIndex.remove(this, userId, UserDataIndex.getEntry(unit, subUnit));
+	}
+	/**
+	 * removes user-specific data from a unit and from the index of the user
+	 * @param userId the ISnowflake ID of the user the data belongs to
+	 * @param unit the unit where the data should be removed
+	 * @see Storage#remove(String, String)
+	 */
+	default void removeForUser(String userId,String unit) {
+		remove(unit, userId);
+		UserDataIndex.remove(this, userId, unit);
+	}
+	/**
+	 * reads all data of a user<br>
+	 * This only reads the entries in the index of the user.
+	 * Entries that have been written before the index existed are added to the index once, before the first export or erasure.
+	 * @param userId the ISnowflake ID of the user
+	 * @return the data of the user as {@link Map} with the unit (and sub-unit, separated by a dot) as key
+	 * @see Storage#writeForUser(String, String, String, String, String...)
+	 * @see Storage#writeForUser(String, String, String)
+	 */
+	default Map<String,String> exportUserData(String userId){
+		return UserDataIndex.export(this, userId);
+	}
+	/**
+	 * removes all data in the index of a user, including data that has been written before the index existed<br>
+	 * Moderation state like bans from bug reporting is kept.
+	 * @param userId the ISnowflake ID of the user
+	 * @see Storage#writeForUser(String, String, String, String, String...)
+	 * @see Storage#writeForUser(String, String, String)
+	 */
+	default void eraseUserData(String userId) {
+		UserDataIndex.erase(this, userId);
+	}
+	/**
+	 * passes all entries of all units and all scores to a {@link Consumer}<br>
+	 * This is used for creating snapshots so it should not block writes while running.
+	 * Scores are passed as entries of units starting with {@link Storage#SCORE_UNIT_PREFIX}.
+	 * @param action the {@link Consumer} that is called for each entry
+	 * @see StorageSnapshots
+	 */
+	void forEachEntry(Consumer<StorageEntry> action);
+	/**
+	 * gets the sub-unit and the key an entry passed to {@link Storage#forEachEntry(Consumer)} has been written with<br>
+	 * Implementations that pass sub-units as part of the keys should override this.
+	 * @param entry an entry passed to {@link Storage#forEachEntry(Consumer)}
+	 * @return an entry with the sub-unit and the key used for writing it
+	 * @see Storage#write(String, String, String, String, String...)
+	 */
+	default StorageEntry splitSubUnit(StorageEntry entry) {
+		return entry;
+	}
+	/**
+	 * writes multiple entries, e.g. when restoring a snapshot<br>
+	 * Implementations should override this if writing many entries at once can be done faster than writing them one by one.
+	 * @param entries the entries to write
+	 * @see Storage#forEachEntry(Consumer)
+	 */
+	default void importEntries(Collection<StorageEntry> entries) {
+		Map<String, Set<String>> subUnits=new HashMap<>();
+		for (StorageEntry entry : entries) {
+			if(entry.getSubUnit()!=null) {
+				subUnits.computeIfAbsent(entry.getUnit(), k->new LinkedHashSet<>()).add(entry.getSubUnit());
+			}
+		}
+		for (StorageEntry entry : entries) {
+			if(entry.getUnit().startsWith(SCORE_UNIT_PREFIX)) {
+				String board=entry.getUnit().substring(SCORE_UNIT_PREFIX.length());
+				ScoreEntry current=getScore(board, entry.getKey());
+				incrementScore(board, entry.getKey(), Long.parseLong(entry.getValue())-(current==null?0:current.getScore()));
+			}else if(entry.getSubUnit()==null) {
+				write(entry.getUnit(), entry.getKey(), entry.getValue());
+			}else {
+				write(entry.getUnit(), entry.getSubUnit(), entry.getKey(), entry.getValue(), subUnits.get(entry.getUnit()).toArray(new String[0]));
+			}
+		}
+	}
+	/**
+	 * replaces all entries (including scores) with other entries, e.g. when restoring a snapshot<br>
+	 * After this, {@link Storage#forEachEntry(Consumer)} passes exactly the given entries.
+	 * Implementations should override this if the entries can be replaced faster than by removing and writing them one by one.
+	 * @param entries the new entries
+	 * @see Storage#importEntries(Collection)
+	 */
+	default void replaceEntries(Collection<StorageEntry> entries) {
+		Set<String> locations=new HashSet<>();
+		for (StorageEntry entry : entries) {
+			locations.add(entry.getLocation());
+		}
+		List<StorageEntry> toRemove=new ArrayList<>();
+		forEachEntry(entry->{
+			if(!locations.contains(entry.getLocation())) {
+				toRemove.add(entry);
+			}
+		});
+		for (StorageEntry entry : toRemove) {
+			if(entry.getUnit().startsWith(SCORE_UNIT_PREFIX)) {
+				removeScore(entry.getUnit().substring(SCORE_UNIT_PREFIX.length()), entry.getKey());
+			}else if(entry.getSubUnit()==null) {
+				remove(entry.getUnit(), entry.getKey());
+			}else {
+				remove(entry.getUnit(), entry.getSubUnit(), entry.getKey());
+			}
+		}
+		importEntries(entries);
+	}
+	/**
+	 * atomically adds a value to the score of a user on a scoreboard
+	 * @param board the name of the scoreboard
+	 * @param userId the ISnowflake ID of the user
+	 * @param delta the value to add
+	 * @return the new score of the user
+	 */
+	long incrementScore(String board,String userId,long delta);
+	/**
+	 * gets the users with the highest scores on a scoreboard
+	 * @param board the name of the scoreboard
+	 * @param count the maximum number of users
+	 * @return the entries, highest score first
+	 */
+	List<ScoreEntry> getTopScores(String board,int count);
+	/**
+	 * gets the score and rank of a user on a scoreboard
+	 * @param board the name of the scoreboard
+	 * @param userId the ISnowflake ID of the user
+	 * @return the entry or <code>null</code> if the user does not have a score on the scoreboard
+	 */
+	ScoreEntry getScore(String board,String userId);
+	/**
+	 * removes a user from a scoreboard
+	 * @param board the name of the scoreboard
+	 * @param userId the ISnowflake ID of the user
+	 */
+	void removeScore(String board,String userId);
+	/**
+	 * adds a value to the score of a user and adds the scoreboard to the index of the user
+	 * @param board the name of the scoreboard
+	 * @param userId the ISnowflake ID of the user
+	 * @param delta the value to add
+	 * @return the new score of the user
+	 * @see Storage#incrementScore(String, String, long)
+	 * @see Storage#eraseUserData(String)
+	 */
+	default long incrementScoreForUser(String board,String userId,long delta) {
+		long score=incrementScore(board, userId, delta);
+		UserDataIndex.add(this, userId, UserDataIndex.getScoreEntry(board));
+		return score;
+	}
 }
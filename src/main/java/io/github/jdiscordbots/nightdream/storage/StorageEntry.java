@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: StorageEntry.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.storage;
+
+/**
+ * a single key-value entry of a {@link Storage}
+ * @see Storage#forEachEntry(java.util.function.Consumer)
+ */
+public final class StorageEntry {
+	private final String unit;
+	private final String subUnit;
+	private final String key;
+	private final String value;
+
+	/**
+	 * creates an entry
+	 * @param unit the unit where the entry is stored in
+	 * @param subUnit the sub-unit where the entry is stored in or <code>null</code> if it is not stored in a sub-unit
+	 * @param key the key of the entry
+	 * @param value the value of the entry
+	 */
+	public StorageEntry(String unit, String subUnit, String key, String value) {
+		this.unit = unit;
+		this.subUnit = subUnit;
+		this.key = key;
+		this.value = value;
+	}
+	/**
+	 * gets the unit where the entry is stored in
+	 * @return the name of the unit
+	 */
+	public String getUnit() {
+		return unit;
+	}
+	/**
+	 * gets the sub-unit where the entry is stored in
+	 * @return the name of the sub-unit or <code>null</code> if it is not stored in a sub-unit
+	 */
+	public String getSubUnit() {
+		return subUnit;
+	}
+	/**
+	 * gets the key of the entry
+	 * @return the key
+	 */
+	public String getKey() {
+		return key;
+	}
+	/**
+	 * gets the value of the entry
+	 * @return the value
+	 */
+	public String getValue() {
+		return value;
+	}
+	/**
+	 * gets an identifier of the location (unit, sub-unit and key) of this entry
+	 * @return a String that is equal for all entries with the same location
+	 */
+	String getLocation() {
+		return unit+'\0'+(subUnit==null?"":subUnit)+'\0'+key;
+	}
+	/**
+	 * creates an entry from the identifier of its location
+	 * @param location the identifier of the location of the entry
+	 * @param value the value of the entry
+	 * @return the entry
+	 * @see StorageEntry#getLocation()
+	 */
+	static StorageEntry fromLocation(String location,String value) {
+		String[] parts=location.split("\0", 3);
+		return new StorageEntry(parts[0], parts[1].isEmpty()?null:parts[1], parts[2], value);
+	}
+	@Override
+	public String toString() {
+		return getLocation().replace('\0', '/')+"="+value;
+	}
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: StorageSnapshots.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.jdiscordbots.nightdream.util.BotData;
+
+/**
+ * creates and restores compressed snapshots of {@link BotData#STORAGE}<br>
+ * The first snapshot of a chain is a full (base) snapshot, all following snapshots only contain the entries that changed since the previous snapshot.
+ * Snapshots are created on a separate thread while the storage is read entry by entry so writes are not blocked.
+ */
+public final class StorageSnapshots {
+
+	private static final Logger LOG=LoggerFactory.getLogger(StorageSnapshots.class);
+
+	private static final File SNAPSHOT_DIR=new File(BotData.DATA_DIR,"snapshots");
+	private static final String FULL_SUFFIX="-full.snap.gz";
+	private static final String INCREMENTAL_SUFFIX="-incr.snap.gz";
+	private static final String TEMP_SUFFIX=".tmp";
+	private static final DateTimeFormatter NAME_FORMAT=DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+	private static final int MAGIC=0x4E44534E;
+	private static final int FORMAT_VERSION=1;
+	private static final byte RECORD_END=0;
+	private static final byte RECORD_PUT=1;
+	private static final byte RECORD_REMOVE=2;
+
+	private static final int INCREMENTALS_PER_BASE=24;
+	private static final int KEPT_BASES=2;
+
+	private static final ScheduledExecutorService executor=Executors.newSingleThreadScheduledExecutor(r->{
+		Thread t=new Thread(r, "storage-snapshots");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * location of every entry in the latest snapshot mapped to the SHA-256 digest of its value<br>
+	 * only accessed by the snapshot thread
+	 */
+	private static Map<String, byte[]> lastState;
+	private static boolean forceBase;
+	private static boolean schedulerStarted;
+
+	private StorageSnapshots() {
+		//prevent instantiation
+	}
+
+	/**
+	 * starts creating snapshots automatically if enabled
+	 * @see BotData#getSnapshotInterval()
+	 */
+	public static synchronized void startScheduler() {
+		if(schedulerStarted) {
+			return;
+		}
+		schedulerStarted=true;
+		int interval=BotData.getSnapshotInterval();
+		if(interval>0) {
+			executor.scheduleAtFixedRate(()->{
+				try {
+					SnapshotInfo info=createSnapshotNow(false);
+					LOG.info("Created snapshot {} with {} entries", info.getName(), info.getEntries());
+				}catch(IOException|RuntimeException e) {
+					LOG.warn("Cannot create snapshot", e);
+				}
+			}, interval, interval, TimeUnit.MINUTES);
+		}
+	}
+	/**
+	 * creates a snapshot on the snapshot thread
+	 * @param full <code>true</code> if a new base snapshot should be created even if an incremental snapshot would be possible
+	 * @return a {@link CompletableFuture} that is completed with information about the snapshot
+	 */
+	public static CompletableFuture<SnapshotInfo> createSnapshot(boolean full){
+		CompletableFuture<SnapshotInfo> future=new CompletableFuture<>();
+		executor.execute(()->{
+			try {
+				future.complete(createSnapshotNow(full));
+			}catch(IOException|RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+	/**
+	 * restores a snapshot on the snapshot thread<br>
+	 * After restoring, the storage contains exactly the entries of the snapshot.
+	 * @param name the name of the snapshot
+	 * @return a {@link CompletableFuture} that is completed with the number of restored entries
+	 * @see StorageSnapshots#listSnapshots()
+	 */
+	public static CompletableFuture<Integer> restore(String name){
+		CompletableFuture<Integer> future=new CompletableFuture<>();
+		executor.execute(()->{
+			try {
+				future.complete(restoreNow(name));
+			}catch(IOException|RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+	/**
+	 * removes all data of a user from all snapshots on the snapshot thread<br>
+	 * Snapshots containing data of the user are rewritten without the entries of the user.
+	 * @param userId the ISnowflake ID of the user
+	 * @return a {@link CompletableFuture} that is completed with the number of rewritten snapshots
+	 * @see Storage#eraseUserData(String)
+	 */
+	public static CompletableFuture<Integer> eraseUserData(String userId){
+		CompletableFuture<Integer> future=new CompletableFuture<>();
+		executor.execute(()->{
+			try {
+				future.complete(eraseUserDataNow(userId));
+			}catch(IOException|RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+	/**
+	 * lists the names of all snapshots, oldest first
+	 * @return the names of the snapshots
+	 */
+	public static List<String> listSnapshots(){
+		return getSnapshotFiles().stream().map(File::getName).collect(Collectors.toList());
+	}
+
+	private static SnapshotInfo createSnapshotNow(boolean full) throws IOException {
+		Files.createDirectories(SNAPSHOT_DIR.toPath());
+		List<File> chain=getLatestChain(getSnapshotFiles());
+		boolean base=full||forceBase||chain.isEmpty()||chain.size()>INCREMENTALS_PER_BASE;
+		MessageDigest digest=createDigest();
+		if(!base&&lastState==null) {
+			lastState=new HashMap<>();
+			readChain(chain).forEach((location,value)->lastState.put(location, hash(digest, value)));
+		}
+		Map<String, byte[]> previousState=base?Collections.emptyMap():lastState;
+		Map<String, byte[]> newState=new HashMap<>();
+		File target=new File(SNAPSHOT_DIR,NAME_FORMAT.format(Instant.now())+(base?FULL_SUFFIX:INCREMENTAL_SUFFIX));
+		File temp=new File(SNAPSHOT_DIR,target.getName()+TEMP_SUFFIX);
+		int[] written= {0};
+		try(DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			BotData.STORAGE.forEachEntry(entry->{
+				String location=entry.getLocation();
+				byte[] hash=hash(digest, entry.getValue());
+				newState.put(location, hash);
+				if(!Arrays.equals(previousState.get(location), hash)) {
+					writeRecord(out, RECORD_PUT, location, entry.getValue());
+					written[0]++;
+				}
+			});
+			for (String location : previousState.keySet()) {
+				if(!newState.containsKey(location)) {
+					writeRecord(out, RECORD_REMOVE, location, null);
+					written[0]++;
+				}
+			}
+			out.writeByte(RECORD_END);
+		}catch(UncheckedIOException e) {
+			Files.deleteIfExists(temp.toPath());
+			throw e.getCause();
+		}
+		try {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}catch(AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), target.toPath());
+		}
+		lastState=newState;
+		forceBase=false;
+		deleteOldSnapshots();
+		return new SnapshotInfo(target.getName(), written[0], base);
+	}
+	private static int restoreNow(String name) throws IOException {
+		List<File> files=getSnapshotFiles();
+		int targetIndex=-1;
+		for (int i = 0; i < files.size(); i++) {
+			if(files.get(i).getName().equals(name)) {
+				targetIndex=i;
+			}
+		}
+		if(targetIndex==-1) {
+			throw new FileNotFoundException("There is no snapshot named "+name);
+		}
+		List<File> chain=getLatestChain(files.subList(0, targetIndex+1));
+		if(chain.isEmpty()) {
+			throw new FileNotFoundException("There is no full snapshot before "+name);
+		}
+		Map<String, String> state=readChain(chain);
+		BotData.STORAGE.replaceEntries(state.entrySet().stream().map(e->StorageEntry.fromLocation(e.getKey(), e.getValue())).collect(Collectors.toList()));
+		BotData.STORAGE.reload();
+		forceBase=true;
+		lastState=null;
+		return state.size();
+	}
+
+	private static int eraseUserDataNow(String userId) throws IOException {
+		int rewritten=0;
+		for (File file : getSnapshotFiles()) {
+			File temp=new File(SNAPSHOT_DIR,file.getName()+TEMP_SUFFIX);
+			boolean changed=false;
+			try(DataInputStream in=new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+					DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))){
+				if(in.readInt()!=MAGIC||in.readInt()!=FORMAT_VERSION) {
+					throw new IOException("invalid snapshot: "+file.getName());
+				}
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				byte type;
+				while((type=in.readByte())!=RECORD_END) {
+					String location=in.readUTF();
+					String value=null;
+					if(type==RECORD_PUT) {
+						byte[] data=new byte[in.readInt()];
+						in.readFully(data);
+						value=new String(data,StandardCharsets.UTF_8);
+					}else if(type!=RECORD_REMOVE) {
+						throw new IOException("invalid record in snapshot: "+file.getName());
+					}
+					if(UserDataIndex.isUserData(BotData.STORAGE, StorageEntry.fromLocation(location, value), userId)) {
+						changed=true;
+					}else {
+						writeRecord(out, type, location, value);
+					}
+				}
+				out.writeByte(RECORD_END);
+			}catch(EOFException e) {
+				Files.deleteIfExists(temp.toPath());
+				throw new IOException("incomplete snapshot: "+file.getName(), e);
+			}catch(IOException|UncheckedIOException e) {
+				Files.deleteIfExists(temp.toPath());
+				throw e;
+			}
+			if(changed) {
+				try {
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}catch(AtomicMoveNotSupportedException e) {
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				rewritten++;
+			}else {
+				Files.delete(temp.toPath());
+			}
+		}
+		//the next incremental snapshot must not depend on the removed entries
+		lastState=null;
+		return rewritten;
+	}
+	private static void writeRecord(DataOutputStream out,byte type,String location,String value) {
+		try {
+			out.writeByte(type);
+			out.writeUTF(location);
+			if(value!=null) {
+				byte[] data=value.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(data.length);
+				out.write(data);
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	/**
+	 * reads a chain of snapshots (a full snapshot and the following incremental snapshots)
+	 * @param chain the snapshot files, the full snapshot first
+	 * @return the location of every entry mapped to its value
+	 * @throws IOException if a snapshot cannot be read
+	 */
+	private static Map<String, String> readChain(List<File> chain) throws IOException{
+		Map<String, String> state=new LinkedHashMap<>();
+		for (File file : chain) {
+			try(DataInputStream in=new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))){
+				if(in.readInt()!=MAGIC||in.readInt()!=FORMAT_VERSION) {
+					throw new IOException("invalid snapshot: "+file.getName());
+				}
+				byte type;
+				while((type=in.readByte())!=RECORD_END) {
+					String location=in.readUTF();
+					if(type==RECORD_PUT) {
+						byte[] data=new byte[in.readInt()];
+						in.readFully(data);
+						state.put(location, new String(data,StandardCharsets.UTF_8));
+					}else if(type==RECORD_REMOVE) {
+						state.remove(location);
+					}else {
+						throw new IOException("invalid record in snapshot: "+file.getName());
+					}
+				}
+			}catch(EOFException e) {
+				throw new IOException("incomplete snapshot: "+file.getName(), e);
+			}
+		}
+		return state;
+	}
+	private static List<File> getSnapshotFiles(){
+		File[] files=SNAPSHOT_DIR.listFiles((dir,name)->name.endsWith(FULL_SUFFIX)||name.endsWith(INCREMENTAL_SUFFIX));
+		if(files==null) {
+			return Collections.emptyList();
+		}
+		Arrays.sort(files);
+		return Arrays.asList(files);
+	}
+	/**
+	 * gets the last full snapshot and all incremental snapshots after it
+	 * @param files all snapshot files, oldest first
+	 * @return the chain of snapshots, the full snapshot first or an empty {@link List} if there is no full snapshot
+	 */
+	private static List<File> getLatestChain(List<File> files){
+		for (int i = files.size()-1; i >= 0; i--) {
+			if(files.get(i).getName().endsWith(FULL_SUFFIX)) {
+				return files.subList(i, files.size());
+			}
+		}
+		return Collections.emptyList();
+	}
+	private static void deleteOldSnapshots() {
+		List<File> files=getSnapshotFiles();
+		int bases=0;
+		for (int i = files.size()-1; i >= 0; i--) {
+			File file=files.get(i);
+			if(bases>=KEPT_BASES) {
+				try {
+					Files.delete(file.toPath());
+				} catch (IOException e) {
+					LOG.warn("Cannot delete old snapshot {}", file.getName(), e);
+				}
+			}else if(file.getName().endsWith(FULL_SUFFIX)) {
+				bases++;
+			}
+		}
+	}
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}catch(NoSuchAlgorithmException e) {
+			//every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	private static byte[] hash(MessageDigest digest,String value) {
+		return digest.digest(value.getBytes(StandardCharsets.UTF_8));
+	}
+	/**
+	 * information about a created snapshot
+	 */
+	public static final class SnapshotInfo{
+		private final String name;
+		private final int entries;
+		private final boolean full;
+		private SnapshotInfo(String name, int entries, boolean full) {
+			this.name = name;
+			this.entries = entries;
+			this.full = full;
+		}
+		/**
+		 * gets the name of the snapshot
+		 * @return the name of the snapshot
+		 */
+		public String getName() {
+			return name;
+		}
+		/**
+		 * gets the number of entries(or removed entries) in the snapshot
+		 * @return the number of entries
+		 */
+		public int getEntries() {
+			return entries;
+		}
+		/**
+		 * checks if the snapshot is a full (base) snapshot
+		 * @return <code>true</code> if it is a full snapshot, <code>false</code> if it is an incremental snapshot
+		 */
+		public boolean isFull() {
+			return full;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: UserDataIndex.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.storage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.jdiscordbots.nightdream.util.BotData;
+
+/**
+ * maintains the index of all (unit, sub-unit) entries a user has data in<br>
+ * The index is stored in the unit {@link Storage#USER_INDEX_UNIT} with the ID of the user as key.
+ * The value is a list of all entries separated by spaces.
+ * An entry is either the name of a unit or the name of a unit and the name of a sub-unit separated by a dot.
+ * Entries of scoreboards consist of a prefix and the name of the scoreboard.<br>
+ * Data that has been written before the index existed is added to the index by scanning all entries once per database,
+ * after that, the data of a user is only found using the index.
+ * Moderation state (e.g. bans from bug reporting) is not data of the user and is neither exported nor erased.
+ */
+final class UserDataIndex {
+
+	private static final Logger LOG=LoggerFactory.getLogger(UserDataIndex.class);
+	private static final String ENTRY_SEPARATOR=" ";
+	private static final Pattern ENTRY_SPLITTER=Pattern.compile(ENTRY_SEPARATOR);
+	private static final char SUB_UNIT_SEPARATOR='.';
+	private static final String SCORE_PREFIX="score:";
+	private static final Pattern USER_ID_REGEX=Pattern.compile("\\d+");
+	/**
+	 * units that use IDs of users as keys but do not contain data of the users
+	 */
+	private static final Set<String> EXCLUDED_UNITS=new HashSet<>(Arrays.asList(Storage.USER_INDEX_UNIT, "bugs"));
+
+	private UserDataIndex() {
+		//prevent instantiation
+	}
+
+	static String getEntry(String unit,String subUnit) {
+		return unit+SUB_UNIT_SEPARATOR+subUnit;
+	}
+	static String getScoreEntry(String board) {
+		return SCORE_PREFIX+board;
+	}
+
+	private static Set<String> getEntries(Storage storage,String userId){
+		String index=storage.read(Storage.USER_INDEX_UNIT, userId, "");
+		if(index==null||index.isEmpty()) {
+			return Collections.emptySet();
+		}
+		return Stream.of(ENTRY_SPLITTER.split(index)).filter(entry->!entry.isEmpty()).collect(Collectors.toCollection(LinkedHashSet::new));
+	}
+	/**
+	 * checks if an entry contains data of a user
+	 * @param storage the {@link Storage} the entry has been read from
+	 * @param entry the entry
+	 * @param userId the ISnowflake ID of the user
+	 * @return <code>true</code> if the entry belongs to the user and should be exported and erased, else <code>false</code>
+	 */
+	static boolean isUserData(Storage storage,StorageEntry entry,String userId) {
+		return userId.equals(storage.splitSubUnit(entry).getKey())&&!EXCLUDED_UNITS.contains(entry.getUnit());
+	}
+	private static String getEntry(StorageEntry entry) {
+		if(entry.getUnit().startsWith(Storage.SCORE_UNIT_PREFIX)) {
+			return getScoreEntry(entry.getUnit().substring(Storage.SCORE_UNIT_PREFIX.length()));
+		}
+		return entry.getSubUnit()==null?entry.getUnit():getEntry(entry.getUnit(), entry.getSubUnit());
+	}
+	/**
+	 * adds all entries of users that have been written before the index existed to the index<br>
+	 * This scans all entries and is only done once per database.
+	 * @see BotData#isUserIndexMigrated()
+	 */
+	private static void migrate(Storage storage) {
+		if(BotData.isUserIndexMigrated()) {
+			return;
+		}
+		Map<String, Set<String>> found=new HashMap<>();
+		storage.forEachEntry(entry->{
+			StorageEntry split=storage.splitSubUnit(entry);
+			if(USER_ID_REGEX.matcher(split.getKey()).matches()&&!EXCLUDED_UNITS.contains(split.getUnit())) {
+				found.computeIfAbsent(split.getKey(), k->new LinkedHashSet<>()).add(getEntry(split));
+			}
+		});
+		int added=0;
+		for (Map.Entry<String, Set<String>> userEntries : found.entrySet()) {
+			Set<String> entries=new LinkedHashSet<>(getEntries(storage, userEntries.getKey()));
+			if(entries.addAll(userEntries.getValue())) {
+				setEntries(storage, userEntries.getKey(), entries);
+				added++;
+			}
+		}
+		BotData.setUserIndexMigrated();
+		LOG.info("Added data written before the user index existed to the index of {} users", added);
+	}
+	private static void setEntries(Storage storage,String userId,Set<String> entries) {
+		if(entries.isEmpty()) {
+			storage.remove(Storage.USER_INDEX_UNIT, userId);
+		}else {
+			storage.write(Storage.USER_INDEX_UNIT, userId, String.join(ENTRY_SEPARATOR, entries));
+		}
+	}
+
+	static synchronized void add(Storage storage,String userId,String entry) {
+		Set<String> entries=getEntries(storage, userId);
+		if(!entries.contains(entry)) {
+			entries=new LinkedHashSet<>(entries);
+			entries.add(entry);
+			setEntries(storage, userId, entries);
+		}
+	}
+	static synchronized void remove(Storage storage,String userId,String entry) {
+		Set<String> entries=getEntries(storage, userId);
+		if(entries.contains(entry)) {
+			entries=new LinkedHashSet<>(entries);
+			entries.remove(entry);
+			setEntries(storage, userId, entries);
+		}
+	}
+	static synchronized Map<String,String> export(Storage storage,String userId){
+		migrate(storage);
+		Map<String,String> data=new LinkedHashMap<>();
+		for (String entry : getEntries(storage, userId)) {
+			int separatorIndex=entry.indexOf(SUB_UNIT_SEPARATOR);
+			String value;
+			if(entry.startsWith(SCORE_PREFIX)) {
+				ScoreEntry score=storage.getScore(entry.substring(SCORE_PREFIX.length()), userId);
+				value=score==null?null:String.valueOf(score.getScore());
+			}else if(separatorIndex==-1) {
+				value=storage.read(entry, userId, "");
+			}else {
+				value=storage.read(entry.substring(0,separatorIndex), entry.substring(separatorIndex+1), userId, "");
+			}
+			if(value!=null&&!value.isEmpty()) {
+				data.put(entry, value);
+			}
+		}
+		return data;
+	}
+	static synchronized void erase(Storage storage,String userId) {
+		migrate(storage);
+		for (String entry : getEntries(storage, userId)) {
+			int separatorIndex=entry.indexOf(SUB_UNIT_SEPARATOR);
+			if(entry.startsWith(SCORE_PREFIX)) {
+				storage.removeScore(entry.substring(SCORE_PREFIX.length()), userId);
+			}else if(separatorIndex==-1) {
+				storage.remove(entry, userId);
+			}else {
+				storage.remove(entry.substring(0,separatorIndex), entry.substring(separatorIndex+1), userId);
+			}
+		}
+		storage.remove(Storage.USER_INDEX_UNIT, userId);
+	}
+}
@@ -48,6 +48,20 @@ public class BotData {
 	private static final String SUPPORT_SERVER_PROP_NAME = "supportInvite";
 	private static final String JDA_TOKEN_PROP_NAME="token";
 	private static final String GITHUB_TOKEN_PROP_NAME="gh-token";
+	private static final String GUILD_FILE_LAYOUT_PROP_NAME="GuildFileLayout";
+	private static final String SNAPSHOT_INTERVAL_PROP_NAME="SnapshotInterval";
+	private static final String MSG_CACHE_MAX_BYTES_PROP_NAME="MsgCacheMaxBytes";
+	private static final String MSG_CACHE_GUILD_LIMIT_PROP_NAME="MsgCacheGuildLimit";
+	private static final String MSG_CACHE_DISK_BYTES_PROP_NAME="MsgCacheDiskBytes";
+	private static final String ATTACHMENT_ARCHIVE_BYTES_PROP_NAME="AttachmentArchiveBytes";
+	private static final String ATTACHMENT_ARCHIVE_GUILD_BYTES_PROP_NAME="AttachmentArchiveGuildBytes";
+	private static final String HTTP_CACHE_MAX_ENTRIES_PROP_NAME="HttpCacheMaxEntries";
+	private static final String HTTP_CACHE_MAX_BYTES_PROP_NAME="HttpCacheMaxBytes";
+	private static final String HTTP_CACHE_DISK_BYTES_PROP_NAME="HttpCacheDiskBytes";
+	private static final String GITHUB_CACHE_BYTES_PROP_NAME="GitHubCacheBytes";
+	private static final String GITHUB_RATE_LIMIT_RESERVE_PROP_NAME="GitHubRateLimitReserve";
+	private static final String DNS_RESOLVER_PROP_NAME="DnsResolver";
+	private static final String USER_INDEX_MIGRATED_PROP_NAME="UserIndexMigrated";
 	
 	public static final Map<String,String> GLOBAL_DEFAULTS;
 	public static final Map<String,String> GUILD_DEFAULTS;
@@ -72,6 +86,19 @@ public class BotData {
 		defaults.put(DATABASE_USER_PROP_NAME, "");
 		defaults.put(DATABASE_PASSWORD_PROP_NAME, "");
 		defaults.put(SUPPORT_SERVER_PROP_NAME, "https://discord.gg/DKEqQVx");
+		defaults.put(GUILD_FILE_LAYOUT_PROP_NAME, "flat");
+		defaults.put(SNAPSHOT_INTERVAL_PROP_NAME, "0");
+		defaults.put(MSG_CACHE_MAX_BYTES_PROP_NAME, String.valueOf(64*1024*1024));
+		defaults.put(MSG_CACHE_GUILD_LIMIT_PROP_NAME, "10000");
+		defaults.put(MSG_CACHE_DISK_BYTES_PROP_NAME, "0");
+		defaults.put(ATTACHMENT_ARCHIVE_BYTES_PROP_NAME, "0");
+		defaults.put(ATTACHMENT_ARCHIVE_GUILD_BYTES_PROP_NAME, String.valueOf(64*1024*1024));
+		defaults.put(HTTP_CACHE_MAX_ENTRIES_PROP_NAME, "1000");
+		defaults.put(HTTP_CACHE_MAX_BYTES_PROP_NAME, String.valueOf(16*1024*1024));
+		defaults.put(HTTP_CACHE_DISK_BYTES_PROP_NAME, "0");
+		defaults.put(GITHUB_CACHE_BYTES_PROP_NAME, String.valueOf(10*1024*1024));
+		defaults.put(GITHUB_RATE_LIMIT_RESERVE_PROP_NAME, "5");
+		defaults.put(DNS_RESOLVER_PROP_NAME, DnsResolver.DOH_RESOLVER);
 		GLOBAL_DEFAULTS=Collections.unmodifiableMap(defaults);
 		
 		defaults=new HashMap<>();
@@ -352,6 +379,258 @@ public class BotData {
 	public static void setGitHubToken(String ghToken) {
 		bkpStorage.setGlobalProperty(GITHUB_TOKEN_PROP_NAME, ghToken);
 	}
+	/**
+	 * gets the layout of guild specific property files<br>
+	 * <code>flat</code> stores all files in the data directory, <code>sharded</code> distributes them over hashed subdirectories
+	 * @return the layout of guild specific property files
+	 */
+	public static String getGuildFileLayout() {
+		return bkpStorage.getGlobalProperty(GUILD_FILE_LAYOUT_PROP_NAME);
+	}
+	/**
+	 * sets the layout of guild specific property files
+	 * @param layout the layout of guild specific property files (<code>flat</code> or <code>sharded</code>)
+	 * @see BotData#getGuildFileLayout()
+	 */
+	public static void setGuildFileLayout(String layout) {
+		bkpStorage.setGlobalProperty(GUILD_FILE_LAYOUT_PROP_NAME, layout);
+	}
+	/**
+	 * gets the interval of automatic storage snapshots
+	 * @return the interval in minutes, <code>0</code> if automatic snapshots are disabled
+	 */
+	public static int getSnapshotInterval() {
+		try {
+			return Integer.parseInt(bkpStorage.getGlobalProperty(SNAPSHOT_INTERVAL_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return 0;
+		}
+	}
+	/**
+	 * sets the interval of automatic storage snapshots
+	 * @param interval the interval in minutes, <code>0</code> disables automatic snapshots
+	 */
+	public static void setSnapshotInterval(int interval) {
+		bkpStorage.setGlobalProperty(SNAPSHOT_INTERVAL_PROP_NAME, String.valueOf(interval));
+	}
+	/**
+	 * gets the memory budget of the message cache used for message logs
+	 * @return the maximum (estimated) number of bytes used by cached messages
+	 */
+	public static long getMsgCacheMaxBytes() {
+		try {
+			return Long.parseLong(bkpStorage.getGlobalProperty(MSG_CACHE_MAX_BYTES_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return Long.parseLong(GLOBAL_DEFAULTS.get(MSG_CACHE_MAX_BYTES_PROP_NAME));
+		}
+	}
+	/**
+	 * sets the memory budget of the message cache used for message logs
+	 * @param maxBytes the maximum (estimated) number of bytes used by cached messages
+	 */
+	public static void setMsgCacheMaxBytes(long maxBytes) {
+		bkpStorage.setGlobalProperty(MSG_CACHE_MAX_BYTES_PROP_NAME, String.valueOf(maxBytes));
+	}
+	/**
+	 * gets the maximum number of cached messages per guild
+	 * @return the maximum number of cached messages of a guild
+	 */
+	public static int getMsgCacheGuildLimit() {
+		try {
+			return Integer.parseInt(bkpStorage.getGlobalProperty(MSG_CACHE_GUILD_LIMIT_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return Integer.parseInt(GLOBAL_DEFAULTS.get(MSG_CACHE_GUILD_LIMIT_PROP_NAME));
+		}
+	}
+	/**
+	 * sets the maximum number of cached messages per guild
+	 * @param limit the maximum number of cached messages of a guild
+	 */
+	public static void setMsgCacheGuildLimit(int limit) {
+		bkpStorage.setGlobalProperty(MSG_CACHE_GUILD_LIMIT_PROP_NAME, String.valueOf(limit));
+	}
+	/**
+	 * gets the size of the on-disk message cache file of every shard
+	 * @return the size in bytes, <code>0</code> if the on-disk message cache is disabled
+	 */
+	public static long getMsgCacheDiskBytes() {
+		try {
+			return Long.parseLong(bkpStorage.getGlobalProperty(MSG_CACHE_DISK_BYTES_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return 0;
+		}
+	}
+	/**
+	 * sets the size of the on-disk message cache file of every shard<br>
+	 * The change is applied when the file is opened the next time.
+	 * @param size the size in bytes, <code>0</code> disables the on-disk message cache
+	 */
+	public static void setMsgCacheDiskBytes(long size) {
+		bkpStorage.setGlobalProperty(MSG_CACHE_DISK_BYTES_PROP_NAME, String.valueOf(size));
+	}
+	/**
+	 * gets the maximum number of bytes used by archived attachments of messages in guilds with message logs
+	 * @return the global budget in bytes, <code>0</code> if attachments are not archived
+	 */
+	public static long getAttachmentArchiveBytes() {
+		try {
+			return Long.parseLong(bkpStorage.getGlobalProperty(ATTACHMENT_ARCHIVE_BYTES_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return 0;
+		}
+	}
+	/**
+	 * sets the maximum number of bytes used by archived attachments
+	 * @param maxBytes the global budget in bytes, <code>0</code> disables archiving attachments
+	 */
+	public static void setAttachmentArchiveBytes(long maxBytes) {
+		bkpStorage.setGlobalProperty(ATTACHMENT_ARCHIVE_BYTES_PROP_NAME, String.valueOf(maxBytes));
+	}
+	/**
+	 * gets the maximum number of bytes used by archived attachments of a single guild
+	 * @return the quota of every guild in bytes
+	 */
+	public static long getAttachmentArchiveGuildBytes() {
+		try {
+			return Long.parseLong(bkpStorage.getGlobalProperty(ATTACHMENT_ARCHIVE_GUILD_BYTES_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return Long.parseLong(GLOBAL_DEFAULTS.get(ATTACHMENT_ARCHIVE_GUILD_BYTES_PROP_NAME));
+		}
+	}
+	/**
+	 * sets the maximum number of bytes used by archived attachments of a single guild
+	 * @param maxBytes the quota of every guild in bytes
+	 */
+	public static void setAttachmentArchiveGuildBytes(long maxBytes) {
+		bkpStorage.setGlobalProperty(ATTACHMENT_ARCHIVE_GUILD_BYTES_PROP_NAME, String.valueOf(maxBytes));
+	}
+	/**
+	 * gets the maximum number of responses of external APIs kept in memory
+	 * @return the maximum number of cached responses
+	 */
+	public static int getHttpCacheMaxEntries() {
+		try {
+			return Integer.parseInt(bkpStorage.getGlobalProperty(HTTP_CACHE_MAX_ENTRIES_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return Integer.parseInt(GLOBAL_DEFAULTS.get(HTTP_CACHE_MAX_ENTRIES_PROP_NAME));
+		}
+	}
+	/**
+	 * sets the maximum number of responses of external APIs kept in memory
+	 * @param maxEntries the maximum number of cached responses
+	 */
+	public static void setHttpCacheMaxEntries(int maxEntries) {
+		bkpStorage.setGlobalProperty(HTTP_CACHE_MAX_ENTRIES_PROP_NAME, String.valueOf(maxEntries));
+	}
+	/**
+	 * gets the maximum number of bytes used by responses of external APIs kept in memory
+	 * @return the maximum size of all cached response bodies in bytes
+	 */
+	public static long getHttpCacheMaxBytes() {
+		try {
+			return Long.parseLong(bkpStorage.getGlobalProperty(HTTP_CACHE_MAX_BYTES_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return Long.parseLong(GLOBAL_DEFAULTS.get(HTTP_CACHE_MAX_BYTES_PROP_NAME));
+		}
+	}
+	/**
+	 * sets the maximum number of bytes used by responses of external APIs kept in memory
+	 * @param maxBytes the maximum size of all cached response bodies in bytes
+	 */
+	public static void setHttpCacheMaxBytes(long maxBytes) {
+		bkpStorage.setGlobalProperty(HTTP_CACHE_MAX_BYTES_PROP_NAME, String.valueOf(maxBytes));
+	}
+	/**
+	 * gets the maximum number of bytes used by responses of external APIs stored on disk
+	 * @return the size in bytes, <code>0</code> if responses are not stored on disk
+	 */
+	public static long getHttpCacheDiskBytes() {
+		try {
+			return Long.parseLong(bkpStorage.getGlobalProperty(HTTP_CACHE_DISK_BYTES_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return 0;
+		}
+	}
+	/**
+	 * sets the maximum number of bytes used by responses of external APIs stored on disk
+	 * @param maxBytes the size in bytes, <code>0</code> disables storing responses on disk
+	 */
+	public static void setHttpCacheDiskBytes(long maxBytes) {
+		bkpStorage.setGlobalProperty(HTTP_CACHE_DISK_BYTES_PROP_NAME, String.valueOf(maxBytes));
+	}
+	/**
+	 * gets the maximum number of bytes used by cached responses of the GitHub API
+	 * @return the size in bytes, <code>0</code> if responses of the GitHub API are not cached
+	 */
+	public static long getGitHubCacheBytes() {
+		try {
+			return Long.parseLong(bkpStorage.getGlobalProperty(GITHUB_CACHE_BYTES_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return Long.parseLong(GLOBAL_DEFAULTS.get(GITHUB_CACHE_BYTES_PROP_NAME));
+		}
+	}
+	/**
+	 * sets the maximum number of bytes used by cached responses of the GitHub API
+	 * @param maxBytes the size in bytes, <code>0</code> disables caching responses of the GitHub API
+	 */
+	public static void setGitHubCacheBytes(long maxBytes) {
+		bkpStorage.setGlobalProperty(GITHUB_CACHE_BYTES_PROP_NAME, String.valueOf(maxBytes));
+	}
+	/**
+	 * gets the number of GitHub API requests that are kept in reserve<br>
+	 * If the remaining rate limit is not higher than this, cached responses are used even if they are outdated.
+	 * @return the number of requests
+	 */
+	public static int getGitHubRateLimitReserve() {
+		try {
+			return Integer.parseInt(bkpStorage.getGlobalProperty(GITHUB_RATE_LIMIT_RESERVE_PROP_NAME));
+		}catch(NumberFormatException e) {
+			return Integer.parseInt(GLOBAL_DEFAULTS.get(GITHUB_RATE_LIMIT_RESERVE_PROP_NAME));
+		}
+	}
+	/**
+	 * sets the number of GitHub API requests that are kept in reserve
+	 * @param reserve the number of requests
+	 */
+	public static void setGitHubRateLimitReserve(int reserve) {
+		bkpStorage.setGlobalProperty(GITHUB_RATE_LIMIT_RESERVE_PROP_NAME, String.valueOf(reserve));
+	}
+	/**
+	 * gets the resolver used by the <code>dns</code> command<br>
+	 * <code>doh</code> uses DNS over HTTPS, <code>system</code> uses the DNS servers of the system,
+	 * everything else is used as address (<code>host</code> or <code>host:port</code>) of a DNS server
+	 * @return the DNS resolver
+	 */
+	public static String getDnsResolver() {
+		String resolver=bkpStorage.getGlobalProperty(DNS_RESOLVER_PROP_NAME);
+		if(resolver==null||resolver.isEmpty()) {
+			return DnsResolver.DOH_RESOLVER;
+		}
+		return resolver;
+	}
+	/**
+	 * sets the resolver used by the <code>dns</code> command
+	 * @param resolver <code>doh</code>, <code>system</code> or the address of a DNS server
+	 */
+	public static void setDnsResolver(String resolver) {
+		bkpStorage.setGlobalProperty(DNS_RESOLVER_PROP_NAME, resolver);
+	}
+	/**
+	 * checks if the index of user-specific data has been built from the data written before the index existed<br>
+	 * The migration is done once per database, it is done again if the database is changed.
+	 * @return <code>true</code> if the index of the current database is complete, else <code>false</code>
+	 * @see BotData#getDatabaseUrl()
+	 */
+	public static boolean isUserIndexMigrated() {
+		return getDatabaseUrl().equals(bkpStorage.getGlobalProperty(USER_INDEX_MIGRATED_PROP_NAME));
+	}
+	/**
+	 * marks the index of user-specific data of the current database as complete
+	 * @see BotData#isUserIndexMigrated()
+	 */
+	public static void setUserIndexMigrated() {
+		bkpStorage.setGlobalProperty(USER_INDEX_MIGRATED_PROP_NAME, getDatabaseUrl());
+	}
 	/**
 	 * reloads all Properties
 	 */
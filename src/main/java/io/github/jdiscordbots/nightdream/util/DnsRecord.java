@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: DnsRecord.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+/**
+ * a resource record returned by a DNS lookup
+ * @see DnsResolver
+ */
+public final class DnsRecord {
+	/**
+	 * the types of DNS records that can be looked up
+	 */
+	public enum Type{
+		A(1),NS(2),CNAME(5),SOA(6),PTR(12),MX(15),TXT(16),AAAA(28);
+
+		private final int code;
+
+		Type(int code){
+			this.code=code;
+		}
+		/**
+		 * gets the numeric value of the type used in DNS messages
+		 * @return the type code
+		 */
+		public int getCode() {
+			return code;
+		}
+	}
+
+	private final String name;
+	private final Type type;
+	private final long ttl;
+	private final String data;
+
+	/**
+	 * creates a record
+	 * @param name the name the record belongs to
+	 * @param type the type of the record
+	 * @param ttl the time to live in seconds or <code>-1</code> if it is unknown
+	 * @param data the data of the record in presentation format
+	 */
+	public DnsRecord(String name, Type type, long ttl, String data) {
+		this.name = name;
+		this.type = type;
+		this.ttl = ttl;
+		this.data = data;
+	}
+	public String getName() {
+		return name;
+	}
+	public Type getType() {
+		return type;
+	}
+	/**
+	 * gets the remaining time to live of the record
+	 * @return the time to live in seconds or <code>-1</code> if the resolver does not provide it
+	 */
+	public long getTTL() {
+		return ttl;
+	}
+	public String getData() {
+		return data;
+	}
+	/**
+	 * creates a copy of this record with a different time to live
+	 * @param newTTL the time to live of the copy in seconds
+	 * @return the copy
+	 */
+	DnsRecord withTTL(long newTTL) {
+		return new DnsRecord(name, type, newTTL, data);
+	}
+	@Override
+	public String toString() {
+		return name+" "+ttl+" "+type+" "+data;
+	}
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: DnsResolver.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.URLEncoder;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * resolves DNS records and caches them as long as their time to live allows<br>
+ * Depending on {@link BotData#getDnsResolver()}, lookups are sent to the DNS-over-HTTPS API of {@link Endpoint#DNS},
+ * to the DNS servers of the system or to a configured DNS server.
+ * The local resolvers do not provide the time to live so their answers are cached for {@value #LOCAL_TTL_SECONDS} seconds.<br>
+ * Names that do not exist are cached, too.
+ * Concurrent identical lookups are coalesced.
+ * The cache is available in the metrics starting with <code>dns.</code>.
+ */
+public final class DnsResolver {
+	/**
+	 * {@link BotData#getDnsResolver()} value for using DNS over HTTPS
+	 */
+	public static final String DOH_RESOLVER="doh";
+	/**
+	 * {@link BotData#getDnsResolver()} value for using the DNS servers of the system
+	 */
+	public static final String SYSTEM_RESOLVER="system";
+
+	private static final int MAX_ENTRIES=1000;
+	private static final long MAX_TTL_SECONDS=TimeUnit.DAYS.toSeconds(1);
+	private static final long NEGATIVE_TTL_SECONDS=60;
+	private static final long LOCAL_TTL_SECONDS=60;
+	private static final int NOERROR=0;
+	private static final int NXDOMAIN=3;
+	private static final Pattern IPV4_PATTERN=Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+	/**
+	 * addresses starting with a hex digit or <code>:</code> and containing <code>:</code> are never looked up by {@link InetAddress#getByName(String)}
+	 */
+	private static final Pattern IPV6_PATTERN=Pattern.compile("[0-9a-fA-F]*:[0-9a-fA-F:.]*");
+	/**
+	 * domain names that can be looked up, other names (e.g. <code>ldap://host/</code>) could be interpreted as URLs by JNDI
+	 */
+	private static final Pattern NAME_PATTERN=Pattern.compile("[A-Za-z0-9-]+(\\.[A-Za-z0-9-]+)*\\.?");
+
+	private static final Map<String, CacheEntry> cache=new LinkedHashMap<String, CacheEntry>(16, 0.75F, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+			return size()>MAX_ENTRIES;
+		}
+	};
+	private static final SingleFlight<String, CacheEntry> flights=new SingleFlight<>("dns");
+	private static final AtomicInteger threadCount=new AtomicInteger();
+	private static final ExecutorService localLookupExecutor=Executors.newCachedThreadPool(r->{
+		Thread t=new Thread(r, "dns-resolver-"+threadCount.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	});
+
+	static {
+		MetricRegistry.gauge("dns.cache.entries", ()->{
+			synchronized(cache) {
+				return cache.size();
+			}
+		});
+	}
+
+	private DnsResolver() {
+		//prevent instantiation
+	}
+
+	/**
+	 * looks up the records of a name
+	 * @param name the domain name
+	 * @param type the type of the records
+	 * @return a {@link CompletableFuture} that is completed with the records, an empty list if the name or the records do not exist,
+	 * or completed exceptionally with an {@link IOException} if the lookup failed
+	 * or an {@link IllegalArgumentException} if <code>name</code> is not a valid domain name
+	 * @see DnsResolver#isValidTarget(String)
+	 */
+	public static CompletableFuture<List<DnsRecord>> resolve(String name,DnsRecord.Type type) {
+		if(!NAME_PATTERN.matcher(name).matches()) {
+			CompletableFuture<List<DnsRecord>> invalid=new CompletableFuture<>();
+			invalid.completeExceptionally(new IllegalArgumentException("invalid domain name: "+name));
+			return invalid;
+		}
+		String normalizedName=normalizeName(name);
+		String resolver=BotData.getDnsResolver();
+		String key=resolver+"|"+type+"|"+normalizedName;
+		CacheEntry cached;
+		synchronized(cache) {
+			cached=cache.get(key);
+		}
+		if(cached!=null&&cached.isFresh()) {
+			MetricRegistry.increment("dns.cache.hits");
+			return CompletableFuture.completedFuture(cached.getRecords());
+		}
+		MetricRegistry.increment("dns.cache.misses");
+		CompletableFuture<List<DnsRecord>> result=new CompletableFuture<>();
+		flights.executeAsync(key, ()->lookup(resolver, normalizedName, type)).whenComplete((entry,e)->{
+			if(e==null) {
+				if(entry.expiresAt>System.currentTimeMillis()) {
+					synchronized(cache) {
+						cache.put(key, entry);
+					}
+				}
+				result.complete(entry.getRecords());
+			}else {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+	/**
+	 * checks if a target can be looked up
+	 * @param target the domain name or IP address
+	 * @return <code>true</code> if <code>target</code> is a domain name or an IP address literal
+	 * consisting of letters, digits, <code>-</code>, <code>.</code> and <code>:</code> only, else <code>false</code>
+	 */
+	public static boolean isValidTarget(String target) {
+		return NAME_PATTERN.matcher(target).matches()||getReverseName(target)!=null;
+	}
+	/**
+	 * gets the name used for reverse lookups of an IP address
+	 * @param address the IPv4 or IPv6 address
+	 * @return the name in <code>in-addr.arpa</code> or <code>ip6.arpa</code> or <code>null</code> if <code>address</code> is not an IP address
+	 */
+	public static String getReverseName(String address) {
+		byte[] bytes;
+		if(IPV4_PATTERN.matcher(address).matches()) {
+			//parsed manually as InetAddress would look up invalid addresses like 999.1.1.1
+			String[] octets=address.split("\\.");
+			bytes=new byte[octets.length];
+			for (int i = 0; i < octets.length; i++) {
+				int octet=Integer.parseInt(octets[i]);
+				if(octet>255) {
+					return null;
+				}
+				bytes[i]=(byte)octet;
+			}
+		}else if(IPV6_PATTERN.matcher(address).matches()) {
+			try {
+				//does not send a lookup as the address is an IPv6 literal, invalid literals are rejected
+				bytes=InetAddress.getByName(address).getAddress();
+			}catch(UnknownHostException e) {
+				return null;
+			}
+		}else {
+			return null;
+		}
+		StringBuilder sb=new StringBuilder();
+		if(bytes.length==4) {
+			for (int i = bytes.length-1; i >= 0; i--) {
+				sb.append(bytes[i]&0xFF).append('.');
+			}
+			return sb.append("in-addr.arpa").toString();
+		}
+		for (int i = bytes.length-1; i >= 0; i--) {
+			sb.append(Character.forDigit(bytes[i]&0xF, 16)).append('.')
+				.append(Character.forDigit((bytes[i]>>4)&0xF, 16)).append('.');
+		}
+		return sb.append("ip6.arpa").toString();
+	}
+	private static String normalizeName(String name) {
+		String normalized=name.toLowerCase(Locale.ROOT);
+		while(normalized.endsWith(".")) {
+			normalized=normalized.substring(0, normalized.length()-1);
+		}
+		return normalized;
+	}
+
+	private static CompletableFuture<CacheEntry> lookup(String resolver,String name,DnsRecord.Type type){
+		if(DOH_RESOLVER.equals(resolver)) {
+			return lookupDoH(name, type);
+		}
+		CompletableFuture<CacheEntry> future=new CompletableFuture<>();
+		localLookupExecutor.execute(()->{
+			try {
+				future.complete(lookupLocal(SYSTEM_RESOLVER.equals(resolver)?null:resolver, name, type));
+			}catch(IOException|RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+	private static CompletableFuture<CacheEntry> lookupDoH(String name,DnsRecord.Type type){
+		String url;
+		try {
+			url=Endpoint.DNS.url("/resolve?type="+type.getCode()+"&name="+URLEncoder.encode(name, StandardCharsets.UTF_8.name()));
+		}catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		//not using thenApply so the exception is not wrapped in a CompletionException
+		CompletableFuture<CacheEntry> future=new CompletableFuture<>();
+		GeneralUtils.getJSONFromURLAsync(url).whenComplete((json,e)->{
+			if(e!=null) {
+				future.completeExceptionally(e);
+				return;
+			}
+			try {
+				future.complete(parseDoH(json, type));
+			}catch(IOException|RuntimeException parseException) {
+				future.completeExceptionally(parseException);
+			}
+		});
+		return future;
+	}
+	private static CacheEntry parseDoH(JSONObject json,DnsRecord.Type type) throws IOException {
+		int status=json.getInt("Status");
+		if(status!=NOERROR&&status!=NXDOMAIN) {
+			throw new IOException("DNS lookup failed with status "+status);
+		}
+		List<DnsRecord> records=new ArrayList<>();
+		JSONArray answers=json.optJSONArray("Answer");
+		if(answers!=null) {
+			for (int i = 0; i < answers.length(); i++) {
+				JSONObject answer=answers.getJSONObject(i);
+				if(answer.getInt("type")==type.getCode()) {
+					records.add(new DnsRecord(normalizeName(answer.getString("name")), type, answer.getLong("TTL"), answer.getString("data")));
+				}
+			}
+		}
+		long ttl;
+		if(records.isEmpty()) {
+			//negative answers are cached as long as the SOA record in the authority section allows
+			JSONArray authority=json.optJSONArray("Authority");
+			ttl=authority!=null&&authority.length()>0?authority.getJSONObject(0).optLong("TTL", NEGATIVE_TTL_SECONDS):NEGATIVE_TTL_SECONDS;
+		}else {
+			ttl=Long.MAX_VALUE;
+			for (DnsRecord dnsRecord : records) {
+				ttl=Math.min(ttl, dnsRecord.getTTL());
+			}
+		}
+		return new CacheEntry(records, ttl);
+	}
+	/**
+	 * looks up records using JNDI
+	 * @param server the DNS server or <code>null</code> to use the DNS servers of the system
+	 */
+	private static CacheEntry lookupLocal(String server,String name,DnsRecord.Type type) throws IOException {
+		Hashtable<String, String> env=new Hashtable<>();
+		env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.dns.DnsContextFactory");
+		env.put(Context.PROVIDER_URL, server==null?"dns:":"dns://"+server);
+		DirContext ctx=null;
+		try {
+			ctx=new InitialDirContext(env);
+			Attributes attributes=ctx.getAttributes(name, new String[] {type.name()});
+			Attribute attribute=attributes.get(type.name());
+			List<DnsRecord> records=new ArrayList<>();
+			if(attribute!=null) {
+				NamingEnumeration<?> values=attribute.getAll();
+				while(values.hasMore()) {
+					records.add(new DnsRecord(name, type, -1, String.valueOf(values.next())));
+				}
+			}
+			return new CacheEntry(records, records.isEmpty()?NEGATIVE_TTL_SECONDS:LOCAL_TTL_SECONDS);
+		}catch(NameNotFoundException e) {
+			return new CacheEntry(Collections.emptyList(), NEGATIVE_TTL_SECONDS);
+		}catch(NamingException e) {
+			throw new IOException("DNS lookup of "+name+" failed", e);
+		}finally {
+			if(ctx!=null) {
+				try {
+					ctx.close();
+				}catch(NamingException e) {
+					//ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * the records of a lookup and the time until they are valid
+	 */
+	private static final class CacheEntry{
+		private final List<DnsRecord> records;
+		private final long createdAt=System.currentTimeMillis();
+		private final long expiresAt;
+
+		private CacheEntry(List<DnsRecord> records,long ttlSeconds) {
+			this.records=Collections.unmodifiableList(records);
+			this.expiresAt=createdAt+TimeUnit.SECONDS.toMillis(Math.min(ttlSeconds, MAX_TTL_SECONDS));
+		}
+		private boolean isFresh() {
+			return expiresAt>System.currentTimeMillis();
+		}
+		/**
+		 * gets the records with their remaining time to live
+		 */
+		private List<DnsRecord> getRecords(){
+			long elapsed=TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()-createdAt);
+			List<DnsRecord> result=new ArrayList<>(records.size());
+			for (DnsRecord dnsRecord : records) {
+				result.add(dnsRecord.getTTL()<0?dnsRecord:dnsRecord.withTTL(Math.max(0, dnsRecord.getTTL()-elapsed)));
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: Endpoint.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+/**
+ * the base URLs of all external APIs<br>
+ * Every base URL can be replaced using the system property <code>nightdream.endpoint.&lt;key&gt;</code>,
+ * e.g. <code>-Dnightdream.endpoint.npm=http://localhost:8080/npm</code> to use a local stand-in server.
+ * Base URLs do not end with a slash.
+ */
+public enum Endpoint {
+	NPM("npm", "https://registry.yarnpkg.com"),
+	MAVEN("mvn", "https://search.maven.org"),
+	NUGET("nuget", "https://azuresearch-usnc.nuget.org"),
+	DNS("dns", "https://dns.google.com"),
+	PIXABAY("pixabay", "https://pixabay.com"),
+	GITHUB("github", "https://api.github.com"),
+	YESNO("yesno", "https://yesno.wtf"),
+	OPENTDB("opentdb", "https://opentdb.com");
+
+	private static final String PROPERTY_PREFIX="nightdream.endpoint.";
+
+	private final String key;
+	private final String defaultUrl;
+
+	Endpoint(String key,String defaultUrl) {
+		this.key=key;
+		this.defaultUrl=defaultUrl;
+	}
+	/**
+	 * gets the key used in the name of the system property
+	 * @return the key
+	 */
+	public String getKey() {
+		return key;
+	}
+	/**
+	 * gets the base URL of the API
+	 * @return the configured base URL or the URL of the real API if it is not configured
+	 */
+	public String getBaseUrl() {
+		String url=System.getProperty(PROPERTY_PREFIX+key, defaultUrl);
+		while(url.endsWith("/")) {
+			url=url.substring(0, url.length()-1);
+		}
+		return url;
+	}
+	/**
+	 * creates a URL of the API
+	 * @param path the path (starting with a slash) and query of the URL
+	 * @return the URL
+	 */
+	public String url(String path) {
+		return getBaseUrl()+path;
+	}
+	/**
+	 * sets the base URL of the API for this process
+	 * @param baseUrl the base URL or <code>null</code> to use the real API
+	 */
+	public void setBaseUrl(String baseUrl) {
+		if(baseUrl==null) {
+			System.clearProperty(PROPERTY_PREFIX+key);
+		}else {
+			System.setProperty(PROPERTY_PREFIX+key, baseUrl);
+		}
+	}
+}
@@ -8,20 +8,40 @@
 package io.github.jdiscordbots.nightdream.util;
 
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.jdiscordbots.nightdream.util.ResponseCache.CachedResponse;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * some utilities that are not specifically for Discord
@@ -29,8 +49,19 @@ import org.json.JSONObject;
  *
  */
 public class GeneralUtils {
+	private static final Logger LOG=LoggerFactory.getLogger(GeneralUtils.class);
 	private static final Random rand = new Random();
 	
+	private static final int MAX_IDLE_CONNECTIONS=10;
+	private static final long KEEP_ALIVE_MINUTES=5;
+	private static final long CONNECT_TIMEOUT_SECONDS=10;
+	private static final long READ_TIMEOUT_SECONDS=15;
+	private static final long CALL_TIMEOUT_SECONDS=30;
+	
+	private static final OkHttpClient httpClient=createHttpClient();
+	private static final ResponseCache responseCache=new ResponseCache();
+	private static final SingleFlight<String, byte[]> flights=new SingleFlight<>("httpcache");
+	
 	private GeneralUtils(){
 		//prevent instantiation
 	}
@@ -71,13 +102,37 @@ public class GeneralUtils {
 	public static Random getRand() {
 		return rand;
 	}
+	private static OkHttpClient createHttpClient() {
+		AtomicInteger threadCount=new AtomicInteger();
+		Dispatcher dispatcher=new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r->{
+			Thread t=new Thread(r, "http-client-"+threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}));
+		return new OkHttpClient.Builder()
+				.dispatcher(dispatcher)
+				.connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+				.connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+				.readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+				.callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+				.build();
+	}
+	/**
+	 * gets the HTTP client used for all requests to external APIs<br>
+	 * Connections are pooled and reused, HTTP/2 and gzip are used if the server supports them.
+	 * Every request times out after {@value #CALL_TIMEOUT_SECONDS} seconds.
+	 * @return the shared {@link OkHttpClient}
+	 */
+	public static OkHttpClient getHttpClient() {
+		return httpClient;
+	}
 	public static JSONObject getJSONFromURL(String url) {
 		return getJSONFromURL(url,StandardCharsets.UTF_8);
     }
 	public static JSONObject getJSONFromURL(String url,Charset charset) {
 		try(BufferedReader reader=new BufferedReader(new InputStreamReader(openStreamWithRandomUserAgent(url),charset))){
-			return new JSONObject(reader.lines().collect(Collectors.joining()));
-		} catch (IOException e) {
+			return new JSONObject(new JSONTokener(reader));
+		} catch (IOException|JSONException e) {
 			return null;
 		}
     }
@@ -86,19 +141,314 @@ public class GeneralUtils {
     }
 	public static JSONObject getJSONFromURLWithHeaders(String url,Map<String, String> headers,Charset charset) {
 		try(BufferedReader reader=new BufferedReader(new InputStreamReader(openStreamWithHeaders(url,headers),charset))){
-			return new JSONObject(reader.lines().collect(Collectors.joining()));
-		} catch (IOException e) {
+			return new JSONObject(new JSONTokener(reader));
+		} catch (IOException|JSONException e) {
+			return null;
+		}
+	}
+	/**
+	 * loads a JSON object and caches it<br>
+	 * Cached responses are identified by their URL. Expired responses are revalidated using the <code>ETag</code> or <code>Last-Modified</code> header
+	 * and used as fallback if the API cannot be reached.
+	 * Concurrent requests to the same URL are coalesced into a single request.
+	 * @param url the URL to load the JSON object from
+	 * @param maxAge the time the response is used without asking the server again
+	 * @param unit the {@link TimeUnit} of <code>maxAge</code>
+	 * @return the JSON object or <code>null</code> if it cannot be loaded
+	 */
+	public static JSONObject getJSONFromURL(String url,long maxAge,TimeUnit unit) {
+		try {
+			return parseJSON(load(url, normalizeURL(url), getRandomUserAgentHeaders(), unit.toMillis(maxAge), ResponseBody::bytes));
+		} catch (IOException|JSONException e) {
+			return null;
+		}
+	}
+	/**
+	 * extracts values from a JSON document without loading the whole document into memory<br>
+	 * Only the extracted values are cached.
+	 * @param url the URL to load the JSON document from
+	 * @param pointers the JSON pointers of the values to extract
+	 * @param maxAge the time the extracted values are used without asking the server again
+	 * @param unit the {@link TimeUnit} of <code>maxAge</code>
+	 * @return a {@link JSONObject} with the JSON pointers of all found values as keys or <code>null</code> if the document cannot be loaded
+	 * @see JSONPointerExtractor#extract(java.io.Reader, Collection)
+	 * @see GeneralUtils#getJSONFromURL(String, long, TimeUnit)
+	 */
+	public static JSONObject extractJSONFromURL(String url,Collection<String> pointers,long maxAge,TimeUnit unit) {
+		try {
+			return parseJSON(load(url, getExtractionCacheKey(url, pointers), getRandomUserAgentHeaders(), unit.toMillis(maxAge), createExtractor(pointers)));
+		} catch (IOException|JSONException e) {
 			return null;
 		}
 	}
+	/**
+	 * extracts values from a JSON document asynchronously without loading the whole document into memory
+	 * @param url the URL to load the JSON document from
+	 * @param pointers the JSON pointers of the values to extract
+	 * @param maxAge the time the extracted values are used without asking the server again
+	 * @param unit the {@link TimeUnit} of <code>maxAge</code>
+	 * @return a {@link CompletableFuture} that is completed with a {@link JSONObject} with the JSON pointers of all found values as keys
+	 * or completed exceptionally if the document cannot be loaded, a {@link FileNotFoundException} is used if the document does not exist
+	 * @see GeneralUtils#extractJSONFromURL(String, Collection, long, TimeUnit)
+	 */
+	public static CompletableFuture<JSONObject> extractJSONFromURLAsync(String url,Collection<String> pointers,long maxAge,TimeUnit unit) {
+		return parseJSONAsync(loadAsync(url, getExtractionCacheKey(url, pointers), getRandomUserAgentHeaders(), unit.toMillis(maxAge), createExtractor(pointers)));
+	}
+	private static String getExtractionCacheKey(String url,Collection<String> pointers) {
+		return normalizeURL(url)+"#"+String.join(",", pointers);
+	}
+	private static BodyReader createExtractor(Collection<String> pointers) {
+		return body->JSONPointerExtractor.extract(body.charStream(), pointers).toString().getBytes(StandardCharsets.UTF_8);
+	}
+	/**
+	 * loads a JSON object asynchronously
+	 * @param url the URL to load the JSON object from
+	 * @return a {@link CompletableFuture} that is completed with the JSON object or completed exceptionally if it cannot be loaded
+	 */
+	public static CompletableFuture<JSONObject> getJSONFromURLAsync(String url) {
+		return getJSONFromURLWithHeadersAsync(url, getRandomUserAgentHeaders());
+	}
+	/**
+	 * loads a JSON object asynchronously and caches it
+	 * @param url the URL to load the JSON object from
+	 * @param maxAge the time the response is used without asking the server again
+	 * @param unit the {@link TimeUnit} of <code>maxAge</code>
+	 * @return a {@link CompletableFuture} that is completed with the JSON object or completed exceptionally if it cannot be loaded,
+	 * a {@link FileNotFoundException} is used if the resource does not exist
+	 * @see GeneralUtils#getJSONFromURL(String, long, TimeUnit)
+	 */
+	public static CompletableFuture<JSONObject> getJSONFromURLAsync(String url,long maxAge,TimeUnit unit) {
+		return parseJSONAsync(loadAsync(url, normalizeURL(url), getRandomUserAgentHeaders(), unit.toMillis(maxAge), ResponseBody::bytes));
+	}
+	/**
+	 * loads a JSON object asynchronously
+	 * @param url the URL to load the JSON object from
+	 * @param headers the HTTP headers to send
+	 * @return a {@link CompletableFuture} that is completed with the JSON object or completed exceptionally if it cannot be loaded,
+	 * a {@link FileNotFoundException} is used if the resource does not exist
+	 */
+	public static CompletableFuture<JSONObject> getJSONFromURLWithHeadersAsync(String url,Map<String, String> headers) {
+		return parseJSONAsync(loadAsync(url, url, headers, 0, ResponseBody::bytes));
+	}
+	private static JSONObject parseJSON(byte[] data) {
+		return new JSONObject(new String(data, StandardCharsets.UTF_8));
+	}
+	private static CompletableFuture<JSONObject> parseJSONAsync(CompletableFuture<byte[]> data){
+		//not using thenApply so the exception is not wrapped in a CompletionException
+		CompletableFuture<JSONObject> future=new CompletableFuture<>();
+		data.whenComplete((body,e)->{
+			if(e==null) {
+				try {
+					future.complete(parseJSON(body));
+				}catch(JSONException jsonException) {
+					future.completeExceptionally(jsonException);
+				}
+			}else {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+	/**
+	 * loads the body of a response
+	 * @param cacheKey the key of the response in the cache
+	 * @param ttlMillis the time the response is cached in milliseconds, <code>0</code> if it should not be cached
+	 * @param bodyReader converts the body to the data that is cached and returned
+	 */
+	private static byte[] load(String url,String cacheKey,Map<String, String> headers,long ttlMillis,BodyReader bodyReader) throws IOException {
+		if(ttlMillis<=0) {
+			return fetch(url, cacheKey, headers, null, ttlMillis, bodyReader);
+		}
+		CachedResponse cached=responseCache.get(cacheKey);
+		if(cached!=null&&cached.isFresh()) {
+			MetricRegistry.increment("httpcache.hits");
+			return cached.getBody();
+		}
+		return flights.execute(cacheKey, ()->fetch(url, cacheKey, headers, cached, ttlMillis, bodyReader));
+	}
+	private static byte[] fetch(String url,String cacheKey,Map<String, String> headers,CachedResponse cached,long ttlMillis,BodyReader bodyReader) throws IOException {
+		try {
+			Request request=createRequest(url, headers, cached);
+			return Upstream.forURL(url).execute(()->{
+				try(Response response=httpClient.newCall(request).execute()){
+					return handleResponse(url, cacheKey, response, cached, ttlMillis, bodyReader);
+				}
+			});
+		}catch(IOException e) {
+			return getStaleBody(url, cached, e);
+		}catch(UpstreamUnavailableException e) {
+			return getStaleBody(url, cached, e);
+		}
+	}
+	/**
+	 * loads the body of a response asynchronously
+	 * @param cacheKey the key of the response in the cache
+	 * @param ttlMillis the time the response is cached in milliseconds, <code>0</code> if it should not be cached
+	 * @param bodyReader converts the body to the data that is cached and returned
+	 */
+	private static CompletableFuture<byte[]> loadAsync(String url,String cacheKey,Map<String, String> headers,long ttlMillis,BodyReader bodyReader) {
+		if(ttlMillis<=0) {
+			return fetchAsync(url, cacheKey, headers, null, ttlMillis, bodyReader);
+		}
+		CachedResponse cached=responseCache.get(cacheKey);
+		if(cached!=null&&cached.isFresh()) {
+			MetricRegistry.increment("httpcache.hits");
+			return CompletableFuture.completedFuture(cached.getBody());
+		}
+		return flights.executeAsync(cacheKey, ()->fetchAsync(url, cacheKey, headers, cached, ttlMillis, bodyReader));
+	}
+	private static CompletableFuture<byte[]> fetchAsync(String url,String cacheKey,Map<String, String> headers,CachedResponse cached,long ttlMillis,BodyReader bodyReader) {
+		CompletableFuture<byte[]> future=new CompletableFuture<>();
+		Request request;
+		Upstream.Permit permit;
+		try {
+			request=createRequest(url, headers, cached);
+			permit=Upstream.forURL(url).acquire();
+		}catch(IOException e) {
+			future.completeExceptionally(e);
+			return future;
+		}catch(UpstreamUnavailableException e) {
+			try {
+				future.complete(getStaleBody(url, cached, e));
+			}catch(UpstreamUnavailableException stillFailed) {
+				future.completeExceptionally(stillFailed);
+			}
+			return future;
+		}
+		httpClient.newCall(request).enqueue(new Callback() {
+			@Override
+			public void onResponse(Call call, Response response) {
+				try(Response r=response){
+					byte[] body=handleResponse(url, cacheKey, r, cached, ttlMillis, bodyReader);
+					permit.release(false);
+					future.complete(body);
+				}catch(IOException e) {
+					//client errors are answers of a healthy API
+					permit.release(Upstream.isFailure(e));
+					onFailure(call, e);
+				}catch(JSONException e) {
+					onFailure(call, new IOException("invalid JSON document", e));
+				}catch(RuntimeException|Error e) {
+					//the future needs to be completed in any case as nobody else would complete it
+					permit.release(true);
+					future.completeExceptionally(e);
+				}
+			}
+			@Override
+			public void onFailure(Call call, IOException e) {
+				permit.release(true);
+				try {
+					future.complete(getStaleBody(url, cached, e));
+				}catch(IOException stillFailed) {
+					future.completeExceptionally(stillFailed);
+				}
+			}
+		});
+		return future;
+	}
+	private static byte[] handleResponse(String url,String cacheKey,Response response,CachedResponse cached,long ttlMillis,BodyReader bodyReader) throws IOException {
+		if(cached!=null&&response.code()==304) {
+			MetricRegistry.increment("httpcache.revalidations");
+			responseCache.put(cacheKey, cached.renew(ttlMillis));
+			return cached.getBody();
+		}
+		byte[] body=bodyReader.read(getBody(url, response));
+		if(ttlMillis>0) {
+			MetricRegistry.increment("httpcache.misses");
+			responseCache.put(cacheKey, new CachedResponse(body, response.header("ETag"), response.header("Last-Modified"), System.currentTimeMillis()+ttlMillis));
+		}
+		return body;
+	}
+	/**
+	 * uses an expired response if the server cannot be reached, resources that do not exist any more are not served from the cache
+	 */
+	private static <E extends Exception> byte[] getStaleBody(String url,CachedResponse cached,E e) throws E {
+		if(cached==null||e instanceof FileNotFoundException) {
+			throw e;
+		}
+		LOG.debug("Using stale response of {}: {}", url, e.getMessage());
+		MetricRegistry.increment("httpcache.stale");
+		return cached.getBody();
+	}
+	/**
+	 * normalizes a URL so equivalent URLs are cached and coalesced together
+	 */
+	private static String normalizeURL(String url) {
+		HttpUrl parsed=HttpUrl.parse(url);
+		return parsed==null?url:parsed.toString();
+	}
+	private static Map<String, String> getRandomUserAgentHeaders(){
+		return Collections.singletonMap("User-Agent", UUID.randomUUID().toString());
+	}
+	private static Request createRequest(String url,Map<String, String> headers) throws IOException {
+		return createRequest(url, headers, null);
+	}
+	/**
+	 * creates a request, the request is conditional if there is a cached response
+	 */
+	private static Request createRequest(String url,Map<String, String> headers,CachedResponse cached) throws IOException {
+		Request.Builder builder=new Request.Builder();
+		try {
+			builder.url(url);
+		}catch(IllegalArgumentException e) {
+			throw new IOException("invalid URL: "+url, e);
+		}
+		headers.forEach(builder::header);
+		if(cached!=null) {
+			if(cached.getETag()!=null) {
+				builder.header("If-None-Match", cached.getETag());
+			}
+			if(cached.getLastModified()!=null) {
+				builder.header("If-Modified-Since", cached.getLastModified());
+			}
+		}
+		return builder.build();
+	}
+	/**
+	 * gets the body of a successful response, closes the response otherwise
+	 * @throws FileNotFoundException if the resource does not exist
+	 * @throws IOException if the request was not successful
+	 */
+	private static ResponseBody getBody(String url,Response response) throws IOException {
+		if(!response.isSuccessful()) {
+			response.close();
+			if(response.code()==404||response.code()==410) {
+				throw new FileNotFoundException(url);
+			}
+			throw new HttpStatusException(url, response.code());
+		}
+		return response.body();
+	}
+	/**
+	 * converts the body of a response to the data that is cached
+	 */
+	@FunctionalInterface
+	private interface BodyReader{
+		byte[] read(ResponseBody body) throws IOException;
+	}
     public static InputStream openStreamWithRandomUserAgent(String url)throws IOException{
-    	Map<String, String> headers=new HashMap<>();
-    	headers.put("User-Agent", UUID.randomUUID().toString());
-    	return openStreamWithHeaders(url,headers);
+    	return openStreamWithHeaders(url,getRandomUserAgentHeaders());
     }
+    /**
+     * sends a request using the shared HTTP client
+     * @param url the URL to request
+     * @param headers the HTTP headers to send
+     * @return the body of the response, closing it releases the connection
+     * @throws FileNotFoundException if the resource does not exist
+     * @throws IOException if the request fails or times out
+     * @throws UpstreamUnavailableException if the API is unhealthy or too many requests to it are running
+     */
     public static InputStream openStreamWithHeaders(String url,Map<String, String> headers)throws IOException{
-        URLConnection con=new URL(url).openConnection();
-        headers.forEach(con::setRequestProperty);
-        return con.getInputStream();
+    	Request request=createRequest(url, headers);
+    	//the slot is released as soon as the response headers have been received
+    	Response response=Upstream.forURL(url).execute(()->{
+    		Response r=httpClient.newCall(request).execute();
+    		if(Upstream.isFailureStatus(r.code())) {
+    			r.close();
+    			throw new HttpStatusException(url, r.code());
+    		}
+    		return r;
+    	});
+        return getBody(url, response).byteStream();
     }
 }
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: GitHubClient.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.kohsuke.github.GHFileNotFoundException;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.GitHubRateLimitHandler;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+import org.kohsuke.github.extras.okhttp3.OkHttpGitHubConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * client for the GitHub API that saves requests<br>
+ * Responses of the REST API are stored in the directory <code>githubcache</code> and revalidated using conditional requests,
+ * GitHub does not count unchanged responses (<code>304</code>) against the rate limit.<br>
+ * The remaining rate limit is read from every response.
+ * If it is not higher than {@link BotData#getGitHubRateLimitReserve()}, if the rate limit is exceeded or if GitHub cannot be reached,
+ * cached responses are used without revalidation, even if they are outdated.<br>
+ * The rate limits are available in the metrics <code>github.ratelimit.remaining</code> and <code>github.ratelimit.limit</code>
+ * (REST API) as well as <code>github.ratelimit.graphql.remaining</code> and <code>github.ratelimit.graphql.limit</code> (GraphQL API).
+ */
+public final class GitHubClient {
+	private static final Logger LOG=LoggerFactory.getLogger(GitHubClient.class);
+
+	private static final String REMAINING_HEADER="X-RateLimit-Remaining";
+	private static final String LIMIT_HEADER="X-RateLimit-Limit";
+	private static final String RESET_HEADER="X-RateLimit-Reset";
+	private static final String RESOURCE_HEADER="X-RateLimit-Resource";
+	private static final String GRAPHQL_RESOURCE="graphql";
+	private static final String GRAPHQL_PATH="/graphql";
+	private static final MediaType JSON_TYPE=MediaType.get("application/json; charset=utf-8");
+	private static final int TOO_MANY_REQUESTS=429;
+	private static final int UNSATISFIABLE_REQUEST=HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
+	/**
+	 * fails requests exceeding the rate limit instead of waiting for the reset, cached responses are used instead
+	 */
+	private static final GitHubRateLimitHandler FAIL_ON_RATE_LIMIT=new GitHubRateLimitHandler() {
+		@Override
+		public void onError(GitHubConnectorResponse connectorResponse) throws IOException {
+			throw new HttpException("API rate limit reached", connectorResponse.statusCode(),
+					connectorResponse.header("Status"), connectorResponse.request().url().toString());
+		}
+	};
+
+	private static final RateLimit coreRateLimit=new RateLimit("REST", "github.ratelimit.");
+	private static final RateLimit graphQLRateLimit=new RateLimit("GraphQL", "github.ratelimit.graphql.");
+
+	private final String token;
+	private final OkHttpClient httpClient;
+	private final GitHub api;
+
+	/**
+	 * creates a client for the GitHub API
+	 * @param token the OAuth token or <code>null</code> for anonymous access
+	 * @throws IOException if the client cannot be created
+	 */
+	public GitHubClient(String token) throws IOException {
+		this.token=token==null||"".equals(token)?null:token;
+		OkHttpClient.Builder httpClientBuilder=GeneralUtils.getHttpClient().newBuilder()
+				.addNetworkInterceptor(GitHubClient::trackRateLimit);
+		long cacheBytes=BotData.getGitHubCacheBytes();
+		if(cacheBytes>0) {
+			Cache cache=new Cache(new File(BotData.DATA_DIR, "githubcache"), cacheBytes);
+			MetricRegistry.gauge("github.cache.requests", cache::requestCount);
+			MetricRegistry.gauge("github.cache.hits", cache::hitCount);
+			httpClientBuilder.cache(cache).addInterceptor(GitHubClient::useCacheIfLimited);
+		}
+		httpClient=httpClientBuilder.build();
+		GitHubBuilder builder=new GitHubBuilder()
+				.withEndpoint(Endpoint.GITHUB.getBaseUrl())
+				.withConnector(new OkHttpGitHubConnector(httpClient))
+				.withRateLimitHandler(FAIL_ON_RATE_LIMIT);
+		if(this.token!=null) {
+			builder.withOAuthToken(this.token);
+		}
+		api=builder.build();
+	}
+
+	/**
+	 * gets the client of the REST API
+	 * @return the {@link GitHub} client
+	 */
+	public GitHub getApi() {
+		return api;
+	}
+	/**
+	 * checks if the GraphQL API can be used<br>
+	 * The GraphQL API requires a token and is not used if its rate limit is nearly exceeded
+	 * as the REST API can use cached responses in that case.
+	 * @return <code>true</code> if the GraphQL API should be used, else <code>false</code>
+	 */
+	public boolean isGraphQLAvailable() {
+		return token!=null&&!graphQLRateLimit.isNearLimit();
+	}
+	/**
+	 * executes a query using the GraphQL API
+	 * @param query the GraphQL query
+	 * @param variables the variables of the query
+	 * @return the <code>data</code> object of the response
+	 * @throws GHFileNotFoundException if something requested by the query does not exist
+	 * @throws IOException if the query fails
+	 * @throws IllegalStateException if no token is set
+	 */
+	public JSONObject queryGraphQL(String query,JSONObject variables) throws IOException {
+		if(token==null) {
+			throw new IllegalStateException("The GraphQL API requires a token");
+		}
+		String url=Endpoint.GITHUB.url(GRAPHQL_PATH);
+		JSONObject requestBody=new JSONObject().put("query", query).put("variables", variables);
+		Request request=new Request.Builder()
+				.url(url)
+				.header("Authorization", "bearer "+token)
+				.post(RequestBody.create(JSON_TYPE, requestBody.toString()))
+				.build();
+		JSONObject response=Upstream.forURL(url).execute(()->{
+			try(Response resp=httpClient.newCall(request).execute()){
+				ResponseBody body=resp.body();
+				if(!resp.isSuccessful()) {
+					throw new HttpStatusException(url, resp.code());
+				}
+				if(body==null) {
+					throw new IOException("GraphQL request failed without a response");
+				}
+				try(Reader reader=body.charStream()){
+					return new JSONObject(new JSONTokener(reader));
+				}catch(JSONException e) {
+					throw new IOException("Invalid GraphQL response", e);
+				}
+			}
+		});
+		JSONArray errors=response.optJSONArray("errors");
+		if(errors!=null&&errors.length()>0) {
+			JSONObject error=errors.getJSONObject(0);
+			if("NOT_FOUND".equals(error.optString("type"))) {
+				throw new GHFileNotFoundException(error.optString("message"));
+			}
+			throw new IOException("GraphQL query failed: "+error.optString("message"));
+		}
+		return response.getJSONObject("data");
+	}
+
+	/**
+	 * gets the number of requests to the REST API that can be sent until the rate limit resets
+	 * @return the remaining requests or <code>-1</code> if no request has been sent
+	 */
+	public static int getRemaining() {
+		return coreRateLimit.getRemaining();
+	}
+	/**
+	 * gets the maximum number of requests to the REST API per rate limit window
+	 * @return the rate limit or <code>-1</code> if no request has been sent
+	 */
+	public static int getLimit() {
+		return coreRateLimit.getLimit();
+	}
+
+	private static Response trackRateLimit(Interceptor.Chain chain) throws IOException {
+		Response response=chain.proceed(chain.request());
+		String remainingHeader=response.header(REMAINING_HEADER);
+		String limitHeader=response.header(LIMIT_HEADER);
+		String resetHeader=response.header(RESET_HEADER);
+		if(remainingHeader!=null&&limitHeader!=null&&resetHeader!=null) {
+			RateLimit rateLimit=GRAPHQL_RESOURCE.equals(response.header(RESOURCE_HEADER))?graphQLRateLimit:coreRateLimit;
+			try {
+				rateLimit.update(Integer.parseInt(remainingHeader), Integer.parseInt(limitHeader), Long.parseLong(resetHeader)*1000);
+			}catch(NumberFormatException e) {
+				LOG.debug("Invalid rate limit headers from GitHub", e);
+			}
+		}
+		return response;
+	}
+
+	private static Response useCacheIfLimited(Interceptor.Chain chain) throws IOException {
+		Request request=chain.request();
+		if(!"GET".equals(request.method())) {
+			return chain.proceed(request);
+		}
+		if(coreRateLimit.isNearLimit()) {
+			Response cached=getCachedResponse(chain, request);
+			if(cached!=null) {
+				return cached;
+			}
+		}
+		Response response;
+		try {
+			response=chain.proceed(request);
+		}catch(IOException e) {
+			Response cached=getCachedResponse(chain, request);
+			if(cached==null) {
+				throw e;
+			}
+			return cached;
+		}
+		if(isRateLimited(response)) {
+			Response cached=getCachedResponse(chain, request);
+			if(cached!=null) {
+				response.close();
+				return cached;
+			}
+		}
+		return response;
+	}
+	private static boolean isRateLimited(Response response) {
+		return response.code()==TOO_MANY_REQUESTS||
+				(response.code()==HttpURLConnection.HTTP_FORBIDDEN&&"0".equals(response.header(REMAINING_HEADER)));
+	}
+	/**
+	 * gets a cached response without sending a request, even if it is outdated
+	 * @return the cached response or <code>null</code> if there is none
+	 */
+	private static Response getCachedResponse(Interceptor.Chain chain,Request request) throws IOException {
+		Response cached=chain.proceed(request.newBuilder().cacheControl(CacheControl.FORCE_CACHE).build());
+		if(cached.code()==UNSATISFIABLE_REQUEST) {
+			cached.close();
+			return null;
+		}
+		MetricRegistry.increment("github.cache.stale");
+		LOG.debug("Using cached response for {}", request.url());
+		return cached;
+	}
+
+	/**
+	 * the state of a rate limit of the GitHub API
+	 */
+	private static final class RateLimit{
+		private final String name;
+		private int remaining=-1;
+		private int limit=-1;
+		private long resetAtMillis;
+		private boolean reserveWarned;
+
+		private RateLimit(String name,String metricPrefix) {
+			this.name=name;
+			MetricRegistry.gauge(metricPrefix+"remaining", this::getRemaining);
+			MetricRegistry.gauge(metricPrefix+"limit", this::getLimit);
+		}
+		private synchronized int getRemaining() {
+			return remaining;
+		}
+		private synchronized int getLimit() {
+			return limit;
+		}
+		private synchronized boolean isNearLimit() {
+			return remaining>=0&&remaining<=BotData.getGitHubRateLimitReserve()&&System.currentTimeMillis()<resetAtMillis;
+		}
+		private synchronized void update(int newRemaining,int newLimit,long newResetAtMillis) {
+			remaining=newRemaining;
+			limit=newLimit;
+			resetAtMillis=newResetAtMillis;
+			LOG.debug("GitHub {} rate limit: {} of {} remaining", name, remaining, limit);
+			if(remaining<=BotData.getGitHubRateLimitReserve()) {
+				if(!reserveWarned) {
+					LOG.warn("Only {} of {} GitHub {} rate limit remaining until it resets in {}s",
+							remaining, limit, name, Math.max(0, (resetAtMillis-System.currentTimeMillis())/1000));
+					reserveWarned=true;
+				}
+			}else {
+				reserveWarned=false;
+			}
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: HttpStatusException.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.io.IOException;
+
+/**
+ * thrown if an external API answers a request with an unsuccessful HTTP status code
+ * @see Upstream#isFailure(Throwable)
+ */
+public class HttpStatusException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	private final int statusCode;
+
+	/**
+	 * creates the exception
+	 * @param url the requested URL
+	 * @param statusCode the HTTP status code of the response
+	 */
+	public HttpStatusException(String url,int statusCode) {
+		super("Server returned HTTP response code: "+statusCode+" for URL: "+url);
+		this.statusCode=statusCode;
+	}
+	/**
+	 * gets the HTTP status code of the response
+	 * @return the status code, e.g. <code>503</code>
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+}
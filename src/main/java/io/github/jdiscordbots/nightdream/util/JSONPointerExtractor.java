@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: JSONPointerExtractor.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * extracts values from a JSON document without parsing the whole document<br>
+ * The values are selected using JSON pointers (e.g. <code>/maintainers/0/name</code>), the token <code>*</code> matches every key or index.
+ * Only the selected values are parsed, everything else is skipped while reading.
+ * If no pointer contains a wildcard, reading stops as soon as all values have been found.
+ */
+public final class JSONPointerExtractor {
+	private static final String WILDCARD="*";
+	private static final int NO_MATCH=0;
+	private static final int PREFIX_MATCH=1;
+	private static final int EXACT_MATCH=2;
+	private static final int NOTHING_PEEKED=-2;
+
+	private final Reader reader;
+	private final List<String[]> pointers;
+	private final boolean hasWildcards;
+	private final JSONObject results=new JSONObject();
+	private int peeked=NOTHING_PEEKED;
+	private long position;
+
+	private JSONPointerExtractor(Reader reader,List<String[]> pointers) {
+		this.reader=reader instanceof BufferedReader?reader:new BufferedReader(reader);
+		this.pointers=pointers;
+		boolean wildcards=false;
+		for (String[] pointer : pointers) {
+			for (String token : pointer) {
+				if(WILDCARD.equals(token)) {
+					wildcards=true;
+				}
+			}
+		}
+		hasWildcards=wildcards;
+	}
+
+	/**
+	 * extracts values from a JSON document
+	 * @param reader the {@link Reader} to read the document from, it is not closed
+	 * @param pointers the JSON pointers of the values to extract
+	 * @return a {@link JSONObject} with the JSON pointers of all found values as keys, values that do not exist are not contained
+	 * @throws IOException if the document cannot be read
+	 * @throws JSONException if the document is not valid JSON
+	 * @throws IllegalArgumentException if a JSON pointer is invalid
+	 */
+	public static JSONObject extract(Reader reader,Collection<String> pointers) throws IOException {
+		List<String[]> parsedPointers=new ArrayList<>(pointers.size());
+		for (String pointer : pointers) {
+			parsedPointers.add(parsePointer(pointer));
+		}
+		JSONPointerExtractor extractor=new JSONPointerExtractor(reader, parsedPointers);
+		extractor.value(new ArrayList<>());
+		return extractor.results;
+	}
+	private static String[] parsePointer(String pointer) {
+		if(pointer.isEmpty()) {
+			return new String[0];
+		}
+		if(pointer.charAt(0)!='/') {
+			throw new IllegalArgumentException("JSON pointer must start with a slash: "+pointer);
+		}
+		String[] tokens=pointer.substring(1).split("/", -1);
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i]=tokens[i].replace("~1", "/").replace("~0", "~");
+		}
+		return tokens;
+	}
+	private static String toPointer(List<String> path) {
+		StringBuilder sb=new StringBuilder();
+		for (String token : path) {
+			sb.append('/').append(token.replace("~", "~0").replace("/", "~1"));
+		}
+		return sb.toString();
+	}
+	private int match(List<String> path) {
+		int result=NO_MATCH;
+		for (String[] pointer : pointers) {
+			if(pointer.length>=path.size()&&startsWith(pointer, path)) {
+				if(pointer.length==path.size()) {
+					return EXACT_MATCH;
+				}
+				result=PREFIX_MATCH;
+			}
+		}
+		return result;
+	}
+	private static boolean startsWith(String[] pointer,List<String> path) {
+		for (int i = 0; i < path.size(); i++) {
+			if(!WILDCARD.equals(pointer[i])&&!pointer[i].equals(path.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	private boolean isDone() {
+		return !hasWildcards&&results.length()==pointers.size();
+	}
+
+	private void value(List<String> path) throws IOException {
+		int match=match(path);
+		if(match==EXACT_MATCH) {
+			results.put(toPointer(path), readValue());
+		}else if(match==PREFIX_MATCH) {
+			descend(path);
+		}else {
+			skipValue();
+		}
+	}
+	/**
+	 * reads the children of an object or array that contains values to extract
+	 */
+	private void descend(List<String> path) throws IOException {
+		int c=nextNonWhitespace();
+		if(c=='{') {
+			if(peekNonWhitespace()=='}') {
+				read();
+				return;
+			}
+			do {
+				path.add(readKey());
+				value(path);
+				path.remove(path.size()-1);
+				if(isDone()) {
+					return;
+				}
+				c=nextNonWhitespace();
+			}while(c==',');
+			expect('}', c);
+		}else if(c=='[') {
+			if(peekNonWhitespace()==']') {
+				read();
+				return;
+			}
+			int index=0;
+			do {
+				path.add(String.valueOf(index++));
+				value(path);
+				path.remove(path.size()-1);
+				if(isDone()) {
+					return;
+				}
+				c=nextNonWhitespace();
+			}while(c==',');
+			expect(']', c);
+		}else {
+			back(c);
+			skipValue();
+		}
+	}
+	private Object readValue() throws IOException {
+		int c=nextNonWhitespace();
+		if(c=='{') {
+			JSONObject obj=new JSONObject();
+			if(peekNonWhitespace()=='}') {
+				read();
+				return obj;
+			}
+			do {
+				String key=readKey();
+				obj.put(key, readValue());
+				c=nextNonWhitespace();
+			}while(c==',');
+			expect('}', c);
+			return obj;
+		}else if(c=='[') {
+			JSONArray arr=new JSONArray();
+			if(peekNonWhitespace()==']') {
+				read();
+				return arr;
+			}
+			do {
+				arr.put(readValue());
+				c=nextNonWhitespace();
+			}while(c==',');
+			expect(']', c);
+			return arr;
+		}else if(c=='"') {
+			return readString();
+		}else {
+			back(c);
+			return JSONObject.stringToValue(readLiteral());
+		}
+	}
+	private void skipValue() throws IOException {
+		int c=nextNonWhitespace();
+		if(c=='"') {
+			skipString();
+		}else if(c=='{'||c=='[') {
+			int depth=1;
+			while(depth>0) {
+				c=read();
+				if(c==-1) {
+					throw syntaxError("Unterminated object or array");
+				}else if(c=='"') {
+					skipString();
+				}else if(c=='{'||c=='[') {
+					depth++;
+				}else if(c=='}'||c==']') {
+					depth--;
+				}
+			}
+		}else {
+			back(c);
+			readLiteral();
+		}
+	}
+	private String readKey() throws IOException {
+		int c=nextNonWhitespace();
+		expect('"', c);
+		String key=readString();
+		expect(':', nextNonWhitespace());
+		return key;
+	}
+	private String readString() throws IOException {
+		StringBuilder sb=new StringBuilder();
+		for(;;) {
+			int c=read();
+			switch(c) {
+			case -1:
+				throw syntaxError("Unterminated string");
+			case '"':
+				return sb.toString();
+			case '\\':
+				sb.append(readEscaped());
+				break;
+			default:
+				sb.append((char)c);
+			}
+		}
+	}
+	private char readEscaped() throws IOException {
+		int c=read();
+		switch(c) {
+		case 'b':
+			return '\b';
+		case 't':
+			return '\t';
+		case 'n':
+			return '\n';
+		case 'f':
+			return '\f';
+		case 'r':
+			return '\r';
+		case 'u':
+			char[] hex=new char[4];
+			for (int i = 0; i < hex.length; i++) {
+				int h=read();
+				if(h==-1) {
+					throw syntaxError("Unterminated escape sequence");
+				}
+				hex[i]=(char)h;
+			}
+			try {
+				return (char)Integer.parseInt(new String(hex), 16);
+			}catch(NumberFormatException e) {
+				throw syntaxError("Illegal escape");
+			}
+		case '"':
+		case '\'':
+		case '\\':
+		case '/':
+			return (char)c;
+		default:
+			throw syntaxError("Illegal escape");
+		}
+	}
+	private void skipString() throws IOException {
+		for(;;) {
+			int c=read();
+			if(c==-1) {
+				throw syntaxError("Unterminated string");
+			}else if(c=='\\') {
+				read();
+			}else if(c=='"') {
+				return;
+			}
+		}
+	}
+	private String readLiteral() throws IOException {
+		StringBuilder sb=new StringBuilder();
+		int c=read();
+		while(c!=-1&&",:]}[{\"".indexOf(c)==-1&&!Character.isWhitespace(c)) {
+			sb.append((char)c);
+			c=read();
+		}
+		back(c);
+		if(sb.length()==0) {
+			throw syntaxError("Missing value");
+		}
+		return sb.toString();
+	}
+	private void expect(char expected,int actual) {
+		if(actual!=expected) {
+			throw syntaxError("Expected '"+expected+"'");
+		}
+	}
+
+	private int read() throws IOException {
+		if(peeked!=NOTHING_PEEKED) {
+			int c=peeked;
+			peeked=NOTHING_PEEKED;
+			return c;
+		}
+		position++;
+		return reader.read();
+	}
+	private void back(int c) {
+		peeked=c;
+	}
+	private int nextNonWhitespace() throws IOException {
+		int c;
+		do {
+			c=read();
+		}while(c!=-1&&Character.isWhitespace(c));
+		return c;
+	}
+	private int peekNonWhitespace() throws IOException {
+		int c=nextNonWhitespace();
+		back(c);
+		return c;
+	}
+	private JSONException syntaxError(String message) {
+		return new JSONException(message+" at character "+position);
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: KSoftImagePool.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.explodingbush.ksoftapi.entities.TaggedImage;
+import net.explodingbush.ksoftapi.image.ImageTag;
+
+/**
+ * a pool of image URLs of an {@link ImageTag} that is refilled in the background<br>
+ * Every pool is a ring buffer of up to {@value #CAPACITY} images that is refilled when it contains less than {@value #LOW_WATER_MARK} images.
+ * All pools are refilled by a single thread that waits {@value #REQUEST_INTERVAL_MILLIS} milliseconds between requests
+ * in order to respect the rate limit of the KSoft API.
+ * If a request fails, the pool is not refilled for {@value #FAILURE_BACKOFF_MILLIS} milliseconds.<br>
+ * The number of images in a pool is available in the metric <code>ksoft.pool.&lt;tag&gt;.size</code>.
+ */
+public final class KSoftImagePool {
+	private static final Logger LOG=LoggerFactory.getLogger(KSoftImagePool.class);
+
+	private static final int CAPACITY=16;
+	private static final int LOW_WATER_MARK=4;
+	private static final long REQUEST_INTERVAL_MILLIS=500;
+	private static final long FAILURE_BACKOFF_MILLIS=30000;
+
+	private static final Map<ImageTag, KSoftImagePool> pools=new ConcurrentHashMap<>();
+	private static final ExecutorService refillExecutor=Executors.newSingleThreadExecutor(r->{
+		Thread t=new Thread(r, "ksoft-image-pool");
+		t.setDaemon(true);
+		return t;
+	});
+	/**
+	 * the earliest time the next request may be sent, only accessed by the refill thread
+	 */
+	private static long nextRequestAt;
+
+	private final ImageTag tag;
+	private final String[] urls=new String[CAPACITY];
+	private int head;
+	private int size;
+	private long retryAt;
+	private final AtomicBoolean refilling=new AtomicBoolean();
+
+	private KSoftImagePool(ImageTag tag) {
+		this.tag=tag;
+		MetricRegistry.gauge("ksoft.pool."+tag.toString().toLowerCase(Locale.ROOT)+".size", this::size);
+	}
+	/**
+	 * gets the pool of an {@link ImageTag}
+	 * @param tag the {@link ImageTag}
+	 * @return the pool
+	 */
+	public static KSoftImagePool get(ImageTag tag) {
+		return pools.computeIfAbsent(tag, KSoftImagePool::new);
+	}
+
+	/**
+	 * gets an image without waiting for the network
+	 * @return the URL of the image or <code>null</code> if the pool is empty
+	 */
+	public String poll() {
+		String url;
+		synchronized(this) {
+			if(size==0) {
+				url=null;
+			}else {
+				url=urls[head];
+				urls[head]=null;
+				head=(head+1)%CAPACITY;
+				size--;
+			}
+		}
+		MetricRegistry.increment(url==null?"ksoft.pool.misses":"ksoft.pool.hits");
+		prefetch();
+		return url;
+	}
+	/**
+	 * starts loading images in the background if the pool is running low
+	 */
+	public void prefetch() {
+		if(KSoftUtil.getApi()==null) {
+			return;
+		}
+		synchronized(this) {
+			if(size>=LOW_WATER_MARK||System.currentTimeMillis()<retryAt) {
+				return;
+			}
+		}
+		if(refilling.compareAndSet(false, true)) {
+			refillExecutor.execute(()->{
+				try {
+					refill();
+				}finally {
+					refilling.set(false);
+				}
+			});
+		}
+	}
+	private synchronized int size() {
+		return size;
+	}
+	private void refill() {
+		//duplicates are not added so the number of requests is limited
+		for(int attempts=0;attempts<2*CAPACITY&&size()<CAPACITY;attempts++) {
+			waitForRateLimit();
+			TaggedImage image;
+			try {
+				image=KSoftUtil.getImage(tag);
+			}catch(UpstreamUnavailableException e) {
+				LOG.debug("Not loading {} images: {}", tag, e.getMessage());
+				backOff();
+				return;
+			}catch(RuntimeException e) {
+				LOG.warn("Cannot load {} image", tag, e);
+				backOff();
+				return;
+			}
+			if(image==null||image.getUrl()==null) {
+				backOff();
+				return;
+			}
+			offer(image.getUrl());
+		}
+	}
+	private static void waitForRateLimit() {
+		long delay=nextRequestAt-System.currentTimeMillis();
+		if(delay>0) {
+			try {
+				Thread.sleep(delay);
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		nextRequestAt=System.currentTimeMillis()+REQUEST_INTERVAL_MILLIS;
+	}
+	private synchronized void backOff() {
+		retryAt=System.currentTimeMillis()+FAILURE_BACKOFF_MILLIS;
+	}
+	private synchronized void offer(String url) {
+		//the API may return the same image twice in a short time
+		for (int i = 0; i < size; i++) {
+			if(url.equals(urls[(head+i)%CAPACITY])) {
+				return;
+			}
+		}
+		if(size<CAPACITY) {
+			urls[(head+size)%CAPACITY]=url;
+			size++;
+		}
+	}
+}
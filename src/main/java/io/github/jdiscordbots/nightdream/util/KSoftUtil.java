@@ -24,6 +24,7 @@ public class KSoftUtil {
 	private static final Logger LOG=LoggerFactory.getLogger(KSoftUtil.class);
 	
 	private static KSoftAPI api;
+	private static final Upstream upstream=Upstream.get("api.ksoft.si");
 	
 	static {
 		String token=BotData.getKSoftToken();
@@ -48,24 +49,46 @@ public class KSoftUtil {
 	 * gets an image with a specified tag
 	 * @param tag the tag of the image
 	 * @return the image as {@link TaggedImage}
+	 * @throws UpstreamUnavailableException if the KSoft API is unhealthy or too many requests to it are running
 	 */
 	public static TaggedImage getImage(ImageTag tag) {
 		if(api==null) {
 			return null;
 		}
-		return api.getTaggedImage(tag).allowNsfw(false).execute();
+		Upstream.Permit permit=upstream.acquire();
+		boolean failed=true;
+		try {
+			TaggedImage image=api.getTaggedImage(tag).allowNsfw(false).execute();
+			failed=false;
+			return image;
+		}finally {
+			permit.release(failed);
+		}
 	}
 	/**
 	 * gets an image with a specified tag
 	 * @param tag the tag of the image
 	 * @param success a {@link Consumer} that is called if the request succeeds
-	 * @param failure a {@link Consumer} that is called if the request fails
+	 * @param failure a {@link Consumer} that is called if the request fails, it is called with an {@link UpstreamUnavailableException} if the request has been rejected
 	 */
 	public static void getImage(ImageTag tag,Consumer<? super TaggedImage> success,Consumer<? super Throwable> failure) {
 		if(api==null) {
 			failure.accept(new NullPointerException("token not provided"));
 			return;
 		}
-		api.getTaggedImage(tag).allowNsfw(false).executeAsync(success,failure);
+		Upstream.Permit permit;
+		try {
+			permit=upstream.acquire();
+		}catch(UpstreamUnavailableException e) {
+			failure.accept(e);
+			return;
+		}
+		api.getTaggedImage(tag).allowNsfw(false).executeAsync(img->{
+			permit.release(false);
+			success.accept(img);
+		},err->{
+			permit.release(true);
+			failure.accept(err);
+		});
 	}
 }
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: LicenseIndex.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * an index of licenses that does not need the network for known licenses<br>
+ * The index is loaded from a bundled snapshot of the GitHub licenses API when it is used for the first time.
+ * Licenses can be found by their key, their SPDX ID or their name, ignoring case and punctuation.
+ * Licenses with a similar ID are only suggested using {@link #findSimilar(String)}
+ * as a similar ID is often a different version of a license (e.g. <code>epl-1.0</code> and <code>epl-2.0</code>).<br>
+ * Licenses that are requested after being in the index for {@value #REFRESH_DAYS} days are refreshed in the background.
+ * Licenses that are not in the index can be loaded from GitHub using {@link #fetch(String)},
+ * but the bundled snapshot contains all licenses known by GitHub so this is rarely needed.
+ */
+public final class LicenseIndex {
+	private static final Logger LOG=LoggerFactory.getLogger(LicenseIndex.class);
+
+	private static final String RESOURCE="licenses/licenses.json";
+	private static final long REFRESH_DAYS=7;
+	private static final long CACHE_DAYS=1;
+	private static final int MIN_PREFIX_LENGTH=3;
+	private static final int MAX_DISTANCE=2;
+	private static final int MAX_SUGGESTIONS=3;
+
+	private static final Set<String> refreshing=ConcurrentHashMap.newKeySet();
+	private static final Map<String, Long> notFound=new ConcurrentHashMap<>();
+
+	private LicenseIndex() {
+		//prevent instantiation
+	}
+
+	/**
+	 * the index is loaded when it is accessed for the first time
+	 */
+	private static final class Holder{
+		private static final Map<String, LicenseInfo> INDEX=loadBundledLicenses();
+	}
+
+	/**
+	 * finds a license without using the network
+	 * @param query the key, SPDX ID or name of the license
+	 * @return the license or <code>null</code> if there is no license with exactly this key, SPDX ID or name
+	 */
+	public static LicenseInfo find(String query) {
+		String normalized=normalize(query);
+		if(normalized.isEmpty()) {
+			return null;
+		}
+		LicenseInfo info=Holder.INDEX.get(normalized);
+		if(info==null) {
+			MetricRegistry.increment("license.index.misses");
+		}else {
+			MetricRegistry.increment("license.index.hits");
+			if(info.isStale()) {
+				refresh(info);
+			}
+		}
+		return info;
+	}
+	/**
+	 * finds licenses in the index with a key, SPDX ID or name that starts with or is similar to a query<br>
+	 * The licenses should only be used as suggestions as they may be a different version of the requested license.
+	 * @param query the key, SPDX ID or name of the license
+	 * @return up to {@value #MAX_SUGGESTIONS} licenses, the most similar licenses first
+	 */
+	public static List<LicenseInfo> findSimilar(String query) {
+		String normalized=normalize(query);
+		if(normalized.isEmpty()) {
+			return Collections.emptyList();
+		}
+		int maxDistance=Math.min(MAX_DISTANCE, normalized.length()/3);
+		Map<LicenseInfo, Integer> distances=new HashMap<>();
+		for (Map.Entry<String, LicenseInfo> entry : Holder.INDEX.entrySet()) {
+			String name=entry.getKey();
+			int distance;
+			if(normalized.length()>=MIN_PREFIX_LENGTH&&name.startsWith(normalized)) {
+				distance=0;
+			}else {
+				distance=getDistance(normalized, name, maxDistance+1);
+			}
+			if(distance<=maxDistance) {
+				distances.merge(entry.getValue(), distance, Math::min);
+			}
+		}
+		return distances.entrySet().stream()
+				.sorted(Map.Entry.<LicenseInfo, Integer>comparingByValue().thenComparing(entry->entry.getKey().getKey()))
+				.limit(MAX_SUGGESTIONS)
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList());
+	}
+	/**
+	 * loads a license from GitHub and adds it to the index<br>
+	 * Licenses GitHub does not know are remembered for {@value #CACHE_DAYS} day(s) so they are not requested again.
+	 * @param id the key or SPDX ID of the license
+	 * @return a {@link CompletableFuture} that is completed with the license
+	 * or completed exceptionally with a {@link FileNotFoundException} if GitHub does not know the license
+	 */
+	public static CompletableFuture<LicenseInfo> fetch(String id) {
+		//not using thenApply so the exception is not wrapped in a CompletionException
+		CompletableFuture<LicenseInfo> future=new CompletableFuture<>();
+		String normalized=normalize(id);
+		Long notFoundUntil=notFound.get(normalized);
+		if(notFoundUntil!=null) {
+			if(notFoundUntil>System.currentTimeMillis()) {
+				MetricRegistry.increment("license.notfound.hits");
+				future.completeExceptionally(new FileNotFoundException(id));
+				return future;
+			}
+			notFound.remove(normalized, notFoundUntil);
+		}
+		String url;
+		try {
+			url=Endpoint.GITHUB.url("/licenses/")+URLEncoder.encode(id, StandardCharsets.UTF_8.name());
+		}catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		GeneralUtils.getJSONFromURLAsync(url, CACHE_DAYS, TimeUnit.DAYS).whenComplete((json,e)->{
+			if(e!=null) {
+				if(e instanceof FileNotFoundException) {
+					notFound.put(normalized, System.currentTimeMillis()+TimeUnit.DAYS.toMillis(CACHE_DAYS));
+				}
+				future.completeExceptionally(e);
+				return;
+			}
+			try {
+				LicenseInfo info=LicenseInfo.fromJSON(json);
+				add(Holder.INDEX, info);
+				future.complete(info);
+			}catch(JSONException parseException) {
+				future.completeExceptionally(new IOException("invalid license "+id, parseException));
+			}
+		});
+		return future;
+	}
+	private static void refresh(LicenseInfo info) {
+		if(!refreshing.add(info.getKey())) {
+			return;
+		}
+		//the old entry is used until the refresh succeeds and is not refreshed again for some time if it fails
+		info.loadedAt=System.currentTimeMillis();
+		fetch(info.getKey()).whenComplete((refreshed,e)->{
+			refreshing.remove(info.getKey());
+			if(e!=null) {
+				LOG.debug("Cannot refresh license {}: {}", info.getKey(), e.getMessage());
+			}
+		});
+	}
+	/**
+	 * calculates the Levenshtein distance of two Strings
+	 * @param limit the distance is not calculated exactly if it is at least this value
+	 * @return the distance or a value of at least <code>limit</code> if the distance is not lower than <code>limit</code>
+	 */
+	private static int getDistance(String first,String second,int limit) {
+		if(Math.abs(first.length()-second.length())>=limit) {
+			return limit;
+		}
+		int[] previous=new int[second.length()+1];
+		int[] current=new int[second.length()+1];
+		for (int j = 0; j < previous.length; j++) {
+			previous[j]=j;
+		}
+		for (int i = 1; i <= first.length(); i++) {
+			current[0]=i;
+			int rowMin=i;
+			for (int j = 1; j <= second.length(); j++) {
+				int cost=first.charAt(i-1)==second.charAt(j-1)?0:1;
+				current[j]=Math.min(Math.min(current[j-1]+1, previous[j]+1), previous[j-1]+cost);
+				rowMin=Math.min(rowMin, current[j]);
+			}
+			if(rowMin>=limit) {
+				return limit;
+			}
+			int[] tmp=previous;
+			previous=current;
+			current=tmp;
+		}
+		return previous[second.length()];
+	}
+	private static String normalize(String name) {
+		StringBuilder sb=new StringBuilder(name.length());
+		for (char c : name.toLowerCase(Locale.ROOT).toCharArray()) {
+			if(Character.isLetterOrDigit(c)) {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+	private static void add(Map<String, LicenseInfo> index,LicenseInfo info) {
+		index.put(normalize(info.getKey()), info);
+		index.put(normalize(info.getSpdxId()), info);
+		index.put(normalize(info.getName()), info);
+	}
+	private static Map<String, LicenseInfo> loadBundledLicenses(){
+		Map<String, LicenseInfo> index=new ConcurrentHashMap<>();
+		try(InputStream is=LicenseIndex.class.getClassLoader().getResourceAsStream(RESOURCE)){
+			if(is==null) {
+				LOG.warn("Cannot find bundled licenses");
+				return index;
+			}
+			try(BufferedReader reader=new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))){
+				JSONArray array=new JSONArray(reader.lines().collect(Collectors.joining("\n")));
+				for (int i = 0; i < array.length(); i++) {
+					add(index, LicenseInfo.fromJSON(array.getJSONObject(i)));
+				}
+			}
+		}catch(IOException|JSONException e) {
+			LOG.warn("Cannot load bundled licenses", e);
+		}
+		return index;
+	}
+
+	/**
+	 * information about a license as provided by the GitHub licenses API
+	 */
+	public static final class LicenseInfo{
+		private final String key;
+		private final String spdxId;
+		private final String name;
+		private final String description;
+		private final List<String> permissions;
+		private final List<String> conditions;
+		private final List<String> limitations;
+		private final boolean featured;
+		private volatile long loadedAt=System.currentTimeMillis();
+
+		private LicenseInfo(String key, String spdxId, String name, String description, List<String> permissions,
+				List<String> conditions, List<String> limitations, boolean featured) {
+			this.key = key;
+			this.spdxId = spdxId;
+			this.name = name;
+			this.description = description;
+			this.permissions = permissions;
+			this.conditions = conditions;
+			this.limitations = limitations;
+			this.featured = featured;
+		}
+		private static LicenseInfo fromJSON(JSONObject json) {
+			return new LicenseInfo(json.getString("key"), json.getString("spdx_id"), json.getString("name"), json.getString("description"),
+					toList(json.getJSONArray("permissions")), toList(json.getJSONArray("conditions")), toList(json.getJSONArray("limitations")),
+					json.getBoolean("featured"));
+		}
+		private static List<String> toList(JSONArray array){
+			List<String> list=new ArrayList<>(array.length());
+			for (int i = 0; i < array.length(); i++) {
+				list.add(array.getString(i));
+			}
+			return Collections.unmodifiableList(list);
+		}
+		private boolean isStale() {
+			return System.currentTimeMillis()-loadedAt>TimeUnit.DAYS.toMillis(REFRESH_DAYS);
+		}
+		/**
+		 * gets the key used by GitHub to identify the license
+		 * @return the key, e.g. <code>gpl-3.0</code>
+		 */
+		public String getKey() {
+			return key;
+		}
+		/**
+		 * gets the SPDX identifier of the license
+		 * @return the SPDX ID, e.g. <code>GPL-3.0</code>
+		 */
+		public String getSpdxId() {
+			return spdxId;
+		}
+		public String getName() {
+			return name;
+		}
+		public String getDescription() {
+			return description;
+		}
+		/**
+		 * gets the rules describing what the license allows
+		 * @return an unmodifiable {@link List} of the permissions
+		 */
+		public List<String> getPermissions() {
+			return permissions;
+		}
+		/**
+		 * gets the rules describing what the license requires
+		 * @return an unmodifiable {@link List} of the conditions
+		 */
+		public List<String> getConditions() {
+			return conditions;
+		}
+		/**
+		 * gets the rules describing what the license does not allow
+		 * @return an unmodifiable {@link List} of the limitations
+		 */
+		public List<String> getLimitations() {
+			return limitations;
+		}
+		/**
+		 * checks if the license is commonly used
+		 * @return <code>true</code> if GitHub features the license, else <code>false</code>
+		 */
+		public boolean isFeatured() {
+			return featured;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: LongHashMap.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * a hash map with primitive <code>long</code> keys<br>
+ * It uses open addressing with linear probing so no entry objects or boxed keys are created.
+ * Removed entries are not marked with tombstones, the following entries are moved back instead.
+ * <code>null</code> values are not supported.<br>
+ * This class is not thread-safe.
+ * @param <V> the type of the values
+ */
+public class LongHashMap<V> {
+	private static final int MIN_CAPACITY=16;
+	private static final float LOAD_FACTOR=0.6f;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	private int mask;
+	private int resizeThreshold;
+
+	/**
+	 * creates an empty map
+	 */
+	public LongHashMap() {
+		this(MIN_CAPACITY);
+	}
+	/**
+	 * creates an empty map that can hold the specified number of entries without resizing
+	 * @param expectedSize the expected number of entries
+	 */
+	public LongHashMap(int expectedSize) {
+		allocate(tableSizeFor((int)Math.ceil(expectedSize/LOAD_FACTOR)));
+	}
+	private static int tableSizeFor(int capacity) {
+		int size=Integer.highestOneBit(Math.max(MIN_CAPACITY, capacity)-1)<<1;
+		return size<0?1<<30:size;
+	}
+	private void allocate(int capacity) {
+		keys=new long[capacity];
+		values=new Object[capacity];
+		mask=capacity-1;
+		resizeThreshold=(int)(capacity*LOAD_FACTOR);
+	}
+	private int slot(long key) {
+		long hash=key*0x9E3779B97F4A7C15L;
+		return (int)(hash^(hash>>>32))&mask;
+	}
+	private int indexOf(long key) {
+		for (int i = slot(key); values[i]!=null; i=(i+1)&mask) {
+			if(keys[i]==key) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	/**
+	 * gets the value associated with a key
+	 * @param key the key
+	 * @return the value or <code>null</code> if the key is not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int index=indexOf(key);
+		return index==-1?null:(V)values[index];
+	}
+	/**
+	 * checks if a key is present
+	 * @param key the key
+	 * @return <code>true</code> if there is a value associated with the key
+	 */
+	public boolean containsKey(long key) {
+		return indexOf(key)!=-1;
+	}
+	/**
+	 * associates a value with a key
+	 * @param key the key
+	 * @param value the value, must not be <code>null</code>
+	 * @return the previous value associated with the key or <code>null</code> if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key,V value) {
+		if(value==null) {
+			throw new IllegalArgumentException("null values are not supported");
+		}
+		int i=slot(key);
+		for (; values[i]!=null; i=(i+1)&mask) {
+			if(keys[i]==key) {
+				V old=(V)values[i];
+				values[i]=value;
+				return old;
+			}
+		}
+		keys[i]=key;
+		values[i]=value;
+		if(++size>resizeThreshold) {
+			rehash(keys.length<<1);
+		}
+		return null;
+	}
+	/**
+	 * gets the value associated with a key and computes it if not present
+	 * @param key the key
+	 * @param mappingFunction the function computing the value if the key is not present
+	 * @return the (new) value associated with the key
+	 */
+	public V computeIfAbsent(long key,LongFunction<? extends V> mappingFunction) {
+		V value=get(key);
+		if(value==null) {
+			value=mappingFunction.apply(key);
+			put(key, value);
+		}
+		return value;
+	}
+	/**
+	 * removes the value associated with a key
+	 * @param key the key
+	 * @return the removed value or <code>null</code> if the key was not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int index=indexOf(key);
+		if(index==-1) {
+			return null;
+		}
+		V old=(V)values[index];
+		shiftBack(index);
+		size--;
+		return old;
+	}
+	/**
+	 * closes the gap at a removed slot by moving back all following entries of the probe sequence that may be stored there
+	 * @param gap the removed slot
+	 */
+	private void shiftBack(int gap) {
+		int i=gap;
+		while(true) {
+			i=(i+1)&mask;
+			if(values[i]==null) {
+				break;
+			}
+			int home=slot(keys[i]);
+			//move the entry if its home slot is not cyclically in (gap, i]
+			if(((i-home)&mask)>=((i-gap)&mask)) {
+				keys[gap]=keys[i];
+				values[gap]=values[i];
+				gap=i;
+			}
+		}
+		values[gap]=null;
+	}
+	private void rehash(int capacity) {
+		long[] oldKeys=keys;
+		Object[] oldValues=values;
+		allocate(capacity);
+		for (int i = 0; i < oldValues.length; i++) {
+			if(oldValues[i]!=null) {
+				int j=slot(oldKeys[i]);
+				while(values[j]!=null) {
+					j=(j+1)&mask;
+				}
+				keys[j]=oldKeys[i];
+				values[j]=oldValues[i];
+			}
+		}
+	}
+	/**
+	 * gets the number of entries
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+	/**
+	 * checks if there are no entries
+	 * @return <code>true</code> if the map is empty
+	 */
+	public boolean isEmpty() {
+		return size==0;
+	}
+	/**
+	 * removes all entries
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size=0;
+	}
+}
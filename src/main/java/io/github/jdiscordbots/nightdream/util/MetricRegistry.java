@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: MetricRegistry.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * a registry of metrics of the bot<br>
+ * Counters are incremented by the code that observes an event, gauges are evaluated when the metrics are read.
+ * Names are separated by dots, e.g. <code>msgcache.evictions</code>.
+ */
+public final class MetricRegistry {
+	private static final Map<String, LongAdder> counters=new ConcurrentHashMap<>();
+	private static final Map<String, Supplier<? extends Number>> gauges=new ConcurrentHashMap<>();
+
+	private MetricRegistry() {
+		//prevent instantiation
+	}
+	/**
+	 * increments a counter by one
+	 * @param name the name of the counter
+	 */
+	public static void increment(String name) {
+		add(name, 1);
+	}
+	/**
+	 * adds a value to a counter
+	 * @param name the name of the counter
+	 * @param delta the value to add
+	 */
+	public static void add(String name,long delta) {
+		counters.computeIfAbsent(name, k->new LongAdder()).add(delta);
+	}
+	/**
+	 * gets the current value of a counter
+	 * @param name the name of the counter
+	 * @return the value of the counter or <code>0</code> if it does not exist
+	 */
+	public static long getCount(String name) {
+		LongAdder counter=counters.get(name);
+		return counter==null?0:counter.sum();
+	}
+	/**
+	 * registers a gauge, an existing gauge with the same name is replaced
+	 * @param name the name of the gauge
+	 * @param value a {@link Supplier} that returns the current value of the gauge
+	 */
+	public static void gauge(String name,Supplier<? extends Number> value) {
+		gauges.put(name, value);
+	}
+	/**
+	 * gets the current values of all counters and gauges with names starting with a prefix
+	 * @param prefix the prefix of the names, an empty String for all metrics
+	 * @return the values, sorted by name
+	 */
+	public static SortedMap<String, Number> getMetrics(String prefix){
+		SortedMap<String, Number> metrics=new TreeMap<>();
+		counters.forEach((name,counter)->{
+			if(name.startsWith(prefix)) {
+				metrics.put(name, counter.sum());
+			}
+		});
+		gauges.forEach((name,gauge)->{
+			if(name.startsWith(prefix)) {
+				metrics.put(name, gauge.get());
+			}
+		});
+		return metrics;
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: ResponseCache.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * caches response bodies of external APIs<br>
+ * Responses are identified by their URL. Every response has an expiration time, expired responses can be revalidated using their <code>ETag</code> or <code>Last-Modified</code> header.<br>
+ * The responses are kept in memory in LRU order, limited by {@link BotData#getHttpCacheMaxEntries()} and {@link BotData#getHttpCacheMaxBytes()}.
+ * If {@link BotData#getHttpCacheDiskBytes()} is set, responses are also written to the directory <code>httpcache</code> so they survive restarts.<br>
+ * Files are read and written without holding a lock, only the bookkeeping of the memory and disk tiers is synchronized.
+ * Files are replaced atomically so a file that is read concurrently is either the old or the new response.
+ */
+final class ResponseCache {
+	private static final Logger LOG=LoggerFactory.getLogger(ResponseCache.class);
+
+	private static final int FILE_MAGIC=0x4E444843;
+	private static final String FILE_SUFFIX=".cache";
+	private static final String TEMP_FILE_SUFFIX=".tmp";
+
+	/**
+	 * the responses in memory, guarded by the lock of the {@link ResponseCache}
+	 */
+	private final Map<String, CachedResponse> entries=new LinkedHashMap<>(16, 0.75f, true);
+	private long usedBytes;
+
+	private final File diskDir;
+	/**
+	 * lock for {@link ResponseCache#diskEntries} and {@link ResponseCache#usedDiskBytes}, never held while the lock of the {@link ResponseCache} is held
+	 */
+	private final Object diskLock=new Object();
+	private Map<String, Long> diskEntries;
+	private long usedDiskBytes;
+
+	ResponseCache() {
+		this(new File(BotData.DATA_DIR, "httpcache"));
+		MetricRegistry.gauge("httpcache.entries", this::size);
+		MetricRegistry.gauge("httpcache.bytes", this::getUsedBytes);
+	}
+	/**
+	 * creates a cache that stores responses in a specific directory
+	 * @param diskDir the directory where responses are stored if the disk tier is enabled
+	 */
+	ResponseCache(File diskDir) {
+		this.diskDir=diskDir;
+	}
+
+	/**
+	 * gets a cached response, responses only stored on disk are loaded into memory
+	 * @param url the URL of the response
+	 * @return the response or <code>null</code> if it is not cached
+	 */
+	CachedResponse get(String url) {
+		CachedResponse response;
+		synchronized(this) {
+			response=entries.get(url);
+		}
+		if(response==null&&isDiskEnabled()) {
+			response=readFromDisk(url);
+			if(response!=null) {
+				synchronized(this) {
+					//a response that has been put in the meantime is newer
+					CachedResponse current=entries.get(url);
+					if(current==null) {
+						putInMemory(url, response);
+					}else {
+						response=current;
+					}
+				}
+			}
+		}
+		return response;
+	}
+	/**
+	 * adds or replaces a cached response
+	 * @param url the URL of the response
+	 * @param response the response
+	 */
+	void put(String url,CachedResponse response) {
+		synchronized(this) {
+			putInMemory(url, response);
+		}
+		if(isDiskEnabled()) {
+			writeToDisk(url, response);
+		}
+	}
+	synchronized int size() {
+		return entries.size();
+	}
+	synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+	/**
+	 * gets the number of bytes used by responses on disk
+	 * @return the size of all cached files in bytes
+	 */
+	long getUsedDiskBytes() {
+		synchronized(diskLock) {
+			getDiskEntries();
+			return usedDiskBytes;
+		}
+	}
+	private void putInMemory(String url,CachedResponse response) {
+		CachedResponse old=entries.remove(url);
+		if(old!=null) {
+			usedBytes-=old.body.length;
+		}
+		long maxBytes=BotData.getHttpCacheMaxBytes();
+		if(response.body.length>maxBytes) {
+			return;
+		}
+		entries.put(url, response);
+		usedBytes+=response.body.length;
+		int maxEntries=BotData.getHttpCacheMaxEntries();
+		Iterator<CachedResponse> it=entries.values().iterator();
+		while((entries.size()>maxEntries||usedBytes>maxBytes)&&it.hasNext()) {
+			usedBytes-=it.next().body.length;
+			it.remove();
+		}
+	}
+
+	private static boolean isDiskEnabled() {
+		return BotData.getHttpCacheDiskBytes()>0;
+	}
+	private static String getFileName(String url) {
+		try {
+			byte[] hash=MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb=new StringBuilder(hash.length*2+FILE_SUFFIX.length());
+			for (byte b : hash) {
+				sb.append(Character.forDigit((b>>4)&0xF, 16)).append(Character.forDigit(b&0xF, 16));
+			}
+			return sb.append(FILE_SUFFIX).toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		}
+	}
+	/**
+	 * loads the sizes of all files on disk, least recently modified files first<br>
+	 * The caller needs to hold {@link ResponseCache#diskLock}.
+	 */
+	private Map<String, Long> getDiskEntries() {
+		if(diskEntries==null) {
+			diskEntries=new LinkedHashMap<>(16, 0.75f, true);
+			File[] files=diskDir.listFiles((dir,name)->name.endsWith(FILE_SUFFIX));
+			if(files!=null) {
+				Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+				for (File file : files) {
+					diskEntries.put(file.getName(), file.length());
+					usedDiskBytes+=file.length();
+				}
+			}
+		}
+		return diskEntries;
+	}
+	private CachedResponse readFromDisk(String url) {
+		String fileName=getFileName(url);
+		synchronized(diskLock) {
+			//get instead of containsKey so the access order is updated
+			if(getDiskEntries().get(fileName)==null) {
+				return null;
+			}
+		}
+		File file=new File(diskDir, fileName);
+		try(DataInputStream dis=new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))){
+			if(dis.readInt()!=FILE_MAGIC) {
+				throw new IOException("invalid cache file");
+			}
+			long expiresAt=dis.readLong();
+			String etag=dis.readUTF();
+			String lastModified=dis.readUTF();
+			byte[] body=new byte[dis.readInt()];
+			dis.readFully(body);
+			return new CachedResponse(body, etag.isEmpty()?null:etag, lastModified.isEmpty()?null:lastModified, expiresAt);
+		}catch(NoSuchFileException e) {
+			//the file has been evicted in the meantime
+			removeFromDisk(fileName);
+			return null;
+		}catch(IOException e) {
+			LOG.warn("Cannot read cached response {}", file.getAbsolutePath(), e);
+			removeFromDisk(fileName);
+			return null;
+		}
+	}
+	private void writeToDisk(String url,CachedResponse response) {
+		String fileName=getFileName(url);
+		File file=new File(diskDir, fileName);
+		File temp=null;
+		try {
+			Files.createDirectories(diskDir.toPath());
+			//every writer uses its own temporary file so concurrent writes of the same response do not interfere
+			temp=Files.createTempFile(diskDir.toPath(), fileName, TEMP_FILE_SUFFIX).toFile();
+			try(DataOutputStream dos=new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))){
+				dos.writeInt(FILE_MAGIC);
+				dos.writeLong(response.expiresAt);
+				dos.writeUTF(response.etag==null?"":response.etag);
+				dos.writeUTF(response.lastModified==null?"":response.lastModified);
+				dos.writeInt(response.body.length);
+				dos.write(response.body);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}catch(IOException e) {
+			LOG.warn("Cannot write cached response {}", file.getAbsolutePath(), e);
+			if(temp!=null) {
+				deleteFile(temp.getName());
+			}
+			return;
+		}
+		long maxDiskBytes=BotData.getHttpCacheDiskBytes();
+		List<String> evicted=new ArrayList<>();
+		synchronized(diskLock) {
+			Map<String, Long> disk=getDiskEntries();
+			Long oldSize=disk.put(fileName, file.length());
+			usedDiskBytes+=file.length()-(oldSize==null?0:oldSize);
+			Iterator<Map.Entry<String, Long>> it=disk.entrySet().iterator();
+			while(usedDiskBytes>maxDiskBytes&&it.hasNext()) {
+				Map.Entry<String, Long> toRemove=it.next();
+				usedDiskBytes-=toRemove.getValue();
+				it.remove();
+				evicted.add(toRemove.getKey());
+			}
+		}
+		evicted.forEach(this::deleteFile);
+	}
+	private void removeFromDisk(String fileName) {
+		Long size;
+		synchronized(diskLock) {
+			size=getDiskEntries().remove(fileName);
+			if(size!=null) {
+				usedDiskBytes-=size;
+			}
+		}
+		if(size!=null) {
+			deleteFile(fileName);
+		}
+	}
+	private void deleteFile(String fileName) {
+		try {
+			Files.deleteIfExists(new File(diskDir, fileName).toPath());
+		} catch (IOException e) {
+			LOG.warn("Cannot delete cached response {}", fileName, e);
+		}
+	}
+
+	/**
+	 * a cached response body with the information needed to revalidate it
+	 */
+	static final class CachedResponse{
+		private final byte[] body;
+		private final String etag;
+		private final String lastModified;
+		private final long expiresAt;
+
+		CachedResponse(byte[] body,String etag,String lastModified,long expiresAt) {
+			this.body=body;
+			this.etag=etag;
+			this.lastModified=lastModified;
+			this.expiresAt=expiresAt;
+		}
+		byte[] getBody() {
+			return body;
+		}
+		String getETag() {
+			return etag;
+		}
+		String getLastModified() {
+			return lastModified;
+		}
+		boolean isFresh() {
+			return System.currentTimeMillis()<expiresAt;
+		}
+		/**
+		 * creates a copy of this response that expires later, used after the response has been revalidated
+		 * @param ttlMillis the time until the copy expires in milliseconds
+		 * @return the copy
+		 */
+		CachedResponse renew(long ttlMillis) {
+			return new CachedResponse(body, etag, lastModified, System.currentTimeMillis()+ttlMillis);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: SingleFlight.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * coalesces concurrent identical lookups<br>
+ * If a lookup is requested while a lookup with the same key is running, the running lookup is not started again.
+ * Instead, the result of the running lookup is shared with every caller.
+ * Nothing is cached after a lookup has finished.
+ * The number of shared lookups is counted in the metric <code>&lt;name&gt;.coalesced</code>.
+ * @param <K> the type of the keys identifying lookups
+ * @param <V> the type of the results, results are shared between threads so they should not be modified
+ */
+public final class SingleFlight<K, V> {
+	private final Map<K, CompletableFuture<V>> inFlight=new ConcurrentHashMap<>();
+	private final String coalescedMetric;
+
+	/**
+	 * creates a {@link SingleFlight}
+	 * @param name the name used as prefix of the metric
+	 */
+	public SingleFlight(String name) {
+		this.coalescedMetric=name+".coalesced";
+	}
+
+	/**
+	 * executes a blocking lookup or waits for a running lookup with the same key
+	 * @param key the key identifying the lookup
+	 * @param loader the lookup to execute if there is no running lookup
+	 * @return the result of the lookup
+	 * @throws IOException if the lookup failed
+	 */
+	public V execute(K key,Loader<V> loader) throws IOException {
+		CompletableFuture<V> future=new CompletableFuture<>();
+		CompletableFuture<V> running=inFlight.putIfAbsent(key, future);
+		if(running!=null) {
+			MetricRegistry.increment(coalescedMetric);
+			return await(running);
+		}
+		try {
+			V result=loader.load();
+			future.complete(result);
+			return result;
+		}catch(IOException|RuntimeException|Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		}finally {
+			inFlight.remove(key, future);
+		}
+	}
+	/**
+	 * executes an asynchronous lookup or returns the running lookup with the same key
+	 * @param key the key identifying the lookup
+	 * @param loader starts the lookup if there is no running lookup
+	 * @return a {@link CompletableFuture} that is completed with the result of the lookup
+	 */
+	public CompletableFuture<V> executeAsync(K key,Supplier<CompletableFuture<V>> loader) {
+		CompletableFuture<V> future=new CompletableFuture<>();
+		CompletableFuture<V> running=inFlight.putIfAbsent(key, future);
+		if(running!=null) {
+			MetricRegistry.increment(coalescedMetric);
+			return running;
+		}
+		CompletableFuture<V> loading;
+		try {
+			loading=loader.get();
+		}catch(RuntimeException e) {
+			loading=new CompletableFuture<>();
+			loading.completeExceptionally(e);
+		}
+		loading.whenComplete((result,e)->{
+			inFlight.remove(key, future);
+			if(e==null) {
+				future.complete(result);
+			}else {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+	private static <V> V await(CompletableFuture<V> future) throws IOException {
+		try {
+			return future.get();
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for a running lookup");
+		}catch(ExecutionException e) {
+			Throwable cause=e.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if(cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+	/**
+	 * a blocking lookup
+	 * @param <V> the type of the result
+	 */
+	@FunctionalInterface
+	public interface Loader<V>{
+		/**
+		 * executes the lookup
+		 * @return the result
+		 * @throws IOException if the lookup failed
+		 */
+		V load() throws IOException;
+	}
+}
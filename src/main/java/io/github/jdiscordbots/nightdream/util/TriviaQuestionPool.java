@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: TriviaQuestionPool.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * a pool of trivia questions that is refilled in the background<br>
+ * Questions are loaded from the Open Trivia Database in batches, using a session token so questions are not repeated.
+ * If the pool is empty (e.g. because the API is not reachable), a question from a bundled question bank is used instead
+ * so getting a question never waits for the network.
+ */
+public final class TriviaQuestionPool {
+	private static final Logger LOG=LoggerFactory.getLogger(TriviaQuestionPool.class);
+
+	private static final String API_PATH="/api.php?amount=";
+	private static final String TOKEN_PATH="/api_token.php?command=";
+	private static final int BATCH_SIZE=50;
+	private static final int LOW_WATER_MARK=10;
+	private static final String FALLBACK_RESOURCE="trivia/questions.json";
+
+	private static final int RESPONSE_SUCCESS=0;
+	private static final int RESPONSE_TOKEN_NOT_FOUND=3;
+	private static final int RESPONSE_TOKEN_EMPTY=4;
+
+	private static final Queue<TriviaQuestion> questions=new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger size=new AtomicInteger();
+	private static final AtomicBoolean refilling=new AtomicBoolean();
+	private static final ExecutorService refillExecutor=Executors.newSingleThreadExecutor(r->{
+		Thread t=new Thread(r, "trivia-question-pool");
+		t.setDaemon(true);
+		return t;
+	});
+	private static final List<TriviaQuestion> fallbackQuestions=loadFallbackQuestions();
+	private static String sessionToken;
+
+	private TriviaQuestionPool() {
+		//prevent instantiation
+	}
+	/**
+	 * starts loading questions in the background if the pool is running low
+	 */
+	public static void prefetch() {
+		if(size.get()<LOW_WATER_MARK&&refilling.compareAndSet(false, true)) {
+			refillExecutor.execute(()->{
+				try {
+					refill();
+				}catch(UpstreamUnavailableException e) {
+					LOG.debug("Not loading trivia questions: {}", e.getMessage());
+				}finally {
+					refilling.set(false);
+				}
+			});
+		}
+	}
+	/**
+	 * gets a question without waiting for the network
+	 * @return a question from the pool, a question from the bundled question bank if the pool is empty
+	 * or <code>null</code> if no question is available at all
+	 */
+	public static TriviaQuestion nextQuestion() {
+		TriviaQuestion question=questions.poll();
+		if(question!=null) {
+			size.decrementAndGet();
+		}
+		prefetch();
+		if(question==null&&!fallbackQuestions.isEmpty()) {
+			question=fallbackQuestions.get(ThreadLocalRandom.current().nextInt(fallbackQuestions.size()));
+		}
+		return question;
+	}
+	private static void refill() {
+		//a second attempt is made if the session token had to be renewed or reset
+		for (int attempt = 0; attempt < 2; attempt++) {
+			JSONObject data=GeneralUtils.getJSONFromURL(Endpoint.OPENTDB.url(API_PATH+BATCH_SIZE+getTokenParameter()));
+			if(data==null) {
+				LOG.warn("Cannot load trivia questions");
+				return;
+			}
+			try {
+				int responseCode=data.getInt("response_code");
+				if(responseCode==RESPONSE_TOKEN_NOT_FOUND) {
+					sessionToken=null;
+				}else if(responseCode==RESPONSE_TOKEN_EMPTY) {
+					GeneralUtils.getJSONFromURL(Endpoint.OPENTDB.url(TOKEN_PATH+"reset"+getTokenParameter()));
+				}else if(responseCode==RESPONSE_SUCCESS) {
+					JSONArray results=data.getJSONArray("results");
+					for (int i = 0; i < results.length(); i++) {
+						questions.add(TriviaQuestion.fromJSON(results.getJSONObject(i), true));
+						size.incrementAndGet();
+					}
+					return;
+				}else {
+					LOG.warn("Cannot load trivia questions, response code: {}", responseCode);
+					return;
+				}
+			}catch(JSONException e) {
+				LOG.warn("Invalid response while loading trivia questions", e);
+				return;
+			}
+		}
+	}
+	/**
+	 * gets the session token as URL parameter, a new token is requested if necessary
+	 * @return the parameter (starting with <code>&amp;</code>) or an empty String if no token is available
+	 */
+	private static String getTokenParameter() {
+		if(sessionToken==null) {
+			JSONObject tokenData=GeneralUtils.getJSONFromURL(Endpoint.OPENTDB.url(TOKEN_PATH+"request"));
+			if(tokenData!=null&&tokenData.optInt("response_code",-1)==RESPONSE_SUCCESS) {
+				sessionToken=tokenData.optString("token", null);
+			}
+		}
+		return sessionToken==null?"":"&token="+sessionToken;
+	}
+	private static List<TriviaQuestion> loadFallbackQuestions(){
+		try(InputStream is=TriviaQuestionPool.class.getClassLoader().getResourceAsStream(FALLBACK_RESOURCE)){
+			if(is==null) {
+				LOG.warn("Cannot find bundled trivia questions");
+				return Collections.emptyList();
+			}
+			try(BufferedReader reader=new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))){
+				JSONArray array=new JSONArray(reader.lines().collect(Collectors.joining("\n")));
+				List<TriviaQuestion> loaded=new ArrayList<>();
+				for (int i = 0; i < array.length(); i++) {
+					loaded.add(TriviaQuestion.fromJSON(array.getJSONObject(i), false));
+				}
+				return Collections.unmodifiableList(loaded);
+			}
+		}catch(IOException|JSONException e) {
+			LOG.warn("Cannot load bundled trivia questions", e);
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * a trivia question with decoded texts
+	 */
+	public static final class TriviaQuestion{
+		private final String category;
+		private final String question;
+		private final String correctAnswer;
+		private final List<String> incorrectAnswers;
+		private TriviaQuestion(String category, String question, String correctAnswer, List<String> incorrectAnswers) {
+			this.category = category;
+			this.question = question;
+			this.correctAnswer = correctAnswer;
+			this.incorrectAnswers = incorrectAnswers;
+		}
+		private static TriviaQuestion fromJSON(JSONObject json,boolean encoded) {
+			JSONArray incorrect=json.getJSONArray("incorrect_answers");
+			List<String> incorrectAnswers=new ArrayList<>(incorrect.length());
+			for (int i = 0; i < incorrect.length(); i++) {
+				incorrectAnswers.add(decode(incorrect.getString(i), encoded));
+			}
+			return new TriviaQuestion(decode(json.getString("category"), encoded),
+					decode(json.getString("question"), encoded),
+					decode(json.getString("correct_answer"), encoded),
+					Collections.unmodifiableList(incorrectAnswers));
+		}
+		private static String decode(String text,boolean encoded) {
+			return encoded?StringEscapeUtils.unescapeHtml4(text):text;
+		}
+		/**
+		 * gets the category of the question
+		 * @return the category
+		 */
+		public String getCategory() {
+			return category;
+		}
+		/**
+		 * gets the question
+		 * @return the question
+		 */
+		public String getQuestion() {
+			return question;
+		}
+		/**
+		 * gets the correct answer
+		 * @return the correct answer
+		 */
+		public String getCorrectAnswer() {
+			return correctAnswer;
+		}
+		/**
+		 * gets all incorrect answers
+		 * @return an unmodifiable {@link List} of the incorrect answers
+		 */
+		public List<String> getIncorrectAnswers() {
+			return incorrectAnswers;
+		}
+	}
+}
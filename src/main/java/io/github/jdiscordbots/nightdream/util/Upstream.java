@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: Upstream.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.HttpUrl;
+
+/**
+ * protects the bot from an external API that is slow or fails<br>
+ * Every external API (identified by its host name and port) is a bulkhead with a limit of concurrent requests, requests over the limit are rejected.
+ * The limit is adjusted using AIMD: it grows slowly while requests are fast and successful and is halved if a request is slow or fails.<br>
+ * After {@value #FAILURE_THRESHOLD} consecutive failures, the circuit breaker opens and all requests are rejected immediately.
+ * After {@value #OPEN_MILLIS} milliseconds, a single trial request is allowed, the circuit breaker closes if it succeeds.
+ * Only server errors, rate limits and transport errors count as failures (see {@link #isFailure(Throwable)}),
+ * client errors like an invalid request caused by user input do not affect the state of the API.<br>
+ * Rejected requests throw an {@link UpstreamUnavailableException}.
+ * The state of every API is available in the metrics starting with <code>upstream.</code>.
+ */
+public final class Upstream {
+	private static final Logger LOG=LoggerFactory.getLogger(Upstream.class);
+
+	private static final Map<String, Upstream> upstreams=new ConcurrentHashMap<>();
+
+	private static final double INITIAL_LIMIT=10;
+	private static final double MIN_LIMIT=1;
+	private static final double MAX_LIMIT=50;
+	private static final double DECREASE_FACTOR=0.5;
+	private static final long TARGET_LATENCY_MILLIS=2000;
+	private static final int FAILURE_THRESHOLD=5;
+	private static final long OPEN_MILLIS=30000;
+
+	/**
+	 * the states of a circuit breaker
+	 */
+	public enum State{
+		/**
+		 * requests are allowed
+		 */
+		CLOSED,
+		/**
+		 * requests are rejected
+		 */
+		OPEN,
+		/**
+		 * a single trial request is allowed
+		 */
+		HALF_OPEN
+	}
+
+	private final String name;
+	private final String metricPrefix;
+	private double limit=INITIAL_LIMIT;
+	private int inFlight;
+	private State state=State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean trialRunning;
+
+	private Upstream(String name) {
+		this.name=name;
+		metricPrefix="upstream."+name+".";
+		MetricRegistry.gauge(metricPrefix+"limit", this::getLimit);
+		MetricRegistry.gauge(metricPrefix+"inFlight", this::getInFlight);
+		MetricRegistry.gauge(metricPrefix+"state", ()->getState().ordinal());
+	}
+	/**
+	 * gets the {@link Upstream} of an external API
+	 * @param name the name of the external API
+	 * @return the {@link Upstream}
+	 */
+	public static Upstream get(String name) {
+		return upstreams.computeIfAbsent(name, Upstream::new);
+	}
+	/**
+	 * gets the {@link Upstream} of the external API a URL belongs to
+	 * @param url the URL
+	 * @return the {@link Upstream} named after the host of the URL, the port is added if it is not the default port
+	 */
+	public static Upstream forURL(String url) {
+		HttpUrl parsed=HttpUrl.parse(url);
+		if(parsed==null) {
+			return get("unknown");
+		}
+		if(parsed.port()==HttpUrl.defaultPort(parsed.scheme())) {
+			return get(parsed.host());
+		}
+		//different services on the same host are independent
+		return get(parsed.host()+":"+parsed.port());
+	}
+	/**
+	 * gets all external APIs requests have been sent to
+	 * @return all {@link Upstream}s, sorted by name
+	 */
+	public static List<Upstream> getAll(){
+		List<Upstream> all=new ArrayList<>(upstreams.values());
+		all.sort(Comparator.comparing(Upstream::getName));
+		return all;
+	}
+
+	/**
+	 * reserves a slot for a request
+	 * @return the {@link Permit} that needs to be released when the request has finished
+	 * @throws UpstreamUnavailableException if the circuit breaker is open or the limit of concurrent requests is reached
+	 */
+	public synchronized Permit acquire() {
+		if(state==State.OPEN) {
+			if(System.currentTimeMillis()-openedAt<OPEN_MILLIS) {
+				throw reject("too many failed requests");
+			}
+			state=State.HALF_OPEN;
+			trialRunning=false;
+		}
+		boolean trial=false;
+		if(state==State.HALF_OPEN) {
+			if(trialRunning) {
+				throw reject("too many failed requests");
+			}
+			trialRunning=true;
+			trial=true;
+		}else if(inFlight>=(int)limit) {
+			throw reject("too many concurrent requests");
+		}
+		inFlight++;
+		return new Permit(trial);
+	}
+	private UpstreamUnavailableException reject(String reason) {
+		MetricRegistry.increment(metricPrefix+"rejected");
+		return new UpstreamUnavailableException(name, reason);
+	}
+	private synchronized void release(Permit permit,boolean failed) {
+		inFlight--;
+		long latency=TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-permit.startTime);
+		if(failed) {
+			MetricRegistry.increment(metricPrefix+"failures");
+			consecutiveFailures++;
+			limit=Math.max(MIN_LIMIT, limit*DECREASE_FACTOR);
+			if(permit.trial||(state==State.CLOSED&&consecutiveFailures>=FAILURE_THRESHOLD)) {
+				LOG.warn("Opening circuit breaker of {} after {} failed requests", name, consecutiveFailures);
+				state=State.OPEN;
+				openedAt=System.currentTimeMillis();
+			}
+		}else {
+			consecutiveFailures=0;
+			if(permit.trial) {
+				LOG.info("Closing circuit breaker of {}", name);
+				state=State.CLOSED;
+			}
+			if(latency>TARGET_LATENCY_MILLIS) {
+				limit=Math.max(MIN_LIMIT, limit*DECREASE_FACTOR);
+			}else {
+				limit=Math.min(MAX_LIMIT, limit+1/limit);
+			}
+		}
+		if(permit.trial) {
+			trialRunning=false;
+		}
+	}
+	/**
+	 * closes the circuit breaker and resets the limit of concurrent requests
+	 */
+	public synchronized void reset() {
+		state=State.CLOSED;
+		consecutiveFailures=0;
+		trialRunning=false;
+		limit=INITIAL_LIMIT;
+	}
+
+	/**
+	 * checks if an exception of a request means that the external API is unhealthy
+	 * @param e the exception thrown by the request
+	 * @return <code>false</code> if the API answered with a client error (e.g. a {@link FileNotFoundException} or a {@link HttpStatusException} with a 4xx status code)
+	 * except for <code>429 Too Many Requests</code>, else <code>true</code>
+	 */
+	public static boolean isFailure(Throwable e) {
+		if(e instanceof CompletionException&&e.getCause()!=null) {
+			e=e.getCause();
+		}
+		if(e instanceof FileNotFoundException) {
+			return false;
+		}
+		if(e instanceof HttpStatusException) {
+			return isFailureStatus(((HttpStatusException)e).getStatusCode());
+		}
+		return true;
+	}
+	/**
+	 * checks if an HTTP status code means that the external API is unhealthy
+	 * @param statusCode the HTTP status code of the response
+	 * @return <code>true</code> for server errors and <code>429 Too Many Requests</code>, else <code>false</code>
+	 */
+	public static boolean isFailureStatus(int statusCode) {
+		return statusCode>=500||statusCode==429;
+	}
+
+	/**
+	 * executes a blocking request<br>
+	 * {@link IOException}s count as failures, except for client errors as the API answered correctly.
+	 * @param <V> the type of the result
+	 * @param loader the request
+	 * @return the result of the request
+	 * @throws IOException if the request failed
+	 * @throws UpstreamUnavailableException if the request has been rejected
+	 */
+	public <V> V execute(SingleFlight.Loader<V> loader) throws IOException {
+		Permit permit=acquire();
+		boolean failed=true;
+		try {
+			V result=loader.load();
+			failed=false;
+			return result;
+		}catch(IOException e) {
+			failed=isFailure(e);
+			throw e;
+		}finally {
+			permit.release(failed);
+		}
+	}
+	/**
+	 * executes an asynchronous request, exceptions count as failures except for client errors
+	 * @param <V> the type of the result
+	 * @param loader starts the request
+	 * @return a {@link CompletableFuture} that is completed with the result of the request
+	 * or completed exceptionally with an {@link UpstreamUnavailableException} if the request has been rejected
+	 */
+	public <V> CompletableFuture<V> executeAsync(Supplier<CompletableFuture<V>> loader){
+		Permit permit;
+		try {
+			permit=acquire();
+		}catch(UpstreamUnavailableException e) {
+			CompletableFuture<V> rejected=new CompletableFuture<>();
+			rejected.completeExceptionally(e);
+			return rejected;
+		}
+		CompletableFuture<V> future;
+		try {
+			future=loader.get();
+		}catch(RuntimeException e) {
+			permit.release(true);
+			throw e;
+		}
+		future.whenComplete((result,e)->permit.release(e!=null&&isFailure(e)));
+		return future;
+	}
+
+	public String getName() {
+		return name;
+	}
+	public synchronized int getLimit() {
+		return (int)limit;
+	}
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+	/**
+	 * gets the state of the circuit breaker
+	 * @return the {@link State}, an open circuit breaker is reported as half open if a trial request would be allowed
+	 */
+	public synchronized State getState() {
+		if(state==State.OPEN&&System.currentTimeMillis()-openedAt>=OPEN_MILLIS) {
+			return State.HALF_OPEN;
+		}
+		return state;
+	}
+
+	/**
+	 * a reserved slot for a request
+	 */
+	public final class Permit{
+		private final long startTime=System.nanoTime();
+		private final boolean trial;
+		private boolean released;
+
+		private Permit(boolean trial) {
+			this.trial=trial;
+		}
+		/**
+		 * releases the slot, only the first call has an effect
+		 * @param failed <code>true</code> if the request failed
+		 */
+		public void release(boolean failed) {
+			synchronized(Upstream.this) {
+				if(released) {
+					return;
+				}
+				released=true;
+				Upstream.this.release(this, failed);
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: UpstreamUnavailableException.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+/**
+ * thrown if a request to an external API is rejected without being sent
+ * because the API is unhealthy or too many requests to it are running
+ * @see Upstream
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	private final String upstream;
+
+	/**
+	 * creates the exception
+	 * @param upstream the name of the external API
+	 * @param reason the reason why the request has been rejected
+	 */
+	public UpstreamUnavailableException(String upstream,String reason) {
+		super(upstream+" is not available: "+reason);
+		this.upstream=upstream;
+	}
+	/**
+	 * gets the name of the external API
+	 * @return the name of the external API
+	 */
+	public String getUpstream() {
+		return upstream;
+	}
+	/**
+	 * gets a message that can be shown to users
+	 * @return the message
+	 */
+	public String getUserMessage() {
+		return "`"+upstream+"` is not available at the moment, please try again later.";
+	}
+}
@@ -4,9 +4,13 @@ module io.github.jdiscordbots.nightdream{
 	requires java.desktop;
 	requires javassist;
 	requires java.compiler;
+	requires jdk.jshell;
 	requires java.sql;
+	requires java.naming;
+	requires jdk.naming.dns;
 	requires github.api;
 	requires json;
+	requires okhttp3;
 	requires dbio;
 	requires KSoft4J;
 	requires jdk.unsupported;//only for tests
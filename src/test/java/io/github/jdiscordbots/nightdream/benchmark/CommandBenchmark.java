@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: CommandBenchmark.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.jdiscordbots.nightdream.commands.Command;
+import io.github.jdiscordbots.nightdream.commands.Dns;
+import io.github.jdiscordbots.nightdream.commands.License;
+import io.github.jdiscordbots.nightdream.commands.MVN;
+import io.github.jdiscordbots.nightdream.commands.NPM;
+import io.github.jdiscordbots.nightdream.commands.Nuget;
+import io.github.jdiscordbots.nightdream.commands.Photo;
+import io.github.jdiscordbots.nightdream.commands.Pkg;
+import io.github.jdiscordbots.nightdream.commands.Trivia;
+import io.github.jdiscordbots.nightdream.commands.YN;
+import io.github.jdiscordbots.nightdream.util.MetricRegistry;
+import io.github.jdiscordbots.nightdream.util.Upstream;
+import io.github.jdiscordbots.nightdream.util.UpstreamUnavailableException;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+import net.dv8tion.jda.api.requests.RestAction;
+
+/**
+ * measures the throughput and latency of commands using external APIs without network access<br>
+ * All external APIs are replaced with a {@link StandInServer} and commands are executed with stub events that do not need Discord.
+ * The latency of a command is the time from starting the command until it sends its first response.<br>
+ * The rejected requests are read from the metrics of all {@link Upstream}s because most commands report rejections as responses.
+ * These responses are included in the latencies.<br>
+ * Every command line may contain <code>{n}</code> which is replaced with the number of the execution,
+ * this creates unique requests so that the response cache is not used.
+ * Without <code>{n}</code>, most executions are answered from the response cache.<br>
+ * The benchmark is configured using system properties:
+ * <ul>
+ * <li><code>benchmark.executions</code>: the number of executions per command (default: 500)</li>
+ * <li><code>benchmark.concurrency</code>: the number of commands executed at the same time (default: 8)</li>
+ * <li><code>benchmark.latency</code>: the latency of the stand-in server in milliseconds (default: 50)</li>
+ * <li><code>benchmark.jitter</code>: the maximum random latency added by the stand-in server in milliseconds (default: 25)</li>
+ * <li><code>benchmark.errorRate</code>: the part of requests answered with <code>503</code> (default: 0)</li>
+ * </ul>
+ * The command lines to benchmark can be passed as arguments, e.g. <code>"npm pkg-{n}" "yn"</code>.
+ * <code>photo</code> needs a Pixabay API key, without a key it answers with an error without sending a request.
+ * This is not a test and is not executed by the build, run it using the main method.
+ */
+public final class CommandBenchmark {
+	private static final String EXECUTION_PLACEHOLDER="{n}";
+	private static final String UPSTREAM_METRIC_PREFIX="upstream.";
+	private static final String REJECTED_METRIC_SUFFIX=".rejected";
+	private static final long TIMEOUT_SECONDS=30;
+	private static final String[] DEFAULT_COMMAND_LINES= {
+			"npm pkg-{n}",
+			"mvn artifact{n}",
+			"nuget package{n}",
+			"pkg package{n}",
+			"dns {n}.0.0.127.in-addr.arpa",
+			"license license-{n}",
+			"yn",
+			"trivia"
+	};
+
+	private final Map<String, Command> commands=new LinkedHashMap<>();
+	private final int executions;
+	private final int concurrency;
+
+	private CommandBenchmark(int executions,int concurrency) {
+		this.executions=executions;
+		this.concurrency=concurrency;
+		commands.put("npm", new NPM());
+		commands.put("mvn", new MVN());
+		commands.put("nuget", new Nuget());
+		commands.put("pkg", new Pkg());
+		commands.put("dns", new Dns());
+		commands.put("license", new License());
+		commands.put("yn", new YN());
+		commands.put("photo", new Photo());
+		commands.put("trivia", new Trivia());
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int executions=Integer.getInteger("benchmark.executions", 500);
+		int concurrency=Integer.getInteger("benchmark.concurrency", 8);
+		long latency=Long.getLong("benchmark.latency", 50);
+		long jitter=Long.getLong("benchmark.jitter", 25);
+		double errorRate=Double.parseDouble(System.getProperty("benchmark.errorRate", "0"));
+		String[] commandLines=args.length==0?DEFAULT_COMMAND_LINES:args;
+
+		try(StandInServer server=StandInServer.start(latency, jitter, errorRate)){
+			server.useForAllEndpoints();
+			CommandBenchmark benchmark=new CommandBenchmark(executions, concurrency);
+			System.out.printf(Locale.ROOT, "%d executions per command, concurrency %d, stand-in latency %d+%dms, error rate %.2f%n",
+					executions, concurrency, latency, jitter, errorRate);
+			System.out.printf(Locale.ROOT, "%-32s %10s %8s %8s %8s %8s %8s %8s%n",
+					"command", "cmds/s", "p50", "p95", "p99", "max", "rejected", "timeout");
+			for (String commandLine : commandLines) {
+				System.out.println(benchmark.run(commandLine));
+			}
+			System.out.printf(Locale.ROOT, "stand-in server: %d requests, %d injected errors%n", server.getRequestCount(), server.getInjectedErrorCount());
+		}
+	}
+
+	private Result run(String commandLine) throws InterruptedException {
+		String[] split=commandLine.split(" ");
+		Command command=commands.get(split[0]);
+		if(command==null) {
+			throw new IllegalArgumentException("Command "+split[0]+" cannot be benchmarked, available commands: "+commands.keySet());
+		}
+		String[] argTemplates=Arrays.copyOfRange(split, 1, split.length);
+		AtomicInteger counter=new AtomicInteger();
+		AtomicInteger threadCounter=new AtomicInteger();
+		ExecutorService executor=Executors.newFixedThreadPool(concurrency, r->{
+			Thread t=new Thread(r, "benchmark-"+threadCounter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		Result result=new Result(commandLine);
+		List<Future<Long>> futures=new ArrayList<>(executions);
+		long rejectedBefore=getRejectedRequests();
+		long start=System.nanoTime();
+		for (int i = 0; i < executions; i++) {
+			futures.add(executor.submit(()->execute(command, argTemplates, counter.incrementAndGet())));
+		}
+		for (Future<Long> future : futures) {
+			try {
+				result.latencies.add(future.get());
+			}catch(ExecutionException e) {
+				//rejections are counted in the metrics of the upstreams
+				if(e.getCause() instanceof TimeoutException) {
+					result.timeouts++;
+				}else if(!(e.getCause() instanceof UpstreamUnavailableException)) {
+					throw new IllegalStateException("command "+commandLine+" failed", e.getCause());
+				}
+			}
+		}
+		result.durationNanos=System.nanoTime()-start;
+		result.rejected=getRejectedRequests()-rejectedBefore;
+		executor.shutdownNow();
+		return result;
+	}
+	/**
+	 * gets the number of requests rejected by all {@link Upstream}s
+	 * @return the sum of the rejected requests of all {@link Upstream}s
+	 */
+	private static long getRejectedRequests() {
+		long rejected=0;
+		for (Map.Entry<String, Number> metric : MetricRegistry.getMetrics(UPSTREAM_METRIC_PREFIX).entrySet()) {
+			if(metric.getKey().endsWith(REJECTED_METRIC_SUFFIX)) {
+				rejected+=metric.getValue().longValue();
+			}
+		}
+		return rejected;
+	}
+	/**
+	 * executes a command and waits for its first response
+	 * @return the latency in nanoseconds
+	 */
+	private static long execute(Command command,String[] argTemplates,int execution) throws InterruptedException, ExecutionException, TimeoutException {
+		String[] args=new String[argTemplates.length];
+		for (int i = 0; i < args.length; i++) {
+			args[i]=argTemplates[i].replace(EXECUTION_PLACEHOLDER, String.valueOf(execution));
+		}
+		StubHandler handler=new StubHandler();
+		GuildMessageReceivedEvent event=new GuildMessageReceivedEvent(handler.stub(JDA.class), 0, handler.stub(Message.class));
+		long start=System.nanoTime();
+		command.action(args, event);
+		return handler.responded.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)-start;
+	}
+
+	/**
+	 * creates stubs of JDA entities, every method returns a stub or a default value<br>
+	 * The time of the first executed {@link RestAction} is recorded as the response.
+	 */
+	private static final class StubHandler implements InvocationHandler{
+		private final CompletableFuture<Long> responded=new CompletableFuture<>();
+
+		private <T> T stub(Class<T> type) {
+			return type.cast(Proxy.newProxyInstance(CommandBenchmark.class.getClassLoader(), new Class<?>[] {type}, this));
+		}
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if(method.getDeclaringClass()==Object.class) {
+				switch(method.getName()) {
+				case "equals":
+					return proxy==args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					return "stub";
+				}
+			}
+			if(proxy instanceof RestAction&&
+					("queue".equals(method.getName())||"complete".equals(method.getName())||"submit".equals(method.getName()))) {
+				responded.complete(System.nanoTime());
+				return "submit".equals(method.getName())?CompletableFuture.completedFuture(null):null;
+			}
+			return defaultValue(method.getReturnType());
+		}
+		private Object defaultValue(Class<?> type) {
+			if(type==boolean.class) {
+				return false;
+			}else if(type==char.class) {
+				return '\0';
+			}else if(type==byte.class) {
+				return (byte)0;
+			}else if(type==short.class) {
+				return (short)0;
+			}else if(type==int.class) {
+				return 0;
+			}else if(type==long.class) {
+				return 0L;
+			}else if(type==float.class) {
+				return 0F;
+			}else if(type==double.class) {
+				return 0D;
+			}else if(type==String.class) {
+				return "";
+			}else if(type.isInterface()) {
+				return stub(type);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * the measurements of a command line
+	 */
+	private static final class Result{
+		private final String commandLine;
+		private final List<Long> latencies=new ArrayList<>();
+		private long durationNanos;
+		/**
+		 * the number of rejected requests, a command may send multiple requests
+		 */
+		private long rejected;
+		private int timeouts;
+
+		private Result(String commandLine) {
+			this.commandLine=commandLine;
+		}
+		private double percentileMillis(double percentile) {
+			if(latencies.isEmpty()) {
+				return Double.NaN;
+			}
+			int index=(int)Math.ceil(percentile*latencies.size())-1;
+			return latencies.get(Math.max(0, index))/1_000_000D;
+		}
+		@Override
+		public String toString() {
+			latencies.sort(null);
+			double throughput=latencies.size()/(durationNanos/1_000_000_000D);
+			return String.format(Locale.ROOT, "%-32s %10.1f %8.1f %8.1f %8.1f %8.1f %8d %8d",
+					commandLine, throughput, percentileMillis(0.5), percentileMillis(0.95), percentileMillis(0.99), percentileMillis(1), rejected, timeouts);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: StandInServer.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.jdiscordbots.nightdream.util.Endpoint;
+
+/**
+ * local HTTP server that replays recorded responses of external APIs<br>
+ * The recordings are listed in <code>/standin/index.json</code> (in the test resources).
+ * Every recording belongs to an {@link Endpoint} and a path, a path ending with <code>*</code> matches every path starting with it.
+ * The query is ignored so unique queries can be used to bypass the response cache.
+ * Requests without a recording are answered with <code>404</code>.
+ * Every {@link Endpoint} uses its own port so every API has its own {@link io.github.jdiscordbots.nightdream.util.Upstream}
+ * like the real APIs on different hosts.<br>
+ * Every response is delayed by a fixed latency and a random jitter
+ * and a part of the requests can be answered with <code>503</code> in order to simulate an unhealthy API.
+ */
+public final class StandInServer implements AutoCloseable {
+	private static final String RECORDINGS_DIR="/standin/";
+	private static final String JSON_CONTENT_TYPE="application/json; charset=utf-8";
+
+	private final Map<Endpoint, HttpServer> servers=new EnumMap<>(Endpoint.class);
+	private final ExecutorService executor;
+	private final List<Recording> recordings;
+	private final long latencyMillis;
+	private final long jitterMillis;
+	private final double errorRate;
+	private final AtomicLong requests=new AtomicLong();
+	private final AtomicLong injectedErrors=new AtomicLong();
+
+	private StandInServer(List<Recording> recordings,long latencyMillis,long jitterMillis,double errorRate) throws IOException {
+		this.recordings=recordings;
+		this.latencyMillis=latencyMillis;
+		this.jitterMillis=jitterMillis;
+		this.errorRate=errorRate;
+		AtomicInteger threadCounter=new AtomicInteger();
+		executor=Executors.newCachedThreadPool(r->{
+			Thread t=new Thread(r,"stand-in-"+threadCounter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			for (Endpoint endpoint : Endpoint.values()) {
+				HttpServer server=HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+				server.setExecutor(executor);
+				server.createContext("/", this::handle);
+				server.start();
+				servers.put(endpoint, server);
+			}
+		}catch(IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * starts a stand-in server on free ports
+	 * @param latencyMillis the minimum delay of every response in milliseconds
+	 * @param jitterMillis the maximum random delay added to every response in milliseconds
+	 * @param errorRate the part of requests (between <code>0</code> and <code>1</code>) answered with <code>503</code>
+	 * @return the started server
+	 * @throws IOException if the recordings cannot be loaded or the server cannot be started
+	 */
+	public static StandInServer start(long latencyMillis,long jitterMillis,double errorRate) throws IOException {
+		if(errorRate<0||errorRate>1) {
+			throw new IllegalArgumentException("error rate must be between 0 and 1");
+		}
+		return new StandInServer(loadRecordings(), latencyMillis, jitterMillis, errorRate);
+	}
+	private static List<Recording> loadRecordings() throws IOException {
+		JSONArray index=new JSONArray(new JSONTokener(new String(readResource("index.json"), StandardCharsets.UTF_8)));
+		List<Recording> recordings=new ArrayList<>(index.length());
+		for (int i = 0; i < index.length(); i++) {
+			JSONObject entry=index.getJSONObject(i);
+			recordings.add(new Recording(
+					entry.getString("endpoint"),
+					entry.getString("path"),
+					entry.optInt("status", 200),
+					entry.optString("contentType", JSON_CONTENT_TYPE),
+					readResource(entry.getString("file"))));
+		}
+		return recordings;
+	}
+	private static byte[] readResource(String name) throws IOException {
+		try(InputStream is=StandInServer.class.getResourceAsStream(RECORDINGS_DIR+name)){
+			if(is==null) {
+				throw new IOException("recording "+name+" does not exist");
+			}
+			ByteArrayOutputStream baos=new ByteArrayOutputStream();
+			byte[] buffer=new byte[4096];
+			int read;
+			while((read=is.read(buffer))!=-1) {
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		}
+	}
+
+	/**
+	 * configures every {@link Endpoint} to send its requests to this server
+	 */
+	public void useForAllEndpoints() {
+		for (Endpoint endpoint : Endpoint.values()) {
+			endpoint.setBaseUrl(getBaseUrl(endpoint));
+		}
+	}
+	/**
+	 * gets the base URL this server uses for an {@link Endpoint}
+	 * @param endpoint the {@link Endpoint}
+	 * @return the base URL
+	 */
+	public String getBaseUrl(Endpoint endpoint) {
+		InetSocketAddress address=servers.get(endpoint).getAddress();
+		return "http://"+address.getHostString()+":"+address.getPort()+"/"+endpoint.getKey();
+	}
+	/**
+	 * gets the number of requests received by this server
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		return requests.get();
+	}
+	/**
+	 * gets the number of requests answered with <code>503</code> on purpose
+	 * @return the number of injected errors
+	 */
+	public long getInjectedErrorCount() {
+		return injectedErrors.get();
+	}
+
+	/**
+	 * stops the server and lets all {@link Endpoint}s use the real APIs again
+	 */
+	@Override
+	public void close() {
+		for (Endpoint endpoint : Endpoint.values()) {
+			endpoint.setBaseUrl(null);
+		}
+		for (HttpServer server : servers.values()) {
+			server.stop(0);
+		}
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try(InputStream body=exchange.getRequestBody()){
+			requests.incrementAndGet();
+			drain(body);
+			delay();
+			if(errorRate>0&&ThreadLocalRandom.current().nextDouble()<errorRate) {
+				injectedErrors.incrementAndGet();
+				respond(exchange, 503, JSON_CONTENT_TYPE, "{\"message\":\"injected error\"}".getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			Recording recording=findRecording(exchange.getRequestURI().getPath());
+			if(recording==null) {
+				respond(exchange, 404, JSON_CONTENT_TYPE, "{\"message\":\"Not Found\"}".getBytes(StandardCharsets.UTF_8));
+			}else {
+				respond(exchange, recording.status, recording.contentType, recording.body);
+			}
+		}finally {
+			exchange.close();
+		}
+	}
+	private static void drain(InputStream is) throws IOException {
+		byte[] buffer=new byte[1024];
+		while(is.read(buffer)!=-1) {
+			//discard request body
+		}
+	}
+	private void delay() {
+		long delay=latencyMillis;
+		if(jitterMillis>0) {
+			delay+=ThreadLocalRandom.current().nextLong(jitterMillis+1);
+		}
+		if(delay>0) {
+			try {
+				Thread.sleep(delay);
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	private Recording findRecording(String requestPath) {
+		int endpointEnd=requestPath.indexOf('/', 1);
+		if(endpointEnd==-1) {
+			return null;
+		}
+		String endpoint=requestPath.substring(1, endpointEnd);
+		String path=requestPath.substring(endpointEnd);
+		for (Recording recording : recordings) {
+			if(recording.matches(endpoint, path)) {
+				return recording;
+			}
+		}
+		return null;
+	}
+	private static void respond(HttpExchange exchange,int status,String contentType,byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length==0?-1:body.length);
+		try(OutputStream os=exchange.getResponseBody()){
+			os.write(body);
+		}
+	}
+
+	/**
+	 * a recorded response
+	 */
+	private static final class Recording{
+		private final String endpoint;
+		private final String path;
+		private final int status;
+		private final String contentType;
+		private final byte[] body;
+
+		private Recording(String endpoint,String path,int status,String contentType,byte[] body) {
+			this.endpoint=endpoint;
+			this.path=path;
+			this.status=status;
+			this.contentType=contentType;
+			this.body=body;
+		}
+		private boolean matches(String requestEndpoint,String requestPath) {
+			if(!endpoint.equals(requestEndpoint)) {
+				return false;
+			}
+			if(path.endsWith("*")) {
+				return requestPath.startsWith(path.substring(0, path.length()-1));
+			}
+			return path.equals(requestPath);
+		}
+	}
+}
@@ -38,17 +38,30 @@ public class DnsTest {
 		resp.delete().queue();
 	}
 	@Test
+	public void testURLTarget() {
+		sendCommand("dns ldap://127.0.0.1:1389/Exploit");
+		Message resp=getMessage(msg->msg.getContentRaw().endsWith(" Invalid Resolve Target, please use a domain name or an IP address"));
+		assertNotNull(resp);
+		resp.delete().queue();
+	}
+	@Test
 	public void testCorrectQuery() {
 		sendCommand("dns discord.com");
-		Message msg=getMessage(message->hasEmbed(message, embed->"discord.com (type 12) resolves to:".equals(embed.getTitle())));
+		Message msg=getMessage(message->hasEmbed(message, embed->"discord.com resolves to:".equals(embed.getTitle())));
 		assertNotNull(msg);
 		MessageEmbed embed=msg.getEmbeds().get(0);
-		assertTrue(hasEmbedField(embed, "Type","6"));
-		assertTrue(hasEmbedField(embed, field->"Time to live (TTL)".equals(field.getName())));
-		assertTrue(hasEmbedField(embed, "Nameserver","gabe.ns.cloudflare.com"));
-		assertTrue(hasEmbedField(embed, "DNS Hostmaster","dns.cloudflare.com"));
-		assertTrue(hasEmbedField(embed, field->"Mystery Text".equals(field.getName())));
-		//not testing footer because it may not exist
+		assertTrue(hasEmbedField(embed, field->"A".equals(field.getName())));
+		assertTrue(hasEmbedField(embed, field->"NS".equals(field.getName())&&field.getValue().contains("gabe.ns.cloudflare.com")));
+		assertTrue(hasEmbedField(embed, field->"TXT".equals(field.getName())));
+		assertTrue(hasEmbed(msg, e->e.getFooter()!=null));
+		msg.delete().queue();
+	}
+	@Test
+	public void testReverseQuery() {
+		sendCommand("dns 1.1.1.1");
+		Message msg=getMessage(message->hasEmbed(message, embed->"1.1.1.1 resolves to:".equals(embed.getTitle())));
+		assertNotNull(msg);
+		assertTrue(hasEmbedField(msg.getEmbeds().get(0), field->"PTR".equals(field.getName())&&field.getValue().startsWith("`one.one.one.one`")));
 		msg.delete().queue();
 	}
 	@Test
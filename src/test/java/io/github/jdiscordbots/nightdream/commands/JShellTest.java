@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: JShellTest.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import static io.github.jdiscordbots.jdatesting.TestUtils.getMessage;
+import static io.github.jdiscordbots.jdatesting.TestUtils.hasEmbed;
+import static io.github.jdiscordbots.jdatesting.TestUtils.sendCommand;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.jdiscordbots.nightdream.commands.Command.CommandType;
+import net.dv8tion.jda.api.entities.Message;
+
+public class JShellTest extends AbstractAdminCommandTest{
+
+	@Test
+	public void testHelp() {
+		assertEquals("Evaluates Code in a persistent JShell session", new JShell().help());
+	}
+	@Test
+	public void testCommandType() {
+		assertSame(CommandType.META, new JShell().getType());
+	}
+	@Test
+	public void testWithoutCode() {
+		if(JShellSession.isAvailable()) {
+			sendCommand("jshell");
+			Message resp=getMessage("Please specify the code to evaluate or use `jshell reset` to reset your session.");
+			assertNotNull(resp);
+			resp.delete().queue();
+		}
+	}
+	@Test
+	public void testVariablesAreKept() {
+		if(JShellSession.isAvailable()) {
+			sendCommand("jshell reset");
+			Message resp=getMessage("Your JShell session has been reset.");
+			assertNotNull(resp);
+			resp.delete().queue();
+			sendCommand("jshell int answer=40;");
+			resp=getMessage(msg->hasEmbed(msg,null, "```java\n40\n```"));
+			assertNotNull(resp);
+			resp.delete().queue();
+			sendCommand("jshell answer+2");
+			resp=getMessage(msg->hasEmbed(msg,null, "```java\n42\n```"));
+			assertNotNull(resp);
+			resp.delete().queue();
+		}
+	}
+	@Test
+	public void testCurrentMessage() {
+		if(JShellSession.isAvailable()) {
+			sendCommand("jshell message.getContentRaw().length()");
+			Message cmdMsg=getMessage(message->message.getContentRaw().endsWith("jshell message.getContentRaw().length()"));
+			assertNotNull(cmdMsg);
+			Message resp=getMessage(msg->hasEmbed(msg,null, "```java\n"+cmdMsg.getContentRaw().length()+"\n```"));
+			assertNotNull(resp);
+			resp.delete().queue();
+		}
+	}
+	@Test
+	public void testError() {
+		if(JShellSession.isAvailable()) {
+			sendCommand("jshell 1/0");
+			Message resp=getMessage("`ERROR`\n```java\njava.lang.ArithmeticException: / by zero\n```");
+			assertNotNull(resp);
+			resp.delete().queue();
+		}
+	}
+	@Override
+	protected String cmdName() {
+		return "jshell";
+	}
+	@Override
+	protected Command cmd() {
+		return new JShell();
+	}
+}
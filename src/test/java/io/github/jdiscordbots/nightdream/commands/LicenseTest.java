@@ -66,6 +66,28 @@ public class LicenseTest {
 		resp.delete().queue();
 	}
 	@Test
+	public void testSimilarLicenseName() {
+		sendCommand("license gpl3");
+		Message resp=getMessage("No such license! Did you mean `gpl-3.0` (GNU General Public License v3.0)?");
+		assertNotNull(resp);
+		resp.delete().queue();
+	}
+	@Test
+	public void testLicenseByName() {
+		sendCommand("license Mozilla-Public-License-2.0");
+		Message resp=getMessage(msg->hasEmbed(msg, embed->"Mozilla Public License 2.0".equals(embed.getTitle())));
+		assertNotNull(resp);
+		assertTrue(hasEmbedField(resp, "Limitations", "liability\ntrademark-use\nwarranty"));
+		resp.delete().queue();
+	}
+	@Test
+	public void testPartialLicenseName() {
+		sendCommand("license mozilla");
+		Message resp=getMessage("No such license! Did you mean `mpl-2.0` (Mozilla Public License 2.0)?");
+		assertNotNull(resp);
+		resp.delete().queue();
+	}
+	@Test
 	public void testHelp() {
 		assertEquals("Get info about a license", new License().help());
 	}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: MetricsTest.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import static io.github.jdiscordbots.jdatesting.TestUtils.getMessage;
+import static io.github.jdiscordbots.jdatesting.TestUtils.hasEmbed;
+import static io.github.jdiscordbots.jdatesting.TestUtils.sendCommand;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.jdiscordbots.nightdream.commands.Command.CommandType;
+import net.dv8tion.jda.api.entities.Message;
+
+public class MetricsTest extends AbstractAdminCommandTest{
+	@Test
+	public void testMsgCacheMetrics() {
+		sendCommand("metrics msgcache.");
+		Message resp=getMessage(msg->hasEmbed(msg, embed->embed.getDescription()!=null&&embed.getDescription().contains("msgcache.entries: ")));
+		assertNotNull(resp);
+		assertTrue(hasEmbed(resp, embed->embed.getDescription().contains("msgcache.bytes: ")));
+		assertTrue(hasEmbed(resp, embed->embed.getDescription().contains("msgcache.evictions: ")));
+		resp.delete().queue();
+	}
+	@Test
+	public void testUnknownPrefix() {
+		sendCommand("metrics thisisinvalid");
+		Message resp=getMessage(msg->hasEmbed(msg, null,"There are no metrics starting with `thisisinvalid`."));
+		assertNotNull(resp);
+		assertTrue(hasEmbed(resp, embed->Color.RED.equals(embed.getColor())));
+		resp.delete().queue();
+	}
+	@Test
+	public void testHelp() {
+		assertEquals("shows metrics of the bot (`metrics [prefix]`)", new Metrics().help());
+	}
+	@Test
+	public void testCommandType() {
+		assertSame(CommandType.META, new Metrics().getType());
+	}
+	@Override
+	protected String cmdName() {
+		return "metrics";
+	}
+	@Override
+	protected Command cmd() {
+		return new Metrics();
+	}
+}
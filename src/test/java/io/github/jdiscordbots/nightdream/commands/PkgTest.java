@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: PkgTest.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import static io.github.jdiscordbots.jdatesting.TestUtils.getMessage;
+import static io.github.jdiscordbots.jdatesting.TestUtils.hasEmbed;
+import static io.github.jdiscordbots.jdatesting.TestUtils.hasEmbedField;
+import static io.github.jdiscordbots.jdatesting.TestUtils.sendCommand;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.jdiscordbots.nightdream.commands.Command.CommandType;
+import net.dv8tion.jda.api.entities.Message;
+
+public class PkgTest {
+
+	@Test
+	public void testWithoutArgs() {
+		sendCommand("pkg");
+		Message resp=getMessage(msg->msg.getContentRaw().endsWith(" I need a package name"));
+		assertNotNull(resp);
+		resp.delete().queue();
+	}
+	@Test
+	public void testInvalidPackage() {
+		sendCommand("pkg thisisinvalid");
+		Message resp=getMessage(msg->hasEmbedField(msg, field->field.getName().endsWith(" Nothing found")&&
+				field.getValue().equals("Try something different.")));
+		assertNotNull(resp);
+		resp.delete().queue();
+	}
+	@Test
+	public void testValidPackage() {
+		sendCommand("pkg nightdream-logging");
+		Message resp=getMessage(msg->hasEmbed(msg, "Results for `nightdream-logging`",null));
+		assertNotNull(resp);
+		assertTrue(hasEmbedField(resp, field->"Maven Central: io.github.jdiscordbots:nightdream-logging".equals(field.getName())));
+		resp.delete().queue();
+	}
+
+	@Test
+	public void testCommandType() {
+		assertSame(CommandType.UTIL, new Pkg().getType());
+	}
+	@Test
+	public void testHelp() {
+		assertEquals("Searches npm, Maven Central and NuGet for a package", new Pkg().help());
+	}
+}
@@ -39,9 +39,28 @@ public class PrivacyTest {
 		resp.delete().queue();
 	}
 	
+	@Test
+	public void testDeleteWithoutConfirmation() {
+		sendCommand("privacy delete");
+		Message resp=getMessage(msg->hasEmbed(msg, embed->embed.getDescription()!=null&&embed.getDescription().endsWith("privacy delete confirm` to delete your data.")));
+		assertNotNull(resp);
+		resp.delete().queue();
+	}
+	@Test
+	public void testDeleteAndExport() {
+		sendCommand("privacy delete confirm");
+		Message resp=getMessage(msg->hasEmbed(msg, embed->embed.getDescription()!=null&&embed.getDescription().startsWith("The following data has been deleted:\n")));
+		assertNotNull(resp);
+		resp.delete().queue();
+		sendCommand("privacy data");
+		resp=getMessage(msg->msg.getContentRaw().endsWith(" There is no data stored about you."));
+		assertNotNull(resp);
+		resp.delete().queue();
+	}
+	
 	@Test
 	public void testHelp() {
-		assertEquals("Displays the privacy policy",new Privacy().help());
+		assertEquals("Displays the privacy policy, sends you your data (`privacy data`) or deletes it (`privacy delete`)",new Privacy().help());
 	}
 	@Test
 	public void testCommandType() {
@@ -8,9 +8,13 @@
 package io.github.jdiscordbots.nightdream.commands;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
+import io.github.jdiscordbots.nightdream.storage.ScoreEntry;
 import io.github.jdiscordbots.nightdream.storage.Storage;
+import io.github.jdiscordbots.nightdream.storage.StorageEntry;
 import net.dv8tion.jda.api.entities.Guild;
 
 public class ReloadStorage implements Storage{
@@ -101,4 +105,36 @@ public class ReloadStorage implements Storage{
 	public void setGuildDefault(String key, String value) {
 		forward.setGuildDefault(key, value);
 	}
+	@Override
+	public void forEachEntry(Consumer<StorageEntry> action) {
+		forward.forEachEntry(action);
+	}
+	@Override
+	public StorageEntry splitSubUnit(StorageEntry entry) {
+		return forward.splitSubUnit(entry);
+	}
+	@Override
+	public void importEntries(Collection<StorageEntry> entries) {
+		forward.importEntries(entries);
+	}
+	@Override
+	public void replaceEntries(Collection<StorageEntry> entries) {
+		forward.replaceEntries(entries);
+	}
+	@Override
+	public long incrementScore(String board, String userId, long delta) {
+		return forward.incrementScore(board, userId, delta);
+	}
+	@Override
+	public List<ScoreEntry> getTopScores(String board, int count) {
+		return forward.getTopScores(board, count);
+	}
+	@Override
+	public ScoreEntry getScore(String board, String userId) {
+		return forward.getScore(board, userId);
+	}
+	@Override
+	public void removeScore(String board, String userId) {
+		forward.removeScore(board, userId);
+	}
 }
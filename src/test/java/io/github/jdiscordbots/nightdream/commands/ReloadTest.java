@@ -18,7 +18,6 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.awt.Color;
 import java.lang.reflect.Field;
-import java.util.Map;
 
 import org.awaitility.Awaitility;
 import org.awaitility.Durations;
@@ -29,6 +28,7 @@ import org.junit.jupiter.api.Test;
 
 import io.github.jdiscordbots.jdatesting.TestUtils;
 import io.github.jdiscordbots.nightdream.commands.Command.CommandType;
+import io.github.jdiscordbots.nightdream.listeners.MessageCache;
 import io.github.jdiscordbots.nightdream.listeners.MsgLogListener;
 import io.github.jdiscordbots.nightdream.storage.Storage;
 import io.github.jdiscordbots.nightdream.util.BotData;
@@ -135,8 +135,8 @@ public class ReloadTest extends AbstractAdminCommandTest{
 		for (Object obj : getJDA().getRegisteredListeners()) {
 			if(obj instanceof MsgLogListener) {
 				MsgLogListener listener=(MsgLogListener)obj;
-				Map<String, Message> messages = listener.getMessages();
-				messages.remove(resp.getId());
+				MessageCache messages = listener.getMessages();
+				messages.remove(resp.getIdLong());
 				assertTrue(messages.isEmpty());
 				msgLogListenerCount++;
 			}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: SnapshotTest.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import static io.github.jdiscordbots.jdatesting.TestUtils.getMessage;
+import static io.github.jdiscordbots.jdatesting.TestUtils.hasEmbed;
+import static io.github.jdiscordbots.jdatesting.TestUtils.sendCommand;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.jdiscordbots.nightdream.commands.Command.CommandType;
+import io.github.jdiscordbots.nightdream.storage.StorageSnapshots;
+import net.dv8tion.jda.api.entities.Message;
+
+public class SnapshotTest extends AbstractAdminCommandTest{
+	@Test
+	public void testCreateAndList() {
+		sendCommand("snapshot full");
+		Message resp=getMessage(msg->hasEmbed(msg, embed->embed.getDescription()!=null&&embed.getDescription().startsWith("created full snapshot `")));
+		assertNotNull(resp);
+		assertTrue(hasEmbed(resp, embed->Color.GREEN.equals(embed.getColor())));
+		resp.delete().queue();
+		String name=StorageSnapshots.listSnapshots().get(StorageSnapshots.listSnapshots().size()-1);
+		sendCommand("snapshot list");
+		resp=getMessage(msg->hasEmbed(msg, embed->embed.getDescription()!=null&&embed.getDescription().contains(name)));
+		assertNotNull(resp);
+		resp.delete().queue();
+	}
+	@Test
+	public void testRestoreWithoutName() {
+		sendCommand("snapshot restore");
+		Message resp=getMessage(msg->hasEmbed(msg, null,"Please specify the snapshot to restore."));
+		assertNotNull(resp);
+		assertTrue(hasEmbed(resp, embed->Color.RED.equals(embed.getColor())));
+		resp.delete().queue();
+	}
+	@Test
+	public void testInvalidArgument() {
+		sendCommand("snapshot thisisinvalid");
+		Message resp=getMessage(msg->hasEmbed(msg, null,"Invalid argument thisisinvalid"));
+		assertNotNull(resp);
+		assertTrue(hasEmbed(resp, embed->Color.RED.equals(embed.getColor())));
+		resp.delete().queue();
+	}
+	@Test
+	public void testHelp() {
+		assertEquals("creates a snapshot of the storage (`snapshot`/`snapshot full`),\nlists all snapshots (`snapshot list`) or restores a snapshot (`snapshot restore <name>`)", new Snapshot().help());
+	}
+	@Test
+	public void testCommandType() {
+		assertSame(CommandType.CONFIG, new Snapshot().getType());
+	}
+	@Override
+	protected String cmdName() {
+		return "snapshot";
+	}
+	@Override
+	protected Command cmd() {
+		return new Snapshot();
+	}
+}
@@ -24,6 +24,7 @@ import org.junit.jupiter.api.Test;
 
 import io.github.jdiscordbots.nightdream.commands.Command.CommandType;
 import io.github.jdiscordbots.nightdream.listeners.TriviaListener;
+import io.github.jdiscordbots.nightdream.util.BotData;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageEmbed.Field;
 
@@ -41,9 +42,32 @@ public class TriviaTest {
 		resp.delete().queue();
 	}
 	
+	@Test
+	public void testScoreboard() {
+		String userId=getTestingChannel().getJDA().getSelfUser().getId();
+		String board=TriviaListener.getScoreboard(getTestingChannel().getGuild());
+		BotData.STORAGE.incrementScoreForUser(board, userId, 3);
+		BotData.STORAGE.incrementScoreForUser(TriviaListener.GLOBAL_SCOREBOARD, userId, 3);
+		try {
+			sendCommand("trivia top");
+			Message resp=getMessage(msg->hasEmbed(msg, embed->"Trivia scoreboard".equals(embed.getTitle())&&embed.getDescription().contains("<@"+userId+">")));
+			assertNotNull(resp);
+			resp.delete().queue();
+			sendCommand("trivia rank");
+			resp=getMessage(msg->hasEmbed(msg, embed->embed.getTitle()!=null&&embed.getTitle().startsWith("Trivia rank of ")));
+			assertNotNull(resp);
+			assertTrue(hasEmbedField(resp, field->"Guild".equals(field.getName())));
+			assertTrue(hasEmbedField(resp, field->"Global".equals(field.getName())));
+			resp.delete().queue();
+		}finally {
+			BotData.STORAGE.removeScore(board, userId);
+			BotData.STORAGE.removeScore(TriviaListener.GLOBAL_SCOREBOARD, userId);
+		}
+	}
+	
 	@Test
 	public void testHelp() {
-		assertEquals("Plays a game of trivia", new Trivia().help());
+		assertEquals("Plays a game of trivia (`trivia`),\nshows the best players (`trivia top`/`trivia top global`) or the rank of a user (`trivia rank [@user]`)", new Trivia().help());
 	}
 	@Test
 	public void testCommandType() {
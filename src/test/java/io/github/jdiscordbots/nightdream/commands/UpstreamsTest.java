@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: UpstreamsTest.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.commands;
+
+import static io.github.jdiscordbots.jdatesting.TestUtils.getMessage;
+import static io.github.jdiscordbots.jdatesting.TestUtils.hasEmbed;
+import static io.github.jdiscordbots.jdatesting.TestUtils.sendCommand;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.jdiscordbots.nightdream.commands.Command.CommandType;
+import io.github.jdiscordbots.nightdream.util.Upstream;
+import net.dv8tion.jda.api.entities.Message;
+
+public class UpstreamsTest extends AbstractAdminCommandTest{
+	@Test
+	public void testListAndReset() {
+		Upstream.get("upstreams.test");
+		sendCommand("upstreams");
+		Message resp=getMessage(msg->hasEmbed(msg, embed->embed.getDescription()!=null&&embed.getDescription().contains("upstreams.test: CLOSED")));
+		assertNotNull(resp);
+		resp.delete().queue();
+		sendCommand("upstreams reset upstreams.test");
+		resp=getMessage(msg->hasEmbed(msg, null,"The circuit breaker of `upstreams.test` has been closed."));
+		assertNotNull(resp);
+		resp.delete().queue();
+	}
+	@Test
+	public void testResetUnknown() {
+		sendCommand("upstreams reset thisisinvalid");
+		Message resp=getMessage(msg->hasEmbed(msg, null,"There is no external API named `thisisinvalid`."));
+		assertNotNull(resp);
+		assertTrue(hasEmbed(resp, embed->Color.RED.equals(embed.getColor())));
+		resp.delete().queue();
+	}
+	@Test
+	public void testHelp() {
+		assertEquals("shows the state of external APIs (`upstreams`) or closes a circuit breaker (`upstreams reset <name>`)", new Upstreams().help());
+	}
+	@Test
+	public void testCommandType() {
+		assertSame(CommandType.META, new Upstreams().getType());
+	}
+	@Override
+	protected String cmdName() {
+		return "upstreams";
+	}
+	@Override
+	protected Command cmd() {
+		return new Upstreams();
+	}
+}
@@ -13,10 +13,14 @@ import static io.github.jdiscordbots.jdatesting.TestUtils.getMessage;
 import static io.github.jdiscordbots.jdatesting.TestUtils.getTestingChannel;
 import static io.github.jdiscordbots.jdatesting.TestUtils.hasEmbed;
 import static io.github.jdiscordbots.jdatesting.TestUtils.hasEmbedField;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.awaitility.Awaitility;
 import org.awaitility.Durations;
 import org.junit.jupiter.api.AfterAll;
@@ -78,6 +82,18 @@ public class MsgLogListenerTest {
 		assertTrue(hasEmbedField(resp, "Attachments","[empty.txt]("+toDelete.getAttachments().get(0).getUrl()+") (10)"));
 		resp.delete().complete();
 	}
+	@Test
+	public void testBulkDeletedMsgs() {
+		List<Message> toDelete=Arrays.asList(
+				getTestingChannel().sendMessage("test message 3").complete(),
+				getTestingChannel().sendMessage("test message 4").complete());
+		getTestingChannel().deleteMessages(toDelete).complete();
+		Message resp=getMessage(msg->hasEmbed(msg, "Deleted Messages","2 messages were deleted."));
+		assertNotNull(resp);
+		assertEquals(1, resp.getAttachments().size());
+		assertEquals("deleted-messages.txt", resp.getAttachments().get(0).getFileName());
+		resp.delete().complete();
+	}
 	@AfterAll
 	public static void finish() {
 		BotData.resetMsgLogChannel(getTestingChannel().getGuild());
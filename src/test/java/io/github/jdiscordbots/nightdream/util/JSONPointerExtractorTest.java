@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: JSONPointerExtractorTest.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public class JSONPointerExtractorTest {
+	@Test
+	public void testSimpleValues() throws IOException {
+		JSONObject result=extract("{\"name\": \"test\", \"count\": 42, \"ratio\": 1.5, \"valid\": true, \"missing\": null}",
+				"/name", "/count", "/ratio", "/valid", "/missing", "/unknown");
+		assertEquals("test", result.getString("/name"));
+		assertEquals(42, result.getInt("/count"));
+		assertEquals(1.5, result.getDouble("/ratio"));
+		assertTrue(result.getBoolean("/valid"));
+		assertSame(JSONObject.NULL, result.get("/missing"));
+		assertFalse(result.has("/unknown"));
+		assertEquals(5, result.length());
+	}
+	@Test
+	public void testNesting() throws IOException {
+		JSONObject result=extract("{\"skipped\": {\"a\": [1, {\"b\": \"]}\"}]}, \"maintainers\": [{\"name\": \"first\"}, {\"name\": \"second\"}],"
+				+ " \"nested\": {\"object\": {\"key\": [1, 2, {\"x\": \"y\"}]}, \"empty\": {}, \"emptyArray\": []}}",
+				"/maintainers/1/name", "/nested/object", "/nested/empty", "/nested/emptyArray", "/maintainers/5/name");
+		assertEquals("second", result.getString("/maintainers/1/name"));
+		JSONObject object=result.getJSONObject("/nested/object");
+		JSONArray array=object.getJSONArray("key");
+		assertEquals(3, array.length());
+		assertEquals(2, array.getInt(1));
+		assertEquals("y", array.getJSONObject(2).getString("x"));
+		assertEquals(0, result.getJSONObject("/nested/empty").length());
+		assertEquals(0, result.getJSONArray("/nested/emptyArray").length());
+		assertFalse(result.has("/maintainers/5/name"));
+	}
+	@Test
+	public void testWholeDocument() throws IOException {
+		JSONObject result=extract("[1, 2, 3]", "");
+		assertEquals(3, result.getJSONArray("").length());
+	}
+	@Test
+	public void testEscapes() throws IOException {
+		JSONObject result=extract("{\"text\": \"a\\\"b\\\\c\\/d\\n\\t\\u00e9\\u20AC\", \"a/b\": 1, \"m~n\": 2, \"sk\\\"ip\": \"\\\"}\", \"after\": 3}",
+				"/text", "/a~1b", "/m~0n", "/after");
+		assertEquals("a\"b\\c/d\n\t\u00e9\u20AC", result.getString("/text"));
+		assertEquals(1, result.getInt("/a~1b"));
+		assertEquals(2, result.getInt("/m~0n"));
+		assertEquals(3, result.getInt("/after"));
+	}
+	@Test
+	public void testWildcards() throws IOException {
+		JSONObject result=extract("{\"versions\": {\"1.0.0\": {\"version\": \"1.0.0\", \"author\": {\"name\": \"a\"}},"
+				+ " \"2.0.0\": {\"version\": \"2.0.0\"}}, \"list\": [{\"id\": 1}, {\"id\": 2}]}",
+				"/versions/*/version", "/list/*/id");
+		assertEquals("1.0.0", result.getString("/versions/1.0.0/version"));
+		assertEquals("2.0.0", result.getString("/versions/2.0.0/version"));
+		assertEquals(1, result.getInt("/list/0/id"));
+		assertEquals(2, result.getInt("/list/1/id"));
+		assertEquals(4, result.length());
+	}
+	@Test
+	public void testEarlyStop() throws IOException {
+		//the rest of the document is not read if all values have been found
+		String document="{\"first\": 1, \"nested\": {\"second\": 2}, \"rest\": ";
+		CountingReader reader=new CountingReader(document+"this is not JSON");
+		JSONObject result=JSONPointerExtractor.extract(reader, Arrays.asList("/nested/second", "/first"));
+		assertEquals(1, result.getInt("/first"));
+		assertEquals(2, result.getInt("/nested/second"));
+		assertTrue(reader.count<=document.length());
+	}
+	@Test
+	public void testNoEarlyStopWithWildcards() {
+		assertThrows(JSONException.class, ()->extract("{\"a\": {\"b\": 1}, \"c\": unterminated", "/a/*"));
+	}
+	@Test
+	public void testMalformedInput() {
+		assertThrows(JSONException.class, ()->extract("{\"a\": \"unterminated", "/a"));
+		assertThrows(JSONException.class, ()->extract("{\"a\" 1}", "/a"));
+		assertThrows(JSONException.class, ()->extract("{\"a\": 1 \"b\": 2}", "/b"));
+		assertThrows(JSONException.class, ()->extract("{\"a\": \"\\x\"}", "/a"));
+		assertThrows(JSONException.class, ()->extract("{\"a\": \"\\u12\"}", "/a"));
+		assertThrows(JSONException.class, ()->extract("{\"a\": [1, 2}", "/a"));
+		assertThrows(JSONException.class, ()->extract("{\"skipped\": [1, 2", "/a"));
+		assertThrows(JSONException.class, ()->extract("{\"a\": }", "/a"));
+		assertThrows(JSONException.class, ()->extract("{a: 1}", "/a"));
+	}
+	@Test
+	public void testInvalidPointer() {
+		assertThrows(IllegalArgumentException.class, ()->extract("{}", "a"));
+	}
+	@Test
+	public void testEmptyDocument() throws IOException {
+		assertEquals(0, extract("{}", "/a").length());
+		assertEquals(0, extract("[]", "/0").length());
+		assertEquals(0, extract("{\"a\": 1}", new String[0]).length());
+	}
+
+	private static JSONObject extract(String document,String... pointers) throws IOException {
+		return JSONPointerExtractor.extract(new StringReader(document), Arrays.asList(pointers));
+	}
+
+	/**
+	 * a {@link Reader} that counts the read characters
+	 */
+	private static final class CountingReader extends Reader{
+		private final String content;
+		private int count;
+		private CountingReader(String content) {
+			this.content=content;
+		}
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			if(count>=content.length()) {
+				return -1;
+			}
+			//one character at a time so buffering does not read ahead
+			cbuf[off]=content.charAt(count++);
+			return 1;
+		}
+		@Override
+		public void close() {
+			//nothing to close
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) JDiscordBots 2019 - 2020
+ * File: ResponseCacheTest.java
+ * Project: NightDream
+ * Licensed under GNU General Public License 3.0
+ */
+
+package io.github.jdiscordbots.nightdream.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.jdiscordbots.nightdream.util.ResponseCache.CachedResponse;
+
+public class ResponseCacheTest {
+	@TempDir
+	File diskDir;
+	private int maxEntries;
+	private long maxBytes;
+	private long diskBytes;
+
+	@BeforeEach
+	public void setUp() {
+		maxEntries=BotData.getHttpCacheMaxEntries();
+		maxBytes=BotData.getHttpCacheMaxBytes();
+		diskBytes=BotData.getHttpCacheDiskBytes();
+		BotData.setHttpCacheMaxEntries(3);
+		BotData.setHttpCacheMaxBytes(100);
+		BotData.setHttpCacheDiskBytes(0);
+	}
+	@AfterEach
+	public void tearDown() {
+		BotData.setHttpCacheMaxEntries(maxEntries);
+		BotData.setHttpCacheMaxBytes(maxBytes);
+		BotData.setHttpCacheDiskBytes(diskBytes);
+	}
+
+	@Test
+	public void testExpiry() {
+		CachedResponse expired=response("expired", -1000);
+		assertFalse(expired.isFresh());
+		CachedResponse renewed=expired.renew(60000);
+		assertTrue(renewed.isFresh());
+		assertArrayEquals(expired.getBody(), renewed.getBody());
+		assertEquals("\"etag\"", renewed.getETag());
+		assertTrue(response("fresh", 60000).isFresh());
+	}
+	@Test
+	public void testExpiredResponseIsKept() {
+		//expired responses are still needed for revalidation
+		ResponseCache cache=new ResponseCache(diskDir);
+		cache.put("https://example.com/expired", response("expired", -1000));
+		CachedResponse cached=cache.get("https://example.com/expired");
+		assertNotNull(cached);
+		assertFalse(cached.isFresh());
+		assertEquals("\"etag\"", cached.getETag());
+	}
+	@Test
+	public void testEvictionByEntries() {
+		ResponseCache cache=new ResponseCache(diskDir);
+		cache.put("https://example.com/1", response("1", 60000));
+		cache.put("https://example.com/2", response("2", 60000));
+		cache.put("https://example.com/3", response("3", 60000));
+		//the least recently used entry is evicted
+		assertNotNull(cache.get("https://example.com/1"));
+		cache.put("https://example.com/4", response("4", 60000));
+		assertEquals(3, cache.size());
+		assertNull(cache.get("https://example.com/2"));
+		assertNotNull(cache.get("https://example.com/1"));
+		assertNotNull(cache.get("https://example.com/3"));
+		assertNotNull(cache.get("https://example.com/4"));
+	}
+	@Test
+	public void testEvictionByBytes() {
+		ResponseCache cache=new ResponseCache(diskDir);
+		cache.put("https://example.com/1", response(repeat('a', 40), 60000));
+		cache.put("https://example.com/2", response(repeat('b', 40), 60000));
+		assertEquals(80, cache.getUsedBytes());
+		cache.put("https://example.com/3", response(repeat('c', 40), 60000));
+		assertEquals(80, cache.getUsedBytes());
+		assertNull(cache.get("https://example.com/1"));
+		//responses larger than the limit are not cached
+		cache.put("https://example.com/4", response(repeat('d', 101), 60000));
+		assertNull(cache.get("https://example.com/4"));
+		assertEquals(2, cache.size());
+	}
+	@Test
+	public void testReplace() {
+		ResponseCache cache=new ResponseCache(diskDir);
+		cache.put("https://example.com/1", response(repeat('a', 40), 60000));
+		cache.put("https://example.com/1", response(repeat('b', 10), 60000));
+		assertEquals(1, cache.size());
+		assertEquals(10, cache.getUsedBytes());
+		assertEquals(repeat('b', 10), new String(cache.get("https://example.com/1").getBody(), StandardCharsets.UTF_8));
+	}
+	@Test
+	public void testDiskPersistence() {
+		BotData.setHttpCacheDiskBytes(10000);
+		ResponseCache cache=new ResponseCache(diskDir);
+		cache.put("https://example.com/1", response("persisted", 60000));
+		//a new cache only knows the response from disk
+		ResponseCache restarted=new ResponseCache(diskDir);
+		CachedResponse cached=restarted.get("https://example.com/1");
+		assertNotNull(cached);
+		assertEquals("persisted", new String(cached.getBody(), StandardCharsets.UTF_8));
+		assertEquals("\"etag\"", cached.getETag());
+		assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", cached.getLastModified());
+		assertTrue(cached.isFresh());
+		assertEquals(1, restarted.size());
+	}
+	@Test
+	public void testDiskEviction() {
+		BotData.setHttpCacheDiskBytes(10000);
+		ResponseCache cache=new ResponseCache(diskDir);
+		cache.put("https://example.com/1", response(repeat('a', 40), 60000));
+		long fileSize=cache.getUsedDiskBytes();
+		assertTrue(fileSize>40);
+		//only two files fit on disk
+		BotData.setHttpCacheDiskBytes(fileSize*2+fileSize/2);
+		cache.put("https://example.com/2", response(repeat('b', 40), 60000));
+		cache.put("https://example.com/3", response(repeat('c', 40), 60000));
+		assertEquals(fileSize*2, cache.getUsedDiskBytes());
+		assertEquals(2, diskDir.listFiles().length);
+		ResponseCache restarted=new ResponseCache(diskDir);
+		assertNull(restarted.get("https://example.com/1"));
+		assertNotNull(restarted.get("https://example.com/2"));
+		assertNotNull(restarted.get("https://example.com/3"));
+	}
+	@Test
+	public void testDeletedFile() {
+		BotData.setHttpCacheDiskBytes(10000);
+		ResponseCache cache=new ResponseCache(diskDir);
+		cache.put("https://example.com/1", response("deleted", 60000));
+		for (File file : diskDir.listFiles()) {
+			assertTrue(file.delete());
+		}
+		ResponseCache restarted=new ResponseCache(diskDir);
+		assertEquals(0, restarted.getUsedDiskBytes());
+		assertNull(restarted.get("https://example.com/1"));
+	}
+
+	private static CachedResponse response(String body,long ttlMillis) {
+		return new CachedResponse(body.getBytes(StandardCharsets.UTF_8), "\"etag\"", "Thu, 01 Jan 1970 00:00:00 GMT", System.currentTimeMillis()+ttlMillis);
+	}
+	private static String repeat(char c,int count) {
+		StringBuilder sb=new StringBuilder(count);
+		for (int i = 0; i < count; i++) {
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+}
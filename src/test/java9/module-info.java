@@ -4,10 +4,15 @@ module io.github.jdiscordbots.nightdream{
 	requires java.desktop;
 	requires javassist;
 	requires java.compiler;
+	requires jdk.jshell;
 	requires java.sql;
+	requires java.naming;
+	requires jdk.naming.dns;
 	requires github.api;
 	requires json;
+	requires okhttp3;
 	requires dbio;
 	requires KSoft4J;
 	requires jdk.unsupported;
+	requires jdk.httpserver;
 }
\ No newline at end of file